@@ -0,0 +1,52 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solve time against pool size, shaped like a batch dispatch tick: {@code orders} pending
+ * orders (rows) against {@code robots} available robots, costs in minutes.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=HungarianSolver}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HungarianSolverBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    int orders;
+
+    @Param({"50", "200", "500"})
+    int robots;
+
+    private double[] cost;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        cost = new double[orders * robots];
+        for (int i = 0; i < cost.length; i++) {
+            cost[i] = 5 + random.nextDouble() * 60;
+        }
+    }
+
+    @Benchmark
+    public int[] solve() {
+        return HungarianSolver.solve(cost, orders, robots);
+    }
+}
@@ -0,0 +1,70 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One origin against many targets: pairwise {@link GeoMath#haversine(double, double, double, double)}
+ * in a loop, the batch kernel with precomputed cos(lat), and the nearest-index scan.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=GeoMath}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoMathBenchmark {
+
+    @Param({"100", "10000"})
+    int points;
+
+    private double[] lats;
+    private double[] lngs;
+    private double[] cosLats;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        lats = new double[points];
+        lngs = new double[points];
+        for (int i = 0; i < points; i++) {
+            lats[i] = 37.6 + random.nextDouble() * 0.3;
+            lngs[i] = -122.5 + random.nextDouble() * 0.3;
+        }
+        cosLats = GeoMath.cosLats(lats, points);
+        out = new double[points];
+    }
+
+    @Benchmark
+    public double[] haversinePairwise() {
+        for (int i = 0; i < points; i++) {
+            out[i] = GeoMath.haversine(37.77, -122.42, lats[i], lngs[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] haversineBatch() {
+        GeoMath.haversine(37.77, -122.42, lats, lngs, cosLats, points, out);
+        return out;
+    }
+
+    @Benchmark
+    public int nearestIndex() {
+        return GeoMath.nearestIndex(37.77, -122.42, lats, lngs, points);
+    }
+}
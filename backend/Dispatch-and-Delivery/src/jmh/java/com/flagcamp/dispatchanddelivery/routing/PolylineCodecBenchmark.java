@@ -0,0 +1,85 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import com.google.maps.internal.PolylineEncoding;
+import com.google.maps.model.LatLng;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PolylineCodec against the Google Maps client's PolylineEncoding on a city-scale route.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=PolylineCodec}; add {@code -PjmhProfilers=gc}
+ * to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolylineCodecBenchmark {
+
+    @Param({"50", "500", "5000"})
+    int points;
+
+    private double[] lat;
+    private double[] lng;
+    private List<LatLng> latLngs;
+    private String encoded;
+    private double[] outLat;
+    private double[] outLng;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        lat = new double[points];
+        lng = new double[points];
+        latLngs = new ArrayList<>(points);
+        double pLat = 37.77;
+        double pLng = -122.42;
+        for (int i = 0; i < points; i++) {
+            // 10-100 m steps
+            pLat += (random.nextDouble() - 0.5) * 1e-3;
+            pLng += (random.nextDouble() - 0.5) * 1e-3;
+            lat[i] = pLat;
+            lng[i] = pLng;
+            latLngs.add(new LatLng(pLat, pLng));
+        }
+        encoded = PolylineCodec.encode(lat, lng);
+        outLat = new double[points];
+        outLng = new double[points];
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return PolylineCodec.encode(lat, lng);
+    }
+
+    @Benchmark
+    public String encodeGoogle() {
+        return PolylineEncoding.encode(latLngs);
+    }
+
+    @Benchmark
+    public int decodeCodec() {
+        return PolylineCodec.decode(encoded, outLat, outLng);
+    }
+
+    @Benchmark
+    public List<LatLng> decodeGoogle() {
+        return PolylineEncoding.decode(encoded);
+    }
+}
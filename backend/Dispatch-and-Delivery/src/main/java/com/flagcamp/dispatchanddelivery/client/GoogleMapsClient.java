@@ -6,12 +6,14 @@ import com.google.maps.model.DirectionsResult;
 import com.google.maps.model.LatLng;
 import com.google.maps.model.TravelMode;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
 @Component
+@ConditionalOnProperty(name = "dispatch.routing.provider", havingValue = "google", matchIfMissing = true)
 public class GoogleMapsClient {
     
     @Value("${google.maps.api-key}")
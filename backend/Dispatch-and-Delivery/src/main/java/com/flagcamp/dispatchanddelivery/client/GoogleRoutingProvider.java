@@ -0,0 +1,141 @@
+package com.flagcamp.dispatchanddelivery.client;
+
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.routing.PolylineCodec;
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsResult;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.DirectionsStep;
+import com.google.maps.model.LatLng;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RoutingProvider backed by the Google Maps Directions API.
+ */
+@Component
+@ConditionalOnProperty(name = "dispatch.routing.provider", havingValue = "google", matchIfMissing = true)
+public class GoogleRoutingProvider implements RoutingProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(GoogleRoutingProvider.class);
+
+    private final GoogleMapsClient googleMapsClient;
+
+    public GoogleRoutingProvider(GoogleMapsClient googleMapsClient) {
+        this.googleMapsClient = googleMapsClient;
+    }
+
+    @Override
+    public RouteDTO route(double fromLat, double fromLng, double toLat, double toLng) {
+        // Call Google Maps API
+        DirectionsResult result;
+        try {
+            result = googleMapsClient.getDirections(
+                fromLat,
+                fromLng,
+                toLat,
+                toLng
+            );
+        } catch (com.google.maps.errors.ZeroResultsException e) {
+            logger.error("Google Maps found no routes between ({}, {}) and ({}, {}). " +
+                        "This usually means there's no road connection between these points.",
+                        fromLat, fromLng, toLat, toLng);
+            throw new RuntimeException("No route found between the pickup and delivery locations. " +
+                                     "Please check that both locations are accessible by road.", e);
+        } catch (Exception e) {
+            logger.error("Failed to get directions from Google Maps API for route from ({}, {}) to ({}, {})",
+                        fromLat, fromLng, toLat, toLng, e);
+            throw new RuntimeException("Failed to compute route: " + e.getMessage(), e);
+        }
+
+        // Check if we got results
+        if (result.routes == null || result.routes.length == 0) {
+            throw new RuntimeException("No routes found for the given coordinates");
+        }
+
+        // Get the first route (for robot)
+        DirectionsRoute route = result.routes[0];
+
+        return new RouteDTO(
+            route.overviewPolyline.getEncodedPath(),
+            //position is the start position when Route is computed
+            route.legs[0].startLocation.lat,
+            route.legs[0].startLocation.lng,
+            //distance, in meters
+            route.legs[0].distance.inMeters
+        );
+    }
+
+    /**
+     * Routes the whole tour with one Directions request, passing the intermediate stops as
+     * waypoints in the given order. Each leg's polyline is assembled from its steps.
+     */
+    @Override
+    public List<RouteDTO> routeThrough(double[] lats, double[] lngs) {
+        int last = lats.length - 1;
+        LatLng[] waypoints = new LatLng[last - 1];
+        for (int i = 1; i < last; i++) {
+            waypoints[i - 1] = new LatLng(lats[i], lngs[i]);
+        }
+
+        DirectionsResult result;
+        try {
+            result = googleMapsClient.getDirectionsWithWaypoints(
+                lats[0],
+                lngs[0],
+                waypoints,
+                lats[last],
+                lngs[last]
+            );
+        } catch (com.google.maps.errors.ZeroResultsException e) {
+            logger.error("Google Maps found no route through {} stops starting at ({}, {})",
+                        lats.length, lats[0], lngs[0]);
+            throw new RuntimeException("No route found through the delivery stops. " +
+                                     "Please check that all locations are accessible by road.", e);
+        } catch (Exception e) {
+            logger.error("Failed to get waypoint directions from Google Maps API for {} stops", lats.length, e);
+            throw new RuntimeException("Failed to compute route: " + e.getMessage(), e);
+        }
+
+        if (result.routes == null || result.routes.length == 0 || result.routes[0].legs.length != last) {
+            throw new RuntimeException("No routes found for the given stops");
+        }
+
+        List<RouteDTO> legs = new ArrayList<>(last);
+        for (DirectionsLeg leg : result.routes[0].legs) {
+            legs.add(new RouteDTO(
+                encodeLeg(leg),
+                leg.startLocation.lat,
+                leg.startLocation.lng,
+                leg.distance.inMeters
+            ));
+        }
+        return legs;
+    }
+
+    private static String encodeLeg(DirectionsLeg leg) {
+        List<LatLng> points = new ArrayList<>();
+        for (DirectionsStep step : leg.steps) {
+            List<LatLng> stepPoints = step.polyline.decodePath();
+            // consecutive steps share their joining point
+            int from = points.isEmpty() ? 0 : 1;
+            points.addAll(stepPoints.subList(Math.min(from, stepPoints.size()), stepPoints.size()));
+        }
+        if (points.isEmpty()) {
+            points.add(leg.startLocation);
+            points.add(leg.endLocation);
+        }
+        double[] lat = new double[points.size()];
+        double[] lng = new double[points.size()];
+        for (int i = 0; i < lat.length; i++) {
+            lat[i] = points.get(i).lat;
+            lng[i] = points.get(i).lng;
+        }
+        return PolylineCodec.encode(lat, lng);
+    }
+}
@@ -0,0 +1,104 @@
+package com.flagcamp.dispatchanddelivery.client;
+
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import com.flagcamp.dispatchanddelivery.routing.PolylineCodec;
+import com.flagcamp.dispatchanddelivery.routing.RoadGraph;
+import com.flagcamp.dispatchanddelivery.routing.RoadGraphRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Offline RoutingProvider that answers shortest-path queries on a local road graph file.
+ * Enabled with {@code dispatch.routing.provider=local}; no Google Maps key or network is needed.
+ *
+ * Both query points are snapped to their nearest graph node and the straight snap legs are part
+ * of the route. A point farther than {@code max-snap-meters} from the graph, or two points that
+ * snap to the same node, get a great-circle route instead.
+ */
+@Component
+@ConditionalOnProperty(name = "dispatch.routing.provider", havingValue = "local")
+public class LocalRoutingProvider implements RoutingProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalRoutingProvider.class);
+
+    @Value("${dispatch.routing.local.graph-file}")
+    private String graphFile;
+
+    @Value("${dispatch.routing.local.max-snap-meters:500}")
+    private double maxSnapMeters;
+
+    private RoadGraphRouter router;
+
+    @PostConstruct
+    public void init() throws IOException {
+        long start = System.nanoTime();
+        RoadGraph graph = RoadGraph.load(Path.of(graphFile));
+        this.router = new RoadGraphRouter(graph);
+        logger.info("Loaded road graph {} ({} nodes, {} edges) in {} ms",
+            graphFile, graph.nodeCount(), graph.edgeCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public RouteDTO route(double fromLat, double fromLng, double toLat, double toLng) {
+        RoadGraph graph = router.graph();
+        int source = graph.nearestNode(fromLat, fromLng);
+        int target = graph.nearestNode(toLat, toLng);
+        if (source < 0 || target < 0) {
+            throw new RuntimeException("Road graph is empty, cannot compute route");
+        }
+        double snapFrom = GeoMath.haversine(fromLat, fromLng, graph.lat(source), graph.lng(source));
+        double snapTo = GeoMath.haversine(toLat, toLng, graph.lat(target), graph.lng(target));
+        if (source == target || snapFrom > maxSnapMeters || snapTo > maxSnapMeters) {
+            // the graph can't tell anything useful here; a 0 m route would make the trip instant
+            logger.debug("Great-circle route between ({}, {}) and ({}, {}): snapped {} m / {} m to nodes {} / {}",
+                        fromLat, fromLng, toLat, toLng, Math.round(snapFrom), Math.round(snapTo), source, target);
+            return greatCircleRoute(fromLat, fromLng, toLat, toLng);
+        }
+
+        RoadGraphRouter.Path path = router.shortestPath(source, target);
+        if (path == null) {
+            logger.error("Local road graph has no route between ({}, {}) and ({}, {})",
+                        fromLat, fromLng, toLat, toLng);
+            throw new RuntimeException("No route found between the pickup and delivery locations. " +
+                                     "Please check that both locations are accessible by road.");
+        }
+
+        // query point, graph nodes, query point
+        int[] nodes = path.nodes();
+        double[] lat = new double[nodes.length + 2];
+        double[] lng = new double[nodes.length + 2];
+        lat[0] = fromLat;
+        lng[0] = fromLng;
+        for (int i = 0; i < nodes.length; i++) {
+            lat[i + 1] = graph.lat(nodes[i]);
+            lng[i + 1] = graph.lng(nodes[i]);
+        }
+        lat[nodes.length + 1] = toLat;
+        lng[nodes.length + 1] = toLng;
+
+        return new RouteDTO(
+            PolylineCodec.encode(lat, lng),
+            fromLat,
+            fromLng,
+            Math.round(snapFrom + path.lengthMeters() + snapTo)
+        );
+    }
+
+    private static RouteDTO greatCircleRoute(double fromLat, double fromLng, double toLat, double toLng) {
+        return new RouteDTO(
+            PolylineCodec.encode(new double[] {fromLat, toLat}, new double[] {fromLng, toLng}),
+            fromLat,
+            fromLng,
+            Math.round(GeoMath.haversine(fromLat, fromLng, toLat, toLng))
+        );
+    }
+}
@@ -0,0 +1,43 @@
+package com.flagcamp.dispatchanddelivery.client;
+
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Road routing backend used by RouteService.
+ *
+ * Implementations return the road route between two coordinates as an encoded polyline,
+ * the (road-snapped) start position and the route length in meters.
+ * Selected with {@code dispatch.routing.provider}: "google" (default) or "local".
+ */
+public interface RoutingProvider {
+
+    /**
+     * @param fromLat Starting latitude
+     * @param fromLng Starting longitude
+     * @param toLat Destination latitude
+     * @param toLng Destination longitude
+     * @return RouteDTO holding encoded polyline, start position and distance in meters
+     * @throws RuntimeException if no road connection exists between the two points
+     */
+    RouteDTO route(double fromLat, double fromLng, double toLat, double toLng) throws Exception;
+
+    /**
+     * Routes a multi-stop tour through the given points in order (no reordering).
+     * The default issues one {@link #route} call per leg; providers that support waypoints
+     * override it with a single request for the whole tour.
+     *
+     * @param lats Latitudes of start, intermediate stops and final stop
+     * @param lngs Longitudes, same order
+     * @return one RouteDTO per leg ({@code lats.length - 1} legs)
+     */
+    default List<RouteDTO> routeThrough(double[] lats, double[] lngs) throws Exception {
+        List<RouteDTO> legs = new ArrayList<>(lats.length - 1);
+        for (int i = 1; i < lats.length; i++) {
+            legs.add(route(lats[i - 1], lngs[i - 1], lats[i], lngs[i]));
+        }
+        return legs;
+    }
+}
@@ -0,0 +1,20 @@
+package com.flagcamp.dispatchanddelivery.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor for fanning out independent I/O calls (routing API, hub / robot lookups).
+ * One virtual thread per task, so blocking calls don't tie up platform threads.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService routingExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
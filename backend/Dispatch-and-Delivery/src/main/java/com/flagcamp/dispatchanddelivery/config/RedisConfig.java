@@ -1,13 +1,21 @@
 package com.flagcamp.dispatchanddelivery.config;
 
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 @Configuration
 @EnableRedisRepositories(basePackages = "com.flagcamp.dispatchanddelivery.repository")
@@ -17,12 +25,28 @@ public class RedisConfig {
         return PasswordEncoderFactories.createDelegatingPasswordEncoder();
     }
 
+    // robot signals between nodes (RedisSignalBus); started and stopped with the context
+    @Bean
+    @ConditionalOnProperty(name = "dispatch.signals.bus", havingValue = "redis")
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     // clean previous session IDs
+    // only the session keys: missions, shard leases and routes of other nodes live in the same Redis
     @Bean
-    public CommandLineRunner clearRedis(RedisConnectionFactory factory) {
+    public CommandLineRunner clearRedis(StringRedisTemplate redisTemplate) {
         return args -> {
             System.out.println("Cleaning Redis session data...");
-            factory.getConnection().serverCommands().flushAll();
+            List<String> keys = new ArrayList<>();
+            try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match("spring:session:*").count(1000).build())) {
+                cursor.forEachRemaining(keys::add);
+            }
+            if (!keys.isEmpty()) {
+                redisTemplate.delete(keys);
+            }
         };
     }
 }
@@ -3,9 +3,9 @@ package com.flagcamp.dispatchanddelivery.config;
 import com.flagcamp.dispatchanddelivery.entity.HubEntity;
 import com.flagcamp.dispatchanddelivery.entity.OrderEntity;
 import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
-import com.flagcamp.dispatchanddelivery.repository.HubRepository;
 import com.flagcamp.dispatchanddelivery.repository.OrderRepository;
 import com.flagcamp.dispatchanddelivery.repository.RouteRepository;
+import com.flagcamp.dispatchanddelivery.service.RobotService;
 import com.flagcamp.dispatchanddelivery.service.RouteService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,38 +23,36 @@ public class RedisDataInitializer {
     @Bean
     public CommandLineRunner initializeRedisData(
             OrderRepository orderRepository,
-            HubRepository hubRepository,
+            RobotService robotService,
             RouteService routeService,
             RouteRepository routeRepository) {
         
         return args -> {
             logger.info("Starting Redis data initialization with Google Maps route computation...");
             
-            // Clear existing routes if any
-            long existingRoutesCount = routeRepository.count();
-            if (existingRoutesCount > 0) {
-                logger.info("Redis already has {} routes. Clearing before re-initialization...", existingRoutesCount);
-                routeRepository.deleteAll();
-                logger.info("Existing routes cleared.");
-            }
+            // Existing routes are kept: missions resumed after a restart and other nodes still use them
             
             // Fetch all orders from PostgreSQL
             Iterable<OrderEntity> orders = orderRepository.findAll();
             int routesCreated = 0;
             int routesFailed = 0;
+            int routesKept = 0;
             
             for (OrderEntity order : orders) {
                 try {
                     // Only create routes for orders with pickup times
                     if (order.getPickupTime() != null) {
+                        if (routeRepository.existsById(order.getOrderId())) {
+                            routesKept++;
+                            continue;
+                        }
                         logger.info("Computing and storing route for order: {}", order.getOrderId());
                         
                         // Find the closest hub to the pickup location
-                        HubEntity closestHub = findClosestHub(
-                            hubRepository, 
+                        HubEntity closestHub = robotService.findNearestHub(
                             order.getFromLat(), 
                             order.getFromLng()
-                        );
+                        ).orElse(null);
                         
                         if (closestHub == null) {
                             logger.error("No hub found for order: {}", order.getOrderId());
@@ -109,54 +107,8 @@ public class RedisDataInitializer {
                 }
             }
             
-            logger.info("Redis initialization complete. Created {} routes, {} failed.", 
-                       routesCreated, routesFailed);
+            logger.info("Redis initialization complete. Created {} routes, kept {}, {} failed.", 
+                       routesCreated, routesKept, routesFailed);
         };
     }
-    
-    /**
-     * Find the closest hub to a given location using Haversine distance formula.
-     */
-    private HubEntity findClosestHub(HubRepository hubRepository, double lat, double lng) {
-        List<HubEntity> allHubs = hubRepository.findAll();
-        
-        if (allHubs.isEmpty()) {
-            return null;
-        }
-        
-        HubEntity closestHub = null;
-        double minDistance = Double.MAX_VALUE;
-        
-        for (HubEntity hub : allHubs) {
-            double distance = calculateDistance(lat, lng, hub.getHubLat(), hub.getHubLng());
-            
-            if (distance < minDistance) {
-                minDistance = distance;
-                closestHub = hub;
-            }
-        }
-        
-        return closestHub;
-    }
-    
-    /**
-     * Calculate the distance between two points using the Haversine formula.
-     * Returns the distance in kilometers.
-     */
-    private double calculateDistance(double lat1, double lng1, double lat2, double lng2) {
-        final int EARTH_RADIUS_KM = 6371;
-        
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLng = Math.toRadians(lng2 - lng1);
-        
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return EARTH_RADIUS_KM * c;
-    }
 }
-
-
@@ -1,6 +1,7 @@
 package com.flagcamp.dispatchanddelivery.config;
 
 import com.flagcamp.dispatchanddelivery.socket.MailboxWsHandler;
+import com.flagcamp.dispatchanddelivery.socket.TrackingWsHandler;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
@@ -13,10 +14,13 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final MailboxWsHandler mailboxWsHandler;
+    private final TrackingWsHandler trackingWsHandler;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(mailboxWsHandler, "/ws")
                 .setAllowedOriginPatterns("*");  // 允许所有来源（开发环境）
+        registry.addHandler(trackingWsHandler, "/ws/tracking")
+                .setAllowedOriginPatterns("*");
     }
 }
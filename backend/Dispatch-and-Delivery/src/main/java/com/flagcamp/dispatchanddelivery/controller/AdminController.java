@@ -2,7 +2,14 @@ package com.flagcamp.dispatchanddelivery.controller;
 
 import com.flagcamp.dispatchanddelivery.entity.HubEntity;
 import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.HubIndex;
+import com.flagcamp.dispatchanddelivery.manager.RouteCache;
+import com.flagcamp.dispatchanddelivery.model.response.DispatchStatsResponse;
+import com.flagcamp.dispatchanddelivery.model.response.MissionStatsResponse;
+import com.flagcamp.dispatchanddelivery.model.response.RouteCacheStatsResponse;
+import com.flagcamp.dispatchanddelivery.service.BatchDispatchService;
 import com.flagcamp.dispatchanddelivery.service.RobotService;
+import com.flagcamp.dispatchanddelivery.service.RobotSimulatorService;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
@@ -31,8 +38,19 @@ import java.util.List;
  * 3. 查询功能：
  *    - GET /admin/hubs/nearest?latitude=...&longitude=... : 查询离用户最近的 Hub
  *    例如： GET /admin/hubs/nearest?latitude=31.2&longitude=121.5
+ *    - GET /admin/hubs/nearby?latitude=...&longitude=...&k=3 : 查询最近的 k 个 Hub 及大圆距离（米）
  *    - GET /admin/robots/recommend?hubId=...             : 查询该 Hub 上推荐机器人组合（最便宜 Robot + 最快 Drone）
  *    例如： GET /admin/robots/recommend?hubId=1
+ *
+ * 4. 路由缓存：
+ *    - GET    /admin/route-cache : 查看命中 / 未命中 / 淘汰计数
+ *    - DELETE /admin/route-cache : 清空路由缓存
+ *
+ * 5. 批量调度：
+ *    - GET    /admin/dispatch    : 调度模式、待分配订单数、上一次求解的规模和耗时
+ *
+ * 6. 任务引擎：
+ *    - GET    /admin/missions    : 进行中 / 等待确认的任务数、tick耗时
  */
 
 
@@ -40,9 +58,17 @@ import java.util.List;
 @RequestMapping("/admin")
 public class AdminController {
     private final RobotService robotService;
+    private final RouteCache routeCache;
+    private final BatchDispatchService batchDispatchService;
+    private final RobotSimulatorService robotSimulatorService;
 
-    public AdminController(RobotService robotService) {
+    public AdminController(RobotService robotService, RouteCache routeCache,
+                           BatchDispatchService batchDispatchService,
+                           RobotSimulatorService robotSimulatorService) {
         this.robotService = robotService;
+        this.routeCache = routeCache;
+        this.batchDispatchService = batchDispatchService;
+        this.robotSimulatorService = robotSimulatorService;
     }
 
     // ===================== Hub CRUD =====================
@@ -133,4 +159,35 @@ public class AdminController {
         return robotService.findNearestHub(latitude, longitude)
                 .orElseThrow(() -> new RuntimeException("No hubs available"));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/hubs/nearby")
+    public List<HubIndex.Neighbor> getNearbyHubs(@RequestParam double latitude,
+                                                 @RequestParam double longitude,
+                                                 @RequestParam(defaultValue = "3") int k) {
+        return robotService.findNearestHubs(latitude, longitude, k);
+    }
+
+    // ===================== 路由缓存 =====================
+    @GetMapping("/route-cache")
+    public RouteCacheStatsResponse getRouteCacheStats() {
+        return routeCache.stats();
+    }
+
+    @DeleteMapping("/route-cache")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void invalidateRouteCache() {
+        routeCache.invalidateAll();
+    }
+
+    // ===================== 批量调度 =====================
+    @GetMapping("/dispatch")
+    public DispatchStatsResponse getDispatchStats() {
+        return batchDispatchService.stats();
+    }
+
+    // ===================== 任务引擎 =====================
+    @GetMapping("/missions")
+    public MissionStatsResponse getMissionStats() {
+        return robotSimulatorService.stats();
+    }
+}
@@ -71,15 +71,22 @@ public class OrderController {
         if (result.get("success") != null && (Boolean) result.get("success")) {
             String orderId = (String) result.get("order_id");
             String robotId = (String) result.get("robot_id");
-            orderService.startRobotAsync(orderId, robotId);
+            // batch dispatch mode returns no robot yet; the dispatcher starts the mission on assignment
+            if (robotId != null) {
+                orderService.startRobotAsync(orderId, robotId);
+            }
         }
         
         return ResponseEntity.ok(result);
     }
 
-    // 4. GET /dashboard/orders/tracking?order_id=...
+    // 4. GET /dashboard/orders/tracking?id=...[&zoom=15 | &tolerance=20]
+    // zoom / tolerance (meters) select a simplified level-of-detail route
     @GetMapping("/tracking")
-    public ResponseEntity<PositionResponse> getTracking(@RequestParam("id") String orderId) {
-        return ResponseEntity.ok(orderService.getTrackingData(orderId));
+    public ResponseEntity<PositionResponse> getTracking(
+            @RequestParam("id") String orderId,
+            @RequestParam(value = "zoom", required = false) Integer zoom,
+            @RequestParam(value = "tolerance", required = false) Double tolerance) {
+        return ResponseEntity.ok(orderService.getTrackingData(orderId, zoom, tolerance));
     }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-cost assignment (Hungarian algorithm with row / column potentials).
+ *
+ * Works on rectangular matrices: the smaller side is always used as the row side
+ * (transposing if needed), so the run time is O(rows² · cols) with rows = min(n, m).
+ * With a few hundred robots and a few thousand pending orders that is milliseconds.
+ */
+public final class HungarianSolver {
+
+    private HungarianSolver() {
+    }
+
+    /**
+     * @param cost row-major cost matrix, {@code cost[r * cols + c]}
+     * @return for every row the assigned column, or -1 if the row is left unassigned (only when rows > cols)
+     */
+    public static int[] solve(double[] cost, int rows, int cols) {
+        if (rows == 0 || cols == 0) {
+            int[] none = new int[rows];
+            Arrays.fill(none, -1);
+            return none;
+        }
+        if (rows <= cols) {
+            return solveWide(cost, rows, cols);
+        }
+
+        // more rows than columns: solve the transpose and invert the result
+        double[] transposed = new double[cost.length];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                transposed[c * rows + r] = cost[r * cols + c];
+            }
+        }
+        int[] colToRow = solveWide(transposed, cols, rows);
+        int[] rowToCol = new int[rows];
+        Arrays.fill(rowToCol, -1);
+        for (int c = 0; c < cols; c++) {
+            rowToCol[colToRow[c]] = c;
+        }
+        return rowToCol;
+    }
+
+    // n <= m; every row gets a column
+    private static int[] solveWide(double[] a, int n, int m) {
+        // 1-based potentials, index 0 is the virtual start column
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];      // p[j] = row matched to column j
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                int rowBase = (i0 - 1) * m - 1;
+                double ui0 = u[i0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double cur = a[rowBase + j] - ui0 - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+
+            // augment along the alternating path
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] rowToCol = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                rowToCol[p[j] - 1] = j - 1;
+            }
+        }
+        return rowToCol;
+    }
+}
@@ -0,0 +1,132 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for many long timeouts.
+ *
+ * Time is cut into ticks of {@code tickNanos}; a timeout expiring at tick {@code t} sits in
+ * bucket {@code t mod slots}, in an intrusive doubly-linked list. Scheduling and cancelling are
+ * O(1); {@link #advance} visits only the buckets of the ticks that passed and fires the entries
+ * whose tick has come (entries of later revolutions stay). Timeouts fire at most one tick late
+ * and never early.
+ *
+ * Time is whatever nanosecond clock the caller passes in (wall or virtual). Thread-safe;
+ * expired values are handed to the callback after the wheel's lock is released.
+ */
+public final class TimingWheel<T> {
+
+    private final long tickNanos;
+    private final long originNanos;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    // next tick to be processed
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param slots rounded up to a power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(int slots, long tickNanos, long originNanos) {
+        if (slots <= 0 || tickNanos <= 0) {
+            throw new IllegalArgumentException("slots and tickNanos must be positive");
+        }
+        int n = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.buckets = (Timeout<T>[]) new Timeout[slots == 1 ? 1 : n];
+        this.mask = buckets.length - 1;
+        this.tickNanos = tickNanos;
+        this.originNanos = originNanos;
+    }
+
+    public synchronized Timeout<T> schedule(long deadlineNanos, T value) {
+        long tick = Math.max(currentTick, Math.ceilDiv(deadlineNanos - originNanos, tickNanos));
+        Timeout<T> timeout = new Timeout<>(value, tick);
+        int slot = (int) (tick & mask);
+        timeout.next = buckets[slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[slot] = timeout;
+        timeout.linked = true;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * @return false if the timeout already fired or was cancelled
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (!timeout.linked) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Fires every timeout whose deadline is at or before {@code nowNanos}.
+     */
+    public void advance(long nowNanos, Consumer<T> onExpired) {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = Math.floorDiv(nowNanos - originNanos, tickNanos);
+            if (target < currentTick) {
+                return;
+            }
+            // every entry due by target is in one of these buckets; one revolution at most
+            long last = Math.min(target, currentTick + mask);
+            for (long tick = currentTick; tick <= last; tick++) {
+                Timeout<T> timeout = buckets[(int) (tick & mask)];
+                while (timeout != null) {
+                    Timeout<T> next = timeout.next;
+                    if (timeout.tick <= target) {
+                        unlink(timeout);
+                        expired.add(timeout.value);
+                    }
+                    timeout = next;
+                }
+            }
+            currentTick = target + 1;
+        }
+        expired.forEach(onExpired);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[(int) (timeout.tick & mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+        size--;
+    }
+
+    public static final class Timeout<T> {
+        private final T value;
+        private final long tick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private boolean linked;
+
+        private Timeout(T value, long tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+
+        public T value() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+
+/**
+ * Sequences the pickups and drop-offs of several orders carried by one robot.
+ *
+ * Heuristic for the pickup-and-delivery TSP: cheapest insertion (each order's pickup and
+ * drop-off inserted where they add the least distance), then 2-opt segment reversals, both
+ * restricted to sequences where every pickup comes before its drop-off and the load never
+ * exceeds the robot's capacity. Distances are great-circle; the chosen sequence is routed
+ * on roads afterwards in one waypoint request.
+ *
+ * Stops are numbered {@code 2 * job} (pickup) and {@code 2 * job + 1} (drop-off). The tour
+ * starts at the robot's position and ends at the last drop-off.
+ */
+public final class TourPlanner {
+
+    private final int jobs;
+    private final double[] weight;
+    private final double capacity;
+    // dist[a * size + b]; index 0 is the start, stop s is at index s + 1
+    private final double[] dist;
+    private final int size;
+
+    /**
+     * @param capacity max load carried at once; {@code <= 0} means unlimited
+     */
+    public TourPlanner(double startLat, double startLng,
+                       double[] pickupLat, double[] pickupLng,
+                       double[] dropLat, double[] dropLng,
+                       double[] weight, double capacity) {
+        this.jobs = pickupLat.length;
+        this.weight = weight;
+        this.capacity = capacity <= 0 ? Double.POSITIVE_INFINITY : capacity;
+        this.size = 2 * jobs + 1;
+
+        double[] lat = new double[size];
+        double[] lng = new double[size];
+        lat[0] = startLat;
+        lng[0] = startLng;
+        for (int j = 0; j < jobs; j++) {
+            lat[2 * j + 1] = pickupLat[j];
+            lng[2 * j + 1] = pickupLng[j];
+            lat[2 * j + 2] = dropLat[j];
+            lng[2 * j + 2] = dropLng[j];
+        }
+        double[] cos = GeoMath.cosLats(lat, size);
+        this.dist = new double[size * size];
+        double[] row = new double[size];
+        for (int a = 0; a < size; a++) {
+            GeoMath.haversine(lat[a], lng[a], lat, lng, cos, size, row);
+            System.arraycopy(row, 0, dist, a * size, size);
+        }
+    }
+
+    public static int jobOf(int stop) {
+        return stop >> 1;
+    }
+
+    public static boolean isPickup(int stop) {
+        return (stop & 1) == 0;
+    }
+
+    /**
+     * @return stop sequence of length {@code 2 * jobs}, or null if some order alone exceeds the capacity
+     */
+    public int[] plan() {
+        for (int j = 0; j < jobs; j++) {
+            if (weight[j] > capacity) {
+                return null;
+            }
+        }
+        int[] route = insertAll();
+        twoOpt(route);
+        return route;
+    }
+
+    /**
+     * Great-circle length of the tour from the start through every stop, in meters.
+     */
+    public double length(int[] route) {
+        return length(route, route.length);
+    }
+
+    private double length(int[] route, int count) {
+        double total = 0;
+        int prev = 0;
+        for (int i = 0; i < count; i++) {
+            int node = route[i] + 1;
+            total += dist[prev * size + node];
+            prev = node;
+        }
+        return total;
+    }
+
+    private double d(int fromNode, int toNode) {
+        return dist[fromNode * size + toNode];
+    }
+
+    // node index (0 = start) of the stop before position i, for a route of the given length
+    private static int nodeBefore(int[] route, int i) {
+        return i == 0 ? 0 : route[i - 1] + 1;
+    }
+
+    private int[] insertAll() {
+        int[] route = new int[2 * jobs];
+        int count = 0;
+        boolean[] placed = new boolean[jobs];
+        int[] candidate = new int[2 * jobs];
+
+        for (int step = 0; step < jobs; step++) {
+            double bestDelta = Double.POSITIVE_INFINITY;
+            int bestJob = -1;
+            int bestPickupPos = -1;
+            int bestDropPos = -1;
+            double base = length(route, count);
+
+            for (int j = 0; j < jobs; j++) {
+                if (placed[j]) {
+                    continue;
+                }
+                // pickup before position p, drop-off before position q of the route with the pickup inserted
+                for (int p = 0; p <= count; p++) {
+                    for (int q = p + 1; q <= count + 1; q++) {
+                        build(route, count, j, p, q, candidate);
+                        if (!feasible(candidate, count + 2)) {
+                            continue;
+                        }
+                        double delta = length(candidate, count + 2) - base;
+                        if (delta < bestDelta) {
+                            bestDelta = delta;
+                            bestJob = j;
+                            bestPickupPos = p;
+                            bestDropPos = q;
+                        }
+                    }
+                }
+            }
+            // always feasible: with every load <= capacity, inserting pickup + drop-off back to back fits
+            build(route, count, bestJob, bestPickupPos, bestDropPos, candidate);
+            System.arraycopy(candidate, 0, route, 0, count + 2);
+            count += 2;
+            placed[bestJob] = true;
+        }
+        return route;
+    }
+
+    private static void build(int[] route, int count, int job, int p, int q, int[] out) {
+        int src = 0;
+        for (int dst = 0; dst < count + 2; dst++) {
+            if (dst == p) {
+                out[dst] = 2 * job;
+            } else if (dst == q) {
+                out[dst] = 2 * job + 1;
+            } else {
+                out[dst] = route[src++];
+            }
+        }
+    }
+
+    private boolean feasible(int[] route, int count) {
+        double load = 0;
+        boolean[] picked = new boolean[jobs];
+        for (int i = 0; i < count; i++) {
+            int stop = route[i];
+            int job = jobOf(stop);
+            if (isPickup(stop)) {
+                picked[job] = true;
+                load += weight[job];
+                if (load > capacity + 1e-9) {
+                    return false;
+                }
+            } else {
+                if (!picked[job]) {
+                    return false;
+                }
+                load -= weight[job];
+            }
+        }
+        return true;
+    }
+
+    private void twoOpt(int[] route) {
+        int n = route.length;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < n - 1; i++) {
+                for (int k = i + 1; k < n; k++) {
+                    int before = nodeBefore(route, i);
+                    int first = route[i] + 1;
+                    int last = route[k] + 1;
+                    // open tour: reversing up to the end has no closing edge
+                    double delta = d(before, last) - d(before, first);
+                    if (k + 1 < n) {
+                        int after = route[k + 1] + 1;
+                        delta += d(first, after) - d(last, after);
+                    }
+                    if (delta < -1e-6) {
+                        reverse(route, i, k);
+                        if (feasible(route, n)) {
+                            improved = true;
+                        } else {
+                            reverse(route, i, k);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void reverse(int[] route, int i, int k) {
+        while (i < k) {
+            int t = route[i];
+            route[i++] = route[k];
+            route[k--] = t;
+        }
+    }
+}
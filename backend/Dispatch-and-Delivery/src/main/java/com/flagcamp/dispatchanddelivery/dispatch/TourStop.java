@@ -0,0 +1,13 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+
+/**
+ * One stop of a multi-stop robot run.
+ *
+ * @param orderId order picked up or dropped off here
+ * @param pickup true for the pickup, false for the drop-off
+ * @param leg road (or straight, for drones) route from the previous stop to this one
+ */
+public record TourStop(String orderId, boolean pickup, RouteDTO leg) {
+}
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @RedisHash(value = "routes", timeToLive = 86400) // TTL: 24 hours
 @Data
 @NoArgsConstructor
@@ -19,6 +21,7 @@ public class RouteEntity {
     
     private String pickupToEnd;
     
+    // starting position (the hub); the live position is kept in PositionStore
     private double positionLat;
     
     private double positionLng;
@@ -26,4 +29,9 @@ public class RouteEntity {
     private long hubToPickupDistance;
     
     private long pickupToEndDistance;
+
+    // level-of-detail versions of each leg, from finest to coarsest (see dispatch.route-simplify.levels-meters)
+    private List<String> hubToPickupLevels;
+
+    private List<String> pickupToEndLevels;
 }
@@ -0,0 +1,190 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.repository.RobotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory registry of available robots, grouped by hub and robot type.
+ *
+ * Each (hub, type) pool keeps two sorted sets, one by price and one by speed, so the
+ * cheapest / fastest available robot is a peek at the head of a set instead of a query
+ * plus a sort. Rebuilt from the database at startup and kept in sync by every
+ * availability change (mission start / end) and by admin robot CRUD.
+ *
+ * Robots holding a reservation lease ({@link RobotReservationManager}) are skipped.
+ *
+ * Only dispatch attributes (hub, type, price, speed, availability) are tracked here;
+ * live position stays in the database / route store.
+ */
+@Component
+public class FleetRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetRegistry.class);
+
+    private static final Comparator<Slot> BY_PRICE =
+        Comparator.comparingDouble(Slot::price).thenComparing(Slot::robotId);
+    private static final Comparator<Slot> BY_SPEED =
+        Comparator.comparingDouble(Slot::speed).reversed().thenComparing(Slot::robotId);
+
+    private final RobotRepository robotRepository;
+    private final RobotReservationManager reservationManager;
+
+    //key: robotId，当前登记的机器人（不论是否可用）
+    private final Map<String, Slot> robots = new ConcurrentHashMap<>();
+    //key: hubId + type，只包含可用的机器人
+    private final Map<PoolKey, Pool> pools = new ConcurrentHashMap<>();
+
+    public FleetRegistry(RobotRepository robotRepository, RobotReservationManager reservationManager) {
+        this.robotRepository = robotRepository;
+        this.reservationManager = reservationManager;
+    }
+
+    // before other ready listeners that dispatch right away (e.g. the load driver)
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void rebuild() {
+        robots.clear();
+        pools.clear();
+        robotRepository.findAll().forEach(this::update);
+        logger.info("Fleet registry rebuilt with {} robots", robots.size());
+    }
+
+    /**
+     * Registers the robot's current state, replacing any previous entry for the same id.
+     * Call after every save that can change availability, hub, type, price or speed.
+     */
+    public void update(RobotEntity robot) {
+        Slot next = Slot.of(robot);
+        // compute() serializes updates of the same robot so both sets always agree
+        robots.compute(robot.getRobotId(), (id, previous) -> {
+            if (previous != null) {
+                detach(previous);
+            }
+            if (next.robot().isAvailable()) {
+                pools.computeIfAbsent(next.poolKey(), k -> new Pool()).add(next);
+            }
+            return next;
+        });
+    }
+
+    public void remove(String robotId) {
+        robots.computeIfPresent(robotId, (id, previous) -> {
+            detach(previous);
+            return null;
+        });
+    }
+
+    private void detach(Slot slot) {
+        Pool pool = pools.get(slot.poolKey());
+        if (pool != null) {
+            pool.remove(slot);
+        }
+    }
+
+    /**
+     * @param type "robot" or "drone"
+     */
+    public Optional<RobotEntity> cheapest(String hubId, String type) {
+        return peek(hubId, type, true);
+    }
+
+    public Optional<RobotEntity> fastest(String hubId, String type) {
+        return peek(hubId, type, false);
+    }
+
+    private Optional<RobotEntity> peek(String hubId, String type, boolean byPrice) {
+        Pool pool = pools.get(new PoolKey(hubId, normalize(type)));
+        if (pool == null) {
+            return Optional.empty();
+        }
+        NavigableSet<Slot> set = byPrice ? pool.byPrice : pool.bySpeed;
+        // iterator instead of first(), which throws if the set is emptied concurrently
+        for (Slot slot : set) {
+            // reserved robots are still marked available until their mission starts
+            if (!reservationManager.isReserved(slot.robotId())) {
+                return Optional.of(copy(slot.robot()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return copies of all available, unreserved robots of the type across every hub
+     */
+    public List<RobotEntity> available(String type) {
+        String key = normalize(type);
+        List<Slot> slots = new ArrayList<>();
+        pools.forEach((poolKey, pool) -> {
+            if (poolKey.type().equals(key)) {
+                slots.addAll(pool.byPrice);
+            }
+        });
+        // one lookup for the whole list instead of one per robot
+        Set<String> reserved = reservationManager.reservedAmong(slots.stream().map(Slot::robotId).toList());
+        List<RobotEntity> result = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            if (!reserved.contains(slot.robotId())) {
+                result.add(copy(slot.robot()));
+            }
+        }
+        return result;
+    }
+
+    public int availableCount(String hubId, String type) {
+        Pool pool = pools.get(new PoolKey(hubId, normalize(type)));
+        return pool == null ? 0 : pool.byPrice.size();
+    }
+
+    // callers get their own copy so they can't mutate the registered state
+    private static RobotEntity copy(RobotEntity r) {
+        return new RobotEntity(r.getRobotId(), r.isAvailable(), r.getBattery(), r.getHubId(),
+            r.getCurrentLat(), r.getCurrentLng(), r.getMaxWeight(), r.getSpeed(), r.getPrice(), r.getRobotType());
+    }
+
+    private static String normalize(String type) {
+        return type == null ? "" : type.toLowerCase(Locale.ROOT);
+    }
+
+    private record PoolKey(String hubId, String type) {}
+
+    private record Slot(String robotId, double price, double speed, PoolKey poolKey, RobotEntity robot) {
+        static Slot of(RobotEntity robot) {
+            RobotEntity snapshot = copy(robot);
+            return new Slot(snapshot.getRobotId(), snapshot.getPrice(), snapshot.getSpeed(),
+                new PoolKey(snapshot.getHubId(), normalize(snapshot.getRobotType())), snapshot);
+        }
+    }
+
+    private static final class Pool {
+        final ConcurrentSkipListSet<Slot> byPrice = new ConcurrentSkipListSet<>(BY_PRICE);
+        final ConcurrentSkipListSet<Slot> bySpeed = new ConcurrentSkipListSet<>(BY_SPEED);
+
+        void add(Slot slot) {
+            byPrice.add(slot);
+            bySpeed.add(slot);
+        }
+
+        void remove(Slot slot) {
+            byPrice.remove(slot);
+            bySpeed.remove(slot);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.flagcamp.dispatchanddelivery.entity.HubEntity;
+import com.flagcamp.dispatchanddelivery.repository.HubRepository;
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory spatial index over hubs for nearest / k-nearest queries.
+ *
+ * Hubs are stored as points on the unit sphere (x, y, z) in a KD-tree, so straight-line
+ * (chord) distance is monotonic in great-circle distance everywhere, including near the
+ * poles and across the antimeridian. The tree is an immutable snapshot that is replaced
+ * on every hub change; queries never touch the database.
+ */
+@Component
+public class HubIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(HubIndex.class);
+
+    private final HubRepository hubRepository;
+
+    //当前快照，hub增删改后整体替换
+    private volatile Snapshot snapshot;
+
+    public HubIndex(HubRepository hubRepository) {
+        this.hubRepository = hubRepository;
+    }
+
+    /**
+     * Reloads all hubs from the database and swaps in a new tree.
+     * Called after hub CRUD; lookups keep using the old snapshot until the swap.
+     */
+    public synchronized void rebuild() {
+        List<HubEntity> hubs = hubRepository.findAll();
+        snapshot = new Snapshot(hubs);
+        logger.info("Hub index rebuilt with {} hubs", hubs.size());
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    public Optional<HubEntity> nearest(double lat, double lng) {
+        List<Neighbor> result = nearest(lat, lng, 1);
+        return result.isEmpty() ? Optional.empty() : Optional.of(result.get(0).hub());
+    }
+
+    /**
+     * @return up to {@code k} hubs ordered by great-circle distance, closest first
+     */
+    public List<Neighbor> nearest(double lat, double lng, int k) {
+        return snapshot().query(lat, lng, k);
+    }
+
+    public Optional<HubEntity> byId(String hubId) {
+        return Optional.ofNullable(snapshot().byId.get(hubId));
+    }
+
+    public int size() {
+        return snapshot().hubs.length;
+    }
+
+    public record Neighbor(HubEntity hub, double distanceMeters) {}
+
+    /**
+     * Balanced KD-tree stored implicitly: the node of range [lo, hi) is at (lo + hi) / 2,
+     * its left subtree is [lo, mid) and right subtree is [mid + 1, hi).
+     */
+    private static final class Snapshot {
+        private final HubEntity[] hubs;
+        private final Map<String, HubEntity> byId = new HashMap<>();
+        private final double[] x;
+        private final double[] y;
+        private final double[] z;
+        // split axis of the node at each index (0 = x, 1 = y, 2 = z)
+        private final byte[] axis;
+
+        Snapshot(List<HubEntity> source) {
+            int n = source.size();
+            hubs = source.toArray(new HubEntity[0]);
+            x = new double[n];
+            y = new double[n];
+            z = new double[n];
+            axis = new byte[n];
+            for (int i = 0; i < n; i++) {
+                byId.put(hubs[i].getHubId(), hubs[i]);
+                double[] p = toUnitVector(hubs[i].getHubLat(), hubs[i].getHubLng());
+                x[i] = p[0];
+                y[i] = p[1];
+                z[i] = p[2];
+            }
+            build(0, n);
+        }
+
+        private void build(int lo, int hi) {
+            if (hi - lo <= 1) {
+                return;
+            }
+            // split on the axis with the widest spread
+            int splitAxis = widestAxis(lo, hi);
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, splitAxis);
+            axis[mid] = (byte) splitAxis;
+            build(lo, mid);
+            build(mid + 1, hi);
+        }
+
+        private int widestAxis(int lo, int hi) {
+            int best = 0;
+            double bestSpread = -1;
+            for (int a = 0; a < 3; a++) {
+                double[] c = coord(a);
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int i = lo; i < hi; i++) {
+                    min = Math.min(min, c[i]);
+                    max = Math.max(max, c[i]);
+                }
+                if (max - min > bestSpread) {
+                    bestSpread = max - min;
+                    best = a;
+                }
+            }
+            return best;
+        }
+
+        // quickselect: puts the k-th smallest (by axis) at index k, smaller on the left
+        private void select(int lo, int hi, int k, int a) {
+            double[] c = coord(a);
+            while (lo < hi) {
+                double pivot = c[(lo + hi) >>> 1];
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (c[i] < pivot) i++;
+                    while (c[j] > pivot) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (k <= j) {
+                    hi = j;
+                } else if (k >= i) {
+                    lo = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            HubEntity h = hubs[i]; hubs[i] = hubs[j]; hubs[j] = h;
+            double t = x[i]; x[i] = x[j]; x[j] = t;
+            t = y[i]; y[i] = y[j]; y[j] = t;
+            t = z[i]; z[i] = z[j]; z[j] = t;
+        }
+
+        private double[] coord(int a) {
+            return a == 0 ? x : a == 1 ? y : z;
+        }
+
+        List<Neighbor> query(double lat, double lng, int k) {
+            int n = hubs.length;
+            k = Math.min(k, n);
+            if (k <= 0) {
+                return List.of();
+            }
+            double[] q = toUnitVector(lat, lng);
+            Candidates best = new Candidates(k);
+            search(0, n, q, best);
+
+            List<Neighbor> result = new ArrayList<>(best.size);
+            for (int i = 0; i < best.size; i++) {
+                double chord = Math.sqrt(best.dist2[i]);
+                // chord length on the unit sphere -> central angle -> meters
+                double meters = 2 * Math.asin(Math.min(1.0, chord / 2)) * GeoMath.EARTH_RADIUS_METERS;
+                result.add(new Neighbor(hubs[best.index[i]], meters));
+            }
+            return result;
+        }
+
+        private void search(int lo, int hi, double[] q, Candidates best) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double dx = x[mid] - q[0];
+            double dy = y[mid] - q[1];
+            double dz = z[mid] - q[2];
+            best.offer(mid, dx * dx + dy * dy + dz * dz);
+            if (hi - lo == 1) {
+                return;
+            }
+
+            double diff = q[axis[mid]] - coord(axis[mid])[mid];
+            // closer side first, the far side only if the splitting plane is within reach
+            if (diff < 0) {
+                search(lo, mid, q, best);
+                if (diff * diff < best.worst()) {
+                    search(mid + 1, hi, q, best);
+                }
+            } else {
+                search(mid + 1, hi, q, best);
+                if (diff * diff < best.worst()) {
+                    search(lo, mid, q, best);
+                }
+            }
+        }
+
+        private static double[] toUnitVector(double lat, double lng) {
+            double phi = Math.toRadians(lat);
+            double lambda = Math.toRadians(lng);
+            double cosPhi = Math.cos(phi);
+            return new double[] {cosPhi * Math.cos(lambda), cosPhi * Math.sin(lambda), Math.sin(phi)};
+        }
+    }
+
+    /**
+     * Fixed-capacity list of the k closest candidates seen so far (k is small, so insertion is linear).
+     */
+    private static final class Candidates {
+        final int[] index;
+        final double[] dist2;
+        int size;
+
+        Candidates(int k) {
+            index = new int[k];
+            dist2 = new double[k];
+        }
+
+        double worst() {
+            if (size < index.length) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return dist2[size - 1];
+        }
+
+        // keeps the arrays sorted by distance, closest first
+        void offer(int i, double d2) {
+            if (size == index.length && d2 >= dist2[size - 1]) {
+                return;
+            }
+            int pos = size < index.length ? size++ : size - 1;
+            while (pos > 0 && dist2[pos - 1] > d2) {
+                index[pos] = index[pos - 1];
+                dist2[pos] = dist2[pos - 1];
+                pos--;
+            }
+            index[pos] = i;
+            dist2[pos] = d2;
+        }
+    }
+}
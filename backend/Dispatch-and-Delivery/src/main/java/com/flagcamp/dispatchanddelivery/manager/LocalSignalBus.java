@@ -0,0 +1,55 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-process {@link SignalBus} (the default, {@code dispatch.signals.bus=local}).
+ *
+ * With a single instance nothing is ever forwarded. Several RobotSignalManagers sharing one
+ * LocalSignalBus behave like nodes of a cluster, which is how multi-node routing is exercised
+ * without Redis.
+ */
+@Component
+@ConditionalOnProperty(name = "dispatch.signals.bus", havingValue = "local", matchIfMissing = true)
+public class LocalSignalBus implements SignalBus {
+
+    //key: nodeId
+    private final Map<String, Consumer<Signal>> nodes = new ConcurrentHashMap<>();
+    //key: orderId, value: 等待该订单确认的nodeId
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+
+    @Override
+    public void subscribe(String nodeId, Consumer<Signal> handler) {
+        nodes.put(nodeId, handler);
+    }
+
+    @Override
+    public void claim(String orderId, String nodeId) {
+        owners.put(orderId, nodeId);
+    }
+
+    @Override
+    public void release(String orderId, String nodeId) {
+        owners.remove(orderId, nodeId);
+    }
+
+    @Override
+    public void publish(Signal signal) {
+        String owner = owners.get(signal.orderId());
+        Consumer<Signal> handler = owner == null ? null : nodes.get(owner);
+        if (handler != null) {
+            handler.accept(signal);
+            return;
+        }
+        nodes.forEach((nodeId, h) -> {
+            if (!nodeId.equals(signal.originNodeId())) {
+                h.accept(signal);
+            }
+        });
+    }
+}
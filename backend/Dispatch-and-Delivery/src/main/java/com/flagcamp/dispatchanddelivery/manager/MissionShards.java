@@ -0,0 +1,277 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Which mission shards this node runs ({@code dispatch.shards.enabled=true}).
+ *
+ * A mission belongs to shard {@code hash(robotId) mod count}; a node runs the missions of the
+ * shards it holds a lease on. Leases are Redis keys {@code mission-shard:<shard>} → nodeId with
+ * a TTL of {@code lease-ms}, renewed every {@code renew-ms} with a compare-and-pexpire script.
+ * Live nodes heartbeat into the sorted set {@code mission-nodes} (score = expiry), so every node
+ * knows its fair share {@code ceil(count / live nodes)}: a node above it gives shards back, a node
+ * below it takes free ones. Scale-out and failover are the same mechanism: a new node lowers
+ * the fair share, a dead node's leases run out and are taken by the survivors within
+ * {@code lease-ms + renew-ms}.
+ *
+ * Ownership changes are queued for the mission engine, which adopts / detaches missions on its
+ * tick thread; a shard given back is only deleted from Redis after the engine has detached it
+ * ({@link #detached}), so two nodes never advance the same mission on purpose. A node that
+ * hasn't renewed for {@code lease-ms - renew-ms} drops all its shards: its leases may run out
+ * before the next renewal, and others may hold them by then.
+ *
+ * Disabled (the default), the node owns every shard without leases; they are all reported as
+ * gained once, so the engine recovers the stored missions at startup.
+ */
+@Component
+public class MissionShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(MissionShards.class);
+
+    private static final String LEASE_PREFIX = "mission-shard:";
+    private static final String NODES_KEY = "mission-nodes";
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+        Long.class);
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final boolean enabled;
+    private final int count;
+    private final long leaseMs;
+    private final long renewMs;
+
+    private final Set<Integer> owned = ConcurrentHashMap.newKeySet();
+    // shards being given back: still leased until the engine has detached them
+    private final Set<Integer> releasing = ConcurrentHashMap.newKeySet();
+    //所有权变化，由任务引擎的tick线程取出处理
+    private final Queue<Integer> gained = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> lost = new ConcurrentLinkedQueue<>();
+    private volatile long lastRenewMillis = System.currentTimeMillis();
+    private volatile int liveNodes = 1;
+
+    public MissionShards(StringRedisTemplate redisTemplate,
+                         NodeIdentity node,
+                         @Value("${dispatch.shards.enabled:false}") boolean enabled,
+                         @Value("${dispatch.shards.count:64}") int count,
+                         @Value("${dispatch.shards.lease-ms:10000}") long leaseMs,
+                         @Value("${dispatch.shards.renew-ms:2000}") long renewMs) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("dispatch.shards.count must be positive");
+        }
+        if (renewMs <= 0 || renewMs >= leaseMs) {
+            throw new IllegalArgumentException("dispatch.shards.renew-ms must be positive and below lease-ms");
+        }
+        this.redisTemplate = redisTemplate;
+        this.nodeId = node.id();
+        this.enabled = enabled;
+        this.count = count;
+        this.leaseMs = leaseMs;
+        this.renewMs = renewMs;
+        if (!enabled) {
+            // single node: every shard is ours from the start, stored missions are recovered on the first tick
+            for (int shard = 0; shard < count; shard++) {
+                gained.add(shard);
+            }
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public int shardOf(String robotId) {
+        return Math.floorMod(robotId.hashCode(), count);
+    }
+
+    public boolean owns(int shard) {
+        return !enabled || (owned.contains(shard) && !releasing.contains(shard));
+    }
+
+    /**
+     * Node holding the shard's lease, or null if nobody does right now.
+     */
+    public String ownerOf(int shard) {
+        if (owns(shard)) {
+            return nodeId;
+        }
+        return redisTemplate.opsForValue().get(LEASE_PREFIX + shard);
+    }
+
+    public int ownedCount() {
+        return enabled ? owned.size() : count;
+    }
+
+    public int liveNodes() {
+        return liveNodes;
+    }
+
+    /**
+     * Hands all shards gained since the last call to the engine at once, so their missions
+     * are loaded in one batch.
+     */
+    public void drainGained(Consumer<List<Integer>> adopt) {
+        List<Integer> batch = new ArrayList<>();
+        Integer shard;
+        while ((shard = gained.poll()) != null) {
+            // given up again before the engine got to it
+            if (owns(shard) && !batch.contains(shard)) {
+                batch.add(shard);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            adopt.accept(batch);
+        } catch (RuntimeException e) {
+            // retried on the next tick
+            gained.addAll(batch);
+            throw e;
+        }
+    }
+
+    public void drainLost(IntConsumer detach) {
+        Integer shard;
+        while ((shard = lost.poll()) != null) {
+            detach.accept(shard);
+        }
+    }
+
+    /**
+     * Called by the engine once a shard's missions are dropped from memory; a shard that was
+     * given back is now free for other nodes.
+     */
+    public void detached(int shard) {
+        if (!releasing.remove(shard)) {
+            return;
+        }
+        owned.remove(shard);
+        try {
+            redisTemplate.execute(RELEASE, List.of(LEASE_PREFIX + shard), nodeId);
+            logger.info("Node {} released mission shard {}", nodeId, shard);
+        } catch (Exception e) {
+            // the lease runs out by itself
+            logger.warn("Failed to release mission shard {}: {}", shard, e.toString());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.shards.renew-ms:2000}")
+    public void renew() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            heartbeat(now);
+            renewOwned();
+            rebalance();
+            lastRenewMillis = now;
+        } catch (Exception e) {
+            logger.error("Failed to renew mission shard leases", e);
+            // the next attempt is renew-ms away, by then the leases may have run out
+            if (now - lastRenewMillis >= leaseMs - renewMs && !owned.isEmpty()) {
+                logger.error("Leases not renewed for {} ms, dropping all {} mission shards", now - lastRenewMillis, owned.size());
+                for (Integer shard : owned) {
+                    lose(shard);
+                }
+            }
+        }
+    }
+
+    private void heartbeat(long now) {
+        redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now + leaseMs);
+        redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now);
+        Long nodes = redisTemplate.opsForZSet().zCard(NODES_KEY);
+        liveNodes = nodes == null || nodes == 0 ? 1 : nodes.intValue();
+    }
+
+    private void renewOwned() {
+        String ttl = Long.toString(leaseMs);
+        for (Integer shard : owned) {
+            Long renewed = redisTemplate.execute(RENEW, List.of(LEASE_PREFIX + shard), nodeId, ttl);
+            if (renewed == null || renewed == 0) {
+                logger.warn("Node {} lost the lease of mission shard {}", nodeId, shard);
+                lose(shard);
+            }
+        }
+    }
+
+    private void lose(int shard) {
+        if (owned.remove(shard)) {
+            releasing.remove(shard);
+            lost.add(shard);
+        }
+    }
+
+    private void rebalance() {
+        int fairShare = Math.ceilDiv(count, liveNodes);
+        int keeping = owned.size() - releasing.size();
+        if (keeping > fairShare) {
+            // give back the highest shards; the engine detaches them before the lease is deleted
+            List<Integer> candidates = new ArrayList<>(owned);
+            candidates.removeAll(releasing);
+            candidates.sort(null);
+            for (int i = candidates.size() - 1; i >= 0 && keeping > fairShare; i--, keeping--) {
+                int shard = candidates.get(i);
+                releasing.add(shard);
+                lost.add(shard);
+            }
+            logger.info("Node {} gives back mission shards down to {} of {} ({} live nodes)", nodeId, fairShare, count, liveNodes);
+            return;
+        }
+        // start at a random shard so nodes joining together don't race for the same ones
+        int offset = ThreadLocalRandom.current().nextInt(count);
+        Duration lease = Duration.ofMillis(leaseMs);
+        for (int i = 0; i < count && keeping < fairShare; i++) {
+            int shard = (offset + i) % count;
+            if (owned.contains(shard)) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LEASE_PREFIX + shard, nodeId, lease))) {
+                owned.add(shard);
+                gained.add(shard);
+                keeping++;
+                logger.info("Node {} took mission shard {}", nodeId, shard);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        // mission state is already in Redis: hand the shards over right away instead of letting leases run out
+        try {
+            for (Integer shard : owned) {
+                redisTemplate.execute(RELEASE, List.of(LEASE_PREFIX + shard), nodeId);
+            }
+            redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+        } catch (Exception e) {
+            logger.warn("Failed to release mission shards on shutdown: {}", e.toString());
+        }
+    }
+}
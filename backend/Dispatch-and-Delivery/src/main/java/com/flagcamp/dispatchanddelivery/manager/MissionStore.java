@@ -0,0 +1,259 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flagcamp.dispatchanddelivery.model.enums.MissionState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable mission state, so missions survive a restart and can move between nodes
+ * ({@link MissionShards}).
+ *
+ * A mission is stored in two parts, both in per-shard Redis hashes keyed by robotId:
+ *  - {@code mission-plans:<shard>}: the {@link MissionPlan} (speed and legs with their encoded
+ *    paths) as JSON, written once when the mission starts;
+ *  - {@code missions:<shard>}: a {@link Checkpoint} of a few dozen bytes,
+ *    {@code STATE|legIndex|legStartMillis|deadlineMillis}, rewritten on every state change.
+ * Positions in between follow from the leg start time, so nothing is written while robots move.
+ * A finished mission is first checkpointed as RETURNING, and only {@link #end}ed (both fields
+ * deleted) once its robot is available again, so a restart in between frees the robot instead
+ * of resuming the mission.
+ *
+ * {@link #load} reads any number of shards in one pipeline (two HGETALL per shard), which is
+ * what recovery on startup and shard adoption use.
+ *
+ * A mission started on a node that doesn't own its shard is also announced in the owner's
+ * inbox {@code missions-inbox:<nodeId>} (robot ids), which the owner drains on its next tick.
+ */
+@Component
+public class MissionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MissionStore.class);
+
+    private static final String PLAN_PREFIX = "mission-plans:";
+    private static final String CHECKPOINT_PREFIX = "missions:";
+    private static final String INBOX_PREFIX = "missions-inbox:";
+    // an inbox nobody drains belongs to a dead node; its missions are still in the shard hashes
+    private static final Duration INBOX_TTL = Duration.ofHours(1);
+    private static final int INBOX_BATCH = 10000;
+    // KEYS: checkpoint hash, plan hash; ARGV: robotId. A new mission of the robot has replaced the RETURNING checkpoint
+    private static final byte[] END = bytes(
+        "local v = redis.call('hget', KEYS[1], ARGV[1]) "
+            + "if v and string.sub(v, 1, 10) == 'RETURNING|' then "
+            + "redis.call('hdel', KEYS[1], ARGV[1]) redis.call('hdel', KEYS[2], ARGV[1]) return 1 end "
+            + "return 0");
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MissionShards shards;
+
+    public MissionStore(StringRedisTemplate redisTemplate, ObjectMapper objectMapper, MissionShards shards) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.shards = shards;
+    }
+
+    /**
+     * One leg of a stored mission.
+     *
+     * @param polyline encoded path of the leg
+     */
+    public record LegRecord(String orderId, boolean pickup, String polyline, long distance) {}
+
+    /**
+     * The part of a mission that never changes.
+     */
+    public record MissionPlan(double speed, List<LegRecord> legs) {}
+
+    /**
+     * Mission progress as of its last state change. Times are epoch milliseconds, since the
+     * engine's own clock isn't comparable between runs or nodes.
+     *
+     * @param deadlineMillis end of the confirmation window while waiting, else 0
+     */
+    public record Checkpoint(String robotId, MissionState state, int legIndex, long legStartMillis, long deadlineMillis) {
+
+        String encode() {
+            return state.name() + "|" + legIndex + "|" + legStartMillis + "|" + deadlineMillis;
+        }
+
+        static Checkpoint decode(String robotId, String value) {
+            String[] parts = value.split("\\|");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed mission checkpoint: " + value);
+            }
+            return new Checkpoint(robotId, MissionState.valueOf(parts[0]), Integer.parseInt(parts[1]),
+                Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+        }
+    }
+
+    public record StoredMission(MissionPlan plan, Checkpoint checkpoint) {}
+
+    /**
+     * Stores a new mission's plan and first checkpoint.
+     */
+    public void start(MissionPlan plan, Checkpoint checkpoint) {
+        byte[] robotId = bytes(checkpoint.robotId());
+        byte[] planJson = bytes(toJson(plan));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hSet(key(PLAN_PREFIX, checkpoint.robotId()), robotId, planJson);
+            connection.hashCommands().hSet(key(CHECKPOINT_PREFIX, checkpoint.robotId()), robotId, bytes(checkpoint.encode()));
+            return null;
+        });
+    }
+
+    /**
+     * Writes one tick's state changes in a single pipeline.
+     */
+    public void write(Collection<Checkpoint> saved) {
+        if (saved.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Checkpoint checkpoint : saved) {
+                connection.hashCommands().hSet(key(CHECKPOINT_PREFIX, checkpoint.robotId()),
+                    bytes(checkpoint.robotId()), bytes(checkpoint.encode()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Deletes a mission whatever its state, for a start that failed after storing it.
+     */
+    public void discard(String robotId) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hDel(key(CHECKPOINT_PREFIX, robotId), bytes(robotId));
+            connection.hashCommands().hDel(key(PLAN_PREFIX, robotId), bytes(robotId));
+            return null;
+        });
+    }
+
+    /**
+     * Deletes the missions of robots that are available again, in a single pipeline. Only
+     * RETURNING checkpoints are deleted: a robot that has started another mission keeps it.
+     */
+    public void end(Collection<String> robotIds) {
+        if (robotIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String robotId : robotIds) {
+                connection.scriptingCommands().eval(END, ReturnType.INTEGER, 2,
+                    key(CHECKPOINT_PREFIX, robotId), key(PLAN_PREFIX, robotId), bytes(robotId));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Every mission stored in the given shards, read in one pipeline.
+     */
+    public List<StoredMission> load(Collection<Integer> shardIds) {
+        if (shardIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Integer shard : shardIds) {
+                connection.hashCommands().hGetAll(bytes(CHECKPOINT_PREFIX + shard));
+                connection.hashCommands().hGetAll(bytes(PLAN_PREFIX + shard));
+            }
+            return null;
+        });
+        List<StoredMission> missions = new ArrayList<>();
+        for (int i = 0; i + 1 < replies.size(); i += 2) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> checkpoints = (Map<String, String>) replies.get(i);
+            @SuppressWarnings("unchecked")
+            Map<String, String> plans = (Map<String, String>) replies.get(i + 1);
+            if (checkpoints == null) {
+                continue;
+            }
+            checkpoints.forEach((robotId, checkpoint) -> {
+                StoredMission mission = read(robotId, checkpoint, plans == null ? null : plans.get(robotId));
+                if (mission != null) {
+                    missions.add(mission);
+                }
+            });
+        }
+        return missions;
+    }
+
+    public void handOff(String nodeId, String robotId) {
+        String inbox = INBOX_PREFIX + nodeId;
+        redisTemplate.opsForList().rightPush(inbox, robotId);
+        redisTemplate.expire(inbox, INBOX_TTL);
+    }
+
+    /**
+     * Missions other nodes started for this node's shards since the last call.
+     */
+    public List<StoredMission> takeHandOffs(String nodeId) {
+        List<String> robotIds = redisTemplate.opsForList().leftPop(INBOX_PREFIX + nodeId, INBOX_BATCH);
+        if (robotIds == null || robotIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String robotId : robotIds) {
+                connection.hashCommands().hGet(key(CHECKPOINT_PREFIX, robotId), bytes(robotId));
+                connection.hashCommands().hGet(key(PLAN_PREFIX, robotId), bytes(robotId));
+            }
+            return null;
+        });
+        Map<String, StoredMission> missions = new HashMap<>();
+        for (int i = 0; i < robotIds.size(); i++) {
+            String checkpoint = (String) replies.get(2 * i);
+            // ended in the meantime
+            if (checkpoint == null) {
+                continue;
+            }
+            StoredMission mission = read(robotIds.get(i), checkpoint, (String) replies.get(2 * i + 1));
+            if (mission != null) {
+                missions.put(robotIds.get(i), mission);
+            }
+        }
+        return new ArrayList<>(missions.values());
+    }
+
+    private StoredMission read(String robotId, String checkpoint, String plan) {
+        if (plan == null) {
+            logger.error("Mission of robot {} has a checkpoint but no plan, skipping it", robotId);
+            return null;
+        }
+        try {
+            return new StoredMission(objectMapper.readValue(plan, MissionPlan.class), Checkpoint.decode(robotId, checkpoint));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            logger.error("Skipping unreadable mission of robot {}: {}", robotId, e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] key(String prefix, String robotId) {
+        return bytes(prefix + shards.shardOf(robotId));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String toJson(MissionPlan plan) {
+        try {
+            return objectMapper.writeValueAsString(plan);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize mission plan", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * This instance's id among the application nodes ({@code dispatch.node-id}, random per start
+ * when blank). Used for signal routing and mission shard leases.
+ */
+@Component
+public class NodeIdentity {
+
+    private final String id;
+
+    public NodeIdentity(@Value("${dispatch.node-id:}") String id) {
+        this.id = id == null || id.isBlank() ? UUID.randomUUID().toString() : id;
+    }
+
+    public String id() {
+        return id;
+    }
+}
@@ -0,0 +1,62 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Orders waiting for a robot in batch dispatch mode ({@code dispatch.mode=batch}).
+ *
+ * submitOrder adds the order once its transaction has committed; the batch dispatcher
+ * takes a snapshot every tick, assigns robots and removes the assigned orders.
+ */
+@Component
+public class PendingOrderPool {
+
+    //key: orderId
+    private final Map<String, PendingOrder> pending = new ConcurrentHashMap<>();
+
+    public void add(PendingOrder order) {
+        pending.put(order.orderId(), order);
+    }
+
+    public void remove(String orderId) {
+        pending.remove(orderId);
+    }
+
+    /**
+     * @param robotType "robot" or "drone"
+     * @return the pending orders of that type, oldest first
+     */
+    public List<PendingOrder> snapshot(String robotType) {
+        List<PendingOrder> orders = new ArrayList<>();
+        for (PendingOrder order : pending.values()) {
+            if (order.robotType().equals(robotType)) {
+                orders.add(order);
+            }
+        }
+        orders.sort((a, b) -> Long.compare(a.enqueuedAtNanos(), b.enqueuedAtNanos()));
+        return orders;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * @param weight package weight, checked against the robot's max weight when orders share a robot
+     * @param route encoded pickup→drop-off polyline chosen in the preview
+     * @param distance road distance of that route in meters
+     */
+    public record PendingOrder(String orderId, String robotType, double pickupLat, double pickupLng,
+                               double dropLat, double dropLng, double weight,
+                               String route, long distance, long enqueuedAtNanos) {
+        public PendingOrder {
+            robotType = robotType == null ? "robot" : robotType.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live positions of robots and orders, kept apart from the immutable route geometry.
+ *
+ * An order's position lives in its own small hash {@code positions:<orderId>} (fields lat, lng)
+ * instead of inside the RouteEntity hash, so moving a robot never reads or rewrites the
+ * polylines. RouteEntity's positionLat / positionLng only hold the starting point (the hub).
+ *
+ * Writes are buffered; a flush every {@code flush-ms} (or, on the routing executor, as soon as
+ * {@code max-batch-size} positions are pending) writes them out in bulk, so the mission tick
+ * that records positions never waits for Redis or the database:
+ *  - order positions: one Redis pipeline of HSET lat lng + EXPIRE per order, no read first;
+ *  - robot positions: one JDBC batch of {@code UPDATE robots SET current_lat, current_lng}.
+ * Only the latest position per robot / order since the last flush is written. Reads see
+ * buffered positions before they are flushed.
+ */
+@Component
+public class PositionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PositionStore.class);
+
+    private static final String KEY_PREFIX = "positions:";
+    private static final String LAT = "lat";
+    private static final String LNG = "lng";
+    private static final byte[] LAT_FIELD = LAT.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LNG_FIELD = LNG.getBytes(StandardCharsets.UTF_8);
+    // same lifetime as the RouteEntity it belongs to
+    private static final long TTL_SECONDS = 86400;
+    private static final String UPDATE_ROBOT_POSITION =
+        "UPDATE robots SET current_lat = ?, current_lng = ? WHERE id = ?";
+
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxBatchSize;
+    private final ExecutorService routingExecutor;
+
+    //key: robotId / orderId, value: {lat, lng}，上次flush之后的最新位置
+    private Map<String, double[]> robotPositions = new HashMap<>();
+    private Map<String, double[]> orderPositions = new HashMap<>();
+    // snapshot being written by the current flush, still visible to reads
+    private Map<String, double[]> flushingOrders = Map.of();
+    private final Object lock = new Object();
+    // flushes run one at a time so an older snapshot never overwrites a newer one
+    private final Object flushLock = new Object();
+    // an early flush is already queued on the executor
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    private final AtomicLong robotWrites = new AtomicLong();
+    private final AtomicLong routeWrites = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    public PositionStore(StringRedisTemplate redisTemplate,
+                          JdbcTemplate jdbcTemplate,
+                          @Value("${dispatch.positions.max-batch-size:5000}") int maxBatchSize,
+                          ExecutorService routingExecutor) {
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.routingExecutor = routingExecutor;
+    }
+
+    public void robotPosition(String robotId, double lat, double lng) {
+        boolean full;
+        synchronized (lock) {
+            robotPositions.put(robotId, new double[]{lat, lng});
+            full = robotPositions.size() + orderPositions.size() >= maxBatchSize;
+        }
+        if (full) {
+            flushSoon();
+        }
+    }
+
+    /**
+     * Latest known position of the order's robot: a pending (not yet flushed) one if there is
+     * one, otherwise the stored one.
+     */
+    public Optional<double[]> findOrderPosition(String orderId) {
+        synchronized (lock) {
+            double[] pending = orderPositions.get(orderId);
+            if (pending == null) {
+                pending = flushingOrders.get(orderId);
+            }
+            if (pending != null) {
+                return Optional.of(pending.clone());
+            }
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(KEY_PREFIX + orderId, List.of(LAT, LNG));
+        if (values.size() < 2 || values.get(0) == null || values.get(1) == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new double[]{
+            Double.parseDouble((String) values.get(0)),
+            Double.parseDouble((String) values.get(1))
+        });
+    }
+
+    public void orderPosition(String orderId, double lat, double lng) {
+        boolean full;
+        synchronized (lock) {
+            orderPositions.put(orderId, new double[]{lat, lng});
+            full = robotPositions.size() + orderPositions.size() >= maxBatchSize;
+        }
+        if (full) {
+            flushSoon();
+        }
+    }
+
+    // 缓冲已满：交给执行器提前flush，调用方（任务tick线程）不等待写入
+    private void flushSoon() {
+        if (!flushQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            routingExecutor.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down: the scheduled flush picks the positions up
+            flushQueued.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.positions.flush-ms:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, double[]> robots;
+            Map<String, double[]> orders;
+            synchronized (lock) {
+                if (robotPositions.isEmpty() && orderPositions.isEmpty()) {
+                    return;
+                }
+                robots = robotPositions;
+                orders = orderPositions;
+                robotPositions = new HashMap<>();
+                orderPositions = new HashMap<>();
+                flushingOrders = orders;
+            }
+            flushes.incrementAndGet();
+            try {
+                writeOrders(orders);
+            } catch (Exception e) {
+                logger.error("Failed to write {} order positions", orders.size(), e);
+            }
+            try {
+                writeRobots(robots);
+            } catch (Exception e) {
+                logger.error("Failed to write {} robot positions", robots.size(), e);
+            }
+            synchronized (lock) {
+                flushingOrders = Map.of();
+            }
+        }
+    }
+
+    private void writeOrders(Map<String, double[]> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, double[]>> entries = new ArrayList<>(orders.entrySet());
+        for (int from = 0; from < entries.size(); from += maxBatchSize) {
+            List<Map.Entry<String, double[]>> chunk = entries.subList(from, Math.min(entries.size(), from + maxBatchSize));
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<String, double[]> entry : chunk) {
+                    hsetPosition(connection, entry.getKey(), entry.getValue());
+                }
+                return null;
+            });
+            routeWrites.addAndGet(chunk.size());
+        }
+    }
+
+    private static void hsetPosition(RedisConnection connection, String orderId, double[] latLng) {
+        byte[] key = (KEY_PREFIX + orderId).getBytes(StandardCharsets.UTF_8);
+        Map<byte[], byte[]> fields = new HashMap<>(2);
+        fields.put(LAT_FIELD, Double.toString(latLng[0]).getBytes(StandardCharsets.UTF_8));
+        fields.put(LNG_FIELD, Double.toString(latLng[1]).getBytes(StandardCharsets.UTF_8));
+        connection.hashCommands().hMSet(key, fields);
+        connection.keyCommands().expire(key, TTL_SECONDS);
+    }
+
+    private void writeRobots(Map<String, double[]> robots) {
+        if (robots.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(robots.size());
+        robots.forEach((robotId, latLng) -> args.add(new Object[]{latLng[0], latLng[1], robotId}));
+        for (int from = 0; from < args.size(); from += maxBatchSize) {
+            List<Object[]> chunk = args.subList(from, Math.min(args.size(), from + maxBatchSize));
+            jdbcTemplate.batchUpdate(UPDATE_ROBOT_POSITION, chunk);
+            robotWrites.addAndGet(chunk.size());
+        }
+    }
+
+    public long robotWrites() {
+        return robotWrites.get();
+    }
+
+    public long routeWrites() {
+        return routeWrites.get();
+    }
+
+    public long flushes() {
+        return flushes.get();
+    }
+}
@@ -0,0 +1,135 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * {@link SignalBus} over Redis pub/sub ({@code dispatch.signals.bus=redis}).
+ *
+ * Every node subscribes to its own channel {@code dispatch:signals:<nodeId>} and to the shared
+ * {@code dispatch:signals}. Claims are keys {@code signal-owner:<orderId>} → nodeId, expiring
+ * with the confirmation window. A signal goes to the owner's channel (one GET + one PUBLISH);
+ * without an owner it is broadcast and every node, the sender included, tries it. Claims are
+ * written off the caller's thread since the mission tick must not wait on Redis; a
+ * confirmation racing a claim just takes the broadcast path.
+ *
+ * Writes of one order are chained so they reach Redis in call order (a release can't land
+ * after the next stop's claim), and a release only deletes the key if it still names this
+ * node.
+ *
+ * Message format: {@code orderId|KIND|originNodeId}.
+ */
+@Component
+@ConditionalOnProperty(name = "dispatch.signals.bus", havingValue = "redis")
+public class RedisSignalBus implements SignalBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisSignalBus.class);
+
+    private static final String BROADCAST_CHANNEL = "dispatch:signals";
+    private static final String NODE_CHANNEL_PREFIX = "dispatch:signals:";
+    private static final String OWNER_KEY_PREFIX = "signal-owner:";
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ExecutorService routingExecutor;
+    private final RedisMessageListenerContainer container;
+    private final Duration claimTtl;
+    //key: orderId, value: 该订单最后一个排队中的写
+    private final Map<String, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+
+    public RedisSignalBus(StringRedisTemplate redisTemplate,
+                          RedisMessageListenerContainer container,
+                          ExecutorService routingExecutor,
+                          @Value("${dispatch.mission.signal-timeout-seconds:43200}") long signalTimeoutSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.container = container;
+        this.routingExecutor = routingExecutor;
+        this.claimTtl = Duration.ofSeconds(signalTimeoutSeconds);
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<Signal> handler) {
+        container.addMessageListener((message, pattern) -> {
+            Signal signal = decode(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (signal != null) {
+                handler.accept(signal);
+            }
+        }, List.of(new ChannelTopic(NODE_CHANNEL_PREFIX + nodeId), new ChannelTopic(BROADCAST_CHANNEL)));
+        logger.info("Node {} subscribed to robot signals", nodeId);
+    }
+
+    @Override
+    public void claim(String orderId, String nodeId) {
+        writeInOrder(orderId, () -> {
+            try {
+                redisTemplate.opsForValue().set(OWNER_KEY_PREFIX + orderId, nodeId, claimTtl);
+            } catch (Exception e) {
+                logger.warn("Failed to claim signals of order {}: {}", orderId, e.toString());
+            }
+        });
+    }
+
+    @Override
+    public void release(String orderId, String nodeId) {
+        writeInOrder(orderId, () -> {
+            try {
+                redisTemplate.execute(RELEASE, List.of(OWNER_KEY_PREFIX + orderId), nodeId);
+            } catch (Exception e) {
+                logger.warn("Failed to release signals of order {}: {}", orderId, e.toString());
+            }
+        });
+    }
+
+    @Override
+    public void publish(Signal signal) {
+        String owner = redisTemplate.opsForValue().get(OWNER_KEY_PREFIX + signal.orderId());
+        String channel = owner == null ? BROADCAST_CHANNEL : NODE_CHANNEL_PREFIX + owner;
+        redisTemplate.convertAndSend(channel, encode(signal));
+    }
+
+    // runs the write after the ones already queued for the order; writes never throw, so the chain never breaks
+    private void writeInOrder(String orderId, Runnable write) {
+        CompletableFuture<Void> next = pendingWrites.compute(orderId, (key, tail) -> tail == null
+            ? CompletableFuture.runAsync(write, routingExecutor)
+            : tail.thenRunAsync(write, routingExecutor));
+        // outside compute(): the callback may run right here if the write is already done
+        next.whenComplete((result, e) -> pendingWrites.remove(orderId, next));
+    }
+
+    private static String encode(Signal signal) {
+        return signal.orderId() + "|" + signal.kind().name() + "|" + signal.originNodeId();
+    }
+
+    private static Signal decode(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3) {
+            logger.warn("Ignoring malformed robot signal: {}", message);
+            return null;
+        }
+        try {
+            return new Signal(parts[0], Kind.valueOf(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring malformed robot signal: {}", message);
+            return null;
+        }
+    }
+}
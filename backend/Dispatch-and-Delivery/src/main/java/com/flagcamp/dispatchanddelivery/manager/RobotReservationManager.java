@@ -0,0 +1,167 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived robot reservations between order submit and mission start.
+ *
+ * submitOrder claims the robot with a lease before anything is written; the mission
+ * releases the lease once the robot is marked unavailable in the database. Claims are
+ * compare-and-set on a ConcurrentHashMap (putIfAbsent / replace), so two concurrent
+ * submits for the same robot never both succeed and no DB row lock is taken.
+ * A lease that is never released (e.g. the mission never starts) expires on its own.
+ *
+ * With several nodes ({@code dispatch.shards.enabled=true}) the lease is the Redis key
+ * {@code robot-lease:<robotId>} → orderId instead, claimed with {@code SET NX PX} and released
+ * with a compare-and-delete script, so submits for the same robot on different nodes still
+ * exclude each other.
+ */
+@Component
+public class RobotReservationManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(RobotReservationManager.class);
+
+    private static final String LEASE_PREFIX = "robot-lease:";
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean shared;
+    private final long leaseNanos;
+
+    //key: robotId, value: 当前持有的租约（单节点模式）
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    public RobotReservationManager(StringRedisTemplate redisTemplate,
+                                   @Value("${dispatch.shards.enabled:false}") boolean shared,
+                                   @Value("${dispatch.reservation.lease-seconds:120}") long leaseSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.shared = shared;
+        this.leaseNanos = TimeUnit.SECONDS.toNanos(leaseSeconds);
+    }
+
+    /**
+     * Claims the robot for the order.
+     *
+     * @return true if the order now holds the lease (also when it already held it)
+     */
+    public boolean tryReserve(String robotId, String orderId) {
+        if (shared) {
+            return tryReserveShared(robotId, orderId);
+        }
+        while (true) {
+            long now = System.nanoTime();
+            Lease next = new Lease(orderId, now + leaseNanos);
+            Lease current = leases.putIfAbsent(robotId, next);
+            if (current == null) {
+                return true;
+            }
+            if (current.orderId().equals(orderId)) {
+                return true;
+            }
+            if (!current.isExpired(now)) {
+                logger.info("Robot {} is reserved by order {}, rejecting order {}", robotId, current.orderId(), orderId);
+                return false;
+            }
+            // expired: take over only if nobody else replaced it in the meantime, otherwise re-read
+            if (leases.replace(robotId, current, next)) {
+                logger.info("Robot {} lease of order {} expired, reserved for order {}", robotId, current.orderId(), orderId);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases the lease if it is still held by the order; a lease taken over by another order is left alone.
+     */
+    public void release(String robotId, String orderId) {
+        if (!shared) {
+            leases.computeIfPresent(robotId, (id, lease) -> lease.orderId().equals(orderId) ? null : lease);
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE, List.of(LEASE_PREFIX + robotId), orderId);
+        } catch (Exception e) {
+            // the lease runs out by itself
+            logger.warn("Failed to release the lease of robot {} for order {}: {}", robotId, orderId, e.toString());
+        }
+    }
+
+    public boolean isReserved(String robotId) {
+        if (shared) {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(LEASE_PREFIX + robotId));
+        }
+        Lease lease = leases.get(robotId);
+        return lease != null && !lease.isExpired(System.nanoTime());
+    }
+
+    /**
+     * The robots of the list that are reserved right now, checked in one round trip when shared.
+     */
+    public Set<String> reservedAmong(List<String> robotIds) {
+        Set<String> reserved = new HashSet<>();
+        if (!shared) {
+            for (String robotId : robotIds) {
+                if (isReserved(robotId)) {
+                    reserved.add(robotId);
+                }
+            }
+            return reserved;
+        }
+        if (robotIds.isEmpty()) {
+            return reserved;
+        }
+        List<String> keys = new ArrayList<>(robotIds.size());
+        for (String robotId : robotIds) {
+            keys.add(LEASE_PREFIX + robotId);
+        }
+        List<String> holders = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; holders != null && i < robotIds.size(); i++) {
+            if (holders.get(i) != null) {
+                reserved.add(robotIds.get(i));
+            }
+        }
+        return reserved;
+    }
+
+    // SET NX PX：键不存在才写入；已被本订单持有也算成功
+    private boolean tryReserveShared(String robotId, String orderId) {
+        String key = LEASE_PREFIX + robotId;
+        Duration lease = Duration.ofNanos(leaseNanos);
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, orderId, lease))) {
+            return true;
+        }
+        String holder = redisTemplate.opsForValue().get(key);
+        if (orderId.equals(holder)) {
+            return true;
+        }
+        if (holder == null) {
+            // expired or released between the two calls
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, orderId, lease));
+        }
+        logger.info("Robot {} is reserved by order {}, rejecting order {}", robotId, holder, orderId);
+        return false;
+    }
+
+    private record Lease(String orderId, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            return now - expiresAtNanos > 0;
+        }
+    }
+}
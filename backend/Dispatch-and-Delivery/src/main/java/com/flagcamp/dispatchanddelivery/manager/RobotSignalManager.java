@@ -1,79 +1,205 @@
 package com.flagcamp.dispatchanddelivery.manager;
 
+import com.flagcamp.dispatchanddelivery.dispatch.TimingWheel;
+import com.flagcamp.dispatchanddelivery.simulation.SimulationClock;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Pickup / delivery confirmations the robot waits for at each stop.
+ *
+ * Nothing blocks here: a robot that arrives registers a continuation, which is called exactly
+ * once, either with CONFIRMED by the user's confirmation or with TIMED_OUT when its deadline
+ * passes. Deadlines sit in a {@link TimingWheel} that the mission engine advances on each tick,
+ * so waiting costs no thread and no timer task per order.
+ *
+ * Each waiting order costs one map entry, one waiter and one wheel entry: about 150 bytes
+ * plus the order id string (measured with 1M waiters); {@code dispatch.signals.max-waiting}
+ * caps the total. A robot that can't be registered is released like on a timeout.
+ *
+ * Confirmations may arrive on another instance than the one running the mission: a
+ * confirmation with no local waiter is forwarded through the {@link SignalBus} to the node
+ * that claimed the order when its robot started waiting.
+ */
 @Component
 public class RobotSignalManager {
 
     private static final Logger logger = LoggerFactory.getLogger(RobotSignalManager.class);
-    
-
-    //key: orderId, value: signal，“未来会被pickup/deliver的信号”
-    private final Map<String,CompletableFuture<Boolean>> pickupOrders = new ConcurrentHashMap<>();
-    private final Map<String,CompletableFuture<Boolean>> deliverOrders = new ConcurrentHashMap<>();
-
-    //机器人等待确认pickup
-    public void awaitPickup(String orderId) {
-        logger.info("Robot arriving at pickup location for order: {}, awaiting user confirmation...", orderId);
-        CompletableFuture<Boolean> signal = new CompletableFuture<>();
-        pickupOrders.put(orderId, signal);
-        try {
-            //设置12小时pickup窗口，过后超时
-            logger.info("Robot is now WAITING at pickup for order: {}", orderId);
-            signal.get(12, TimeUnit.HOURS);
-            logger.info("User confirmed pickup for order: {}, robot resuming...", orderId);
-        } catch (Exception e) {
-            logger.error("Order pickup {} timed out", orderId, e);
-            throw new RuntimeException("Timeout",e);
-        } finally {
-            pickupOrders.remove(orderId);
-        }
+
+    public enum Outcome { CONFIRMED, TIMED_OUT }
+
+    //key: orderId, value: 等待确认的机器人，“未来会被pickup/deliver的信号”
+    private final Map<String, Waiter> pickupOrders = new ConcurrentHashMap<>();
+    private final Map<String, Waiter> deliverOrders = new ConcurrentHashMap<>();
+    private final TimingWheel<Waiter> timeouts;
+    private final int maxWaiting;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final SignalBus signalBus;
+    private final String nodeId;
+
+    public RobotSignalManager(SimulationClock clock,
+                              SignalBus signalBus,
+                              NodeIdentity node,
+                              @Value("${dispatch.signals.wheel-tick-ms:1000}") long wheelTickMs,
+                              @Value("${dispatch.signals.wheel-slots:4096}") int wheelSlots,
+                              @Value("${dispatch.signals.max-waiting:200000}") int maxWaiting) {
+        this.timeouts = new TimingWheel<>(wheelSlots, TimeUnit.MILLISECONDS.toNanos(wheelTickMs), clock.nanoTime());
+        this.maxWaiting = maxWaiting;
+        this.signalBus = signalBus;
+        this.nodeId = node.id();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        signalBus.subscribe(nodeId, this::onForwarded);
+    }
+
+    /**
+     * Robot arrived at the pickup point: waits for the user's confirmation until the deadline.
+     *
+     * @param deadlineNanos on the clock passed to {@link #expire}
+     * @return false if too many orders are already waiting; the continuation is then not registered
+     */
+    public boolean awaitPickup(String orderId, long deadlineNanos, Consumer<Outcome> continuation) {
+        logger.info("Robot is now WAITING at pickup for order: {}", orderId);
+        return await(pickupOrders, orderId, deadlineNanos, continuation);
     }
 
-    //确认pickup，唤醒机器人继续行动
+    //确认pickup，唤醒机器人继续行动；机器人不在本节点时转发
     public void userConfirmedPickup(String orderId){
-        CompletableFuture<Boolean> signal = pickupOrders.get(orderId);
-        if (signal != null) {
-            signal.complete(true);
+        if (confirm(pickupOrders, orderId)) {
             logger.info("Pickup confirmed for orderId: {}", orderId);
         } else {
-            logger.warn("Can't find orderId: {} - already picked up or timed out", orderId);
+            logger.info("No robot waiting here for pickup of order {}, forwarding", orderId);
+            signalBus.publish(new SignalBus.Signal(orderId, SignalBus.Kind.PICKUP, nodeId));
         }
     }
 
-    //机器人等待确认deliver
-    public void awaitDeliver(String orderId) {
-        logger.info("Robot arriving at delivery location for order: {}, awaiting user confirmation...", orderId);
-        CompletableFuture<Boolean> signal = new CompletableFuture<>();
-        deliverOrders.put(orderId, signal);
-        try {
-            //设置12小时delivery窗口，过后超时
-            logger.info("Robot is now WAITING at delivery point for order: {}", orderId);
-            signal.get(12, TimeUnit.HOURS);
-            logger.info("User confirmed delivery for order: {}, robot returning to hub...", orderId);
-        } catch (Exception e) {
-            logger.error("Order delivery {} timed out", orderId, e);
-            throw new RuntimeException("Timeout",e);
-        } finally {
-            deliverOrders.remove(orderId);
-        }
+    /**
+     * Robot arrived at the delivery point: waits for the user's confirmation until the deadline.
+     *
+     * @return false if too many orders are already waiting; the continuation is then not registered
+     */
+    public boolean awaitDeliver(String orderId, long deadlineNanos, Consumer<Outcome> continuation) {
+        logger.info("Robot is now WAITING at delivery point for order: {}", orderId);
+        return await(deliverOrders, orderId, deadlineNanos, continuation);
     }
 
-    //确认deliver，唤醒机器人继续行动
+    //确认deliver，唤醒机器人继续行动；机器人不在本节点时转发
     public void userConfirmedDeliver(String orderId){
-        CompletableFuture<Boolean> signal = deliverOrders.get(orderId);
-        if (signal != null) {
-            signal.complete(true);
+        if (confirm(deliverOrders, orderId)) {
             logger.info("Delivery confirmed for orderId: {}", orderId);
         } else {
-            logger.warn("Can't find orderId: {} - already delivered or timed out", orderId);
+            logger.info("No robot waiting here for delivery of order {}, forwarding", orderId);
+            signalBus.publish(new SignalBus.Signal(orderId, SignalBus.Kind.DELIVER, nodeId));
+        }
+    }
+
+    // 转发来的确认；来自本节点的也要处理：机器人可能在本地检查之后才开始等待
+    private void onForwarded(SignalBus.Signal signal) {
+        Map<String, Waiter> orders = signal.kind() == SignalBus.Kind.PICKUP ? pickupOrders : deliverOrders;
+        if (confirm(orders, signal.orderId())) {
+            logger.info("{} confirmed for orderId: {} (forwarded from node {})",
+                signal.kind(), signal.orderId(), signal.originNodeId());
+        } else {
+            // broadcasts reach every node; only the owner has the waiter
+            logger.debug("Can't find orderId: {} - not waiting on this node, already confirmed or timed out", signal.orderId());
+        }
+    }
+
+    /**
+     * Forgets the order's waiter without calling its continuation: the mission moved to
+     * another node, which registers its own.
+     */
+    public void drop(String orderId) {
+        for (Map<String, Waiter> orders : List.of(pickupOrders, deliverOrders)) {
+            Waiter waiter = orders.remove(orderId);
+            if (waiter != null) {
+                waiting.decrementAndGet();
+                cancelTimeout(waiter);
+            }
+        }
+    }
+
+    /**
+     * Times out every waiter whose deadline is at or before {@code nowNanos}.
+     */
+    public void expire(long nowNanos) {
+        timeouts.advance(nowNanos, waiter -> {
+            // a confirmation that got there first has already removed it
+            if (waiter.orders.remove(waiter.orderId, waiter)) {
+                waiting.decrementAndGet();
+                signalBus.release(waiter.orderId, nodeId);
+                logger.warn("Confirmation window of order {} expired", waiter.orderId);
+                waiter.continuation.accept(Outcome.TIMED_OUT);
+            }
+        });
+    }
+
+    public int waitingCount() {
+        return waiting.get();
+    }
+
+    private boolean await(Map<String, Waiter> orders, String orderId, long deadlineNanos, Consumer<Outcome> continuation) {
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            logger.error("{} orders already waiting for confirmation, rejecting order {}", maxWaiting, orderId);
+            return false;
+        }
+        Waiter waiter = new Waiter(orders, orderId, continuation);
+        Waiter previous = orders.put(orderId, waiter);
+        if (previous != null) {
+            // same stop registered twice: the newer registration wins
+            waiting.decrementAndGet();
+            cancelTimeout(previous);
+        }
+        // scheduled after put: a timeout can only fire for a registered waiter
+        waiter.timeout = timeouts.schedule(deadlineNanos, waiter);
+        signalBus.claim(orderId, nodeId);
+        return true;
+    }
+
+    private boolean confirm(Map<String, Waiter> orders, String orderId) {
+        Waiter waiter = orders.remove(orderId);
+        if (waiter == null) {
+            return false;
+        }
+        waiting.decrementAndGet();
+        cancelTimeout(waiter);
+        signalBus.release(orderId, nodeId);
+        waiter.continuation.accept(Outcome.CONFIRMED);
+        return true;
+    }
+
+    private void cancelTimeout(Waiter waiter) {
+        TimingWheel.Timeout<Waiter> timeout = waiter.timeout;
+        // null only while await() is between put and schedule; the stale timeout is then ignored by expire()
+        if (timeout != null) {
+            timeouts.cancel(timeout);
+        }
+    }
+
+    private static final class Waiter {
+        final Map<String, Waiter> orders;
+        final String orderId;
+        final Consumer<Outcome> continuation;
+        volatile TimingWheel.Timeout<Waiter> timeout;
+
+        Waiter(Map<String, Waiter> orders, String orderId, Consumer<Outcome> continuation) {
+            this.orders = orders;
+            this.orderId = orderId;
+            this.continuation = continuation;
         }
     }
 
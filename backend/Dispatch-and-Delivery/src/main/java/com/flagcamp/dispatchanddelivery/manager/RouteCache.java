@@ -0,0 +1,232 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.model.response.RouteCacheStatsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process LRU + TTL cache for computed routes.
+ *
+ * Origin and destination are snapped to a grid of roughly {@code grid-meters} so that
+ * repeated quotes for the same hub/pickup corridor reuse one Google Maps result.
+ * Concurrent misses on the same key are coalesced (single-flight): the route is computed
+ * once on the routing executor and every caller waits on the same in-flight future. The
+ * computation doesn't belong to any caller, so a caller that gives up (deadline, cancel)
+ * only abandons its own wait. A loader failure is every waiter's result, but an
+ * interrupted loader is not: its flight is dropped and the waiters start a new one.
+ */
+@Component
+public class RouteCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteCache.class);
+
+    // meters per degree of latitude
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final double gridDegrees;
+    private final long loadTimeoutNanos;
+    private final ExecutorService routingExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    //正在计算中的路由，相同key的并发请求共享同一个future
+    private final Map<RouteKey, CompletableFuture<List<RouteDTO>>> inFlight = new ConcurrentHashMap<>();
+
+    //access-order LinkedHashMap，最久未使用的在最前面
+    private final LinkedHashMap<RouteKey, CacheEntry> entries;
+
+    public RouteCache(@Value("${dispatch.route-cache.max-size:10000}") int maxSize,
+                      @Value("${dispatch.route-cache.ttl-seconds:3600}") long ttlSeconds,
+                      @Value("${dispatch.route-cache.grid-meters:10}") double gridMeters,
+                      @Value("${dispatch.route-cache.load-timeout-ms:30000}") long loadTimeoutMs,
+                      ExecutorService routingExecutor) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.gridDegrees = gridMeters / METERS_PER_DEGREE;
+        this.loadTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(loadTimeoutMs);
+        this.routingExecutor = routingExecutor;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RouteKey, CacheEntry> eldest) {
+                if (size() > RouteCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        logger.info("Route cache initialized: maxSize={}, ttl={}s, grid={}m", maxSize, ttlSeconds, gridMeters);
+    }
+
+    /**
+     * Builds the cache key for a route by snapping both endpoints to the grid.
+     * Longitude cells are scaled by cos(latitude) so cells stay roughly square.
+     */
+    public RouteKey keyOf(double fromLat, double fromLng, double toLat, double toLng) {
+        long fromLatCell = Math.round(fromLat / gridDegrees);
+        long toLatCell = Math.round(toLat / gridDegrees);
+        return new RouteKey(
+            fromLatCell,
+            lngCell(fromLatCell, fromLng),
+            toLatCell,
+            lngCell(toLatCell, toLng)
+        );
+    }
+
+    private long lngCell(long latCell, double lng) {
+        double cosLat = Math.cos(Math.toRadians(latCell * gridDegrees));
+        return Math.round(lng * Math.max(cosLat, 1e-6) / gridDegrees);
+    }
+
+    /**
+     * @return cached routes for the key, or null on miss / expiry
+     */
+    public List<RouteDTO> get(RouteKey key) {
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (System.nanoTime() - entry.createdAtNanos() > ttlNanos) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.routes();
+        }
+    }
+
+    /**
+     * Returns the cached routes for the key, or computes them with {@code loader}.
+     * If another caller is already computing the same key, waits for its result instead
+     * of issuing a duplicate routing call.
+     *
+     * @throws Exception whatever the loader threw (also rethrown to coalesced callers)
+     * @throws InterruptedException if this caller is interrupted; the computation goes on for the others
+     * @throws java.util.concurrent.TimeoutException if the route isn't there within {@code load-timeout-ms}
+     */
+    public List<RouteDTO> getOrCompute(RouteKey key, Callable<List<RouteDTO>> loader) throws Exception {
+        List<RouteDTO> cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long deadline = System.nanoTime() + loadTimeoutNanos;
+        boolean waited = false;
+        while (true) {
+            CompletableFuture<List<RouteDTO>> flight = new CompletableFuture<>();
+            CompletableFuture<List<RouteDTO>> existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                load(key, flight, loader);
+            } else {
+                if (!waited) {
+                    coalesced.incrementAndGet();
+                    waited = true;
+                }
+                flight = existing;
+            }
+            try {
+                return flight.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException || cause instanceof CancellationException) {
+                    // the loader was stopped, the route didn't fail: its flight is gone, compute again
+                    continue;
+                }
+                if (cause instanceof Exception exception) {
+                    throw exception;
+                }
+                throw e;
+            }
+        }
+    }
+
+    // 在routingExecutor上计算，不属于任何调用者；先移除in-flight再完成，重试的调用者不会拿到旧的future
+    private void load(RouteKey key, CompletableFuture<List<RouteDTO>> flight, Callable<List<RouteDTO>> loader) {
+        try {
+            routingExecutor.execute(() -> {
+                try {
+                    // another flight may have finished between the miss and claiming the key
+                    List<RouteDTO> routes = peek(key);
+                    if (routes == null) {
+                        routes = loader.call();
+                        put(key, routes);
+                    }
+                    inFlight.remove(key, flight);
+                    flight.complete(routes);
+                } catch (Exception e) {
+                    inFlight.remove(key, flight);
+                    flight.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+    }
+
+    private List<RouteDTO> peek(RouteKey key) {
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null || System.nanoTime() - entry.createdAtNanos() > ttlNanos) {
+                return null;
+            }
+            return entry.routes();
+        }
+    }
+
+    public void put(RouteKey key, List<RouteDTO> routes) {
+        synchronized (entries) {
+            entries.put(key, new CacheEntry(List.copyOf(routes), System.nanoTime()));
+        }
+    }
+
+    /**
+     * Drops every cached route. Counters are kept so hit ratio stays meaningful across invalidations.
+     */
+    public void invalidateAll() {
+        int cleared;
+        synchronized (entries) {
+            cleared = entries.size();
+            entries.clear();
+        }
+        logger.info("Route cache invalidated, {} entries removed", cleared);
+    }
+
+    public RouteCacheStatsResponse stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new RouteCacheStatsResponse(hits.get(), misses.get(), evictions.get(), coalesced.get(),
+            size, maxSize, inFlight.size());
+    }
+
+    public record RouteKey(long fromLatCell, long fromLngCell, long toLatCell, long toLngCell) {}
+
+    private record CacheEntry(List<RouteDTO> routes, long createdAtNanos) {}
+}
@@ -0,0 +1,32 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries pickup / delivery confirmations to the node whose mission engine holds the waiting
+ * robot, so a confirmation request can land on any instance behind the load balancer.
+ *
+ * Each node records which orders it is waiting on ({@link #claim}); {@link #publish} sends a
+ * signal to the claiming node, or to every other node when no claim is known.
+ */
+public interface SignalBus {
+
+    enum Kind { PICKUP, DELIVER }
+
+    record Signal(String orderId, Kind kind, String originNodeId) {}
+
+    /**
+     * Registers the handler for signals sent to this node.
+     */
+    void subscribe(String nodeId, Consumer<Signal> handler);
+
+    void claim(String orderId, String nodeId);
+
+    /**
+     * Drops the claim if {@code nodeId} still holds it; a claim taken over by another node
+     * stays. Claims and releases of one order take effect in call order.
+     */
+    void release(String orderId, String nodeId);
+
+    void publish(Signal signal);
+}
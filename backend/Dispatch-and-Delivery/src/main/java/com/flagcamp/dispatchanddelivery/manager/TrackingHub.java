@@ -0,0 +1,380 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flagcamp.dispatchanddelivery.model.enums.MissionState;
+import com.flagcamp.dispatchanddelivery.model.response.TrackingFrame;
+import com.flagcamp.dispatchanddelivery.socket.BinaryTrackingFrames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Live tracking streams: which orders are watched, by which WebSocket sessions.
+ *
+ * The mission tick hands over one {@link Fix} per watched order it runs ({@link #publish});
+ * orders whose mission runs on another node (or has ended) fall back to the stored position,
+ * read at most every {@code stored-poll-ms} per order and less often while it doesn't change,
+ * so finished orders left open in a browser stop costing a Redis read per tick. For each
+ * watched order one frame is built and the same message is sent to all its viewers, and only
+ * when something changed: a "position" frame when the robot moved or changed state, a "route"
+ * frame when it starts the order's drop-off leg. Work per tick is proportional to watched
+ * orders that moved, not to viewers × poll rate.
+ *
+ * A session may watch several orders. Binary sessions ({@link BinaryTrackingFrames}) get their
+ * position changes of a tick as one message (or one per frame without batching), written
+ * straight into a ByteBuffer; deltas are against the last fix fanned out for the order, which
+ * every viewer of it has seen. Route frames stay JSON and carry the session's handle.
+ *
+ * Frames are sent off the tick thread, one fan-out at a time; if the previous one is still
+ * running the newest fixes replace the pending ones. Sessions are wrapped so a slow viewer
+ * buffers up to {@code buffer-bytes} and is dropped after {@code send-timeout-ms} instead of
+ * stalling the others.
+ */
+@Component
+public class TrackingHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrackingHub.class);
+
+    // ~1 cm; smaller moves are not worth a frame
+    private static final double MIN_MOVE_DEGREES = 1e-7;
+    private static final long MAX_STORED_POLL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * Where a robot is as of the tick.
+     *
+     * @param state null when only the stored position is known
+     */
+    public record Fix(double lat, double lng, MissionState state) {}
+
+    private final PositionStore positionStore;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService routingExecutor;
+    private final int sendTimeoutMs;
+    private final int bufferBytes;
+    private final long storedPollNanos;
+
+    //key: orderId, value: sessionId -> viewer
+    private final Map<String, Map<String, Viewer>> viewers = new ConcurrentHashMap<>();
+    //key: sessionId
+    private final Map<String, Viewer> sessions = new ConcurrentHashMap<>();
+    // last fix sent per watched order, only touched by the fan-out
+    private final Map<String, Fix> lastSent = new ConcurrentHashMap<>();
+    // next stored-position read per watched order without a local fix, only touched by the fan-out
+    private final Map<String, StoredPoll> storedPolls = new ConcurrentHashMap<>();
+    private final AtomicReference<Map<String, Fix>> pending = new AtomicReference<>();
+    private volatile Function<String, Optional<TrackingFrame>> routeFrames = orderId -> Optional.empty();
+
+    private final AtomicLong framesBuilt = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public TrackingHub(PositionStore positionStore,
+                       ObjectMapper objectMapper,
+                       ExecutorService routingExecutor,
+                       @Value("${dispatch.tracking.stream.send-timeout-ms:5000}") int sendTimeoutMs,
+                       @Value("${dispatch.tracking.stream.buffer-bytes:65536}") int bufferBytes,
+                       @Value("${dispatch.tracking.stream.stored-poll-ms:5000}") long storedPollMs) {
+        this.positionStore = positionStore;
+        this.objectMapper = objectMapper;
+        this.routingExecutor = routingExecutor;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.bufferBytes = bufferBytes;
+        this.storedPollNanos = TimeUnit.MILLISECONDS.toNanos(storedPollMs);
+    }
+
+    /**
+     * Source of "route" frames, for when the robot starts the drop-off leg.
+     */
+    public void setRouteFrames(Function<String, Optional<TrackingFrame>> routeFrames) {
+        this.routeFrames = routeFrames;
+    }
+
+    /**
+     * Adds a viewer of the given orders; the initial route frames are sent to it first.
+     * The order's index in {@code initial} is its handle in binary frames.
+     *
+     * @param binary position changes as {@link BinaryTrackingFrames} instead of JSON
+     * @param batch binary only: one message per tick instead of one per frame
+     */
+    public void subscribe(WebSocketSession session, List<TrackingFrame> initial, boolean binary, boolean batch) throws Exception {
+        Viewer viewer = new Viewer(new ConcurrentWebSocketSessionDecorator(session, sendTimeoutMs, bufferBytes), binary, batch);
+        for (int handle = 0; handle < initial.size(); handle++) {
+            TrackingFrame frame = initial.get(handle);
+            viewer.handles.put(frame.orderId(), handle);
+            viewer.needsAbsolute.add(frame.orderId());
+            send(viewer, new TextMessage(toJson(binary ? frame.withHandle(handle) : frame)));
+        }
+        sessions.put(session.getId(), viewer);
+        for (String orderId : viewer.handles.keySet()) {
+            viewers.computeIfAbsent(orderId, id -> new ConcurrentHashMap<>()).put(session.getId(), viewer);
+        }
+    }
+
+    public void unsubscribe(String sessionId) {
+        Viewer viewer = sessions.remove(sessionId);
+        if (viewer == null) {
+            return;
+        }
+        for (String orderId : viewer.handles.keySet()) {
+            viewers.computeIfPresent(orderId, (id, watching) -> {
+                watching.remove(sessionId);
+                return watching.isEmpty() ? null : watching;
+            });
+        }
+    }
+
+    public boolean hasViewers() {
+        return !viewers.isEmpty();
+    }
+
+    public Set<String> watchedOrders() {
+        return viewers.keySet();
+    }
+
+    public int viewerCount() {
+        return sessions.size();
+    }
+
+    public long framesBuilt() {
+        return framesBuilt.get();
+    }
+
+    public long messagesSent() {
+        return messagesSent.get();
+    }
+
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Called by the mission tick with the fixes of the watched orders it runs.
+     */
+    public void publish(Map<String, Fix> fixes) {
+        if (viewers.isEmpty()) {
+            return;
+        }
+        // a fan-out is already queued or running: it picks up the newest fixes
+        if (pending.getAndSet(fixes) == null) {
+            routingExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        Map<String, Fix> fixes;
+        do {
+            fixes = pending.get();
+            try {
+                fanOut(fixes);
+            } catch (Exception e) {
+                logger.error("Tracking fan-out failed", e);
+            }
+        } while (!pending.compareAndSet(fixes, null));
+    }
+
+    private void fanOut(Map<String, Fix> fixes) {
+        lastSent.keySet().retainAll(viewers.keySet());
+        storedPolls.keySet().retainAll(viewers.keySet());
+        long now = System.nanoTime();
+        //本次有变化的订单，二进制会话按会话合并发送
+        Map<String, Update> updates = new LinkedHashMap<>();
+        Set<Viewer> binaryViewers = new LinkedHashSet<>();
+        for (Map.Entry<String, Map<String, Viewer>> entry : viewers.entrySet()) {
+            String orderId = entry.getKey();
+            Fix fix = fixes.get(orderId);
+            if (fix != null) {
+                storedPolls.remove(orderId);
+            } else {
+                // mission on another node (or finished): stored position, no state
+                fix = storedFix(orderId, now);
+                if (fix == null) {
+                    continue;
+                }
+            }
+            Fix last = lastSent.get(orderId);
+            TrackingFrame route = null;
+            if (last != null && startedDropOff(last.state(), fix.state())) {
+                route = routeFrames.apply(orderId).orElse(null);
+            }
+            if (route == null && last != null && !changed(last, fix)) {
+                continue;
+            }
+            lastSent.put(orderId, fix);
+            framesBuilt.incrementAndGet();
+            Update update = Update.of(fix, last);
+            TextMessage text = null;
+            for (Viewer viewer : entry.getValue().values()) {
+                if (route != null) {
+                    // clients rebase on the route frame's position
+                    viewer.needsAbsolute.add(orderId);
+                    send(viewer, new TextMessage(toJson(viewer.binary ? route.withHandle(viewer.handles.get(orderId)) : route)));
+                } else if (viewer.binary) {
+                    binaryViewers.add(viewer);
+                } else {
+                    if (text == null) {
+                        text = new TextMessage(toJson(TrackingFrame.position(orderId, fix.lat(), fix.lng(),
+                            fix.state() == null ? null : fix.state().name())));
+                    }
+                    send(viewer, text);
+                }
+            }
+            if (route == null) {
+                updates.put(orderId, update);
+            }
+        }
+        for (Viewer viewer : binaryViewers) {
+            sendBinary(viewer, updates);
+        }
+    }
+
+    // 限速读取存储的位置：到时间才读，没变化（或没有位置）时间隔翻倍，最长60秒
+    private Fix storedFix(String orderId, long now) {
+        StoredPoll poll = storedPolls.get(orderId);
+        if (poll != null && now - poll.nextReadNanos() < 0) {
+            return null;
+        }
+        Fix fix = positionStore.findOrderPosition(orderId)
+            .map(position -> new Fix(position[0], position[1], null))
+            .orElse(null);
+        Fix last = lastSent.get(orderId);
+        boolean moved = fix != null && (last == null || changed(last, fix));
+        long interval = poll == null || moved
+            ? storedPollNanos
+            : Math.min(Math.max(poll.intervalNanos() * 2, 1), MAX_STORED_POLL_NANOS);
+        storedPolls.put(orderId, new StoredPoll(now + interval, interval));
+        return fix;
+    }
+
+    // 一个二进制会话本次的全部变化：批量时一条消息，否则每帧一条
+    private void sendBinary(Viewer viewer, Map<String, Update> updates) {
+        List<String> orderIds = new ArrayList<>();
+        for (String orderId : viewer.handles.keySet()) {
+            if (updates.containsKey(orderId)) {
+                orderIds.add(orderId);
+            }
+        }
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        if (!viewer.batch) {
+            for (String orderId : orderIds) {
+                ByteBuffer out = ByteBuffer.allocate(BinaryTrackingFrames.HEADER_BYTES + BinaryTrackingFrames.MAX_FRAME_BYTES);
+                BinaryTrackingFrames.writeHeader(out, 1);
+                writeFrame(out, viewer, orderId, updates.get(orderId));
+                send(viewer, new BinaryMessage(out.flip()));
+            }
+            return;
+        }
+        // u16 frame count: a huge subscription is split over several messages
+        for (int from = 0; from < orderIds.size(); from += 0xFFFF) {
+            int count = Math.min(0xFFFF, orderIds.size() - from);
+            ByteBuffer out = ByteBuffer.allocate(BinaryTrackingFrames.HEADER_BYTES + count * BinaryTrackingFrames.MAX_FRAME_BYTES);
+            BinaryTrackingFrames.writeHeader(out, count);
+            for (String orderId : orderIds.subList(from, from + count)) {
+                writeFrame(out, viewer, orderId, updates.get(orderId));
+            }
+            send(viewer, new BinaryMessage(out.flip()));
+        }
+    }
+
+    private static void writeFrame(ByteBuffer out, Viewer viewer, String orderId, Update update) {
+        int handle = viewer.handles.get(orderId);
+        // needsAbsolute is cleared even when there is no previous fix
+        if (viewer.needsAbsolute.remove(orderId) | !update.hasPrevious()) {
+            BinaryTrackingFrames.writeAbsolute(out, handle, update.state(), update.lat(), update.lng());
+        } else {
+            BinaryTrackingFrames.writeDelta(out, handle, update.state(), update.lat() - update.previousLat(), update.lng() - update.previousLng());
+        }
+    }
+
+    private static boolean startedDropOff(MissionState previous, MissionState current) {
+        return current == MissionState.TO_DROPOFF && previous != null && previous != MissionState.TO_DROPOFF;
+    }
+
+    private static boolean changed(Fix last, Fix fix) {
+        return last.state() != fix.state()
+            || Math.abs(last.lat() - fix.lat()) > MIN_MOVE_DEGREES
+            || Math.abs(last.lng() - fix.lng()) > MIN_MOVE_DEGREES;
+    }
+
+    private void send(Viewer viewer, WebSocketMessage<?> message) {
+        WebSocketSession session = viewer.session;
+        if (!session.isOpen()) {
+            unsubscribe(session.getId());
+            return;
+        }
+        try {
+            int length = message.getPayloadLength();
+            session.sendMessage(message);
+            messagesSent.incrementAndGet();
+            bytesSent.addAndGet(length);
+        } catch (Exception e) {
+            // too slow or gone: the decorator has given up on it
+            logger.info("Dropping tracking viewer {}: {}", session.getId(), e.toString());
+            unsubscribe(session.getId());
+            try {
+                session.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private String toJson(TrackingFrame frame) {
+        try {
+            return objectMapper.writeValueAsString(frame);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize tracking frame", e);
+        }
+    }
+
+    // 一个订单本次的变化，定点坐标只算一次，所有二进制会话共用
+    private record Update(MissionState state, int lat, int lng, boolean hasPrevious, int previousLat, int previousLng) {
+        static Update of(Fix fix, Fix previous) {
+            return new Update(fix.state(),
+                BinaryTrackingFrames.fixed(fix.lat()), BinaryTrackingFrames.fixed(fix.lng()),
+                previous != null,
+                previous == null ? 0 : BinaryTrackingFrames.fixed(previous.lat()),
+                previous == null ? 0 : BinaryTrackingFrames.fixed(previous.lng()));
+        }
+    }
+
+    private record StoredPoll(long nextReadNanos, long intervalNanos) {}
+
+    private static final class Viewer {
+        final WebSocketSession session;
+        final boolean binary;
+        final boolean batch;
+        //key: orderId, value: handle
+        final Map<String, Integer> handles = new LinkedHashMap<>();
+        // orders whose next binary frame must be absolute
+        final Set<String> needsAbsolute = ConcurrentHashMap.newKeySet();
+
+        Viewer(WebSocketSession session, boolean binary, boolean batch) {
+            this.session = session;
+            this.binary = binary;
+            this.batch = batch;
+        }
+    }
+}
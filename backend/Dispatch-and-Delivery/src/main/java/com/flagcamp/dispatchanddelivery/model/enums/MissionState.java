@@ -0,0 +1,35 @@
+package com.flagcamp.dispatchanddelivery.model.enums;
+
+/**
+ * Phase of a robot mission. A mission is a list of legs, each ending at a pickup or a drop-off:
+ * TO_PICKUP / TO_DROPOFF while driving a leg, WAIT_PICKUP / WAIT_DROPOFF at its end until the
+ * user confirms, RETURNING once the last stop is confirmed or a confirmation window expires.
+ */
+public enum MissionState {
+    TO_PICKUP,
+    WAIT_PICKUP,
+    TO_DROPOFF,
+    WAIT_DROPOFF,
+    RETURNING;
+
+    public boolean waiting() {
+        return this == WAIT_PICKUP || this == WAIT_DROPOFF;
+    }
+
+    public static MissionState driving(boolean pickup) {
+        return pickup ? TO_PICKUP : TO_DROPOFF;
+    }
+
+    public static MissionState waitingAt(boolean pickup) {
+        return pickup ? WAIT_PICKUP : WAIT_DROPOFF;
+    }
+
+    public boolean canMoveTo(MissionState next) {
+        return switch (this) {
+            case TO_PICKUP -> next == WAIT_PICKUP;
+            case TO_DROPOFF -> next == WAIT_DROPOFF;
+            case WAIT_PICKUP, WAIT_DROPOFF -> next == TO_PICKUP || next == TO_DROPOFF || next == RETURNING;
+            case RETURNING -> false;
+        };
+    }
+}
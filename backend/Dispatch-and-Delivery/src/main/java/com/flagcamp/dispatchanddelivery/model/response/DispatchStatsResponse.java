@@ -0,0 +1,14 @@
+package com.flagcamp.dispatchanddelivery.model.response;
+
+// GET /admin/dispatch
+public record DispatchStatsResponse(
+    String mode,                // direct | batch
+    int pending,                // orders waiting for a robot
+    long ticks,
+    long assigned,
+    int lastTickOrders,         // size of the last solved matrix (orders x robots)
+    int lastTickRobots,
+    int lastTickAssigned,
+    long lastSolveMicros        // Hungarian solve time of the last tick
+) {
+}
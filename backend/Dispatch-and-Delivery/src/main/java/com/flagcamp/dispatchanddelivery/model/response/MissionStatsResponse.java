@@ -0,0 +1,22 @@
+package com.flagcamp.dispatchanddelivery.model.response;
+
+// GET /admin/missions
+public record MissionStatsResponse(
+    int active,                 // missions in progress (moving or waiting)
+    int waiting,                // robots waiting for a pickup / delivery confirmation
+    long ticks,
+    long completed,
+    long timedOut,              // confirmation window expired
+    long lastTickMicros,        // wall time of the last tick, including its batched writes
+    long maxTickMicros,
+    int lastTickPositionWrites, // robot + order positions recorded by the last tick
+    long robotWrites,           // robot positions flushed to the DB, cumulative
+    long routeWrites,           // order positions flushed to Redis, cumulative
+    int ownedShards,            // mission shards run by this node (all of them when sharding is off)
+    int liveNodes,              // nodes heartbeating for shard leases, 1 when sharding is off
+    int trackingViewers,        // open /ws/tracking sessions
+    long trackingFrames,        // tracking frames built (one per changed watched order), cumulative
+    long trackingMessages,      // messages sent to viewers (a batched binary message holds several frames), cumulative
+    long trackingBytes          // payload bytes sent to viewers, cumulative
+) {
+}
@@ -0,0 +1,13 @@
+package com.flagcamp.dispatchanddelivery.model.response;
+
+// GET /admin/route-cache
+public record RouteCacheStatsResponse(
+    long hits,
+    long misses,
+    long evictions,
+    long coalesced,     // callers that waited on an identical in-flight computation
+    int size,
+    int maxSize,
+    int inFlight
+) {
+}
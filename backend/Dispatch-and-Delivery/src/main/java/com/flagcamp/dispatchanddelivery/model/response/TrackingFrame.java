@@ -0,0 +1,31 @@
+package com.flagcamp.dispatchanddelivery.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// /ws/tracking?orderId=...
+// type "route": sent on subscribe and when the robot starts the order's next leg (route + position)
+// type "position": only when the robot moved or its state changed (no route)
+// &format=binary: position changes come as binary messages (see BinaryTrackingFrames), route frames carry the handle
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TrackingFrame(
+    String type,
+    @JsonProperty("order_id") String orderId,
+    @JsonProperty("encoded_route") String encodedRoute,
+    double lat,
+    double lng,
+    String state,               // MissionState, null when the mission runs on another node
+    Integer handle              // binary subscriptions only: the order's handle in binary frames
+) {
+    public static TrackingFrame route(PositionResponse position) {
+        return new TrackingFrame("route", position.orderId, position.encodedRoute, position.lat, position.lng, null, null);
+    }
+
+    public static TrackingFrame position(String orderId, double lat, double lng, String state) {
+        return new TrackingFrame("position", orderId, null, lat, lng, state, null);
+    }
+
+    public TrackingFrame withHandle(int handle) {
+        return new TrackingFrame(type, orderId, encodedRoute, lat, lng, state, handle);
+    }
+}
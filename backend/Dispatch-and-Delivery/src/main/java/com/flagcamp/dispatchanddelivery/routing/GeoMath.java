@@ -0,0 +1,101 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+/**
+ * Distance functions shared by routing, nearest-hub lookup and simulation.
+ *
+ * The batch methods take coordinates as parallel {@code double[]} arrays (struct-of-arrays).
+ * The batch Haversine is still one sin/sin/asin per point (C2 does not vectorize those); it
+ * saves the per-point cos of the origin and of the targets, which callers precompute once with
+ * {@link #cosLats(double[], int)}. See GeoMathBenchmark in src/jmh for the numbers.
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_METERS = 6_371_000.0;
+
+    // meters per degree of latitude on the same sphere, so both distance models agree
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Great-circle distance in meters (Haversine formula).
+     */
+    public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return EARTH_RADIUS_METERS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    public static double cosLat(double lat) {
+        return Math.cos(Math.toRadians(lat));
+    }
+
+    /**
+     * Equirectangular approximation in meters. Within a few kilometers the error against
+     * {@link #haversine} is far below GPS noise.
+     *
+     * @param cosLat cos of a latitude near both points, see {@link #cosLat(double)}
+     */
+    public static double equirectangular(double lat1, double lng1, double lat2, double lng2, double cosLat) {
+        return Math.sqrt(equirectangular2(lat1, lng1, lat2, lng2, cosLat));
+    }
+
+    /**
+     * Squared equirectangular distance in meters², for comparisons where the sqrt is not needed.
+     */
+    public static double equirectangular2(double lat1, double lng1, double lat2, double lng2, double cosLat) {
+        double dy = (lat2 - lat1) * METERS_PER_DEGREE;
+        double dx = (lng2 - lng1) * cosLat * METERS_PER_DEGREE;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Haversine distances in meters from one origin to the first {@code count} points.
+     *
+     * @param cosLats cos(latitude) of each point, precomputed once with {@link #cosLats(double[], int)}
+     */
+    public static void haversine(double lat, double lng, double[] lats, double[] lngs, double[] cosLats,
+                                 int count, double[] out) {
+        double cosOrigin = cosLat(lat);
+        double halfRad = Math.PI / 360.0;
+        for (int i = 0; i < count; i++) {
+            double sinLat = Math.sin((lats[i] - lat) * halfRad);
+            double sinLng = Math.sin((lngs[i] - lng) * halfRad);
+            double a = sinLat * sinLat + cosOrigin * cosLats[i] * sinLng * sinLng;
+            out[i] = EARTH_RADIUS_METERS * 2 * Math.asin(Math.min(1.0, Math.sqrt(a)));
+        }
+    }
+
+    public static double[] cosLats(double[] lats, int count) {
+        double[] cos = new double[count];
+        for (int i = 0; i < count; i++) {
+            cos[i] = cosLat(lats[i]);
+        }
+        return cos;
+    }
+
+    /**
+     * Index of the point closest to the origin by equirectangular distance, or -1 if {@code count == 0}.
+     * Good for ranking at city scale; use {@link #haversine} on the winner if the exact distance matters.
+     */
+    public static int nearestIndex(double lat, double lng, double[] lats, double[] lngs, int count) {
+        double cosLat = cosLat(lat);
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double dy = lats[i] - lat;
+            double dx = (lngs[i] - lng) * cosLat;
+            double d = dx * dx + dy * dy;
+            if (d < bestDist) {
+                bestDist = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,184 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+/**
+ * Encoded polyline codec working on primitive coordinate arrays.
+ *
+ * Produces exactly the same output as {@code com.google.maps.internal.PolylineEncoding}
+ * (1e-5 precision, zig-zag delta encoding, 5-bit chunks offset by 63) without creating a
+ * LatLng per vertex or an intermediate list. Decoding writes into caller-provided arrays;
+ * use {@link #pointCount(CharSequence)} to size them.
+ */
+public final class PolylineCodec {
+
+    private PolylineCodec() {
+    }
+
+    // ===================== Encode =====================
+
+    public static String encode(double[] lat, double[] lng) {
+        return encode(lat, lng, lat.length);
+    }
+
+    public static String encode(double[] lat, double[] lng, int count) {
+        StringBuilder out = new StringBuilder(count * 8);
+        encode(lat, lng, count, out);
+        return out.toString();
+    }
+
+    public static void encode(double[] lat, double[] lng, int count, StringBuilder out) {
+        long lastLat = 0;
+        long lastLng = 0;
+        for (int i = 0; i < count; i++) {
+            long pLat = Math.round(lat[i] * 1e5);
+            long pLng = Math.round(lng[i] * 1e5);
+            appendValue(pLat - lastLat, out);
+            appendValue(pLng - lastLng, out);
+            lastLat = pLat;
+            lastLng = pLng;
+        }
+    }
+
+    /**
+     * Encodes into an ASCII byte buffer.
+     *
+     * @return offset just past the last written byte
+     * @throws ArrayIndexOutOfBoundsException if the buffer is too small; {@link #maxEncodedLength(int)} is always enough
+     */
+    public static int encode(double[] lat, double[] lng, int count, byte[] buf, int offset) {
+        long lastLat = 0;
+        long lastLng = 0;
+        int pos = offset;
+        for (int i = 0; i < count; i++) {
+            long pLat = Math.round(lat[i] * 1e5);
+            long pLng = Math.round(lng[i] * 1e5);
+            pos = writeValue(pLat - lastLat, buf, pos);
+            pos = writeValue(pLng - lastLng, buf, pos);
+            lastLat = pLat;
+            lastLng = pLng;
+        }
+        return pos;
+    }
+
+    /**
+     * Upper bound on encoded size: each delta of a valid coordinate fits in 7 chunks.
+     */
+    public static int maxEncodedLength(int count) {
+        return count * 14;
+    }
+
+    private static void appendValue(long v, StringBuilder out) {
+        v = v < 0 ? ~(v << 1) : v << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    private static int writeValue(long v, byte[] buf, int pos) {
+        v = v < 0 ? ~(v << 1) : v << 1;
+        while (v >= 0x20) {
+            buf[pos++] = (byte) ((0x20 | (v & 0x1f)) + 63);
+            v >>= 5;
+        }
+        buf[pos++] = (byte) (v + 63);
+        return pos;
+    }
+
+    // ===================== Decode =====================
+
+    /**
+     * Counts the vertices of an encoded path without decoding it.
+     * A value ends at every char whose chunk has no continuation bit; two values make a vertex.
+     */
+    public static int pointCount(CharSequence encoded) {
+        int values = 0;
+        for (int i = 0, len = encoded.length(); i < len; i++) {
+            if (encoded.charAt(i) - 63 < 0x20) {
+                values++;
+            }
+        }
+        return values / 2;
+    }
+
+    public static int pointCount(byte[] buf, int offset, int length) {
+        int values = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (buf[i] - 63 < 0x20) {
+                values++;
+            }
+        }
+        return values / 2;
+    }
+
+    /**
+     * Decodes into caller-provided arrays.
+     *
+     * @return number of vertices written
+     */
+    public static int decode(CharSequence encoded, double[] lat, double[] lng) {
+        int len = encoded.length();
+        int index = 0;
+        int count = 0;
+        int pLat = 0;
+        int pLng = 0;
+        while (index < len) {
+            int result = 1;
+            int shift = 0;
+            int b;
+            do {
+                b = encoded.charAt(index++) - 63 - 1;
+                result += b << shift;
+                shift += 5;
+            } while (b >= 0x1f);
+            pLat += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            result = 1;
+            shift = 0;
+            do {
+                b = encoded.charAt(index++) - 63 - 1;
+                result += b << shift;
+                shift += 5;
+            } while (b >= 0x1f);
+            pLng += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            lat[count] = pLat * 1e-5;
+            lng[count] = pLng * 1e-5;
+            count++;
+        }
+        return count;
+    }
+
+    public static int decode(byte[] buf, int offset, int length, double[] lat, double[] lng) {
+        int end = offset + length;
+        int index = offset;
+        int count = 0;
+        int pLat = 0;
+        int pLng = 0;
+        while (index < end) {
+            int result = 1;
+            int shift = 0;
+            int b;
+            do {
+                b = buf[index++] - 63 - 1;
+                result += b << shift;
+                shift += 5;
+            } while (b >= 0x1f);
+            pLat += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            result = 1;
+            shift = 0;
+            do {
+                b = buf[index++] - 63 - 1;
+                result += b << shift;
+                shift += 5;
+            } while (b >= 0x1f);
+            pLng += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            lat[count] = pLat * 1e-5;
+            lng[count] = pLng * 1e-5;
+            count++;
+        }
+        return count;
+    }
+}
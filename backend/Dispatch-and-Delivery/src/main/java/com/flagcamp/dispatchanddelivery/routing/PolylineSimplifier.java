@@ -0,0 +1,107 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+/**
+ * Douglas-Peucker polyline simplification.
+ *
+ * Distances are measured in meters on a local equirectangular projection, which is accurate
+ * to well under a meter at city scale. The first and last vertex are always kept.
+ */
+public final class PolylineSimplifier {
+
+    private PolylineSimplifier() {
+    }
+
+    /**
+     * Simplifies an encoded polyline.
+     *
+     * @param toleranceMeters Max allowed deviation from the original path; <= 0 returns the input unchanged
+     */
+    public static String simplify(String encodedPath, double toleranceMeters) {
+        if (encodedPath == null || encodedPath.isEmpty() || toleranceMeters <= 0) {
+            return encodedPath;
+        }
+        int n = PolylineCodec.pointCount(encodedPath);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        PolylineCodec.decode(encodedPath, lat, lng);
+        int kept = simplify(lat, lng, n, toleranceMeters, lat, lng);
+        return PolylineCodec.encode(lat, lng, kept);
+    }
+
+    /**
+     * Simplifies {@code count} vertices into the output arrays, which may be the input arrays.
+     *
+     * @return number of vertices kept
+     */
+    public static int simplify(double[] lat, double[] lng, int count, double toleranceMeters,
+                               double[] outLat, double[] outLng) {
+        if (count <= 2 || toleranceMeters <= 0) {
+            if (outLat != lat) {
+                System.arraycopy(lat, 0, outLat, 0, count);
+                System.arraycopy(lng, 0, outLng, 0, count);
+            }
+            return count;
+        }
+
+        double cosLat = GeoMath.cosLat(lat[0]);
+        double tolerance2 = toleranceMeters * toleranceMeters;
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+
+        // explicit stack of [first, last] ranges instead of recursion
+        int[] stack = new int[2 * count];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double ax = lng[first] * cosLat * GeoMath.METERS_PER_DEGREE;
+            double ay = lat[first] * GeoMath.METERS_PER_DEGREE;
+            double bx = lng[last] * cosLat * GeoMath.METERS_PER_DEGREE;
+            double by = lat[last] * GeoMath.METERS_PER_DEGREE;
+
+            double maxDist2 = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double px = lng[i] * cosLat * GeoMath.METERS_PER_DEGREE;
+                double py = lat[i] * GeoMath.METERS_PER_DEGREE;
+                double d2 = segmentDistance2(px, py, ax, ay, bx, by);
+                if (d2 > maxDist2) {
+                    maxDist2 = d2;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDist2 > tolerance2) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                outLat[kept] = lat[i];
+                outLng[kept] = lng[i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private static double segmentDistance2(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 > 0 ? ((px - ax) * dx + (py - ay) * dy) / len2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+}
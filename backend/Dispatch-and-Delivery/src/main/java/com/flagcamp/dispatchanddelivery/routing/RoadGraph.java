@@ -0,0 +1,316 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable directed road graph in compressed sparse row (CSR) form.
+ *
+ * Binary file layout (big-endian), produced by {@link #write(Path)} from an OSM extract or any other source:
+ * <pre>
+ *   int   magic     'DDRG'
+ *   int   version   1
+ *   int   nodeCount
+ *   int   edgeCount
+ *   nodeCount  x (int latE7, int lngE7)
+ *   (nodeCount + 1) x int firstOut   // edges of node v are [firstOut[v], firstOut[v + 1])
+ *   edgeCount  x int head            // target node of each edge
+ *   edgeCount  x float lengthMeters  // must be >= great-circle distance between its endpoints
+ * </pre>
+ * The reverse adjacency used by the backward search and a coarse grid for snapping
+ * coordinates to the nearest node are built in memory at load time.
+ */
+public final class RoadGraph {
+
+    private static final int MAGIC = 0x44445247; // "DDRG"
+    private static final int VERSION = 1;
+    private static final double E7 = 1e7;
+
+    // snapping grid cell size in degrees (~550 m)
+    private static final double CELL_DEGREES = 0.005;
+    // give up ring search after ~35 km
+    private static final int MAX_RING = 64;
+
+    private final double[] lat;
+    private final double[] lng;
+    private final int[] firstOut;
+    private final int[] head;
+    private final float[] length;
+
+    private final int[] firstIn;
+    private final int[] tail;
+    private final float[] inLength;
+
+    private final Map<Long, int[]> cells;
+
+    private RoadGraph(double[] lat, double[] lng, int[] firstOut, int[] head, float[] length) {
+        this.lat = lat;
+        this.lng = lng;
+        this.firstOut = firstOut;
+        this.head = head;
+        this.length = length;
+
+        int n = lat.length;
+        int m = head.length;
+
+        // build reverse CSR
+        this.firstIn = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            firstIn[head[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            firstIn[v + 1] += firstIn[v];
+        }
+        this.tail = new int[m];
+        this.inLength = new float[m];
+        int[] cursor = Arrays.copyOf(firstIn, n);
+        for (int u = 0; u < n; u++) {
+            for (int e = firstOut[u]; e < firstOut[u + 1]; e++) {
+                int slot = cursor[head[e]]++;
+                tail[slot] = u;
+                inLength[slot] = length[e];
+            }
+        }
+
+        // bucket nodes into snapping cells
+        Map<Long, int[]> buckets = new HashMap<>();
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int v = 0; v < n; v++) {
+            counts.merge(cellKey(cellOf(lat[v]), cellOf(lng[v])), 1, Integer::sum);
+        }
+        counts.forEach((key, count) -> buckets.put(key, new int[count]));
+        Map<Long, Integer> fill = new HashMap<>();
+        for (int v = 0; v < n; v++) {
+            long key = cellKey(cellOf(lat[v]), cellOf(lng[v]));
+            int i = fill.merge(key, 1, Integer::sum) - 1;
+            buckets.get(key)[i] = v;
+        }
+        this.cells = buckets;
+    }
+
+    public static RoadGraph load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("Not a road graph file: " + file);
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported road graph version " + version + " in " + file);
+            }
+            int n = buf.getInt();
+            int m = buf.getInt();
+
+            double[] lat = new double[n];
+            double[] lng = new double[n];
+            for (int v = 0; v < n; v++) {
+                lat[v] = buf.getInt() / E7;
+                lng[v] = buf.getInt() / E7;
+            }
+            int[] firstOut = new int[n + 1];
+            buf.asIntBuffer().get(firstOut);
+            buf.position(buf.position() + 4 * (n + 1));
+            int[] head = new int[m];
+            buf.asIntBuffer().get(head);
+            buf.position(buf.position() + 4 * m);
+            float[] length = new float[m];
+            buf.asFloatBuffer().get(length);
+
+            if (firstOut[n] != m) {
+                throw new IOException("Corrupt road graph " + file + ": edge count mismatch");
+            }
+            return new RoadGraph(lat, lng, firstOut, head, length);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (OutputStream os = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodeCount());
+            out.writeInt(edgeCount());
+            for (int v = 0; v < nodeCount(); v++) {
+                out.writeInt((int) Math.round(lat[v] * E7));
+                out.writeInt((int) Math.round(lng[v] * E7));
+            }
+            for (int offset : firstOut) {
+                out.writeInt(offset);
+            }
+            for (int target : head) {
+                out.writeInt(target);
+            }
+            for (float len : length) {
+                out.writeFloat(len);
+            }
+        }
+    }
+
+    public int nodeCount() {
+        return lat.length;
+    }
+
+    public int edgeCount() {
+        return head.length;
+    }
+
+    public double lat(int v) {
+        return lat[v];
+    }
+
+    public double lng(int v) {
+        return lng[v];
+    }
+
+    public int firstOut(int v) {
+        return firstOut[v];
+    }
+
+    public int head(int e) {
+        return head[e];
+    }
+
+    public float length(int e) {
+        return length[e];
+    }
+
+    public int firstIn(int v) {
+        return firstIn[v];
+    }
+
+    public int tail(int e) {
+        return tail[e];
+    }
+
+    public float inLength(int e) {
+        return inLength[e];
+    }
+
+    /**
+     * Finds the node closest to the given coordinate by searching grid rings outward.
+     *
+     * @return node id, or -1 if the graph is empty
+     */
+    public int nearestNode(double queryLat, double queryLng) {
+        if (nodeCount() == 0) {
+            return -1;
+        }
+        long centerLat = cellOf(queryLat);
+        long centerLng = cellOf(queryLng);
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+        double cosLat = GeoMath.cosLat(queryLat);
+
+        for (int ring = 0; ; ring++) {
+            for (long dLat = -ring; dLat <= ring; dLat++) {
+                for (long dLng = -ring; dLng <= ring; dLng++) {
+                    if (Math.max(Math.abs(dLat), Math.abs(dLng)) != ring) {
+                        continue;
+                    }
+                    int[] bucket = cells.get(cellKey(centerLat + dLat, centerLng + dLng));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (int v : bucket) {
+                        double dy = lat[v] - queryLat;
+                        double dx = (lng[v] - queryLng) * cosLat;
+                        double d = dx * dx + dy * dy;
+                        if (d < bestDist) {
+                            bestDist = d;
+                            best = v;
+                        }
+                    }
+                }
+            }
+            // every node outside this ring is at least ring * CELL_DEGREES (scaled) away
+            double ringReach = ring * CELL_DEGREES * Math.min(1.0, cosLat);
+            if (best >= 0 && ringReach * ringReach >= bestDist) {
+                return best;
+            }
+            if (ring >= MAX_RING) {
+                break;
+            }
+        }
+
+        // far outside the graph's extent: fall back to a full scan
+        return GeoMath.nearestIndex(queryLat, queryLng, lat, lng, nodeCount());
+    }
+
+    private static long cellOf(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(long latCell, long lngCell) {
+        return (latCell << 32) ^ (lngCell & 0xffffffffL);
+    }
+
+    /**
+     * Incremental builder, used by offline converters (e.g. OSM extract -> road graph file).
+     */
+    public static final class Builder {
+        private double[] lat = new double[1024];
+        private double[] lng = new double[1024];
+        private int nodes;
+
+        private int[] from = new int[2048];
+        private int[] to = new int[2048];
+        private float[] len = new float[2048];
+        private int edges;
+
+        public int addNode(double nodeLat, double nodeLng) {
+            if (nodes == lat.length) {
+                lat = Arrays.copyOf(lat, nodes * 2);
+                lng = Arrays.copyOf(lng, nodes * 2);
+            }
+            lat[nodes] = nodeLat;
+            lng[nodes] = nodeLng;
+            return nodes++;
+        }
+
+        public Builder addEdge(int fromNode, int toNode, double lengthMeters) {
+            if (edges == from.length) {
+                from = Arrays.copyOf(from, edges * 2);
+                to = Arrays.copyOf(to, edges * 2);
+                len = Arrays.copyOf(len, edges * 2);
+            }
+            from[edges] = fromNode;
+            to[edges] = toNode;
+            len[edges] = (float) lengthMeters;
+            edges++;
+            return this;
+        }
+
+        public Builder addBidirectionalEdge(int a, int b, double lengthMeters) {
+            return addEdge(a, b, lengthMeters).addEdge(b, a, lengthMeters);
+        }
+
+        public RoadGraph build() {
+            int[] firstOut = new int[nodes + 1];
+            for (int e = 0; e < edges; e++) {
+                firstOut[from[e] + 1]++;
+            }
+            for (int v = 0; v < nodes; v++) {
+                firstOut[v + 1] += firstOut[v];
+            }
+            int[] head = new int[edges];
+            float[] length = new float[edges];
+            int[] cursor = Arrays.copyOf(firstOut, nodes);
+            for (int e = 0; e < edges; e++) {
+                int slot = cursor[from[e]]++;
+                head[slot] = to[e];
+                length[slot] = len[e];
+            }
+            return new RoadGraph(Arrays.copyOf(lat, nodes), Arrays.copyOf(lng, nodes), firstOut, head, length);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Shortest-path queries on a {@link RoadGraph} using bidirectional A*.
+ *
+ * Both searches use the average potential p(v) = (h(v, target) - h(v, source)) / 2,
+ * where h is the great-circle distance, so forward and backward reduced costs stay
+ * consistent and the classic bidirectional stopping rule applies:
+ * stop once minKey(forward) + minKey(backward) >= best path found.
+ *
+ * Search state is pooled and reset with a version stamp, so a query allocates nothing
+ * proportional to the graph size once the pool is warm.
+ */
+public final class RoadGraphRouter {
+
+    private final RoadGraph graph;
+    private final ConcurrentLinkedQueue<SearchSpace> pool = new ConcurrentLinkedQueue<>();
+
+    public RoadGraphRouter(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    public RoadGraph graph() {
+        return graph;
+    }
+
+    /**
+     * @return node path from source to target (inclusive) with its length, or null if unreachable
+     */
+    public Path shortestPath(int source, int target) {
+        if (source == target) {
+            return new Path(new int[] {source}, 0);
+        }
+        SearchSpace space = pool.poll();
+        if (space == null) {
+            space = new SearchSpace(graph.nodeCount());
+        }
+        try {
+            return search(space, source, target);
+        } finally {
+            pool.offer(space);
+        }
+    }
+
+    private Path search(SearchSpace s, int source, int target) {
+        s.reset();
+        double sLat = graph.lat(source);
+        double sLng = graph.lng(source);
+        double tLat = graph.lat(target);
+        double tLng = graph.lng(target);
+
+        s.touch(source, sLat, sLng, tLat, tLng, graph);
+        s.touch(target, sLat, sLng, tLat, tLng, graph);
+        s.distF[source] = 0;
+        s.distB[target] = 0;
+        s.forward.push(s.potential[source], source);
+        s.backward.push(-s.potential[target], target);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+
+        while (!s.forward.isEmpty() && !s.backward.isEmpty()) {
+            if (s.forward.peekKey() + s.backward.peekKey() >= best) {
+                break;
+            }
+            boolean expandForward = s.forward.size() <= s.backward.size();
+            if (expandForward) {
+                double key = s.forward.peekKey();
+                int u = s.forward.pop();
+                if (s.closedF[u] == s.stamp || key > s.distF[u] + s.potential[u] + 1e-9) {
+                    continue; // stale heap entry
+                }
+                s.closedF[u] = s.stamp;
+                for (int e = graph.firstOut(u), end = graph.firstOut(u + 1); e < end; e++) {
+                    int v = graph.head(e);
+                    s.touch(v, sLat, sLng, tLat, tLng, graph);
+                    double d = s.distF[u] + graph.length(e);
+                    if (d < s.distF[v]) {
+                        s.distF[v] = d;
+                        s.parentF[v] = u;
+                        s.forward.push(d + s.potential[v], v);
+                    }
+                    double total = d + s.distB[v];
+                    if (total < best) {
+                        best = total;
+                        meet = v;
+                    }
+                }
+            } else {
+                double key = s.backward.peekKey();
+                int u = s.backward.pop();
+                if (s.closedB[u] == s.stamp || key > s.distB[u] - s.potential[u] + 1e-9) {
+                    continue;
+                }
+                s.closedB[u] = s.stamp;
+                for (int e = graph.firstIn(u), end = graph.firstIn(u + 1); e < end; e++) {
+                    int v = graph.tail(e);
+                    s.touch(v, sLat, sLng, tLat, tLng, graph);
+                    double d = s.distB[u] + graph.inLength(e);
+                    if (d < s.distB[v]) {
+                        s.distB[v] = d;
+                        s.parentB[v] = u;
+                        s.backward.push(d - s.potential[v], v);
+                    }
+                    double total = d + s.distF[v];
+                    if (total < best) {
+                        best = total;
+                        meet = v;
+                    }
+                }
+            }
+        }
+
+        if (meet < 0) {
+            return null;
+        }
+        return new Path(unwind(s, source, target, meet), best);
+    }
+
+    private static int[] unwind(SearchSpace s, int source, int target, int meet) {
+        int forwardLen = 0;
+        for (int v = meet; v != source; v = s.parentF[v]) {
+            forwardLen++;
+        }
+        int backwardLen = 0;
+        for (int v = meet; v != target; v = s.parentB[v]) {
+            backwardLen++;
+        }
+        int[] nodes = new int[forwardLen + backwardLen + 1];
+        int i = forwardLen;
+        for (int v = meet; ; v = s.parentF[v]) {
+            nodes[i--] = v;
+            if (v == source) {
+                break;
+            }
+        }
+        i = forwardLen;
+        for (int v = meet; v != target; ) {
+            v = s.parentB[v];
+            nodes[++i] = v;
+        }
+        return nodes;
+    }
+
+    /**
+     * Node sequence of a shortest path and its length in meters.
+     */
+    public record Path(int[] nodes, double lengthMeters) {}
+
+    private static final class SearchSpace {
+        final double[] distF;
+        final double[] distB;
+        final double[] potential;
+        final int[] parentF;
+        final int[] parentB;
+        final int[] seen;
+        final int[] closedF;
+        final int[] closedB;
+        final MinHeap forward = new MinHeap();
+        final MinHeap backward = new MinHeap();
+        int stamp;
+
+        SearchSpace(int n) {
+            distF = new double[n];
+            distB = new double[n];
+            potential = new double[n];
+            parentF = new int[n];
+            parentB = new int[n];
+            seen = new int[n];
+            closedF = new int[n];
+            closedB = new int[n];
+        }
+
+        void reset() {
+            stamp++;
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                Arrays.fill(closedF, 0);
+                Arrays.fill(closedB, 0);
+                stamp = 1;
+            }
+            forward.clear();
+            backward.clear();
+        }
+
+        // lazily initialise per-node state the first time a query reaches it
+        void touch(int v, double sLat, double sLng, double tLat, double tLng, RoadGraph graph) {
+            if (seen[v] == stamp) {
+                return;
+            }
+            seen[v] = stamp;
+            distF[v] = Double.POSITIVE_INFINITY;
+            distB[v] = Double.POSITIVE_INFINITY;
+            parentF[v] = -1;
+            parentB[v] = -1;
+            double vLat = graph.lat(v);
+            double vLng = graph.lng(v);
+            potential[v] = (GeoMath.haversine(vLat, vLng, tLat, tLng) - GeoMath.haversine(vLat, vLng, sLat, sLng)) / 2;
+        }
+    }
+
+    /**
+     * Binary min-heap of (double key, int node); decrease-key is done by pushing duplicates.
+     */
+    private static final class MinHeap {
+        private double[] keys = new double[256];
+        private int[] nodes = new int[256];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(double key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int node = nodes[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (keys[child] >= key) {
+                        break;
+                    }
+                    keys[i] = keys[child];
+                    nodes[i] = nodes[child];
+                    i = child;
+                }
+                keys[i] = key;
+                nodes[i] = node;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import java.util.Arrays;
+
+/**
+ * Decoded route geometry with a prefix-sum distance array.
+ *
+ * Built once per route leg so that locating a point at a given progress ratio is a
+ * binary search plus one linear interpolation, instead of re-decoding the polyline and
+ * re-measuring every segment on each simulation tick.
+ */
+public final class RouteIndex {
+
+    private final double[] lat;
+    private final double[] lng;
+    // cumulative[i] = Haversine length of the path from point 0 to point i, in meters
+    private final double[] cumulative;
+
+    private RouteIndex(double[] lat, double[] lng) {
+        this.lat = lat;
+        this.lng = lng;
+        this.cumulative = new double[lat.length];
+        for (int i = 1; i < lat.length; i++) {
+            cumulative[i] = cumulative[i - 1] + GeoMath.haversine(lat[i - 1], lng[i - 1], lat[i], lng[i]);
+        }
+    }
+
+    /**
+     * Decodes an encoded polyline straight into primitive arrays.
+     */
+    public static RouteIndex decode(CharSequence encodedPath) {
+        if (encodedPath == null || encodedPath.length() == 0) {
+            throw new IllegalArgumentException("Path points cannot be null or empty");
+        }
+        int count = PolylineCodec.pointCount(encodedPath);
+        double[] lat = new double[count];
+        double[] lng = new double[count];
+        PolylineCodec.decode(encodedPath, lat, lng);
+        return new RouteIndex(lat, lng);
+    }
+
+    public static RouteIndex of(double[] lat, double[] lng) {
+        if (lat == null || lat.length == 0 || lat.length != lng.length) {
+            throw new IllegalArgumentException("Path points cannot be null or empty");
+        }
+        return new RouteIndex(lat, lng);
+    }
+
+    /**
+     * Encodes the points back into a polyline, at the polyline format's 1e-5 degree precision.
+     */
+    public String encode() {
+        return PolylineCodec.encode(lat, lng);
+    }
+
+    public int size() {
+        return lat.length;
+    }
+
+    public double lat(int i) {
+        return lat[i];
+    }
+
+    public double lng(int i) {
+        return lng[i];
+    }
+
+    /**
+     * @return Haversine length of the whole path in meters
+     */
+    public double length() {
+        return cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * Writes the position at the given progress ratio into {@code out} as [lat, lng].
+     * The ratio is applied to the path's own length, which is equivalent to scaling the
+     * road distance reported by the routing provider onto the decoded geometry.
+     *
+     * @param progressRatio Value between 0.0 (start) and 1.0 (end)
+     * @param out Array of length >= 2 receiving latitude and longitude
+     */
+    public void positionAt(double progressRatio, double[] out) {
+        int last = lat.length - 1;
+        if (last == 0 || progressRatio <= 0) {
+            out[0] = lat[0];
+            out[1] = lng[0];
+            return;
+        }
+        if (progressRatio >= 1.0) {
+            out[0] = lat[last];
+            out[1] = lng[last];
+            return;
+        }
+        double target = cumulative[last] * progressRatio;
+
+        // first point whose cumulative distance reaches the target
+        int i = Arrays.binarySearch(cumulative, target);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        if (i == 0) {
+            out[0] = lat[0];
+            out[1] = lng[0];
+            return;
+        }
+        double segment = cumulative[i] - cumulative[i - 1];
+        double ratio = segment > 0 ? (target - cumulative[i - 1]) / segment : 1.0;
+        out[0] = lat[i - 1] + (lat[i] - lat[i - 1]) * ratio;
+        out[1] = lng[i - 1] + (lng[i] - lng[i - 1]) * ratio;
+    }
+}
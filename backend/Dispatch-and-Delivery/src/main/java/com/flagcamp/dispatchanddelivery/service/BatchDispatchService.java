@@ -0,0 +1,450 @@
+package com.flagcamp.dispatchanddelivery.service;
+
+import com.flagcamp.dispatchanddelivery.dispatch.HungarianSolver;
+import com.flagcamp.dispatchanddelivery.dispatch.TourPlanner;
+import com.flagcamp.dispatchanddelivery.dispatch.TourStop;
+import com.flagcamp.dispatchanddelivery.entity.HubEntity;
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.FleetRegistry;
+import com.flagcamp.dispatchanddelivery.manager.HubIndex;
+import com.flagcamp.dispatchanddelivery.manager.PendingOrderPool;
+import com.flagcamp.dispatchanddelivery.manager.PendingOrderPool.PendingOrder;
+import com.flagcamp.dispatchanddelivery.manager.RobotReservationManager;
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.model.response.DispatchStatsResponse;
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch dispatch: assigns all pending orders to robots at once every tick.
+ *
+ * Active only with {@code dispatch.mode=batch}. Each tick, per robot type, builds a cost
+ * matrix of estimated drop-off time (robot's hub → pickup → drop-off at the robot's speed,
+ * minus a credit for how long the order has waited) and solves the min-cost assignment
+ * with {@link HungarianSolver}. Assigned orders get their route stored and their mission
+ * started; orders left over (more orders than robots) stay in the pool for the next tick.
+ *
+ * With {@code max-orders-per-robot > 1}, orders left without a robot are added to nearby
+ * runs (within the robot's max weight) and the run is served as one multi-stop tour,
+ * sequenced by {@link TourPlanner} and routed with a single waypoint request.
+ *
+ * The cost uses great-circle distance times a road factor instead of routing calls,
+ * since the matrix has orders × robots entries; the real route is computed only for the
+ * chosen pairs.
+ */
+@Service
+public class BatchDispatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDispatchService.class);
+
+    private static final String[] TYPES = {"robot", "drone"};
+
+    // runs tried per unassigned order when bundling
+    private static final int BUNDLE_CANDIDATES = 4;
+
+    private final PendingOrderPool pendingOrderPool;
+    private final FleetRegistry fleetRegistry;
+    private final HubIndex hubIndex;
+    private final RobotReservationManager reservationManager;
+    private final RouteService routeService;
+    private final OrderService orderService;
+    private final ExecutorService routingExecutor;
+
+    private final boolean enabled;
+    private final int maxOrdersPerTick;
+    private final double roadFactor;
+    private final double waitWeight;
+    private final long routingTimeoutMs;
+    private final int maxOrdersPerRobot;
+    private final double maxDetourMeters;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong assigned = new AtomicLong();
+    private volatile TickStats lastTick = new TickStats(0, 0, 0, 0);
+
+    public BatchDispatchService(PendingOrderPool pendingOrderPool,
+                                FleetRegistry fleetRegistry,
+                                HubIndex hubIndex,
+                                RobotReservationManager reservationManager,
+                                RouteService routeService,
+                                OrderService orderService,
+                                ExecutorService routingExecutor,
+                                @Value("${dispatch.mode:direct}") String mode,
+                                @Value("${dispatch.batch.max-orders-per-tick:2000}") int maxOrdersPerTick,
+                                @Value("${dispatch.batch.road-factor:1.3}") double roadFactor,
+                                @Value("${dispatch.batch.wait-weight:1.0}") double waitWeight,
+                                @Value("${dispatch.routing.timeout-ms:5000}") long routingTimeoutMs,
+                                @Value("${dispatch.batch.max-orders-per-robot:1}") int maxOrdersPerRobot,
+                                @Value("${dispatch.batch.max-detour-meters:3000}") double maxDetourMeters) {
+        this.pendingOrderPool = pendingOrderPool;
+        this.fleetRegistry = fleetRegistry;
+        this.hubIndex = hubIndex;
+        this.reservationManager = reservationManager;
+        this.routeService = routeService;
+        this.orderService = orderService;
+        this.routingExecutor = routingExecutor;
+        this.enabled = "batch".equalsIgnoreCase(mode);
+        this.maxOrdersPerTick = maxOrdersPerTick;
+        this.roadFactor = roadFactor;
+        this.waitWeight = waitWeight;
+        this.routingTimeoutMs = routingTimeoutMs;
+        this.maxOrdersPerRobot = maxOrdersPerRobot;
+        this.maxDetourMeters = maxDetourMeters;
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.batch.tick-ms:2000}")
+    public void tick() {
+        if (!enabled || pendingOrderPool.size() == 0) {
+            return;
+        }
+        ticks.incrementAndGet();
+        for (String type : TYPES) {
+            try {
+                dispatch(type);
+            } catch (Exception e) {
+                logger.error("Batch dispatch tick failed for type {}", type, e);
+            }
+        }
+    }
+
+    private void dispatch(String type) {
+        List<PendingOrder> orders = pendingOrderPool.snapshot(type);
+        if (orders.isEmpty()) {
+            return;
+        }
+        if (orders.size() > maxOrdersPerTick) {
+            // oldest first, the rest wait for the next tick
+            orders = orders.subList(0, maxOrdersPerTick);
+        }
+        List<RobotEntity> robots = new ArrayList<>();
+        List<HubEntity> robotHubs = new ArrayList<>();
+        for (RobotEntity robot : fleetRegistry.available(type)) {
+            Optional<HubEntity> hub = hubIndex.byId(robot.getHubId());
+            if (hub.isPresent() && robot.getSpeed() > 0) {
+                robots.add(robot);
+                robotHubs.add(hub.get());
+            }
+        }
+        if (robots.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        double[] cost = costMatrix(orders, robots, robotHubs, type, start);
+        long solveStart = System.nanoTime();
+        int[] orderToRobot = HungarianSolver.solve(cost, orders.size(), robots.size());
+        long solveMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - solveStart);
+
+        // 每台机器人的订单；开启多单配送时，未分到机器人的订单插入已有路线
+        List<List<PendingOrder>> bundles = new ArrayList<>(robots.size());
+        for (int r = 0; r < robots.size(); r++) {
+            bundles.add(null);
+        }
+        List<PendingOrder> leftovers = new ArrayList<>();
+        for (int o = 0; o < orders.size(); o++) {
+            int r = orderToRobot[o];
+            if (r >= 0) {
+                bundles.set(r, new ArrayList<>(List.of(orders.get(o))));
+            } else {
+                leftovers.add(orders.get(o));
+            }
+        }
+        if (maxOrdersPerRobot > 1 && !leftovers.isEmpty()) {
+            bundle(leftovers, bundles, robots, robotHubs);
+        }
+
+        List<Future<Integer>> tasks = new ArrayList<>();
+        for (int r = 0; r < robots.size(); r++) {
+            List<PendingOrder> bundle = bundles.get(r);
+            if (bundle == null) {
+                continue;
+            }
+            RobotEntity robot = robots.get(r);
+            HubEntity hub = robotHubs.get(r);
+            // taken out of the pool while in flight so the next tick can't pick them again
+            for (PendingOrder order : bundle) {
+                pendingOrderPool.remove(order.orderId());
+            }
+            if (bundle.size() == 1) {
+                tasks.add(routingExecutor.submit(() -> assign(bundle.get(0), robot, hub) ? 1 : 0));
+            } else {
+                tasks.add(routingExecutor.submit(() -> assignTour(bundle, robot, hub)));
+            }
+        }
+        int done = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(routingTimeoutMs);
+        for (Future<Integer> task : tasks) {
+            try {
+                done += task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                // still running: assign() finishes on its own and puts the orders back if it fails
+                logger.warn("Batch assignment did not complete in time: {}", e.toString());
+            }
+        }
+        assigned.addAndGet(done);
+        lastTick = new TickStats(orders.size(), robots.size(), done, solveMicros);
+        logger.info("Batch dispatch ({}): {} pending x {} robots solved in {}us, {} assigned",
+            type, orders.size(), robots.size(), solveMicros, done);
+    }
+
+    // estimated minutes until drop-off for every (order, robot) pair, row-major by order
+    private double[] costMatrix(List<PendingOrder> orders, List<RobotEntity> robots, List<HubEntity> hubs,
+                                String type, long now) {
+        int n = orders.size();
+        int m = robots.size();
+        double factor = "drone".equals(type) ? 1.0 : roadFactor;
+
+        double[] hubLat = new double[m];
+        double[] hubLng = new double[m];
+        double[] minutesPerMeter = new double[m];
+        for (int r = 0; r < m; r++) {
+            hubLat[r] = hubs.get(r).getHubLat();
+            hubLng[r] = hubs.get(r).getHubLng();
+            minutesPerMeter[r] = 60.0 / (robots.get(r).getSpeed() * 1000.0);
+        }
+        double[] hubCos = GeoMath.cosLats(hubLat, m);
+
+        double[] cost = new double[n * m];
+        double[] pickupDistance = new double[m];
+        for (int o = 0; o < n; o++) {
+            PendingOrder order = orders.get(o);
+            GeoMath.haversine(order.pickupLat(), order.pickupLng(), hubLat, hubLng, hubCos, m, pickupDistance);
+            double waitedMinutes = (now - order.enqueuedAtNanos()) / 60e9;
+            int base = o * m;
+            for (int r = 0; r < m; r++) {
+                double meters = pickupDistance[r] * factor + order.distance();
+                cost[base + r] = meters * minutesPerMeter[r] - waitWeight * waitedMinutes;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Adds orders that got no robot of their own to an already assigned robot's run, where the
+     * robot's capacity allows and the tour grows by at most {@code max-detour-meters}.
+     * Only the few runs whose first pickup is closest are tried for each order.
+     */
+    private void bundle(List<PendingOrder> leftovers, List<List<PendingOrder>> bundles,
+                        List<RobotEntity> robots, List<HubEntity> hubs) {
+        int m = robots.size();
+        double[] anchorLat = new double[m];
+        double[] anchorLng = new double[m];
+        double[] length = new double[m];
+        double[] load = new double[m];
+        for (int r = 0; r < m; r++) {
+            List<PendingOrder> bundle = bundles.get(r);
+            if (bundle != null) {
+                PendingOrder first = bundle.get(0);
+                anchorLat[r] = first.pickupLat();
+                anchorLng[r] = first.pickupLng();
+                length[r] = tourLength(bundle, hubs.get(r), robots.get(r));
+                load[r] = first.weight();
+            } else {
+                anchorLat[r] = Double.NaN;
+            }
+        }
+        double[] anchorCos = GeoMath.cosLats(anchorLat, m);
+        double[] anchorDistance = new double[m];
+
+        for (PendingOrder order : leftovers) {
+            GeoMath.haversine(order.pickupLat(), order.pickupLng(), anchorLat, anchorLng, anchorCos, m, anchorDistance);
+            int bestRobot = -1;
+            double bestDelta = maxDetourMeters;
+            for (int attempt = 0; attempt < BUNDLE_CANDIDATES; attempt++) {
+                int r = closestOpen(anchorDistance, bundles, robots, load, order.weight());
+                if (r < 0 || anchorDistance[r] > maxDetourMeters) {
+                    break;
+                }
+                anchorDistance[r] = Double.NaN; // tried
+                List<PendingOrder> candidate = new ArrayList<>(bundles.get(r));
+                candidate.add(order);
+                double delta = tourLength(candidate, hubs.get(r), robots.get(r)) - length[r];
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestRobot = r;
+                }
+            }
+            if (bestRobot >= 0) {
+                bundles.get(bestRobot).add(order);
+                length[bestRobot] += bestDelta;
+                load[bestRobot] += order.weight();
+            }
+        }
+    }
+
+    // closest run (by first pickup) that still has room for the order, or -1
+    private int closestOpen(double[] anchorDistance, List<List<PendingOrder>> bundles,
+                            List<RobotEntity> robots, double[] load, double weight) {
+        int best = -1;
+        for (int r = 0; r < anchorDistance.length; r++) {
+            List<PendingOrder> bundle = bundles.get(r);
+            // NaN: no run or already tried
+            if (bundle == null || Double.isNaN(anchorDistance[r]) || bundle.size() >= maxOrdersPerRobot) {
+                continue;
+            }
+            double capacity = robots.get(r).getMaxWeight();
+            if (capacity > 0 && load[r] + weight > capacity) {
+                continue;
+            }
+            if (best < 0 || anchorDistance[r] < anchorDistance[best]) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    private static TourPlanner planner(List<PendingOrder> bundle, HubEntity hub, RobotEntity robot) {
+        int n = bundle.size();
+        double[] pickupLat = new double[n];
+        double[] pickupLng = new double[n];
+        double[] dropLat = new double[n];
+        double[] dropLng = new double[n];
+        double[] weight = new double[n];
+        for (int j = 0; j < n; j++) {
+            PendingOrder order = bundle.get(j);
+            pickupLat[j] = order.pickupLat();
+            pickupLng[j] = order.pickupLng();
+            dropLat[j] = order.dropLat();
+            dropLng[j] = order.dropLng();
+            weight[j] = order.weight();
+        }
+        return new TourPlanner(hub.getHubLat(), hub.getHubLng(), pickupLat, pickupLng, dropLat, dropLng,
+            weight, robot.getMaxWeight());
+    }
+
+    private static double tourLength(List<PendingOrder> bundle, HubEntity hub, RobotEntity robot) {
+        TourPlanner planner = planner(bundle, hub, robot);
+        int[] route = planner.plan();
+        return route == null ? Double.POSITIVE_INFINITY : planner.length(route);
+    }
+
+    /**
+     * Binds several orders to one robot: plans the stop sequence, routes the whole tour with one
+     * request, stores each order's view of it (hub → its pickup, its pickup → its drop-off) and
+     * starts the multi-stop mission.
+     *
+     * @return number of orders assigned (all or none)
+     */
+    private int assignTour(List<PendingOrder> bundle, RobotEntity robot, HubEntity hub) {
+        String robotId = robot.getRobotId();
+        String leaseOrderId = bundle.get(0).orderId();
+        if (!reservationManager.tryReserve(robotId, leaseOrderId)) {
+            bundle.forEach(pendingOrderPool::add);
+            return 0;
+        }
+        try {
+            TourPlanner planner = planner(bundle, hub, robot);
+            int[] route = planner.plan();
+            if (route == null) {
+                throw new IllegalStateException("Orders exceed the robot's capacity");
+            }
+
+            // 起点hub + 每个停靠点
+            double[] lats = new double[route.length + 1];
+            double[] lngs = new double[route.length + 1];
+            lats[0] = hub.getHubLat();
+            lngs[0] = hub.getHubLng();
+            int[] pickupPos = new int[bundle.size()];
+            int[] dropPos = new int[bundle.size()];
+            for (int i = 0; i < route.length; i++) {
+                PendingOrder order = bundle.get(TourPlanner.jobOf(route[i]));
+                boolean pickup = TourPlanner.isPickup(route[i]);
+                lats[i + 1] = pickup ? order.pickupLat() : order.dropLat();
+                lngs[i + 1] = pickup ? order.pickupLng() : order.dropLng();
+                if (pickup) {
+                    pickupPos[TourPlanner.jobOf(route[i])] = i;
+                } else {
+                    dropPos[TourPlanner.jobOf(route[i])] = i;
+                }
+            }
+            List<RouteDTO> legs = routeService.computeTour(lats, lngs, "drone".equals(bundle.get(0).robotType()));
+
+            // leg i ends at stop i
+            for (int j = 0; j < bundle.size(); j++) {
+                PendingOrder order = bundle.get(j);
+                RouteDTO hubToPickup = RouteService.joinLegs(legs, 0, pickupPos[j] + 1);
+                RouteDTO pickupToEnd = RouteService.joinLegs(legs, pickupPos[j] + 1, dropPos[j] + 1);
+                routeService.storeRoute(
+                    order.orderId(),
+                    hubToPickup.encodedPolyline(),
+                    pickupToEnd.encodedPolyline(),
+                    hub.getHubLat(),
+                    hub.getHubLng(),
+                    hubToPickup.distance(),
+                    pickupToEnd.distance()
+                );
+                orderService.assignRobot(order.orderId(), robotId);
+            }
+
+            List<TourStop> stops = new ArrayList<>(route.length);
+            for (int i = 0; i < route.length; i++) {
+                PendingOrder order = bundle.get(TourPlanner.jobOf(route[i]));
+                stops.add(new TourStop(order.orderId(), TourPlanner.isPickup(route[i]), legs.get(i)));
+            }
+            orderService.startTourAsync(robotId, stops, leaseOrderId);
+            logger.info("Batch dispatch assigned robot {} (hub {}) a {}-order tour, {} m",
+                robotId, hub.getHubId(), bundle.size(), Math.round(planner.length(route)));
+            return bundle.size();
+        } catch (Exception e) {
+            reservationManager.release(robotId, leaseOrderId);
+            bundle.forEach(pendingOrderPool::add);
+            logger.error("Failed to assign tour to robot {}, keeping its orders pending", robotId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Binds one order to one robot: reserve, route hub → pickup, store the route, start the mission.
+     */
+    private boolean assign(PendingOrder order, RobotEntity robot, HubEntity hub) {
+        String orderId = order.orderId();
+        String robotId = robot.getRobotId();
+        if (!reservationManager.tryReserve(robotId, orderId)) {
+            pendingOrderPool.add(order);
+            return false;
+        }
+        try {
+            RouteDTO hubToPickup = "drone".equals(order.robotType())
+                ? routeService.computeDroneRoute(hub.getHubLat(), hub.getHubLng(), order.pickupLat(), order.pickupLng())
+                : routeService.computeRoute(hub.getHubLat(), hub.getHubLng(), order.pickupLat(), order.pickupLng()).get(0);
+            routeService.storeRoute(
+                orderId,
+                hubToPickup.encodedPolyline(),
+                order.route(),
+                hub.getHubLat(),
+                hub.getHubLng(),
+                hubToPickup.distance(),
+                order.distance()
+            );
+            orderService.assignRobot(orderId, robotId);
+            orderService.startRobotAsync(orderId, robotId);
+            logger.info("Batch dispatch assigned robot {} (hub {}) to order {}", robotId, hub.getHubId(), orderId);
+            return true;
+        } catch (Exception e) {
+            reservationManager.release(robotId, orderId);
+            pendingOrderPool.add(order);
+            logger.error("Failed to assign robot {} to order {}, keeping it pending", robotId, orderId, e);
+            return false;
+        }
+    }
+
+    public DispatchStatsResponse stats() {
+        TickStats tick = lastTick;
+        return new DispatchStatsResponse(enabled ? "batch" : "direct", pendingOrderPool.size(), ticks.get(),
+            assigned.get(), tick.pendingOrders(), tick.robots(), tick.assigned(), tick.solveMicros());
+    }
+
+    private record TickStats(int pendingOrders, int robots, int assigned, long solveMicros) {}
+}
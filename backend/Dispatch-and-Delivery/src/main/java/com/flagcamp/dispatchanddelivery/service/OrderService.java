@@ -1,8 +1,14 @@
 package com.flagcamp.dispatchanddelivery.service;
 
+import com.flagcamp.dispatchanddelivery.dispatch.TourStop;
+import com.flagcamp.dispatchanddelivery.entity.HubEntity;
 import com.flagcamp.dispatchanddelivery.entity.OrderEntity;
 import com.flagcamp.dispatchanddelivery.entity.PackageEntity;
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
 import com.flagcamp.dispatchanddelivery.entity.RouteEntity;
+import com.flagcamp.dispatchanddelivery.manager.HubIndex;
+import com.flagcamp.dispatchanddelivery.manager.PendingOrderPool;
+import com.flagcamp.dispatchanddelivery.manager.RobotReservationManager;
 import com.flagcamp.dispatchanddelivery.manager.RobotSignalManager;
 import com.flagcamp.dispatchanddelivery.model.dto.OrderRequestDTO;
 import com.flagcamp.dispatchanddelivery.model.dto.OrderResponseDTO;
@@ -16,15 +22,25 @@ import com.flagcamp.dispatchanddelivery.repository.PackageRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,6 +55,21 @@ public class OrderService {
     private final RobotService robotService;
     private final RobotSimulatorService robotSimulatorService;
     private final RobotSignalManager robotSignalManager;
+    private final RobotReservationManager reservationManager;
+    private final PendingOrderPool pendingOrderPool;
+    private final ExecutorService routingExecutor;
+
+    // 并发调用（路由 / hub / 机器人查询）的总超时
+    @Value("${dispatch.routing.timeout-ms:5000}")
+    private long routingTimeoutMs;
+
+    // direct: 使用前端选的机器人; batch: 订单进入待分配池，定时批量分配
+    @Value("${dispatch.mode:direct}")
+    private String dispatchMode;
+
+    // 报价时考虑的最近hub数量
+    @Value("${dispatch.quote.hub-candidates:3}")
+    private int hubCandidates;
 
     public List<OrderResponseDTO> getOrderList(String userId) {
         logger.info("Retrieving orders for user: {}", userId);
@@ -86,32 +117,43 @@ public class OrderService {
     public DeliveryOptionsResponse previewOptions(Double fromLat, Double fromLng, Double toLat, Double toLng) {
         logger.info("Computing preview options from ({}, {}) to ({}, {})", fromLat, fromLng, toLat, toLng);
 
-        try {
-            // 1. 计算路径信息
-            List<RouteDTO> routes = routeService.computeRoute(fromLat, fromLng, toLat, toLng);
-            RouteDTO robotRoute = routes.get(0);
-            RouteDTO droneRoute = routes.get(1);
+        // 路由计算和各候选hub的接驾路线互不依赖，在虚拟线程上并发执行，总耗时取最慢的调用
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(routingTimeoutMs);
+        Future<List<RouteDTO>> routesTask = routingExecutor.submit(
+            () -> routeService.computeRoute(fromLat, fromLng, toLat, toLng));
+        List<Future<Candidate>> robotTasks = List.of();
+        List<Future<Candidate>> droneTasks = List.of();
 
-            // 2. 找最近的Hub
-            var nearestHub = robotService.findNearestHub(fromLat, fromLng);
-            if (nearestHub.isEmpty()) {
+        try {
+            // 1. 找最近的k个Hub（内存索引）
+            List<HubIndex.Neighbor> hubs = robotService.findNearestHubs(fromLat, fromLng, hubCandidates);
+            if (hubs.isEmpty()) {
                 throw new RuntimeException("No hub found");
             }
-            String hubId = nearestHub.get().getHubId();
-            logger.info("Found nearest hub: {}", hubId);
+            logger.info("Quoting across {} nearest hubs, closest: {}", hubs.size(), hubs.get(0).hub().getHubId());
+
+            // 2. 每个Hub的候选机器人/无人机，并发计算hub到取件点的路线
+            robotTasks = submitCandidates(hubs, "robot", fromLat, fromLng);
+            droneTasks = submitCandidates(hubs, "drone", fromLat, fromLng);
 
-            // 3. 从该Hub获取最便宜的机器人和最快的无人机
-            var cheapestRobot = robotService.findCheapestRobot(hubId);
-            var fastestDrone = robotService.findFastestDrone(hubId);
+            // 3. 计算路径信息
+            List<RouteDTO> routes = await(routesTask, deadline);
+            RouteDTO robotRoute = routes.get(0);
+            RouteDTO droneRoute = routes.get(1);
+
+            // 按 接驾时间 + 配送时间 选出最快到达的候选
+            Optional<Candidate> bestRobot = fastestCandidate(robotTasks, robotRoute.distance(), deadline);
+            Optional<Candidate> bestDrone = fastestCandidate(droneTasks, droneRoute.distance(), deadline);
 
             // 4. 计算机器人选项
             RouteResponse robotResponse;
-            if (cheapestRobot.isPresent()) {
-                var robot = cheapestRobot.get();
+            if (bestRobot.isPresent()) {
+                var robot = bestRobot.get().robot();
                 int robotDuration = calculateDuration(robotRoute.distance(), robot.getSpeed());
                 double robotPrice = calculatePrice(robotRoute.distance(), "robot"); 
                 robotResponse = RouteResponse.from(robotRoute, robotDuration, robotPrice, "robot", robot.getRobotId());
-                logger.info("Robot option - ID: {}, Duration: {}min, Price: ${}", robot.getRobotId(), robotDuration, robotPrice);
+                logger.info("Robot option - ID: {}, hub: {}, Duration: {}min, Price: ${}",
+                    robot.getRobotId(), robot.getHubId(), robotDuration, robotPrice);
             } else {
                 // 如果没有可用机器人，使用默认值
                 int robotDuration = calculateDuration(robotRoute.distance(), "robot");
@@ -122,12 +164,13 @@ public class OrderService {
 
             // 5. 计算无人机选项
             RouteResponse droneResponse;
-            if (fastestDrone.isPresent()) {
-                var drone = fastestDrone.get();
+            if (bestDrone.isPresent()) {
+                var drone = bestDrone.get().robot();
                 int droneDuration = calculateDuration(droneRoute.distance(), drone.getSpeed());
                 double dronePrice = calculatePrice(droneRoute.distance(), "drone"); 
                 droneResponse = RouteResponse.from(droneRoute, droneDuration, dronePrice, "drone", drone.getRobotId());
-                logger.info("Drone option - ID: {}, Duration: {}min, Price: ${}", drone.getRobotId(), droneDuration, dronePrice);
+                logger.info("Drone option - ID: {}, hub: {}, Duration: {}min, Price: ${}",
+                    drone.getRobotId(), drone.getHubId(), droneDuration, dronePrice);
             } else {
                 // 如果没有可用无人机，使用默认值
                 int droneDuration = calculateDuration(droneRoute.distance(), "drone");
@@ -141,17 +184,76 @@ public class OrderService {
         } catch (Exception e) {
             logger.error("Failed to compute preview options", e);
             return new DeliveryOptionsResponse(null, null);
+        } finally {
+            // 任何一步失败或超时，取消仍在运行的调用
+            cancelAll(routesTask);
+            cancelAll(robotTasks);
+            cancelAll(droneTasks);
         }
     }
 
+    /**
+     * Submits one hub→pickup route computation per hub that has an available robot of the type.
+     * Robots use the cheapest robot of each hub, drones the fastest drone, as in the single-hub quote.
+     */
+    private List<Future<Candidate>> submitCandidates(List<HubIndex.Neighbor> hubs, String type,
+                                                     double pickupLat, double pickupLng) {
+        List<Future<Candidate>> tasks = new ArrayList<>(hubs.size());
+        for (HubIndex.Neighbor neighbor : hubs) {
+            HubEntity hub = neighbor.hub();
+            Optional<RobotEntity> candidate = "drone".equals(type)
+                ? robotService.findFastestDrone(hub.getHubId())
+                : robotService.findCheapestRobot(hub.getHubId());
+            if (candidate.isEmpty()) {
+                continue;
+            }
+            RobotEntity robot = candidate.get();
+            tasks.add(routingExecutor.submit(() -> {
+                RouteDTO hubToPickup = "drone".equals(type)
+                    ? routeService.computeDroneRoute(hub.getHubLat(), hub.getHubLng(), pickupLat, pickupLng)
+                    : routeService.computeRoute(hub.getHubLat(), hub.getHubLng(), pickupLat, pickupLng).get(0);
+                return new Candidate(robot, hubToPickup.distance());
+            }));
+        }
+        return tasks;
+    }
+
+    /**
+     * Picks the candidate with the earliest drop-off: hub→pickup plus pickup→drop-off at the robot's speed.
+     * A candidate whose route fails or misses the deadline is skipped instead of failing the quote.
+     */
+    private Optional<Candidate> fastestCandidate(List<Future<Candidate>> tasks, long deliveryDistance,
+                                                 long deadlineNanos) {
+        Candidate best = null;
+        double bestMinutes = Double.POSITIVE_INFINITY;
+        for (Future<Candidate> task : tasks) {
+            try {
+                Candidate candidate = await(task, deadlineNanos);
+                double minutes = (candidate.hubToPickupDistance() + deliveryDistance) / 1000.0
+                    / candidate.robot().getSpeed() * 60;
+                if (minutes < bestMinutes) {
+                    bestMinutes = minutes;
+                    best = candidate;
+                }
+            } catch (Exception e) {
+                logger.warn("Skipping quote candidate: {}", e.toString());
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private record Candidate(RobotEntity robot, long hubToPickupDistance) {}
+
     @Transactional
     //之前版本有机器人开跑但提交失败的问题，所以加入回滚
     public Map<String, Object> submitOrder(String userId, OrderRequestDTO orderRequest) {
         logger.info("Submitting order for user: {}", userId);
 
-        try {
-            String orderId = UUID.randomUUID().toString();
+        String orderId = UUID.randomUUID().toString();
+        String reservedRobotId = null;
+        boolean submitted = false;
 
+        try {
             // 1. 创建订单实体
             OrderEntity orderEntity = new OrderEntity();
             orderEntity.setOrderId(orderId);
@@ -179,12 +281,24 @@ public class OrderService {
             // 设置订单中的包裹ID
             orderEntity.setPackageId(packageId);
 
+            // 批量调度模式：不绑定前端选的机器人，订单进入待分配池，由BatchDispatchService统一分配
+            if ("batch".equalsIgnoreCase(dispatchMode)) {
+                return queueForDispatch(orderEntity, packageEntity, orderRequest);
+            }
+
             // 3. 通过robotId获取robot信息和hub位置
             if (orderRequest.getRobotId() == null || orderRequest.getRobotId().isEmpty()) {
                 throw new IllegalArgumentException("Robot ID is required");
             }
 
-            var selectedRobot = robotService.getRobotById(orderRequest.getRobotId());
+            // 原子抢占机器人租约，防止两个订单同时选中同一台
+            if (!reservationManager.tryReserve(orderRequest.getRobotId(), orderId)) {
+                throw new IllegalArgumentException("Selected robot is already reserved");
+            }
+            reservedRobotId = orderRequest.getRobotId();
+            releaseOnRollback(reservedRobotId, orderId);
+            // 持有租约后再读可用状态：任务启动先置不可用再放租约，这里读到的不会是放租约之前的旧值
+            var selectedRobot = robotService.getRobotById(reservedRobotId);
             if (selectedRobot.isEmpty() || !selectedRobot.get().isAvailable()) {
                 throw new IllegalArgumentException("Selected robot is not available");
             }
@@ -204,23 +318,31 @@ public class OrderService {
             double hubLng = hubEntity.getHubLng();
             logger.info("Found hub {} at ({}, {}) for robot {}", hubEntity.getHubId(), hubLat, hubLng, robot.getRobotId());
 
-            // 5. 计算从hub到起始点的路由
-            List<RouteDTO> hubToStartRoutes = routeService.computeRoute(
-                hubLat, hubLng,
-                orderRequest.getFromLat(), orderRequest.getFromLng()
-            );
-
-            // 6. 根据机器人类型选择合适的路由
+            // 5. 计算从hub到起始点的路由，根据机器人类型选择合适的路由
             RouteDTO hubToStartRoute;
             if ("DRONE".equalsIgnoreCase(orderRequest.getRobotType())) {
-                hubToStartRoute = hubToStartRoutes.get(1); // 无人机使用直线路径
+                // 无人机使用直线路径，不需要调用路由服务
+                hubToStartRoute = routeService.computeDroneRoute(
+                    hubLat, hubLng,
+                    orderRequest.getFromLat(), orderRequest.getFromLng()
+                );
                 logger.info("Using drone route from hub to start point");
             } else {
-                hubToStartRoute = hubToStartRoutes.get(0); // 机器人使用道路路径
+                // 机器人使用道路路径，带超时
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(routingTimeoutMs);
+                Future<List<RouteDTO>> hubToStartTask = routingExecutor.submit(() -> routeService.computeRoute(
+                    hubLat, hubLng,
+                    orderRequest.getFromLat(), orderRequest.getFromLng()
+                ));
+                try {
+                    hubToStartRoute = await(hubToStartTask, deadline).get(0);
+                } finally {
+                    cancelAll(hubToStartTask);
+                }
                 logger.info("Using robot route from hub to start point");
             }
 
-            // 7. 存储完整路由信息
+            // 6. 存储完整路由信息
             long hubToStartDistance = hubToStartRoute.distance();
 
             // 使用前端提供的距离（从preview选项中获得）
@@ -238,16 +360,16 @@ public class OrderService {
             logger.info("Route stored for order {} - Hub to start: {}m, Start to end: {}m",
                 orderId, hubToStartDistance, startToEndDistance);
 
-            // 8. 保存包裹到数据库
+            // 7. 保存包裹到数据库
             packageRepository.save(packageEntity);
             logger.info("Package {} created for order {}", packageId, orderId);
             
-            // 9. 保存订单到数据库（先设为PENDING状态）
+            // 8. 保存订单到数据库（先设为PENDING状态）
             orderEntity.setStatus(OrderStatus.PENDING.name());
             orderRepository.save(orderEntity);
             logger.info("Order {} saved to database with status: PENDING", orderId);
 
-            // 10. 返回详细的订单信息（事务会在方法结束时自动提交）
+            // 9. 返回详细的订单信息（事务会在方法结束时自动提交）
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("order_id", orderId);
@@ -256,6 +378,7 @@ public class OrderService {
             response.put("hub_id", hubEntity.getHubId());
             response.put("message", "Order submitted successfully");
 
+            submitted = true;
             return response;
 
         } catch (Exception e) {
@@ -265,10 +388,93 @@ public class OrderService {
             response.put("success", false);
             response.put("message", "Failed to submit order: " + e.getMessage());
             return response;
+        } finally {
+            // 任何失败（包括Error）都释放租约；成功时租约保留到任务开始
+            if (!submitted && reservedRobotId != null) {
+                reservationManager.release(reservedRobotId, orderId);
+            }
         }
     }
 
+    // 事务回滚或提交失败时订单并不存在，释放租约，不必等它过期
+    private void releaseOnRollback(String robotId, String orderId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        reservationManager.release(robotId, orderId);
+                    }
+                }
+            });
+        }
+    }
+
+    private Map<String, Object> queueForDispatch(OrderEntity orderEntity, PackageEntity packageEntity,
+                                                 OrderRequestDTO orderRequest) {
+        String orderId = orderEntity.getOrderId();
+        if (orderRequest.getRoute() == null || orderRequest.getDistance() == null) {
+            throw new IllegalArgumentException("Route and distance are required");
+        }
+        packageRepository.save(packageEntity);
+        orderEntity.setStatus(OrderStatus.PENDING.name());
+        orderRepository.save(orderEntity);
+
+        PendingOrderPool.PendingOrder pending = new PendingOrderPool.PendingOrder(
+            orderId,
+            orderRequest.getRobotType(),
+            orderRequest.getFromLat(),
+            orderRequest.getFromLng(),
+            orderRequest.getToLat(),
+            orderRequest.getToLng(),
+            orderRequest.getWeight() == null ? 0 : orderRequest.getWeight(),
+            orderRequest.getRoute(),
+            orderRequest.getDistance(),
+            System.nanoTime()
+        );
+        // 事务提交后才入池，避免调度器读到还未落库的订单
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pendingOrderPool.add(pending);
+                }
+            });
+        } else {
+            pendingOrderPool.add(pending);
+        }
+        logger.info("Order {} queued for batch dispatch", orderId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("order_id", orderId);
+        response.put("status", "PENDING");
+        response.put("robot_id", null);
+        response.put("message", "Order submitted, waiting for robot assignment");
+        return response;
+    }
+
+    /**
+     * Binds a robot chosen by the batch dispatcher to a pending order.
+     */
+    @Transactional
+    public void assignRobot(String orderId, String robotId) {
+        OrderEntity order = orderRepository.findById(orderId).orElseThrow();
+        order.setRobotId(robotId);
+        orderRepository.save(order);
+    }
+
     public PositionResponse getTrackingData(String orderId) {
+        return getTrackingData(orderId, null, null);
+    }
+
+    /**
+     * Tracking data with a level-of-detail route.
+     *
+     * @param zoom Optional map zoom level; converted into a tolerance of one screen pixel
+     * @param tolerance Optional max route simplification error in meters, takes precedence over zoom
+     */
+    public PositionResponse getTrackingData(String orderId, Integer zoom, Double tolerance) {
         logger.info("Getting tracking data for order: {}", orderId);
 
         try {
@@ -278,23 +484,30 @@ public class OrderService {
             OrderEntity order = orderRepository.findById(orderId).orElseThrow();
             
 
-            // Get current position from route
-            double currentLat = route.getPositionLat();
-            double currentLng = route.getPositionLng();
+            // Get current position: dead-reckoned from the running mission, else the last stored one
+            double[] position = robotSimulatorService.estimatePosition(orderId)
+                .orElseGet(() -> routeService.currentPosition(route));
+            double currentLat = position[0];
+            double currentLng = position[1];
+
+            Double toleranceMeters = tolerance;
+            if (toleranceMeters == null && zoom != null) {
+                toleranceMeters = RouteService.toleranceForZoom(zoom, currentLat);
+            }
 
             // Choose route based on order status
             String encodedRoute;
             if ("DISPATCHING".equalsIgnoreCase(order.getStatus()) || 
                 "PENDING".equalsIgnoreCase(order.getStatus())) {
                 // Robot is going from hub to pickup
-                encodedRoute = route.getHubToPickup();
+                encodedRoute = routeService.getRouteAtTolerance(route, true, toleranceMeters);
                 logger.info("Tracking data for order {} (DISPATCHING): using hubToPickup route", orderId);
             } else {
                 // Robot is going from pickup to delivery (in transit, complete, etc.)
-                encodedRoute = route.getPickupToEnd();
+                encodedRoute = routeService.getRouteAtTolerance(route, false, toleranceMeters);
                 logger.info("Tracking data for order {} (IN TRANSIT): using pickupToEnd route", orderId);
             }
-                logger.info("Tracking data for order {}: position ({}, {})", orderId, currentLat, currentLng);
+            logger.info("Tracking data for order {}: position ({}, {})", orderId, currentLat, currentLng);
 
             return new PositionResponse(orderId, encodedRoute, currentLat, currentLng);
 
@@ -306,6 +519,35 @@ public class OrderService {
 
 
 
+    /**
+     * Waits for a task until the shared deadline, unwrapping the task's own exception.
+     *
+     * @throws java.util.concurrent.TimeoutException if the deadline passes first
+     */
+    private <T> T await(Future<T> task, long deadlineNanos) throws Exception {
+        long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+        try {
+            return task.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void cancelAll(Future<?>... tasks) {
+        cancelAll(Arrays.asList(tasks));
+    }
+
+    private void cancelAll(List<? extends Future<?>> tasks) {
+        for (Future<?> task : tasks) {
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+    }
+
     //mock
     private int calculateDuration(double distance, String robotType) {
         // Convert distance from meters to kilometers
@@ -360,6 +602,29 @@ public class OrderService {
 
 
 
+    /**
+     * Starts a multi-stop mission and marks every order on it as DISPATCHING.
+     */
+    @Async
+    public void startTourAsync(String robotId, List<TourStop> stops, String leaseOrderId) {
+        try {
+            logger.info("Starting robot {} on a {}-stop tour", robotId, stops.size());
+            robotSimulatorService.startTourMission(robotId, stops, leaseOrderId);
+
+            LocalDateTime now = LocalDateTime.now();
+            for (TourStop stop : stops) {
+                if (stop.pickup()) {
+                    OrderEntity order = orderRepository.findById(stop.orderId()).orElseThrow();
+                    order.setStatus(OrderStatus.DISPATCHING.name());
+                    order.setPickupTime(now);
+                    orderRepository.save(order);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to start tour of robot {}: {}", robotId, e.getMessage(), e);
+        }
+    }
+
     @Transactional
     public void confirmPickup(String orderId, String userId, 
         LocalDateTime pickupTime){
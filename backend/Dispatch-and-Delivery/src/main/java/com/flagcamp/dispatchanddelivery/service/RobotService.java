@@ -2,11 +2,12 @@ package com.flagcamp.dispatchanddelivery.service;
 
 import com.flagcamp.dispatchanddelivery.entity.HubEntity;
 import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.FleetRegistry;
+import com.flagcamp.dispatchanddelivery.manager.HubIndex;
 import com.flagcamp.dispatchanddelivery.repository.HubRepository;
 import com.flagcamp.dispatchanddelivery.repository.RobotRepository;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,27 +15,35 @@ import java.util.Optional;
  * RobotService - 业务逻辑
  *
  * 1. Hub 和 Robot 完整 CRUD
- * 2. 查找最近 Hub
- * 3. 推荐机器人：获取最快 / 最便宜  drone / robot
+ * 2. 查找最近 Hub（内存 HubIndex，Hub 增删改后重建）
+ * 3. 推荐机器人：获取最快 / 最便宜  drone / robot（内存 FleetRegistry，不查数据库）
  */
 
 @Service
 public class RobotService {
     private final HubRepository hubRepository;
     private final RobotRepository robotRepository;
+    private final HubIndex hubIndex;
+    private final FleetRegistry fleetRegistry;
 
     public RobotService(
             HubRepository hubRepository,
-            RobotRepository robotRepository) {
+            RobotRepository robotRepository,
+            HubIndex hubIndex,
+            FleetRegistry fleetRegistry) {
         this.hubRepository = hubRepository;
         this.robotRepository = robotRepository;
+        this.hubIndex = hubIndex;
+        this.fleetRegistry = fleetRegistry;
     }
 
 
     // ===================== Hub CRUD =====================
     public HubEntity addHub(String address, double hubLat, double hubLng) {
         HubEntity hub = new HubEntity(null, address, hubLat, hubLng);
-        return hubRepository.save(hub);
+        HubEntity saved = hubRepository.save(hub);
+        hubIndex.rebuild();
+        return saved;
     }
 
     public List<HubEntity> getAllHubs() {
@@ -47,11 +56,14 @@ public class RobotService {
 
     public HubEntity updateHub(String hubId, String address, double hubLat, double hubLng) {
         HubEntity updated = new HubEntity(hubId, address, hubLat, hubLng);
-        return hubRepository.save(updated);
+        HubEntity saved = hubRepository.save(updated);
+        hubIndex.rebuild();
+        return saved;
     }
 
     public void deleteHub(String hubId) {
         hubRepository.deleteById(hubId);
+        hubIndex.rebuild();
     }
 
 
@@ -66,7 +78,9 @@ public class RobotService {
                                 double price,
                                 String robotType) {
         RobotEntity robot = new RobotEntity(null, available, battery, hubId, currentLat, currentLng, maxWeight, speed, price, robotType);
-        return robotRepository.save(robot);
+        RobotEntity saved = robotRepository.save(robot);
+        fleetRegistry.update(saved);
+        return saved;
     }
 
     public List<RobotEntity> getAllRobots() {
@@ -88,53 +102,45 @@ public class RobotService {
                                    double price,
                                    String robotType) {
         RobotEntity updated = new RobotEntity(robotId, available, battery, hubId, currentLat, currentLng, maxWeight, speed, price, robotType);
-        return robotRepository.save(updated);
+        RobotEntity saved = robotRepository.save(updated);
+        fleetRegistry.update(saved);
+        return saved;
     }
 
     public void deleteRobot(String robotId) {
         robotRepository.deleteById(robotId);
+        fleetRegistry.remove(robotId);
     }
 
 
     // ===================== 查找最近 Hub =====================
     public Optional<HubEntity> findNearestHub(double userLat, double userLng) {
-        return hubRepository.findAll().stream()
-                .min(Comparator.comparingDouble(hub -> distance(hub.getHubLat(), hub.getHubLng(), userLat, userLng)));
+        return hubIndex.nearest(userLat, userLng);
     }
 
-    // 简单直线距离公式
-    private double distance(double lat1, double lng1, double lat2, double lng2) {
-        double dx = lat1 - lat2;
-        double dy = lng1 - lng2;
-        return Math.sqrt(dx * dx + dy * dy);
+    // 最近的 k 个 Hub，按大圆距离排序
+    public List<HubIndex.Neighbor> findNearestHubs(double userLat, double userLng, int k) {
+        return hubIndex.nearest(userLat, userLng, k);
     }
 
 
     // ===================== 推荐机器人 =====================
-    // 通用方法
-    private Optional<RobotEntity> findBestBy(String hubId, String type,
-                                             Comparator<RobotEntity> comparator) {
-        return robotRepository.findByHubIdAndAvailableTrueAndRobotType(hubId, type)
-                .stream()
-                .min(comparator); // 或 max，根据比较器调整
-    }
-
     // 找最便宜的
     public Optional<RobotEntity> findCheapestRobot(String hubId) {
-        return findBestBy(hubId, "robot", Comparator.comparingDouble(RobotEntity::getPrice));
+        return fleetRegistry.cheapest(hubId, "robot");
     }
 
     public Optional<RobotEntity> findCheapestDrone(String hubId) {
-        return findBestBy(hubId, "drone", Comparator.comparingDouble(RobotEntity::getPrice));
+        return fleetRegistry.cheapest(hubId, "drone");
     }
 
-    // 找最快的（这里 max 用 reverseOrder 或直接调整比较器）
+    // 找最快的
     public Optional<RobotEntity> findFastestRobot(String hubId) {
-        return findBestBy(hubId, "robot", Comparator.comparingDouble(RobotEntity::getSpeed).reversed());
+        return fleetRegistry.fastest(hubId, "robot");
     }
 
     public Optional<RobotEntity> findFastestDrone(String hubId) {
-        return findBestBy(hubId, "drone", Comparator.comparingDouble(RobotEntity::getSpeed).reversed());
+        return fleetRegistry.fastest(hubId, "drone");
     }
 
     // 根据订单ID更新机器人位置 - 这个方法需要和RouteService配合
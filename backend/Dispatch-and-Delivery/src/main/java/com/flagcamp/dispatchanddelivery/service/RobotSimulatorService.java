@@ -1,119 +1,786 @@
 package com.flagcamp.dispatchanddelivery.service;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.flagcamp.dispatchanddelivery.dispatch.TourStop;
 import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.FleetRegistry;
+import com.flagcamp.dispatchanddelivery.manager.MissionShards;
+import com.flagcamp.dispatchanddelivery.manager.MissionStore;
+import com.flagcamp.dispatchanddelivery.manager.NodeIdentity;
+import com.flagcamp.dispatchanddelivery.manager.PositionStore;
+import com.flagcamp.dispatchanddelivery.manager.RobotReservationManager;
 import com.flagcamp.dispatchanddelivery.manager.RobotSignalManager;
+import com.flagcamp.dispatchanddelivery.manager.TrackingHub;
+import com.flagcamp.dispatchanddelivery.model.enums.MissionState;
 import com.flagcamp.dispatchanddelivery.model.event.RobotArrivedEvent;
+import com.flagcamp.dispatchanddelivery.model.response.MissionStatsResponse;
 import com.flagcamp.dispatchanddelivery.repository.RobotRepository;
-import com.google.maps.model.LatLng;
+import com.flagcamp.dispatchanddelivery.routing.RouteIndex;
+import com.flagcamp.dispatchanddelivery.simulation.SimulationClock;
 
+/**
+ * Mission engine of the robot simulator.
+ *
+ * A mission is a plain state object: a {@link MissionState} (TO_PICKUP → WAIT_PICKUP →
+ * TO_DROPOFF → WAIT_DROPOFF → … → RETURNING), the current leg and the leg start time.
+ * One scheduled tick walks every active mission once: moving robots get their position
+ * from the elapsed time, robots that reach a stop publish a RobotArrivedEvent and start
+ * waiting for the user's confirmation. The tick's side effects are batched: positions go
+ * to {@link PositionStore}, which flushes them in bulk, freed robots are released with one
+ * load + saveAll, and arrival events are published last.
+ *
+ * Threads: starting a mission and confirming a pickup / delivery only enqueue; all
+ * mission state is touched by the tick thread alone, so it needs no locking and the
+ * number of threads doesn't grow with the number of missions. A waiting robot is just a
+ * continuation in {@link RobotSignalManager}; the tick only walks moving missions. A
+ * confirmation window that expires ends the mission and makes the robot available again.
+ *
+ * Every active order also has a published {@link Track} (leg, speed, leg start, waiting), so
+ * {@link #estimatePosition} can dead-reckon the position at read time. With
+ * {@code dispatch.tracking.dead-reckoning=true} the tick stops recording positions while robots
+ * move and only writes them at arrivals, so writes scale with events instead of time × fleet.
+ *
+ * Orders with live tracking viewers get one {@link TrackingHub.Fix} per tick, computed the
+ * same way; {@link TrackingHub} turns changes into frames for the viewers.
+ *
+ * Mission time comes from {@link SimulationClock}; in simulation mode the scheduled tick is
+ * off and the load driver calls {@link #step()} at virtual tick times instead.
+ *
+ * Every state change is checkpointed to {@link MissionStore} (batched per tick), so missions
+ * survive a restart: on the first tick all stored missions are loaded in one pipelined pass and
+ * resumed from their recorded leg start times, with waiting robots re-registered for what is left
+ * of their confirmation window and their robots marked unavailable again. The store is always
+ * written ahead of the robot rows: a mission is stored before its robot is marked unavailable,
+ * and stored as RETURNING before its robot is made available, then deleted; a crash in between
+ * is repaired by recovery. The same recovery runs per shard with
+ * {@code dispatch.shards.enabled=true}, where missions are partitioned by robot and this node only
+ * runs the shards it leases ({@link MissionShards}): when a shard moves (scale-out, or a node
+ * dies and its leases run out) the new owner rebuilds its missions the same way. A mission
+ * started here for a shard owned elsewhere is handed to the owner. Simulation mode doesn't
+ * checkpoint: virtual time means nothing after a restart.
+ */
 @Service
-//模拟机器人线程
+//模拟机器人：所有任务由一个定时tick推进，不再每个机器人占一个线程
 public class RobotSimulatorService {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(RobotSimulatorService.class);
     private final RobotSignalManager signalManager;
-    private final RouteService routeService; 
+    private final RouteService routeService;
     private final ApplicationEventPublisher publisher; // 通知服务
     private final RobotRepository robotRepository;
+    private final FleetRegistry fleetRegistry; // 可用机器人内存索引
+    private final RobotReservationManager reservationManager;
+    private final SimulationClock clock;
+    private final PositionStore positionStore;
+    private final long signalTimeoutNanos;
+    private final boolean deadReckoning;
+    private final MissionShards shards;
+    private final MissionStore missionStore;
+    private final TrackingHub trackingHub;
+    private final String nodeId;
+    // checkpoints are written unless the clock is virtual
+    private final boolean durable;
+
+    //新启动的任务和收到的确认信号，由tick线程取出处理
+    private final Queue<Mission> starting = new ConcurrentLinkedQueue<>();
+    private final Queue<Signal> signals = new ConcurrentLinkedQueue<>();
+    //只在step()中访问
+    private final List<Mission> missions = new ArrayList<>();
+    //key: robotId，本节点运行的全部任务（移动中和等待中），只在step()中访问
+    private final Map<String, Mission> byRobot = new HashMap<>();
+    //本次tick要写入MissionStore的状态变化，只在step()中访问
+    private final Map<String, MissionStore.Checkpoint> missionSaves = new HashMap<>();
+    private final Set<String> missionEnds = new LinkedHashSet<>();
+    //没能释放的机器人（检查点或数据库写失败），下次tick重试，只在step()中访问
+    private final Set<String> pendingReleases = new LinkedHashSet<>();
+    //key: orderId，进行中订单当前所在的路段，供读取时推算位置（tick线程写，请求线程读）
+    private final Map<String, Track> tracks = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeMissions = new AtomicInteger();
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private volatile long lastTickMicros;
+    private volatile long maxTickMicros;
+    private volatile int lastTickPositionWrites;
 
     public RobotSimulatorService(RobotSignalManager signalManager, RouteService routeService,
         ApplicationEventPublisher publisher,
-        RobotRepository robotRepository) {
+        RobotRepository robotRepository,
+        FleetRegistry fleetRegistry,
+        RobotReservationManager reservationManager,
+        SimulationClock clock,
+        PositionStore positionStore,
+        MissionShards shards,
+        MissionStore missionStore,
+        NodeIdentity node,
+        TrackingHub trackingHub,
+        @Value("${dispatch.mission.signal-timeout-seconds:43200}") long signalTimeoutSeconds,
+        @Value("${dispatch.tracking.dead-reckoning:false}") boolean deadReckoning) {
         this.signalManager = signalManager;
         this.routeService = routeService;
         this.publisher = publisher;
         this.robotRepository = robotRepository;
+        this.fleetRegistry = fleetRegistry;
+        this.reservationManager = reservationManager;
+        this.clock = clock;
+        this.positionStore = positionStore;
+        this.signalTimeoutNanos = TimeUnit.SECONDS.toNanos(signalTimeoutSeconds);
+        this.deadReckoning = deadReckoning;
+        this.shards = shards;
+        this.missionStore = missionStore;
+        this.nodeId = node.id();
+        this.trackingHub = trackingHub;
+        this.durable = !clock.isVirtual();
+        if (shards.enabled() && clock.isVirtual()) {
+            // stored missions use epoch times, which a virtual clock doesn't follow
+            throw new IllegalStateException("dispatch.shards.enabled can't be combined with dispatch.simulation.enabled");
+        }
     }
 
-    @Async
+    /**
+     * Starts a single-order mission: hub → pickup, wait for pickup confirmation,
+     * pickup → drop-off, wait for delivery confirmation. Returns once the robot is marked
+     * unavailable; the movement itself is driven by {@link #tick()}.
+     */
     public void startRobotMission(String orderId, String robotId) {
+        RouteService.RouteGeometry geometry = routeService.getRouteGeometry(orderId);
+        List<Leg> legs = List.of(
+            new Leg(orderId, true, geometry.hubToPickup(), geometry.hubToPickupDistance()),
+            new Leg(orderId, false, geometry.pickupToEnd(), geometry.pickupToEndDistance())
+        );
+        List<MissionStore.LegRecord> plan = null;
+        if (durable) {
+            plan = List.of(
+                new MissionStore.LegRecord(orderId, true, geometry.hubToPickup().encode(), geometry.hubToPickupDistance()),
+                new MissionStore.LegRecord(orderId, false, geometry.pickupToEnd().encode(), geometry.pickupToEndDistance())
+            );
+        }
+        start(robotId, legs, plan, orderId);
+    }
+
+    /**
+     * Starts a multi-stop mission: the robot visits the stops in order, waiting for the user's
+     * pickup / delivery confirmation at each one, and becomes available after the last drop-off.
+     * Every order still on the tour gets the robot's position on each tick.
+     *
+     * @param leaseOrderId order id the robot's reservation lease was taken under
+     */
+    public void startTourMission(String robotId, List<TourStop> stops, String leaseOrderId) {
+        List<Leg> legs = new ArrayList<>(stops.size());
+        List<MissionStore.LegRecord> plan = new ArrayList<>(stops.size());
+        for (TourStop stop : stops) {
+            legs.add(new Leg(stop.orderId(), stop.pickup(),
+                RouteIndex.decode(stop.leg().encodedPolyline()), stop.leg().distance()));
+            plan.add(new MissionStore.LegRecord(stop.orderId(), stop.pickup(), stop.leg().encodedPolyline(), stop.leg().distance()));
+        }
+        start(robotId, legs, durable ? plan : null, leaseOrderId);
+    }
+
+    // plan: the legs as stored, null when missions aren't checkpointed
+    private void start(String robotId, List<Leg> legs, List<MissionStore.LegRecord> plan, String leaseOrderId) {
+        //找到机器人,速度
+        RobotEntity robot = robotRepository.findById(robotId)
+            .orElseThrow(()-> new NoSuchElementException("Robot not found"));
+        if (!robot.isAvailable()) {
+            // 已在执行别的任务：不能再起一个任务覆盖它，本订单的租约也就没用了
+            reservationManager.release(robotId, leaseOrderId);
+            throw new IllegalStateException("Robot " + robotId + " is not available");
+        }
+
+        Mission mission = new Mission(robotId, robot.getSpeed(), legs, clock.nanoTime(), shards.shardOf(robotId));
+        if (durable) {
+            // stored before the robot is marked busy: after a crash from here on recovery resumes it and marks the robot
+            missionStore.start(new MissionStore.MissionPlan(mission.speed, plan), checkpoint(mission));
+        }
+
+        //机器人开始任务，设置为不可用
+        robot.setAvailable(false);
         try {
-            //找到机器人,速度
-            RobotEntity robot = robotRepository.findById(robotId)
-                .orElseThrow(()-> new NoSuchElementException("Robot not found"));         
-            double speed = robot.getSpeed();
-            
-            //机器人开始任务，设置为不可用
-            robot.setAvailable(false);
-            robotRepository.save(robot);
-
-            // //计算已经过去的时间
-            // Instant timeNow = Instant.now();
-            // int hasElapsed = (int) Duration.between(submitTime, timeNow).toSeconds();
-
-            //走
-            simulateMovement(orderId, robotId, speed, 0, true);
-            
-            //到了，发布消息，机器人线程休眠
-            logger.info("Robot {} arrived at PICKUP location for order {}, publishing RobotArrivedEvent", robotId, orderId);
-            publisher.publishEvent(new RobotArrivedEvent(orderId, "PICKUP"));
-            logger.info("RobotArrivedEvent published, now calling signalManager.awaitPickup...");
-            signalManager.awaitPickup(orderId);
-            
-            //出发去deliver
-            logger.info("User confirmed pickup, robot {} resuming to delivery location for order {}", robotId, orderId);
-            simulateMovement(orderId, robotId, speed, 0, false);
-
-            //到了，发布消息，机器人线程休眠
-            logger.info("Robot {} arrived at DELIVERY location for order {}, publishing RobotArrivedEvent", robotId, orderId);
-            publisher.publishEvent(new RobotArrivedEvent(orderId, "DELIVERED"));
-            logger.info("RobotArrivedEvent published, now calling signalManager.awaitDeliver...");
-            signalManager.awaitDeliver(orderId);
-
-            //机器人结束订单回家，设置为可用
-            robot.setAvailable(true);
-            robotRepository.save(robot);
-            
-        } catch (NoSuchElementException e) {
-            logger.error("Robot not found for orderId: {}, robotId: {}", orderId, robotId, e);
-        } catch (InterruptedException e) {
-            logger.warn("Robot mission interrupted for orderId: {}", orderId, e);
-            Thread.currentThread().interrupt(); // 恢复中断状态
-        }
-
-    }
-
-    public boolean simulateMovement(String orderId, String robotId, double speed, int hasElapsed, 
-        boolean pickup) throws InterruptedException{
-        
-        boolean arrived = false;
-        
-        //5秒算一次
-        int intervalSeconds = 5;
-        int currentElapsed = hasElapsed;
-
-        logger.info("Starting movement simulation for order {}, pickup={}, speed={} km/h", 
-            orderId, pickup, speed);
-
-        while(!arrived){
-            Thread.sleep(intervalSeconds * 1000);
-            currentElapsed += intervalSeconds;
-            //计算出现在位置,写入robot.
-            RouteService.PositionResult result = routeService.computeAndStorePosition(orderId, speed, currentElapsed, pickup);
-            LatLng position = result.getCurrentPosition();
-            arrived = result.isArrived();
-            
-            logger.info("Movement update for order {}: elapsed={}s, position=({}, {}), arrived={}", 
-                orderId, currentElapsed, position.lat, position.lng, arrived);
-            
-            RobotEntity robot = robotRepository.findById(robotId).get();
-            robot.setCurrentLat(position.lat);
-            robot.setCurrentLng(position.lng);
-            robotRepository.save(robot);
-            
-            if (arrived) {
-                logger.info("Robot arrived! Breaking movement loop for order {}", orderId);
-            }
-        }
-        
-        logger.info("Movement completed for order {}, pickup={}", orderId, pickup);
-        return arrived;
+            fleetRegistry.update(robotRepository.save(robot));
+        } catch (RuntimeException e) {
+            if (durable) {
+                // the robot stays available, so the stored mission must not be resumed
+                missionStore.discard(robotId);
+            }
+            throw e;
+        }
+        //数据库已标记不可用，释放submit时的租约
+        reservationManager.release(robotId, leaseOrderId);
+
+        if (durable) {
+            if (!shards.owns(mission.shard)) {
+                String owner = shards.ownerOf(mission.shard);
+                // no owner (or this node, giving the shard back): the next owner loads it from the shard
+                if (owner != null && !owner.equals(nodeId)) {
+                    missionStore.handOff(owner, robotId);
+                }
+                logger.info("Robot {} started a {}-leg mission in shard {}, run by node {}", robotId, legs.size(), mission.shard, owner);
+                return;
+            }
+        }
+        publishTrack(mission);
+        starting.add(mission);
+        logger.info("Robot {} started a {}-leg mission", robotId, legs.size());
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.mission.tick-ms:5000}")
+    public void tick() {
+        if (!clock.isVirtual()) {
+            step();
+        }
+    }
+
+    /**
+     * Advances every mission to the clock's current time. Called by {@link #tick()}, or by the
+     * load driver in simulation mode.
+     */
+    public synchronized void step() {
+        long wallStart = System.nanoTime();
+        long start = clock.nanoTime();
+
+        //本次tick的副作用，pass结束后统一写出
+        Map<String, double[]> robotPositions = new HashMap<>();
+        Map<String, double[]> orderPositions = new HashMap<>();
+        Set<String> freedRobots = new LinkedHashSet<>(pendingReleases);
+        List<RobotArrivedEvent> arrivals = new ArrayList<>();
+        pendingReleases.clear();
+
+        if (durable) {
+            syncShards(start, freedRobots);
+        }
+        Mission mission;
+        while ((mission = starting.poll()) != null) {
+            // the shard moved away after the mission was queued; its new owner has it from the store
+            if (!shards.owns(mission.shard)) {
+                tracks.keySet().removeAll(mission.activeOrders);
+                continue;
+            }
+            missions.add(mission);
+            byRobot.put(mission.robotId, mission);
+            activeMissions.incrementAndGet();
+        }
+
+        // expired confirmation windows land in the signal queue like confirmations do
+        signalManager.expire(start);
+        Signal signal;
+        while ((signal = signals.poll()) != null) {
+            Mission m = signal.mission();
+            // stale: the mission already moved past this stop, or to another node
+            if (m.detached || !m.state.waiting() || m.legIndex != signal.legIndex()) {
+                continue;
+            }
+            if (signal.outcome() == RobotSignalManager.Outcome.TIMED_OUT) {
+                abandon(m, freedRobots);
+                continue;
+            }
+            if (m.legIndex + 1 < m.legs.size()) {
+                m.legIndex++;
+                m.legStartNanos = start;
+                m.moveTo(MissionState.driving(m.legs.get(m.legIndex).pickup()));
+                publishTrack(m);
+                missions.add(m);
+                recordTransition(m);
+            } else {
+                finish(m, freedRobots);
+            }
+        }
+
+        // only moving missions are walked; waiting ones live in the signal manager until resumed
+        int kept = 0;
+        double[] position = new double[2];
+        for (int i = 0; i < missions.size(); i++) {
+            Mission m = missions.get(i);
+            if (m.detached) {
+                continue;
+            }
+            if (!advance(m, start, position, robotPositions, orderPositions, freedRobots, arrivals)) {
+                missions.set(kept++, m);
+            }
+        }
+        missions.subList(kept, missions.size()).clear();
+
+        // RETURNING checkpoints first: a robot is only freed once its mission can't be resumed
+        if (durable && !writeMissions()) {
+            pendingReleases.addAll(freedRobots);
+            freedRobots.clear();
+        }
+        flush(robotPositions, orderPositions, freedRobots, arrivals);
+        if (durable) {
+            endMissions();
+        }
+        if (trackingHub.hasViewers()) {
+            publishFixes(start);
+        }
+
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - wallStart);
+        ticks.incrementAndGet();
+        lastTickMicros = micros;
+        maxTickMicros = Math.max(maxTickMicros, micros);
+        lastTickPositionWrites = robotPositions.size() + orderPositions.size();
+        if (micros > 1_000_000) {
+            logger.warn("Mission tick took {} ms for {} moving missions", micros / 1000, missions.size());
+        }
+    }
+
+    // 推进一个移动中的任务；返回true表示到站（开始等待或已结束），不再参与移动
+    private boolean advance(Mission m, long now, double[] position,
+                            Map<String, double[]> robotPositions, Map<String, double[]> orderPositions,
+                            Set<String> freedRobots, List<RobotArrivedEvent> arrivals) {
+        Leg leg = m.legs.get(m.legIndex);
+        double progressRatio = progress(leg, m.speed, now - m.legStartNanos);
+        boolean arrived = progressRatio >= 1.0;
+
+        // dead reckoning: positions on the way are computed on read, only the stop is written
+        if (arrived || !deadReckoning) {
+            leg.path().positionAt(progressRatio, position);
+            double[] latLng = {position[0], position[1]};
+            robotPositions.put(m.robotId, latLng);
+            for (String orderId : m.activeOrders) {
+                orderPositions.put(orderId, latLng);
+            }
+        }
+        if (!arrived) {
+            return false;
+        }
+
+        //到了，发布消息，等待用户确认
+        String orderId = leg.orderId();
+        logger.info("Robot {} arrived at {} location for order {}", m.robotId, leg.pickup() ? "PICKUP" : "DELIVERY", orderId);
+        arrivals.add(new RobotArrivedEvent(orderId, leg.pickup() ? "PICKUP" : "DELIVERED"));
+        if (!leg.pickup()) {
+            // delivered orders stop receiving positions; the geometry goes once the user confirms
+            m.activeOrders.remove(orderId);
+            tracks.remove(orderId);
+        }
+        if (awaitConfirmation(m, now + signalTimeoutNanos, freedRobots)) {
+            recordTransition(m);
+        }
+        return true;
+    }
+
+    // 到站后等待确认；注册失败时任务结束，返回false
+    private boolean awaitConfirmation(Mission m, long deadline, Set<String> freedRobots) {
+        Leg leg = m.legs.get(m.legIndex);
+        m.moveTo(MissionState.waitingAt(leg.pickup()));
+        m.deadlineNanos = deadline;
+        publishTrack(m);
+        int legIndex = m.legIndex;
+        // continuation only enqueues; the mission resumes on the next step
+        Consumer<RobotSignalManager.Outcome> resume = outcome -> signals.add(new Signal(m, legIndex, outcome));
+        boolean registered = leg.pickup()
+            ? signalManager.awaitPickup(leg.orderId(), deadline, resume)
+            : signalManager.awaitDeliver(leg.orderId(), deadline, resume);
+        if (!registered) {
+            abandon(m, freedRobots);
+        }
+        return registered;
+    }
+
+    // 确认超时：任务结束，机器人回到可用状态
+    private void abandon(Mission m, Set<String> freedRobots) {
+        Leg leg = m.legs.get(m.legIndex);
+        logger.error("Order {} {} was not confirmed in time, robot {} ends its mission and becomes available",
+            leg.orderId(), leg.pickup() ? "pickup" : "delivery", m.robotId);
+        timedOut.incrementAndGet();
+        release(m, freedRobots);
+    }
+
+    private void finish(Mission m, Set<String> freedRobots) {
+        completed.incrementAndGet();
+        release(m, freedRobots);
+    }
+
+    private void release(Mission m, Set<String> freedRobots) {
+        //机器人结束订单回家，设置为可用（模拟里没有回程，RETURNING当场结束）
+        m.moveTo(MissionState.RETURNING);
+        freedRobots.add(m.robotId);
+        for (Leg leg : m.legs) {
+            routeService.evictRouteGeometry(leg.orderId());
+            tracks.remove(leg.orderId());
+        }
+        byRobot.remove(m.robotId);
+        activeMissions.decrementAndGet();
+        recordTransition(m);
+    }
+
+    // 放弃的分片先卸下；新拿到的分片（单节点时为启动恢复）和别的节点转来的任务从MissionStore载入
+    private void syncShards(long now, Set<String> freedRobots) {
+        shards.drainLost(this::detach);
+        try {
+            shards.drainGained(shardIds -> {
+                long loadStart = System.nanoTime();
+                int adopted = adopt(missionStore.load(shardIds), now, freedRobots);
+                if (adopted > 0) {
+                    logger.info("Node {} resumed {} missions of {} shards in {} ms", nodeId, adopted, shardIds.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart));
+                }
+            });
+            if (shards.enabled()) {
+                adopt(missionStore.takeHandOffs(nodeId), now, freedRobots);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to load stored missions", e);
+        }
+    }
+
+    // 从检查点重建任务：按记录的路段开始时间继续，等待中的重新注册剩余的确认窗口
+    private int adopt(List<MissionStore.StoredMission> stored, long now, Set<String> freedRobots) {
+        long nowMillis = System.currentTimeMillis();
+        int adopted = 0;
+        //key: robotId, value: 占用机器人时租约用的orderId
+        Map<String, String> resumedRobots = new LinkedHashMap<>();
+        for (MissionStore.StoredMission entry : stored) {
+            MissionStore.Checkpoint checkpoint = entry.checkpoint();
+            List<MissionStore.LegRecord> plan = entry.plan().legs();
+            int shard = shards.shardOf(checkpoint.robotId());
+            if (!shards.owns(shard) || byRobot.containsKey(checkpoint.robotId())) {
+                continue;
+            }
+            if (checkpoint.state() == MissionState.RETURNING) {
+                // finished: only the robot's release is left
+                freedRobots.add(checkpoint.robotId());
+                continue;
+            }
+            if (checkpoint.legIndex() < 0 || checkpoint.legIndex() >= plan.size()) {
+                logger.error("Mission of robot {} has no leg {}, ending it", checkpoint.robotId(), checkpoint.legIndex());
+                missionSaves.put(checkpoint.robotId(), new MissionStore.Checkpoint(checkpoint.robotId(),
+                    MissionState.RETURNING, checkpoint.legIndex(), checkpoint.legStartMillis(), 0));
+                freedRobots.add(checkpoint.robotId());
+                continue;
+            }
+            List<Leg> legs = new ArrayList<>(plan.size());
+            for (MissionStore.LegRecord leg : plan) {
+                // decoded when the robot gets to it: recovery only pays for the current legs
+                legs.add(new Leg(leg.orderId(), leg.pickup(), leg.polyline(), leg.distance()));
+            }
+            long legStart = now - TimeUnit.MILLISECONDS.toNanos(nowMillis - checkpoint.legStartMillis());
+            Mission m = new Mission(checkpoint.robotId(), entry.plan().speed(), legs, legStart, shard);
+            m.legIndex = checkpoint.legIndex();
+            m.state = MissionState.driving(legs.get(m.legIndex).pickup());
+            // orders dropped off before this point no longer get positions
+            for (int i = 0; i < m.legIndex; i++) {
+                if (!legs.get(i).pickup()) {
+                    m.activeOrders.remove(legs.get(i).orderId());
+                }
+            }
+            byRobot.put(m.robotId, m);
+            activeMissions.incrementAndGet();
+            adopted++;
+            resumedRobots.put(m.robotId, legs.get(m.legIndex).orderId());
+            if (checkpoint.state().waiting()) {
+                Leg leg = legs.get(m.legIndex);
+                if (!leg.pickup()) {
+                    m.activeOrders.remove(leg.orderId());
+                }
+                // an already expired window times out on this tick
+                awaitConfirmation(m, now + TimeUnit.MILLISECONDS.toNanos(checkpoint.deadlineMillis() - nowMillis), freedRobots);
+            } else {
+                publishTrack(m);
+                missions.add(m);
+            }
+        }
+        occupy(resumedRobots);
+        return adopted;
+    }
+
+    // 恢复的任务的机器人重新标记为不可用：和start()一样，先占租约，写库后释放
+    private void occupy(Map<String, String> leases) {
+        if (leases.isEmpty()) {
+            return;
+        }
+        leases.forEach((robotId, orderId) -> {
+            if (!reservationManager.tryReserve(robotId, orderId)) {
+                logger.warn("Robot {} of a resumed mission is reserved by another order", robotId);
+            }
+        });
+        try {
+            List<RobotEntity> robots = robotRepository.findAllById(leases.keySet());
+            for (RobotEntity robot : robots) {
+                robot.setAvailable(false);
+            }
+            for (RobotEntity saved : robotRepository.saveAll(robots)) {
+                fleetRegistry.update(saved);
+            }
+            leases.forEach(reservationManager::release);
+        } catch (Exception e) {
+            // the leases keep submits off these robots until they expire
+            logger.error("Failed to mark {} robots of resumed missions unavailable", leases.size(), e);
+        }
+    }
+
+    private void detach(int shard) {
+        int detached = 0;
+        for (Iterator<Mission> it = byRobot.values().iterator(); it.hasNext(); ) {
+            Mission m = it.next();
+            if (m.shard != shard) {
+                continue;
+            }
+            it.remove();
+            // dropped from the moving list on this tick's walk, signals for it are ignored
+            m.detached = true;
+            if (m.state.waiting()) {
+                signalManager.drop(m.legs.get(m.legIndex).orderId());
+            }
+            for (Leg leg : m.legs) {
+                routeService.evictRouteGeometry(leg.orderId());
+                tracks.remove(leg.orderId());
+            }
+            activeMissions.decrementAndGet();
+            detached++;
+        }
+        logger.info("Node {} detached {} missions of shard {}", nodeId, detached, shard);
+        shards.detached(shard);
+    }
+
+    private void recordTransition(Mission m) {
+        if (durable) {
+            missionSaves.put(m.robotId, checkpoint(m));
+        }
+    }
+
+    // 返回false时检查点保留到下次tick重试
+    private boolean writeMissions() {
+        try {
+            missionStore.write(missionSaves.values());
+        } catch (Exception e) {
+            logger.error("Failed to store {} mission checkpoints, retrying on the next tick", missionSaves.size(), e);
+            return false;
+        }
+        missionSaves.clear();
+        return true;
+    }
+
+    // 机器人已可用的任务从MissionStore删除；失败时留下的RETURNING检查点由恢复处理
+    private void endMissions() {
+        try {
+            missionStore.end(missionEnds);
+        } catch (Exception e) {
+            logger.error("Failed to delete {} finished missions", missionEnds.size(), e);
+        }
+        missionEnds.clear();
+    }
+
+    // 引擎时钟换算成epoch毫秒
+    private MissionStore.Checkpoint checkpoint(Mission m) {
+        long now = clock.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        return new MissionStore.Checkpoint(m.robotId, m.state, m.legIndex,
+            nowMillis - TimeUnit.NANOSECONDS.toMillis(now - m.legStartNanos),
+            m.state.waiting() ? nowMillis + TimeUnit.NANOSECONDS.toMillis(m.deadlineNanos - now) : 0);
+    }
+
+    private void flush(Map<String, double[]> robotPositions, Map<String, double[]> orderPositions,
+                       Set<String> freedRobots, List<RobotArrivedEvent> arrivals) {
+        //位置交给PositionStore批量写出（Redis pipeline + JDBC batch）
+        orderPositions.forEach((orderId, latLng) -> positionStore.orderPosition(orderId, latLng[0], latLng[1]));
+        robotPositions.forEach((robotId, latLng) -> positionStore.robotPosition(robotId, latLng[0], latLng[1]));
+
+        if (!freedRobots.isEmpty()) {
+            try {
+                List<RobotEntity> robots = robotRepository.findAllById(freedRobots);
+                for (RobotEntity robot : robots) {
+                    robot.setAvailable(true);
+                }
+                for (RobotEntity saved : robotRepository.saveAll(robots)) {
+                    fleetRegistry.update(saved);
+                }
+                if (durable) {
+                    missionEnds.addAll(freedRobots);
+                }
+            } catch (Exception e) {
+                logger.error("Failed to release {} robots, retrying on the next tick", freedRobots.size(), e);
+                pendingReleases.addAll(freedRobots);
+            }
+        }
+
+        for (RobotArrivedEvent arrival : arrivals) {
+            publisher.publishEvent(arrival);
+        }
+    }
+
+    /**
+     * Where the robot carrying the order is right now, computed from the mission's current
+     * leg, speed and leg start time. Empty if the order has no mission on this node (not
+     * started, delivered, or timed out); callers then fall back to the stored position.
+     */
+    public Optional<double[]> estimatePosition(String orderId) {
+        Track track = tracks.get(orderId);
+        if (track == null) {
+            return Optional.empty();
+        }
+        return Optional.of(position(track, clock.nanoTime()));
+    }
+
+    private static double[] position(Track track, long now) {
+        double progressRatio = track.waiting() ? 1.0 : progress(track.leg(), track.speed(), now - track.legStartNanos());
+        double[] position = new double[2];
+        track.leg().path().positionAt(progressRatio, position);
+        return position;
+    }
+
+    // 被观看的订单：本节点运行的任务按路段推算位置，交给TrackingHub推送
+    private void publishFixes(long now) {
+        Map<String, TrackingHub.Fix> fixes = new HashMap<>();
+        for (String orderId : trackingHub.watchedOrders()) {
+            Track track = tracks.get(orderId);
+            if (track != null) {
+                double[] position = position(track, now);
+                fixes.put(orderId, new TrackingHub.Fix(position[0], position[1], track.state()));
+            }
+        }
+        trackingHub.publish(fixes);
+    }
+
+    // 当前路段的状态对每个未送达订单可见
+    private void publishTrack(Mission m) {
+        Track track = new Track(m.legs.get(m.legIndex), m.speed, m.legStartNanos, m.state.waiting());
+        for (String orderId : m.activeOrders) {
+            tracks.put(orderId, track);
+        }
+    }
+
+    // speed is km/h, elapsed is in nanoseconds, distance is in meters
+    private static double progress(Leg leg, double speed, long elapsedNanos) {
+        if (leg.distance() <= 0 || leg.path().size() == 1) {
+            return 1.0;
+        }
+        double elapsed = elapsedNanos / 1e9;
+        return Math.min(1.0, (speed * 1000 * elapsed) / (3600 * leg.distance()));
+    }
+
+    public MissionStatsResponse stats() {
+        return new MissionStatsResponse(
+            activeMissions.get(),
+            signalManager.waitingCount(),
+            ticks.get(),
+            completed.get(),
+            timedOut.get(),
+            lastTickMicros,
+            maxTickMicros,
+            lastTickPositionWrites,
+            positionStore.robotWrites(),
+            positionStore.routeWrites(),
+            shards.ownedCount(),
+            shards.liveNodes(),
+            trackingHub.viewerCount(),
+            trackingHub.framesBuilt(),
+            trackingHub.messagesSent(),
+            trackingHub.bytesSent()
+        );
+    }
+
+    // 一段路线：走到终点后等待该订单的pickup或deliver确认
+    private static final class Leg {
+        private final String orderId;
+        private final boolean pickup;
+        private final long distance;
+        // encoded path of a recovered leg, decoded on first use
+        private final String polyline;
+        private volatile RouteIndex path;
+
+        Leg(String orderId, boolean pickup, RouteIndex path, long distance) {
+            this(orderId, pickup, null, path, distance);
+        }
+
+        Leg(String orderId, boolean pickup, String polyline, long distance) {
+            this(orderId, pickup, polyline, null, distance);
+        }
+
+        private Leg(String orderId, boolean pickup, String polyline, RouteIndex path, long distance) {
+            this.orderId = orderId;
+            this.pickup = pickup;
+            this.polyline = polyline;
+            this.path = path;
+            this.distance = distance;
+        }
+
+        String orderId() {
+            return orderId;
+        }
+
+        boolean pickup() {
+            return pickup;
+        }
+
+        long distance() {
+            return distance;
+        }
+
+        // RouteIndex is immutable, so a duplicate decode from a reading thread is harmless
+        RouteIndex path() {
+            RouteIndex decoded = path;
+            if (decoded == null) {
+                decoded = RouteIndex.decode(polyline);
+                path = decoded;
+            }
+            return decoded;
+        }
+    }
+
+    private record Signal(Mission mission, int legIndex, RobotSignalManager.Outcome outcome) {}
+
+    // 不可变快照，请求线程据此推算位置
+    private record Track(Leg leg, double speed, long legStartNanos, boolean waiting) {
+        MissionState state() {
+            return waiting ? MissionState.waitingAt(leg.pickup()) : MissionState.driving(leg.pickup());
+        }
+    }
+
+    private static final class Mission {
+        final String robotId;
+        final double speed;
+        final List<Leg> legs;
+        final int shard;
+        //还没送达的订单，每次更新位置都要写入
+        final Set<String> activeOrders = new LinkedHashSet<>();
+        int legIndex;
+        MissionState state;
+        long legStartNanos;
+        long deadlineNanos;
+        //分片已移交给其他节点
+        boolean detached;
+
+        Mission(String robotId, double speed, List<Leg> legs, long startNanos, int shard) {
+            this.robotId = robotId;
+            this.speed = speed;
+            this.legs = legs;
+            this.shard = shard;
+            this.legStartNanos = startNanos;
+            this.state = MissionState.driving(legs.get(0).pickup());
+            for (Leg leg : legs) {
+                activeOrders.add(leg.orderId());
+            }
+        }
+
+        void moveTo(MissionState next) {
+            if (!state.canMoveTo(next)) {
+                throw new IllegalStateException("Mission of robot " + robotId + " can't go from " + state + " to " + next);
+            }
+            state = next;
+        }
     }
 }
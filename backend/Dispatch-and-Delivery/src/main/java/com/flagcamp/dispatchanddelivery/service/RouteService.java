@@ -1,136 +1,206 @@
 package com.flagcamp.dispatchanddelivery.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.flagcamp.dispatchanddelivery.client.GoogleMapsClient;
+import com.flagcamp.dispatchanddelivery.client.RoutingProvider;
 import com.flagcamp.dispatchanddelivery.entity.RouteEntity;
+import com.flagcamp.dispatchanddelivery.manager.PositionStore;
+import com.flagcamp.dispatchanddelivery.manager.RouteCache;
 import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
 import com.flagcamp.dispatchanddelivery.repository.RouteRepository;
-import com.google.maps.internal.PolylineEncoding;
-import com.google.maps.model.DirectionsResult;
-import com.google.maps.model.DirectionsRoute;
-import com.google.maps.model.LatLng;
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import com.flagcamp.dispatchanddelivery.routing.PolylineCodec;
+import com.flagcamp.dispatchanddelivery.routing.PolylineSimplifier;
+import com.flagcamp.dispatchanddelivery.routing.RouteIndex;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class RouteService {
     private static final Logger logger = LoggerFactory.getLogger(RouteService.class);
     
     private final RouteRepository routeRepository;
-    private final GoogleMapsClient googleMapsClient;
+    private final RoutingProvider routingProvider;
+    private final RouteCache routeCache;
+    private final PositionStore positionStore;
+    // tolerance applied to polylines before they are stored, 0 = store verbatim
+    private final double storageToleranceMeters;
+    // extra level-of-detail tolerances, ascending
+    private final double[] levelToleranceMeters;
 
-   
+    //key: orderId, 每个订单两段路径的解码结果，避免每个tick重新解码polyline
+    private final Map<String, RouteGeometry> routeGeometries = new ConcurrentHashMap<>();
 
     public RouteService(RouteRepository routeRepository, 
-                       GoogleMapsClient googleMapsClient) {
+                       RoutingProvider routingProvider,
+                       RouteCache routeCache,
+                       PositionStore positionStore,
+                       @Value("${dispatch.route-simplify.storage-tolerance-meters:1}") double storageToleranceMeters,
+                       @Value("${dispatch.route-simplify.levels-meters:5,20,80}") double[] levelToleranceMeters) {
         this.routeRepository = routeRepository;
-        this.googleMapsClient = googleMapsClient;
+        this.routingProvider = routingProvider;
+        this.routeCache = routeCache;
+        this.positionStore = positionStore;
+        this.storageToleranceMeters = storageToleranceMeters;
+        this.levelToleranceMeters = levelToleranceMeters.clone();
+        Arrays.sort(this.levelToleranceMeters);
     }
 
     /**
      * Computes routes between two geographic coordinates.
      * Returns a list containing two routes:
-     * 1. Robot route: Uses Google Maps Directions API to get the road-based route
+     * 1. Robot route: Uses the configured RoutingProvider (Google Maps Directions API or local road graph)
      * 2. Drone route: Direct straight-line route between start and end locations
+     * Results are served from {@link RouteCache} when the same (grid-snapped) corridor was computed recently,
+     * and concurrent identical requests share a single routing provider call.
      * 
      * @param fromLat Starting point latitude in decimal degrees
      * @param fromLng Starting point longitude in decimal degrees
      * @param toLat Destination point latitude in decimal degrees
      * @param toLng Destination point longitude in decimal degrees
      * @return List of RouteDTO objects: [0] robot route (road-based), [1] drone route (straight-line)
-     * @throws RuntimeException if Google Maps API call fails or no routes are found
+     * @throws RuntimeException if the routing provider fails or no routes are found
      */
     
     public List<RouteDTO> computeRoute(double fromLat, double fromLng, double toLat, double toLng)      throws Exception {
-        // Validate coordinates
-        if (!isValidCoordinate(fromLat, fromLng)) {
-            logger.error("Invalid origin coordinates: ({}, {})", fromLat, fromLng);
-            throw new IllegalArgumentException("Invalid origin coordinates: (" + fromLat + ", " + fromLng + ")");
+        validateEndpoints(fromLat, fromLng, toLat, toLng);
+        
+        RouteCache.RouteKey cacheKey = routeCache.keyOf(fromLat, fromLng, toLat, toLng);
+        return routeCache.getOrCompute(cacheKey, () -> {
+            logger.info("Computing route from ({}, {}) to ({}, {})", fromLat, fromLng, toLat, toLng);
+            
+            // Road route from the configured provider (Google Maps or local road graph)
+            RouteDTO robotRouteDTO = routingProvider.route(fromLat, fromLng, toLat, toLng);
+
+            //Get the routeDTO for drone, which is just straight line between 2 points 
+            RouteDTO droneRouteDTO = straightLineRoute(fromLat, fromLng, toLat, toLng);
+        
+            return List.of(robotRouteDTO, droneRouteDTO);
+        });
+    }
+    
+
+    /**
+     * Computes only the drone route (straight line) between two coordinates.
+     * No routing provider call is made, so this is safe to use on latency-sensitive paths.
+     *
+     * @return RouteDTO with a two-point polyline and the Haversine distance in meters
+     * @throws IllegalArgumentException if coordinates are invalid or identical
+     */
+    public RouteDTO computeDroneRoute(double fromLat, double fromLng, double toLat, double toLng) {
+        validateEndpoints(fromLat, fromLng, toLat, toLng);
+        return straightLineRoute(fromLat, fromLng, toLat, toLng);
+    }
+
+    /**
+     * Routes a multi-stop tour through the given points in order with a single provider request
+     * (Google waypoints) for robots, or straight legs for drones. Not cached: tours rarely repeat.
+     *
+     * @param lats Latitudes of the start and every stop, in visiting order
+     * @param lngs Longitudes, same order
+     * @param drone True for straight-line legs
+     * @return one RouteDTO per leg
+     */
+    public List<RouteDTO> computeTour(double[] lats, double[] lngs, boolean drone) throws Exception {
+        if (lats.length < 2 || lats.length != lngs.length) {
+            throw new IllegalArgumentException("A tour needs a start and at least one stop");
         }
-        if (!isValidCoordinate(toLat, toLng)) {
-            logger.error("Invalid destination coordinates: ({}, {})", toLat, toLng);
-            throw new IllegalArgumentException("Invalid destination coordinates: (" + toLat + ", " + toLng + ")");
+        for (int i = 0; i < lats.length; i++) {
+            if (!isValidCoordinate(lats[i], lngs[i])) {
+                throw new IllegalArgumentException("Invalid stop coordinates: (" + lats[i] + ", " + lngs[i] + ")");
+            }
         }
-        
-        // Check if origin and destination are the same
-        if (Math.abs(fromLat - toLat) < 0.0001 && Math.abs(fromLng - toLng) < 0.0001) {
-            logger.error("Origin and destination are the same: ({}, {})", fromLat, fromLng);
-            throw new IllegalArgumentException("Origin and destination cannot be the same location");
+        if (drone) {
+            List<RouteDTO> legs = new ArrayList<>(lats.length - 1);
+            for (int i = 1; i < lats.length; i++) {
+                legs.add(straightLineRoute(lats[i - 1], lngs[i - 1], lats[i], lngs[i]));
+            }
+            return legs;
         }
-        
-        logger.info("Computing route from ({}, {}) to ({}, {})", fromLat, fromLng, toLat, toLng);
-        
-        // Call Google Maps API
-        DirectionsResult result;
-        try {
-            result = googleMapsClient.getDirections(
-                fromLat, 
-                fromLng, 
-                toLat, 
-                toLng
-            );
-        } catch (com.google.maps.errors.ZeroResultsException e) {
-            logger.error("Google Maps found no routes between ({}, {}) and ({}, {}). " +
-                        "This usually means there's no road connection between these points.", 
-                        fromLat, fromLng, toLat, toLng);
-            throw new RuntimeException("No route found between the pickup and delivery locations. " +
-                                     "Please check that both locations are accessible by road.", e);
-        } catch (Exception e) {
-            logger.error("Failed to get directions from Google Maps API for route from ({}, {}) to ({}, {})", 
-                        fromLat, fromLng, toLat, toLng, e);
-            throw new RuntimeException("Failed to compute route: " + e.getMessage(), e);
+        logger.info("Computing tour route through {} points", lats.length);
+        return routingProvider.routeThrough(lats, lngs);
+    }
+
+    /**
+     * Joins consecutive tour legs {@code [from, to)} into one route; the distance is the sum of the legs.
+     */
+    public static RouteDTO joinLegs(List<RouteDTO> legs, int from, int to) {
+        int capacity = 0;
+        for (int i = from; i < to; i++) {
+            capacity += PolylineCodec.pointCount(legs.get(i).encodedPolyline());
         }
-        
-        // Check if we got results
-        if (result.routes == null || result.routes.length == 0) {
-            throw new RuntimeException("No routes found for the given coordinates");
+        double[] lat = new double[Math.max(capacity, 1)];
+        double[] lng = new double[lat.length];
+        double[] legLat = new double[lat.length];
+        double[] legLng = new double[lat.length];
+        int count = 0;
+        long distance = 0;
+        for (int i = from; i < to; i++) {
+            RouteDTO leg = legs.get(i);
+            int n = PolylineCodec.decode(leg.encodedPolyline(), legLat, legLng);
+            // a leg starts where the previous one ended
+            int skip = count > 0 ? 1 : 0;
+            for (int k = skip; k < n; k++) {
+                lat[count] = legLat[k];
+                lng[count] = legLng[k];
+                count++;
+            }
+            distance += leg.distance();
         }
-        
-        // Get the first route (for robot)
-        DirectionsRoute route = result.routes[0];
+        RouteDTO first = legs.get(from);
+        return new RouteDTO(PolylineCodec.encode(lat, lng, count), first.positionLat(), first.positionLng(), distance);
+    }
 
-        RouteDTO robotRouteDTO = new RouteDTO(
-            route.overviewPolyline.getEncodedPath(),
-            //position is the start position when Route is computed
-            route.legs[0].startLocation.lat,
-            route.legs[0].startLocation.lng,
-            //distance, in meters
-            route.legs[0].distance.inMeters
+    private RouteDTO straightLineRoute(double fromLat, double fromLng, double toLat, double toLng) {
+        //Encode the straight line path with just start and end points
+        String encodedStraightPath = PolylineCodec.encode(
+            new double[] {fromLat, toLat},
+            new double[] {fromLng, toLng}
         );
-
-        //Get the routeDTO for drone, which is just straight line between 2 points 
-        //Create a straight line path with just start and end points
-        List<LatLng> straightPath = new ArrayList<>();
-        straightPath.add(new LatLng(fromLat, fromLng));
-        straightPath.add(new LatLng(toLat, toLng));
-        
-        //Encode the straight line path
-        String encodedStraightPath = PolylineEncoding.encode(straightPath);
         
         //Calculate straight-line distance using Haversine formula
-        long straightLineDistance = (long) calculateDistance(
-            new LatLng(fromLat, fromLng), 
-            new LatLng(toLat, toLng)
-        );
+        long straightLineDistance = (long) GeoMath.haversine(fromLat, fromLng, toLat, toLng);
         
-        RouteDTO droneRouteDTO = new RouteDTO(
+        return new RouteDTO(
             encodedStraightPath,
             fromLat,
             fromLng,
             straightLineDistance
         );
-    
-        return List.of(robotRouteDTO, droneRouteDTO);
     }
-    
+
+    private void validateEndpoints(double fromLat, double fromLng, double toLat, double toLng) {
+        // Validate coordinates
+        if (!isValidCoordinate(fromLat, fromLng)) {
+            logger.error("Invalid origin coordinates: ({}, {})", fromLat, fromLng);
+            throw new IllegalArgumentException("Invalid origin coordinates: (" + fromLat + ", " + fromLng + ")");
+        }
+        if (!isValidCoordinate(toLat, toLng)) {
+            logger.error("Invalid destination coordinates: ({}, {})", toLat, toLng);
+            throw new IllegalArgumentException("Invalid destination coordinates: (" + toLat + ", " + toLng + ")");
+        }
+        
+        // Check if origin and destination are the same
+        if (Math.abs(fromLat - toLat) < 0.0001 && Math.abs(fromLng - toLng) < 0.0001) {
+            logger.error("Origin and destination are the same: ({}, {})", fromLat, fromLng);
+            throw new IllegalArgumentException("Origin and destination cannot be the same location");
+        }
+    }
 
     /**
      * Stores a complete route entity in the database for a given order.
      * Creates a new route with a generated UUID and persists it to Redis.
+     * Both legs are also decoded once into a {@link RouteIndex} for position interpolation.
+     * The stored polylines are simplified (Douglas-Peucker) to the storage tolerance and a coarser
+     * level-of-detail version is stored for each configured tolerance, for the tracking endpoint.
+     * Simulation keeps using the full-resolution geometry and the routing provider's distances.
      * 
      * @param orderId Unique identifier of the order
      * @param hubToPickup Encoded polyline string representing the path from hub to pickup location
@@ -153,147 +223,97 @@ public class RouteService {
     ) throws Exception {
         // need to add the route from hub to pickup, but for the sake of test, whatever
 
+        RouteGeometry geometry = RouteGeometry.of(hubToPickup, pickupToEnd, hubToPickupDistance, pickupToEndDistance);
+
         RouteEntity routeEntity = new RouteEntity( 
             orderId,  // orderId is now the primary key
-            hubToPickup,
-            pickupToEnd,
+            PolylineSimplifier.simplify(hubToPickup, storageToleranceMeters),
+            PolylineSimplifier.simplify(pickupToEnd, storageToleranceMeters),
             positionLat,
             positionLng,
             hubToPickupDistance,
-            pickupToEndDistance
+            pickupToEndDistance,
+            detailLevels(hubToPickup),
+            detailLevels(pickupToEnd)
         );
 
         routeRepository.save(routeEntity);
+        routeGeometries.put(orderId, geometry);
         logger.info("Route saved for order: {}",
                    orderId);
         
         return routeEntity;
     }
 
+    private List<String> detailLevels(String encodedPath) {
+        List<String> levels = new ArrayList<>(levelToleranceMeters.length);
+        String previous = encodedPath;
+        for (double tolerance : levelToleranceMeters) {
+            // each level is simplified from the previous (finer) one
+            previous = PolylineSimplifier.simplify(previous, tolerance);
+            levels.add(previous);
+        }
+        return levels;
+    }
+
     /**
-     * Computes the current position of a delivery robot along its route based on elapsed time and speed.
-     * Calculates progress ratio as (distance_traveled / total_distance), then interpolates position
-     * along the encoded polyline path. Updates and stores the new position in the database.
-     * 
-     * @param orderId Unique identifier of the order being tracked
-     * @param speed Speed of the robot in kilometers per hour (km/h)
-     * @param hasElapsed Time elapsed since the robot started this leg of the journey, in seconds
+     * Picks the coarsest stored version of a leg whose error stays within the given tolerance.
+     *
+     * @param route RouteEntity of the order
      * @param pickup If true, uses hub-to-pickup route; if false, uses pickup-to-end route
-     * @return PositionResult containing the current position and whether the robot has arrived
-     * @throws IllegalArgumentException if route is not found, path is invalid, or distance is non-positive
+     * @param toleranceMeters Acceptable deviation in meters; null or <= 0 returns the stored full route
+     * @return Encoded polyline of the selected level
      */
-    public PositionResult computeAndStorePosition(String orderId, double speed, int hasElapsed, boolean pickup){
-        RouteEntity routeEntity = getRoutesByOrderId(orderId);
-        if (routeEntity == null) {
-            throw new IllegalArgumentException("Route not found for order: " + orderId);
+    public String getRouteAtTolerance(RouteEntity route, boolean pickup, Double toleranceMeters) {
+        String full = pickup ? route.getHubToPickup() : route.getPickupToEnd();
+        List<String> levels = pickup ? route.getHubToPickupLevels() : route.getPickupToEndLevels();
+        if (toleranceMeters == null || toleranceMeters <= 0 || levels == null) {
+            return full;
         }
-        // Decode using Google's built-in decoder
-        List<LatLng> pathPoints = pickup?  PolylineEncoding.decode(routeEntity.getHubToPickup())
-            :PolylineEncoding.decode(routeEntity.getPickupToEnd());
-
-        long distance = pickup? routeEntity.getHubToPickupDistance()
-            :routeEntity.getPickupToEndDistance();
-        
-        if (pathPoints == null || pathPoints.isEmpty()) {
-            throw new IllegalArgumentException("Path points cannot be null or empty");
-        }
-        if (pathPoints.size() == 1) {
-            return new PositionResult(pathPoints.get(0), true);
-        }
-        if (distance <= 0) {
-            throw new IllegalArgumentException("Distance must be positive");
-        }
-        
-        // Calculate progress ratio: (distance_traveled / total_distance)
-        // speed is km/h, hasElapsed is in seconds, distance is in meters
-        // Convert: speed (km/h) = speed × (1000 m/km) / (3600 s/h) = speed × (1000/3600) m/s
-        // distance_traveled = speed × (1000/3600) × hasElapsed meters
-        double progressRatio = Math.min(1.0, (speed * 1000 * hasElapsed) / (3600 * distance));
-        
-        logger.debug("Order {} (pickup={}): progressRatio={}, speed={}km/h, elapsed={}s, distance={}m", 
-            orderId, pickup, progressRatio, speed, hasElapsed, distance);
-        
-        // If progress >= 1.0, delivery is complete (at end location)
-        if (progressRatio >= 1.0) {
-            logger.info("Order {} has arrived at destination (pickup={})!", orderId, pickup);
-            LatLng endPosition = pathPoints.get(pathPoints.size() - 1);
-            updatePosition(orderId, endPosition.lat, endPosition.lng);
-            return new PositionResult(endPosition, true);
+        String selected = full;
+        for (int i = 0; i < levels.size() && i < levelToleranceMeters.length; i++) {
+            if (levelToleranceMeters[i] <= toleranceMeters) {
+                selected = levels.get(i);
+            }
         }
-        
-        LatLng currentPosition = getPositionAlongPath(pathPoints, progressRatio, distance);
-
-        // Update position
-        updatePosition(orderId, currentPosition.lat, currentPosition.lng);
-
-        return new PositionResult(currentPosition, false);
+        return selected;
     }
 
+    /**
+     * Converts a web map zoom level into the ground size of one screen pixel at the given latitude,
+     * which is the largest simplification error that stays invisible at that zoom.
+     */
+    public static double toleranceForZoom(int zoom, double lat) {
+        return 156_543.03392 * GeoMath.cosLat(lat) / Math.pow(2, zoom);
+    }
 
     /**
-     * Computes the position of a robot along a path represented by multiple waypoints.
-     * Uses the provided total distance and progress ratio to find the target point,
-     * then uses Haversine formula to calculate relative segment distances for interpolation.
-     * 
-     * @param pathPoints List of LatLng coordinates representing the complete route path
-     * @param progressRatio Value between 0.0 (start) and 1.0 (end) indicating delivery progress
-     * @param totalRouteDistance Total route distance in meters (from Google Maps API)
-     * @return LatLng coordinates of the interpolated position along the path.
-     *         Returns the last point if progressRatio >= 1.0
+     * Returns the decoded geometry of both legs of an order's route.
+     * Served from memory; falls back to decoding the stored RouteEntity (e.g. after a restart).
+     *
+     * @param orderId Unique identifier of the order
+     * @return RouteGeometry for the order
+     * @throws IllegalArgumentException if route is not found for the given orderId
      */
-    private LatLng getPositionAlongPath(List<LatLng> pathPoints, double progressRatio, long totalRouteDistance) {
-        
-        // Calculate segment distances
-        double calculatedTotal= 0;
-        List<Double> segmentDistances = new ArrayList<>();
-        
-        for (int i = 0; i < pathPoints.size() - 1; i++) {
-            double segmentDist = calculateDistance(pathPoints.get(i), pathPoints.get(i + 1));
-            segmentDistances.add(segmentDist);
-            calculatedTotal += segmentDist;
+    public RouteGeometry getRouteGeometry(String orderId) {
+        RouteGeometry geometry = routeGeometries.get(orderId);
+        if (geometry != null) {
+            return geometry;
         }
-        
-        // Use the actual route distance from Google Maps to find target distance
-        // This accounts for the fact that Haversine straight-line distances between
-        // waypoints may differ from the actual road distance
-        double targetDistance = totalRouteDistance * progressRatio;
-        
-        // Scale factor to convert from Google Maps distance to our calculated distance
-        double scaleFactor = calculatedTotal / totalRouteDistance;
-        double scaledTargetDistance = targetDistance * scaleFactor;
-    
-        // Find segment containing target distance
-        double accumulatedDistance = 0;
-        for (int i = 0; i < segmentDistances.size(); i++) {
-            double segmentDist = segmentDistances.get(i);
-        
-            if (accumulatedDistance + segmentDist >= scaledTargetDistance) {
-                double distanceIntoSegment = scaledTargetDistance - accumulatedDistance;
-                double segmentRatio = distanceIntoSegment / segmentDist;
-                return interpolate(pathPoints.get(i), pathPoints.get(i + 1), segmentRatio);
-            }
-        
-            accumulatedDistance += segmentDist;
-        }
-    
-        return pathPoints.get(pathPoints.size() - 1);
+        RouteEntity routeEntity = getRoutesByOrderId(orderId);
+        return routeGeometries.computeIfAbsent(orderId, id -> RouteGeometry.from(routeEntity));
     }
 
     /**
-     * Performs linear interpolation between two geographic points based on a ratio.
-     * Used as a helper function for computing exact position along a route segment.
-     * 
-     * @param start Starting LatLng coordinate of the segment
-     * @param end Ending LatLng coordinate of the segment
-     * @param ratio Value between 0.0 (at start) and 1.0 (at end) for interpolation
-     * @return Interpolated LatLng coordinates between start and end points
+     * Drops the in-memory geometry of an order once its mission is finished.
+     *
+     * @param orderId Unique identifier of the order
      */
-    private LatLng interpolate(LatLng start, LatLng end, double ratio) {
-        double lat = start.lat + (end.lat - start.lat) * ratio;
-        double lng = start.lng + (end.lng - start.lng) * ratio;
-        return new LatLng(lat, lng);
+    public void evictRouteGeometry(String orderId) {
+        routeGeometries.remove(orderId);
     }
 
+
     /**
      * Validates that latitude and longitude coordinates are within valid ranges.
      * Latitude must be between -90 and 90 degrees.
@@ -309,55 +329,29 @@ public class RouteService {
     }
 
     /**
-     * Calculates the great-circle distance between two geographic points using the Haversine formula.
-     * Accounts for the spherical shape of the Earth (radius = 6,371 km) to compute
-     * the shortest distance over the Earth's surface.
-     * 
-     * @param point1 First geographic point (LatLng)
-     * @param point2 Second geographic point (LatLng)
-     * @return Distance between the two points in meters
+     * Records the current position of the order's robot.
+     * Only the position is written (see {@link PositionStore}); the stored route is neither
+     * read nor rewritten.
+     *
+     * @param orderId Unique identifier of the order
+     * @param lat Current latitude coordinate in decimal degrees
+     * @param lng Current longitude coordinate in decimal degrees
      */
-    private double calculateDistance(LatLng point1, LatLng point2) {
-        double R = 6371000; // meters
-        double lat1Rad = Math.toRadians(point1.lat);
-        double lat2Rad = Math.toRadians(point2.lat);
-        double deltaLat = Math.toRadians(point2.lat - point1.lat);
-        double deltaLng = Math.toRadians(point2.lng - point1.lng);
-    
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
-               Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-               Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-    
-        return R * c;
+    public void updatePosition(String orderId, double lat, double lng) {
+        positionStore.orderPosition(orderId, lat, lng);
+        logger.debug("Updated position for order {}: ({}, {})", orderId, lat, lng);
     }
 
     /**
-     * Updates the current position (latitude and longitude) for a route in the database.
-     * Retrieves the existing route, creates an updated copy with new coordinates,
-     * and persists it back to Redis.
-     * 
-     * @param orderId Unique identifier of the order
-     * @param lat Current latitude coordinate in decimal degrees
-     * @param lng Current longitude coordinate in decimal degrees
-     * @throws IllegalArgumentException if route is not found for the given orderId
+     * Current position of the order's robot, or the route's starting point (the hub) if the
+     * robot hasn't moved yet.
+     *
+     * @param route RouteEntity of the order
+     * @return {lat, lng}
      */
-    private void updatePosition(String orderId, double lat, double lng) {
-        RouteEntity route = getRoutesByOrderId(orderId);
-        if (route == null) {
-            throw new IllegalArgumentException("Route not found for order: " + orderId);
-        }
-        RouteEntity updatedRoute = new RouteEntity(
-            orderId,  // orderId is the primary key
-            route.getHubToPickup(),
-            route.getPickupToEnd(),
-            lat, 
-            lng, 
-            route.getHubToPickupDistance(),
-            route.getPickupToEndDistance()
-        );
-        routeRepository.save(updatedRoute);
-        logger.info("Updated position for order {}: ({}, {})", orderId, lat, lng);
+    public double[] currentPosition(RouteEntity route) {
+        return positionStore.findOrderPosition(route.getOrderId())
+            .orElseGet(() -> new double[]{route.getPositionLat(), route.getPositionLng()});
     }
     
     /**
@@ -382,25 +376,36 @@ public class RouteService {
         return routeEntity;
     }
 
-     /**
-     * Result class for computeAndStorePosition method.
-     * Contains the current position and arrival status of the robot.
+    /**
+     * Decoded legs of an order's route together with the road distances from the routing provider.
      */
-     public static class PositionResult {
-        private final LatLng currentPosition;
-        private final boolean arrived;
-
-        public PositionResult(LatLng currentPosition, boolean arrived) {
-            this.currentPosition = currentPosition;
-            this.arrived = arrived;
+    public record RouteGeometry(
+        RouteIndex hubToPickup,
+        RouteIndex pickupToEnd,
+        long hubToPickupDistance,
+        long pickupToEndDistance
+    ) {
+        static RouteGeometry from(RouteEntity routeEntity) {
+            return of(
+                routeEntity.getHubToPickup(),
+                routeEntity.getPickupToEnd(),
+                routeEntity.getHubToPickupDistance(),
+                routeEntity.getPickupToEndDistance()
+            );
         }
 
-        public LatLng getCurrentPosition() {
-            return currentPosition;
+        static RouteGeometry of(String hubToPickup, String pickupToEnd,
+                                long hubToPickupDistance, long pickupToEndDistance) {
+            return new RouteGeometry(
+                decodeLeg(hubToPickup),
+                decodeLeg(pickupToEnd),
+                hubToPickupDistance,
+                pickupToEndDistance
+            );
         }
 
-        public boolean isArrived() {
-            return arrived;
+        private static RouteIndex decodeLeg(String encodedPath) {
+            return RouteIndex.decode(encodedPath);
         }
     }
 }
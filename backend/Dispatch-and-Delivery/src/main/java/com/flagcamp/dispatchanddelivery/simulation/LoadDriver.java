@@ -0,0 +1,296 @@
+package com.flagcamp.dispatchanddelivery.simulation;
+
+import com.flagcamp.dispatchanddelivery.entity.HubEntity;
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.FleetRegistry;
+import com.flagcamp.dispatchanddelivery.model.dto.OrderRequestDTO;
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.model.event.RobotArrivedEvent;
+import com.flagcamp.dispatchanddelivery.model.response.MissionStatsResponse;
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import com.flagcamp.dispatchanddelivery.service.OrderService;
+import com.flagcamp.dispatchanddelivery.service.RobotService;
+import com.flagcamp.dispatchanddelivery.service.RobotSimulatorService;
+import com.flagcamp.dispatchanddelivery.service.RouteService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless load test on a virtual clock (enabled with {@code dispatch.simulation.enabled=true}).
+ *
+ * A discrete-event loop over three kinds of events: synthetic order submissions (Poisson
+ * arrivals around random hubs from the database), mission engine ticks, and simulated users
+ * confirming pickup / delivery some time after the robot arrives. Each event jumps the
+ * {@link SimulationClock} to its time, so an hour of operations runs in however long the
+ * engine and its DB / Redis writes take; {@code speedup} optionally caps the ratio.
+ *
+ * Orders go through {@link OrderService#submitOrder} like real ones: the pickup → drop-off leg
+ * is a straight line, the hub → pickup leg of ground robots uses the configured routing
+ * provider (use {@code dispatch.routing.provider=local} to run offline). Batch mode still
+ * assigns on the wall clock; the driver is meant for direct mode.
+ *
+ * Progress (virtual time, achieved speedup, throughput, tick latency, write rates) is logged
+ * every {@code report-every-minutes} of virtual time and once at the end.
+ */
+@Component
+@ConditionalOnProperty(name = "dispatch.simulation.enabled", havingValue = "true")
+public class LoadDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+
+    private final SimulationClock clock;
+    private final RobotSimulatorService engine;
+    private final OrderService orderService;
+    private final RobotService robotService;
+    private final RouteService routeService;
+    private final FleetRegistry fleetRegistry;
+
+    private final long durationNanos;
+    private final double ordersPerMinute;
+    private final double speedup;
+    private final long tickNanos;
+    private final long confirmDelayNanos;
+    private final double droneShare;
+    private final double radiusMeters;
+    private final String userId;
+    private final long reportNanos;
+    private final long seed;
+
+    //本driver提交的订单；到达事件只处理这些
+    private final Set<String> ownOrders = ConcurrentHashMap.newKeySet();
+    private final Queue<RobotArrivedEvent> arrivals = new ConcurrentLinkedQueue<>();
+
+    // 以下只由driver线程访问
+    private long submitted;
+    private long rejected;
+    private long delivered;
+    private long lastReportWall;
+    private long lastRobotWrites;
+    private long lastRouteWrites;
+
+    public LoadDriver(SimulationClock clock,
+                      RobotSimulatorService engine,
+                      OrderService orderService,
+                      RobotService robotService,
+                      RouteService routeService,
+                      FleetRegistry fleetRegistry,
+                      @Value("${dispatch.simulation.duration-minutes:60}") long durationMinutes,
+                      @Value("${dispatch.simulation.orders-per-minute:30}") double ordersPerMinute,
+                      @Value("${dispatch.simulation.speedup:0}") double speedup,
+                      @Value("${dispatch.mission.tick-ms:5000}") long tickMs,
+                      @Value("${dispatch.simulation.confirm-delay-seconds:60}") long confirmDelaySeconds,
+                      @Value("${dispatch.simulation.drone-share:0.3}") double droneShare,
+                      @Value("${dispatch.simulation.radius-meters:3000}") double radiusMeters,
+                      @Value("${dispatch.simulation.user-id:sim-user}") String userId,
+                      @Value("${dispatch.simulation.report-every-minutes:10}") long reportEveryMinutes,
+                      @Value("${dispatch.simulation.seed:42}") long seed) {
+        this.clock = clock;
+        this.engine = engine;
+        this.orderService = orderService;
+        this.robotService = robotService;
+        this.routeService = routeService;
+        this.fleetRegistry = fleetRegistry;
+        this.durationNanos = TimeUnit.MINUTES.toNanos(durationMinutes);
+        this.ordersPerMinute = ordersPerMinute;
+        this.speedup = speedup;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.confirmDelayNanos = TimeUnit.SECONDS.toNanos(confirmDelaySeconds);
+        this.droneShare = droneShare;
+        this.radiusMeters = radiusMeters;
+        this.userId = userId;
+        this.reportNanos = TimeUnit.MINUTES.toNanos(reportEveryMinutes);
+        this.seed = seed;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofPlatform().name("load-driver").start(this::run);
+    }
+
+    @EventListener
+    public void onRobotArrival(RobotArrivedEvent event) {
+        if (ownOrders.contains(event.orderId())) {
+            arrivals.add(event);
+        }
+    }
+
+    private void run() {
+        List<HubEntity> hubs = robotService.getAllHubs();
+        if (hubs.isEmpty()) {
+            logger.warn("No hubs in the database, load driver not started");
+            return;
+        }
+        Random random = new Random(seed);
+        PriorityQueue<Event> events = new PriorityQueue<>(Comparator.comparingLong(Event::atNanos));
+        long t0 = clock.nanoTime();
+        long end = t0 + durationNanos;
+        long wallStart = System.nanoTime();
+        lastReportWall = wallStart;
+        logger.info("Load driver started: {} min of virtual time, {} orders/min over {} hubs",
+            TimeUnit.NANOSECONDS.toMinutes(durationNanos), ordersPerMinute, hubs.size());
+
+        events.add(new Event(t0 + nextArrival(random), Kind.SUBMIT, null));
+        events.add(new Event(t0 + tickNanos, Kind.TICK, null));
+        events.add(new Event(t0 + reportNanos, Kind.REPORT, null));
+
+        while (!events.isEmpty()) {
+            Event event = events.poll();
+            if (event.atNanos() > end) {
+                break;
+            }
+            pace(event.atNanos() - t0, wallStart);
+            clock.advanceTo(event.atNanos());
+            try {
+                switch (event.kind()) {
+                    case SUBMIT -> {
+                        submit(hubs, random);
+                        events.add(new Event(event.atNanos() + nextArrival(random), Kind.SUBMIT, null));
+                    }
+                    case TICK -> {
+                        engine.step();
+                        RobotArrivedEvent arrival;
+                        while ((arrival = arrivals.poll()) != null) {
+                            Kind confirm = "PICKUP".equals(arrival.message()) ? Kind.CONFIRM_PICKUP : Kind.CONFIRM_DELIVERY;
+                            events.add(new Event(event.atNanos() + confirmDelayNanos, confirm, arrival.orderId()));
+                        }
+                        events.add(new Event(event.atNanos() + tickNanos, Kind.TICK, null));
+                    }
+                    case CONFIRM_PICKUP -> orderService.confirmPickup(event.orderId(), userId, LocalDateTime.now());
+                    case CONFIRM_DELIVERY -> {
+                        orderService.confirmDelivery(event.orderId(), userId);
+                        ownOrders.remove(event.orderId());
+                        delivered++;
+                    }
+                    case REPORT -> {
+                        report(event.atNanos() - t0, wallStart);
+                        events.add(new Event(event.atNanos() + reportNanos, Kind.REPORT, null));
+                    }
+                }
+            } catch (Exception e) {
+                logger.warn("Simulation event {} failed: {}", event, e.toString());
+            }
+        }
+        report(clock.nanoTime() - t0, wallStart);
+        logger.info("Load driver finished");
+    }
+
+    private void submit(List<HubEntity> hubs, Random random) {
+        HubEntity hub = hubs.get(random.nextInt(hubs.size()));
+        String type = random.nextDouble() < droneShare ? "drone" : "robot";
+        Optional<RobotEntity> robot = fleetRegistry.cheapest(hub.getHubId(), type);
+        if (robot.isEmpty()) {
+            rejected++;
+            return;
+        }
+
+        double[] from = around(hub.getHubLat(), hub.getHubLng(), random);
+        double[] to = around(from[0], from[1], random);
+        RouteDTO route = routeService.computeDroneRoute(from[0], from[1], to[0], to[1]);
+        double speed = robot.get().getSpeed();
+
+        OrderRequestDTO request = new OrderRequestDTO();
+        request.setFromAddress("simulated pickup");
+        request.setFromLat(from[0]);
+        request.setFromLng(from[1]);
+        request.setToAddress("simulated drop-off");
+        request.setToLat(to[0]);
+        request.setToLng(to[1]);
+        request.setDuration((int) Math.ceil(route.distance() / 1000.0 / speed * 60));
+        request.setPrice(route.distance() / 1000.0 * robot.get().getPrice());
+        request.setItemDescription("simulated package");
+        request.setWeight(1 + random.nextDouble() * Math.max(0, Math.min(5, robot.get().getMaxWeight()) - 1));
+        request.setRobotType(type);
+        request.setRobotId(robot.get().getRobotId());
+        request.setRoute(route.encodedPolyline());
+        request.setDistance(route.distance());
+
+        Map<String, Object> response = orderService.submitOrder(userId, request);
+        if (!Boolean.TRUE.equals(response.get("success"))) {
+            rejected++;
+            return;
+        }
+        String orderId = (String) response.get("order_id");
+        ownOrders.add(orderId);
+        submitted++;
+        Object robotId = response.get("robot_id");
+        if (robotId != null) {
+            orderService.startRobotAsync(orderId, (String) robotId);
+        }
+    }
+
+    // 以(lat, lng)为中心、radius内均匀分布的随机点
+    private double[] around(double lat, double lng, Random random) {
+        double distance = radiusMeters * Math.sqrt(random.nextDouble());
+        double bearing = random.nextDouble() * 2 * Math.PI;
+        double dLat = distance * Math.cos(bearing) / GeoMath.METERS_PER_DEGREE;
+        double dLng = distance * Math.sin(bearing) / (GeoMath.METERS_PER_DEGREE * GeoMath.cosLat(lat));
+        return new double[]{lat + dLat, lng + dLng};
+    }
+
+    // Poisson arrivals: exponential gaps
+    private long nextArrival(Random random) {
+        double meanNanos = TimeUnit.MINUTES.toNanos(1) / ordersPerMinute;
+        return Math.max(1, (long) (-Math.log(1 - random.nextDouble()) * meanNanos));
+    }
+
+    // speedup > 0: don't let virtual time run ahead of wall time x speedup
+    private void pace(long virtualElapsed, long wallStart) {
+        if (speedup <= 0) {
+            return;
+        }
+        long wait = wallStart + (long) (virtualElapsed / speedup) - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void report(long virtualElapsed, long wallStart) {
+        long now = System.nanoTime();
+        double wallSeconds = Math.max(1e-9, (now - wallStart) / 1e9);
+        double intervalSeconds = Math.max(1e-9, (now - lastReportWall) / 1e9);
+        double virtualMinutes = virtualElapsed / 6e10;
+        MissionStatsResponse stats = engine.stats();
+
+        logger.info("Simulation t={} min ({}x real time): submitted={}, rejected={}, delivered={} ({}/h), "
+                + "missions active={} waiting={}, tick last={} ms max={} ms, "
+                + "robot row writes {}/s, route position writes {}/s",
+            Math.round(virtualMinutes),
+            Math.round(virtualElapsed / 1e9 / wallSeconds),
+            submitted, rejected, delivered,
+            virtualMinutes > 0 ? Math.round(delivered * 60 / virtualMinutes) : 0,
+            stats.active(), stats.waiting(),
+            stats.lastTickMicros() / 1000.0, stats.maxTickMicros() / 1000.0,
+            Math.round((stats.robotWrites() - lastRobotWrites) / intervalSeconds),
+            Math.round((stats.routeWrites() - lastRouteWrites) / intervalSeconds));
+
+        lastReportWall = now;
+        lastRobotWrites = stats.robotWrites();
+        lastRouteWrites = stats.routeWrites();
+    }
+
+    private enum Kind { SUBMIT, TICK, CONFIRM_PICKUP, CONFIRM_DELIVERY, REPORT }
+
+    private record Event(long atNanos, Kind kind, String orderId) {}
+}
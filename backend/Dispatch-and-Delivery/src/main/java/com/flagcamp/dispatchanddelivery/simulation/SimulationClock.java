@@ -0,0 +1,42 @@
+package com.flagcamp.dispatchanddelivery.simulation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time source of the mission engine.
+ *
+ * Normally the wall clock ({@link System#nanoTime()}). With {@code dispatch.simulation.enabled=true}
+ * it is a virtual clock that only moves when the {@link LoadDriver} advances it, so a day of
+ * missions can be replayed as fast as the engine can process it.
+ */
+@Component
+public class SimulationClock {
+
+    private final boolean virtual;
+    private final AtomicLong virtualNanos = new AtomicLong();
+
+    public SimulationClock(@Value("${dispatch.simulation.enabled:false}") boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public long nanoTime() {
+        return virtual ? virtualNanos.get() : System.nanoTime();
+    }
+
+    /**
+     * Moves virtual time forward; never backwards.
+     */
+    public void advanceTo(long nanos) {
+        if (!virtual) {
+            throw new IllegalStateException("Wall clock can't be advanced");
+        }
+        virtualNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
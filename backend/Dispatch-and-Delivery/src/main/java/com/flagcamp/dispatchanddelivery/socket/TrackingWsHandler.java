@@ -0,0 +1,91 @@
+package com.flagcamp.dispatchanddelivery.socket;
+
+import com.flagcamp.dispatchanddelivery.manager.TrackingHub;
+import com.flagcamp.dispatchanddelivery.model.response.TrackingFrame;
+import com.flagcamp.dispatchanddelivery.service.OrderService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// 订单实时追踪：ws://localhost:8080/ws/tracking?orderId=...[&orderId=...][&format=binary[&batch=false]]
+// 订阅时发一次路线，之后只推送位置变化（由任务tick产生，见TrackingHub）
+// 一个会话可以看多个订单（管理端地图）；format=binary时位置变化用BinaryTrackingFrames，handle为orderId参数的序号
+@Component
+public class TrackingWsHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrackingWsHandler.class);
+    private static final String ORDER_ID = "orderId";
+    // u16 handles
+    private static final int MAX_ORDERS = 0xFFFF;
+
+    private final TrackingHub trackingHub;
+    private final OrderService orderService;
+
+    public TrackingWsHandler(TrackingHub trackingHub, OrderService orderService) {
+        this.trackingHub = trackingHub;
+        this.orderService = orderService;
+    }
+
+    @PostConstruct
+    public void registerRouteFrames() {
+        trackingHub.setRouteFrames(this::routeFrame);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        MultiValueMap<String, String> params = session.getUri() == null ? new LinkedMultiValueMap<>()
+            : UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+        // duplicates would share a handle
+        Set<String> orderIds = new LinkedHashSet<>();
+        for (String orderId : params.getOrDefault(ORDER_ID, List.of())) {
+            if (orderId != null && !orderId.isBlank()) {
+                orderIds.add(orderId);
+            }
+        }
+        if (orderIds.isEmpty() || orderIds.size() > MAX_ORDERS) {
+            session.close(CloseStatus.BAD_DATA.withReason("1 to " + MAX_ORDERS + " orderId parameters are required"));
+            return;
+        }
+        boolean binary = "binary".equalsIgnoreCase(params.getFirst("format"));
+        boolean batch = !"false".equalsIgnoreCase(params.getFirst("batch"));
+
+        List<TrackingFrame> initial = new ArrayList<>(orderIds.size());
+        for (String orderId : orderIds) {
+            Optional<TrackingFrame> frame = routeFrame(orderId);
+            if (frame.isEmpty()) {
+                session.close(CloseStatus.BAD_DATA.withReason("No tracking data for order " + orderId));
+                return;
+            }
+            initial.add(frame.get());
+        }
+        trackingHub.subscribe(session, initial, binary, batch);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        trackingHub.unsubscribe(session.getId());
+    }
+
+    // 路线帧和GET /dashboard/orders/tracking的内容相同
+    private Optional<TrackingFrame> routeFrame(String orderId) {
+        try {
+            return Optional.of(TrackingFrame.route(orderService.getTrackingData(orderId)));
+        } catch (Exception e) {
+            logger.warn("No tracking data for order {}: {}", orderId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -1,8 +1,10 @@
+-- Sample data, inserted once: rows that already exist are left as they are
 -- Sample hub data with real San Francisco locations
 INSERT INTO hubs (id, address, hub_lat, hub_lng) VALUES
 ('HUB-001', 'Downtown Hub - Market St & 4th St, San Francisco, CA 94103', 37.7855, -122.4056),
 ('HUB-002', 'Waterfront Hub - Pier 33, San Francisco, CA 94111', 37.8068, -122.4025),
-('HUB-003', 'Western Hub - 4816 Fulton St, San Francisco, CA 94121', 37.7749, -122.4194);
+('HUB-003', 'Western Hub - 4816 Fulton St, San Francisco, CA 94121', 37.7749, -122.4194)
+ON CONFLICT (id) DO NOTHING;
 
 -- Sample robot data (robots and drones assigned to hubs)
 INSERT INTO robots (id, available, battery, hub_id, current_lat, current_lng, max_weight, speed, price, robot_type) VALUES
@@ -25,7 +27,8 @@ INSERT INTO robots (id, available, battery, hub_id, current_lat, current_lng, ma
 ('ROBOT-008', true, 91, 'HUB-003', 37.7694, -122.4862, 24.0, 15, 0.49, 'robot'),
 ('ROBOT-009', true, 84, 'HUB-003', 37.7694, -122.4862, 30.0, 11, 0.44, 'robot'),
 ('DRONE-005', true, 88, 'HUB-003', 37.7694, -122.4862, 13.0, 43, 1.28, 'drone'),
-('DRONE-006', true, 92, 'HUB-003', 37.7694, -122.4862, 14.0, 41, 1.22, 'drone');
+('DRONE-006', true, 92, 'HUB-003', 37.7694, -122.4862, 14.0, 41, 1.22, 'drone')
+ON CONFLICT (id) DO NOTHING;
 
 -- Sample package data
 INSERT INTO packages (id, order_id, item_description, weight) VALUES
@@ -40,7 +43,8 @@ INSERT INTO packages (id, order_id, item_description, weight) VALUES
 ('PKG-009', 'ORD-009', 'Electronics - Wireless Headphones', 0.8),
 ('PKG-010', 'ORD-010', 'Sports Equipment - Yoga Mat and Blocks', 2.5),
 ('PKG-011', 'ORD-011', 'Home Decor - Picture Frame Set', 3.8),
-('PKG-012', 'ORD-012', 'Pet Supplies - Dog Toys and Treats', 2.1);
+('PKG-012', 'ORD-012', 'Pet Supplies - Dog Toys and Treats', 2.1)
+ON CONFLICT (id) DO NOTHING;
 
 -- Sample UUID for demo users (you can generate new ones)
 -- user-alice: '550e8400-e29b-41d4-a716-446655440001'
@@ -133,7 +137,8 @@ INSERT INTO orders (id, submit_time, user_id, from_address, to_address, from_lat
  'Oracle Park Plaza, 24 Willie Mays Plaza, San Francisco, CA 94107',
  'Russian Hill, Hyde St & Lombard St, San Francisco, CA 94109',
  37.7786, -122.3893, 37.8025, -122.4194,
- 'PKG-012', 'dispatching', 35.25, NULL, 28, NULL, 'robot');
+ 'PKG-012', 'dispatching', 35.25, NULL, 28, NULL, 'robot')
+ON CONFLICT (id) DO NOTHING;
 
 -- Sample message data
 INSERT INTO messages (id, user_id, order_id, subject, content, type, action_required, has_read, created_at) VALUES
@@ -141,4 +146,5 @@ INSERT INTO messages (id, user_id, order_id, subject, content, type, action_requ
 ('MSG-001', '550e8400-e29b-41d4-a716-446655440002', 'ORD-002', 'Robot arrived at pickup', 'Your robot has arrived at pickup location. Please confirm pickup to continue.', 'ARRIVED', 'PICKUP', FALSE, '2025-01-16 09:40:00'),
 
 -- Message 2: Read delivery notification
-('MSG-002', '550e8400-e29b-41d4-a716-446655440002', 'ORD-006', 'Order delivered', 'Your order has been delivered. Please confirm delivery.', 'ARRIVED', 'DELIVERY', TRUE, '2025-01-18 14:00:00');
+('MSG-002', '550e8400-e29b-41d4-a716-446655440002', 'ORD-006', 'Order delivered', 'Your order has been delivered. Please confirm delivery.', 'ARRIVED', 'DELIVERY', TRUE, '2025-01-18 14:00:00')
+ON CONFLICT (id) DO NOTHING;
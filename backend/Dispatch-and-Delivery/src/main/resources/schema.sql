@@ -1,5 +1,7 @@
+-- Runs on every start and must not lose data: stored missions resume against these rows.
+-- To start over with the sample data, drop the tables (or the database) before starting.
+
 -- PostgreSQL schema for hubs table (plural)
-DROP TABLE IF EXISTS hubs, robots, messages, orders, packages, users, authorities;
 
 CREATE TABLE IF NOT EXISTS hubs (
     id VARCHAR(255) PRIMARY KEY,
@@ -54,7 +56,7 @@ CREATE TABLE IF NOT EXISTS orders (
 );
 
 
-CREATE TABLE users
+CREATE TABLE IF NOT EXISTS users
 (
     id         VARCHAR(36) PRIMARY KEY DEFAULT gen_random_uuid()::text NOT NULL,
     email      TEXT UNIQUE          NOT NULL,
@@ -62,7 +64,7 @@ CREATE TABLE users
     enabled    BOOLEAN DEFAULT TRUE NOT NULL
 );
 
-CREATE TABLE authorities
+CREATE TABLE IF NOT EXISTS authorities
 (
     id        SERIAL PRIMARY KEY NOT NULL,
     email     TEXT               NOT NULL,
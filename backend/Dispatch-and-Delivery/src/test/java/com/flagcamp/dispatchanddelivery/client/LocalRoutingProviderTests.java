@@ -0,0 +1,89 @@
+package com.flagcamp.dispatchanddelivery.client;
+
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import com.flagcamp.dispatchanddelivery.routing.PolylineCodec;
+import com.flagcamp.dispatchanddelivery.routing.RoadGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocalRoutingProviderTests {
+
+    @TempDir
+    Path dir;
+
+    private LocalRoutingProvider provider;
+
+    // three nodes on a straight street, ~111 m apart
+    @BeforeEach
+    void setup() throws Exception {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(37.000, -122.0);
+        int b = builder.addNode(37.001, -122.0);
+        int c = builder.addNode(37.002, -122.0);
+        builder.addBidirectionalEdge(a, b, GeoMath.haversine(37.000, -122.0, 37.001, -122.0));
+        builder.addBidirectionalEdge(b, c, GeoMath.haversine(37.001, -122.0, 37.002, -122.0));
+        Path file = dir.resolve("graph.bin");
+        builder.build().write(file);
+
+        provider = new LocalRoutingProvider();
+        ReflectionTestUtils.setField(provider, "graphFile", file.toString());
+        ReflectionTestUtils.setField(provider, "maxSnapMeters", 500.0);
+        provider.init();
+    }
+
+    @Test
+    void route_shouldIncludeSnapLegs() {
+        // 20 m off the street at both ends
+        RouteDTO route = provider.route(37.000, -121.99977, 37.002, -121.99977);
+
+        double expected = GeoMath.haversine(37.000, -121.99977, 37.000, -122.0)
+            + GeoMath.haversine(37.000, -122.0, 37.002, -122.0)
+            + GeoMath.haversine(37.002, -122.0, 37.002, -121.99977);
+        Assertions.assertEquals(Math.round(expected), route.distance());
+        Assertions.assertEquals(37.000, route.positionLat());
+        Assertions.assertEquals(-121.99977, route.positionLng());
+
+        List<double[]> points = decode(route.encodedPolyline());
+        Assertions.assertEquals(5, points.size());
+        Assertions.assertEquals(-121.99977, points.get(0)[1], 1e-5);
+        Assertions.assertEquals(-122.0, points.get(1)[1], 1e-5);
+        Assertions.assertEquals(-121.99977, points.get(4)[1], 1e-5);
+    }
+
+    @Test
+    void route_shouldFallBackToGreatCircleWhenBothEndsSnapToOneNode() {
+        RouteDTO route = provider.route(37.0010, -122.0002, 37.0012, -121.9998);
+
+        Assertions.assertEquals(Math.round(GeoMath.haversine(37.0010, -122.0002, 37.0012, -121.9998)), route.distance());
+        Assertions.assertTrue(route.distance() > 0);
+        Assertions.assertEquals(2, decode(route.encodedPolyline()).size());
+    }
+
+    @Test
+    void route_shouldFallBackToGreatCircleFarFromTheGraph() {
+        // ~2 km east of the street
+        RouteDTO route = provider.route(37.000, -121.98, 37.002, -122.0);
+
+        Assertions.assertEquals(Math.round(GeoMath.haversine(37.000, -121.98, 37.002, -122.0)), route.distance());
+        Assertions.assertEquals(2, decode(route.encodedPolyline()).size());
+    }
+
+    private static List<double[]> decode(String polyline) {
+        double[] lat = new double[16];
+        double[] lng = new double[16];
+        int n = PolylineCodec.decode(polyline, lat, lng);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            points.add(new double[] {lat[i], lng[i]});
+        }
+        return points;
+    }
+}
@@ -0,0 +1,84 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class HungarianSolverTests {
+
+    private static final Random random = new Random(13);
+
+    @RepeatedTest(300)
+    void solve_shouldMatchBruteForce() {
+        int rows = 1 + random.nextInt(6);
+        int cols = 1 + random.nextInt(6);
+        double[] cost = new double[rows * cols];
+        for (int i = 0; i < cost.length; i++) {
+            // small integers so ties happen
+            cost[i] = random.nextInt(10);
+        }
+
+        int[] rowToCol = HungarianSolver.solve(cost, rows, cols);
+
+        Assertions.assertEquals(rows, rowToCol.length);
+        boolean[] taken = new boolean[cols];
+        int unassigned = 0;
+        double total = 0;
+        for (int r = 0; r < rows; r++) {
+            int c = rowToCol[r];
+            if (c < 0) {
+                unassigned++;
+                continue;
+            }
+            Assertions.assertFalse(taken[c], "column " + c + " assigned twice");
+            taken[c] = true;
+            total += cost[r * cols + c];
+        }
+        // every row is assigned when possible, otherwise every column is used
+        Assertions.assertEquals(Math.max(0, rows - cols), unassigned);
+        Assertions.assertEquals(bruteForce(cost, rows, cols), total, 1e-9);
+    }
+
+    @Test
+    void solve_shouldInvertTheTransposedAssignment() {
+        // 3 orders, 2 robots: order 1 is best left unassigned
+        double[] cost = {
+            1, 9,
+            5, 5,
+            9, 1
+        };
+
+        Assertions.assertArrayEquals(new int[] {0, -1, 1}, HungarianSolver.solve(cost, 3, 2));
+    }
+
+    @Test
+    void solve_shouldHandleEmptySides() {
+        Assertions.assertArrayEquals(new int[] {-1, -1}, HungarianSolver.solve(new double[0], 2, 0));
+        Assertions.assertArrayEquals(new int[0], HungarianSolver.solve(new double[0], 0, 3));
+    }
+
+    // min over every injective mapping of the smaller side into the larger
+    private static double bruteForce(double[] cost, int rows, int cols) {
+        return rows <= cols
+            ? search(cost, rows, cols, 0, new boolean[cols], false)
+            : search(cost, cols, rows, 0, new boolean[rows], true);
+    }
+
+    private static double search(double[] cost, int n, int m, int i, boolean[] used, boolean transposed) {
+        if (i == n) {
+            return 0;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < m; j++) {
+            if (!used[j]) {
+                used[j] = true;
+                double c = transposed ? cost[j * n + i] : cost[i * m + j];
+                best = Math.min(best, c + search(cost, n, m, i + 1, used, transposed));
+                used[j] = false;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,144 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TimingWheelTests {
+
+    private static final Random random = new Random(20);
+
+    @Test
+    void advance_shouldFireOnTheDeadlineTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 10, 0);
+        wheel.schedule(30, "a");
+        wheel.schedule(35, "b");
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(29, fired::add);
+        Assertions.assertEquals(List.of(), fired);
+        wheel.advance(30, fired::add);
+        Assertions.assertEquals(List.of("a"), fired);
+        // 35 rounds up to the tick at 40: one tick late at most
+        wheel.advance(39, fired::add);
+        Assertions.assertEquals(List.of("a"), fired);
+        wheel.advance(40, fired::add);
+        Assertions.assertEquals(List.of("a", "b"), fired);
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_shouldKeepEntriesOfLaterRevolutions() {
+        TimingWheel<String> wheel = new TimingWheel<>(4, 10, 0);
+        // same bucket as tick 1, three revolutions later
+        wheel.schedule(10 + 3 * 40, "late");
+        wheel.schedule(10, "early");
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(100, fired::add);
+        Assertions.assertEquals(List.of("early"), fired);
+        Assertions.assertEquals(1, wheel.size());
+
+        wheel.advance(130, fired::add);
+        Assertions.assertEquals(List.of("early", "late"), fired);
+    }
+
+    @Test
+    void advance_shouldFireEverythingDueAfterALongGap() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(4, 10, 0);
+        for (int i = 0; i < 20; i++) {
+            wheel.schedule(i * 10L, i);
+        }
+        List<Integer> fired = new ArrayList<>();
+
+        wheel.advance(10_000, fired::add);
+
+        Assertions.assertEquals(20, fired.size());
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_shouldFirePastDeadlinesOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 10, 0);
+        wheel.advance(100, value -> { });
+        wheel.schedule(20, "past");
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(105, fired::add);
+        Assertions.assertEquals(List.of(), fired);
+        wheel.advance(110, fired::add);
+        Assertions.assertEquals(List.of("past"), fired);
+    }
+
+    @Test
+    void cancel_shouldUnlinkOnce() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 10, 0);
+        TimingWheel.Timeout<String> a = wheel.schedule(30, "a");
+        TimingWheel.Timeout<String> b = wheel.schedule(30, "b");
+        TimingWheel.Timeout<String> c = wheel.schedule(30, "c");
+
+        // the middle of a bucket list, then its head
+        Assertions.assertTrue(wheel.cancel(b));
+        Assertions.assertFalse(wheel.cancel(b));
+        Assertions.assertTrue(wheel.cancel(c));
+        Assertions.assertEquals(1, wheel.size());
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(30, fired::add);
+        Assertions.assertEquals(List.of("a"), fired);
+        Assertions.assertFalse(wheel.cancel(a));
+    }
+
+    @Test
+    void constructor_shouldRejectEmptyWheels() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(0, 10, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(8, 0, 0));
+    }
+
+    @RepeatedTest(50)
+    void advance_shouldNeverFireEarlyOrMissADueTimeout() {
+        long tick = 1 + random.nextInt(50);
+        long origin = random.nextInt(1000) - 500;
+        TimingWheel<Integer> wheel = new TimingWheel<>(1 + random.nextInt(16), tick, origin);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        Map<Integer, TimingWheel.Timeout<Integer>> pending = new HashMap<>();
+        long now = origin;
+        int next = 0;
+
+        for (int step = 0; step < 300; step++) {
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    long deadline = now + random.nextInt((int) tick * 40);
+                    deadlines.put(next, deadline);
+                    pending.put(next, wheel.schedule(deadline, next));
+                    next++;
+                }
+                case 1 -> {
+                    if (!pending.isEmpty()) {
+                        Integer victim = pending.keySet().iterator().next();
+                        Assertions.assertTrue(wheel.cancel(pending.remove(victim)));
+                    }
+                }
+                default -> {
+                    now += random.nextInt((int) tick * 10);
+                    long at = now;
+                    wheel.advance(at, value -> {
+                        Assertions.assertNotNull(pending.remove(value), "fired twice or after cancel");
+                        Assertions.assertTrue(deadlines.get(value) <= at, "fired early");
+                    });
+                    for (Integer value : pending.keySet()) {
+                        // everything due a whole tick ago has fired
+                        Assertions.assertTrue(deadlines.get(value) > at - tick, "missed " + value);
+                    }
+                }
+            }
+            Assertions.assertEquals(pending.size(), wheel.size());
+        }
+    }
+}
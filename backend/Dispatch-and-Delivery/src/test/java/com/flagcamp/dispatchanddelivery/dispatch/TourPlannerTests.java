@@ -0,0 +1,148 @@
+package com.flagcamp.dispatchanddelivery.dispatch;
+
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TourPlannerTests {
+
+    private static final Random random = new Random(14);
+
+    @Test
+    void plan_shouldCollectAlongTheWayOnAStraightStreet() {
+        // start at 0, pickups at 1 and 2, drop-offs at 3 and 4 (units of 0.001 degrees north)
+        TourPlanner planner = new TourPlanner(37.0, -122.0,
+            new double[] {37.002, 37.001}, new double[] {-122.0, -122.0},
+            new double[] {37.004, 37.003}, new double[] {-122.0, -122.0},
+            new double[] {1, 1}, 0);
+
+        int[] route = planner.plan();
+
+        Assertions.assertArrayEquals(new int[] {2, 0, 3, 1}, route);
+        Assertions.assertEquals(GeoMath.haversine(37.0, -122.0, 37.004, -122.0), planner.length(route), 1e-6);
+    }
+
+    @Test
+    void plan_shouldDeliverBeforeTheNextPickupWhenOnlyOneFits() {
+        TourPlanner planner = new TourPlanner(37.0, -122.0,
+            new double[] {37.001, 37.002}, new double[] {-122.0, -122.0},
+            new double[] {37.004, 37.003}, new double[] {-122.0, -122.0},
+            new double[] {3, 3}, 5);
+
+        int[] route = planner.plan();
+
+        assertFeasible(route, 2, new double[] {3, 3}, 5);
+        for (int i = 0; i < route.length; i += 2) {
+            Assertions.assertTrue(TourPlanner.isPickup(route[i]));
+            Assertions.assertEquals(TourPlanner.jobOf(route[i]), TourPlanner.jobOf(route[i + 1]));
+        }
+    }
+
+    @Test
+    void plan_shouldRejectAnOrderHeavierThanTheRobot() {
+        TourPlanner planner = new TourPlanner(37.0, -122.0,
+            new double[] {37.001}, new double[] {-122.0},
+            new double[] {37.002}, new double[] {-122.0},
+            new double[] {12}, 10);
+
+        Assertions.assertNull(planner.plan());
+    }
+
+    @RepeatedTest(200)
+    void plan_shouldBeFeasibleAndTwoOptOptimal() {
+        int jobs = 1 + random.nextInt(5);
+        double[] lat = new double[2 * jobs + 1];
+        double[] lng = new double[2 * jobs + 1];
+        double[] pickupLat = new double[jobs];
+        double[] pickupLng = new double[jobs];
+        double[] dropLat = new double[jobs];
+        double[] dropLng = new double[jobs];
+        double[] weight = new double[jobs];
+        lat[0] = 37.72;
+        lng[0] = -122.42;
+        for (int j = 0; j < jobs; j++) {
+            pickupLat[j] = lat[2 * j + 1] = 37.7 + random.nextDouble() * 0.05;
+            pickupLng[j] = lng[2 * j + 1] = -122.45 + random.nextDouble() * 0.05;
+            dropLat[j] = lat[2 * j + 2] = 37.7 + random.nextDouble() * 0.05;
+            dropLng[j] = lng[2 * j + 2] = -122.45 + random.nextDouble() * 0.05;
+            weight[j] = 1 + random.nextInt(5);
+        }
+        double capacity = random.nextBoolean() ? 0 : 5 + random.nextInt(6);
+        TourPlanner planner = new TourPlanner(lat[0], lng[0], pickupLat, pickupLng, dropLat, dropLng, weight, capacity);
+
+        int[] route = planner.plan();
+
+        assertFeasible(route, jobs, weight, capacity);
+        Assertions.assertEquals(length(route, lat, lng), planner.length(route), 1e-6);
+        // no feasible segment reversal shortens the tour
+        double best = length(route, lat, lng);
+        for (int i = 0; i < route.length - 1; i++) {
+            for (int k = i + 1; k < route.length; k++) {
+                int[] reversed = route.clone();
+                for (int a = i, b = k; a < b; a++, b--) {
+                    int t = reversed[a];
+                    reversed[a] = reversed[b];
+                    reversed[b] = t;
+                }
+                if (isFeasible(reversed, weight, capacity)) {
+                    Assertions.assertTrue(length(reversed, lat, lng) > best - 1e-5, "2-opt move left: " + i + ".." + k);
+                }
+            }
+        }
+    }
+
+    @Test
+    void stopNumbering_shouldEncodeJobAndKind() {
+        Assertions.assertEquals(3, TourPlanner.jobOf(6));
+        Assertions.assertEquals(3, TourPlanner.jobOf(7));
+        Assertions.assertTrue(TourPlanner.isPickup(6));
+        Assertions.assertFalse(TourPlanner.isPickup(7));
+    }
+
+    // every stop exactly once, each pickup before its drop-off, load within capacity
+    private static void assertFeasible(int[] route, int jobs, double[] weight, double capacity) {
+        Assertions.assertNotNull(route);
+        Assertions.assertEquals(2 * jobs, route.length);
+        boolean[] seen = new boolean[2 * jobs];
+        for (int stop : route) {
+            Assertions.assertFalse(seen[stop], "stop " + stop + " visited twice");
+            seen[stop] = true;
+        }
+        Assertions.assertTrue(isFeasible(route, weight, capacity));
+    }
+
+    private static boolean isFeasible(int[] route, double[] weight, double capacity) {
+        boolean[] picked = new boolean[weight.length];
+        double load = 0;
+        for (int stop : route) {
+            int job = TourPlanner.jobOf(stop);
+            if (TourPlanner.isPickup(stop)) {
+                picked[job] = true;
+                load += weight[job];
+                if (capacity > 0 && load > capacity + 1e-9) {
+                    return false;
+                }
+            } else {
+                if (!picked[job]) {
+                    return false;
+                }
+                load -= weight[job];
+            }
+        }
+        return true;
+    }
+
+    // node 0 is the start, stop s is node s + 1
+    private static double length(int[] route, double[] lat, double[] lng) {
+        double total = 0;
+        int prev = 0;
+        for (int stop : route) {
+            total += GeoMath.haversine(lat[prev], lng[prev], lat[stop + 1], lng[stop + 1]);
+            prev = stop + 1;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,86 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.repository.RobotRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class FleetRegistryTests {
+
+    @Mock
+    private RobotRepository robotRepository;
+
+    private RobotReservationManager reservationManager;
+
+    private FleetRegistry fleetRegistry;
+
+    @BeforeEach
+    void setup() {
+        reservationManager = new RobotReservationManager(null, false, 120);
+        fleetRegistry = new FleetRegistry(robotRepository, reservationManager);
+        Mockito.when(robotRepository.findAll()).thenReturn(List.of(
+            robot("r1", true, "h1", 5, 10, "robot"),
+            robot("r2", true, "h1", 8, 6, "robot"),
+            robot("r3", true, "h1", 3, 12, "Robot"),
+            robot("d1", true, "h1", 20, 15, "drone"),
+            robot("r4", false, "h1", 1, 1, "robot"),
+            robot("r5", true, "h2", 9, 2, "robot")));
+        fleetRegistry.rebuild();
+    }
+
+    @Test
+    void cheapestAndFastest_shouldPeekTheirPool() {
+        Assertions.assertEquals("r2", fleetRegistry.cheapest("h1", "robot").orElseThrow().getRobotId());
+        Assertions.assertEquals("r2", fleetRegistry.fastest("h1", "ROBOT").orElseThrow().getRobotId());
+        Assertions.assertEquals("d1", fleetRegistry.cheapest("h1", "drone").orElseThrow().getRobotId());
+        Assertions.assertTrue(fleetRegistry.cheapest("h3", "robot").isEmpty());
+        Assertions.assertEquals(3, fleetRegistry.availableCount("h1", "robot"));
+    }
+
+    @Test
+    void peek_shouldSkipReservedRobots() {
+        Assertions.assertTrue(reservationManager.tryReserve("r2", "o1"));
+
+        Assertions.assertEquals("r1", fleetRegistry.cheapest("h1", "robot").orElseThrow().getRobotId());
+        Assertions.assertEquals("r1", fleetRegistry.fastest("h1", "robot").orElseThrow().getRobotId());
+        Assertions.assertFalse(fleetRegistry.available("robot").stream().anyMatch(r -> r.getRobotId().equals("r2")));
+
+        reservationManager.release("r2", "o1");
+        Assertions.assertEquals("r2", fleetRegistry.cheapest("h1", "robot").orElseThrow().getRobotId());
+    }
+
+    @Test
+    void update_shouldMoveRobotsInAndOutOfPools() {
+        fleetRegistry.update(robot("r2", false, "h1", 8, 6, "robot"));
+        Assertions.assertEquals("r1", fleetRegistry.cheapest("h1", "robot").orElseThrow().getRobotId());
+
+        // back, now at another hub and cheaper
+        fleetRegistry.update(robot("r2", true, "h2", 8, 1, "robot"));
+        Assertions.assertEquals("r2", fleetRegistry.cheapest("h2", "robot").orElseThrow().getRobotId());
+        Assertions.assertEquals(2, fleetRegistry.availableCount("h1", "robot"));
+
+        fleetRegistry.remove("r2");
+        Assertions.assertEquals("r5", fleetRegistry.cheapest("h2", "robot").orElseThrow().getRobotId());
+    }
+
+    @Test
+    void available_shouldReturnCopiesAcrossHubs() {
+        List<RobotEntity> robots = fleetRegistry.available("robot");
+
+        Assertions.assertEquals(4, robots.size());
+        robots.get(0).setAvailable(false);
+        Assertions.assertEquals(4, fleetRegistry.available("robot").size());
+    }
+
+    private static RobotEntity robot(String id, boolean available, String hubId, double speed, double price, String type) {
+        return new RobotEntity(id, available, 100, hubId, 37.0, -122.0, 10.0, speed, price, type);
+    }
+}
@@ -0,0 +1,92 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.flagcamp.dispatchanddelivery.entity.HubEntity;
+import com.flagcamp.dispatchanddelivery.repository.HubRepository;
+import com.flagcamp.dispatchanddelivery.routing.GeoMath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+@ExtendWith(MockitoExtension.class)
+public class HubIndexTests {
+
+    @Mock
+    private HubRepository hubRepository;
+
+    private HubIndex hubIndex;
+
+    @BeforeEach
+    void setup() {
+        hubIndex = new HubIndex(hubRepository);
+    }
+
+    @Test
+    void nearest_shouldMatchBruteForce() {
+        Random random = new Random(9);
+        List<HubEntity> hubs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            hubs.add(new HubEntity("h" + i, "address " + i, Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                random.nextDouble() * 360 - 180));
+        }
+        Mockito.when(hubRepository.findAll()).thenReturn(hubs);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lng = random.nextDouble() * 360 - 180;
+            int k = 1 + random.nextInt(8);
+            List<HubEntity> expected = new ArrayList<>(hubs);
+            expected.sort(Comparator.comparingDouble(h -> GeoMath.haversine(lat, lng, h.getHubLat(), h.getHubLng())));
+
+            List<HubIndex.Neighbor> found = hubIndex.nearest(lat, lng, k);
+
+            Assertions.assertEquals(k, found.size());
+            for (int i = 0; i < k; i++) {
+                HubEntity hub = expected.get(i);
+                double meters = GeoMath.haversine(lat, lng, hub.getHubLat(), hub.getHubLng());
+                Assertions.assertEquals(meters, found.get(i).distanceMeters(), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    void nearest_shouldSearchAcrossTheAntimeridian() {
+        Mockito.when(hubRepository.findAll()).thenReturn(List.of(
+            new HubEntity("east", "a", 0, 179.9),
+            new HubEntity("far", "b", 0, 170.0)));
+
+        Assertions.assertEquals("east", hubIndex.nearest(0, -179.9).orElseThrow().getHubId());
+    }
+
+    @Test
+    void nearest_shouldReturnAtMostAllHubs() {
+        Mockito.when(hubRepository.findAll()).thenReturn(List.of(
+            new HubEntity("a", "a", 37.0, -122.0),
+            new HubEntity("b", "b", 37.1, -122.0)));
+
+        List<HubIndex.Neighbor> found = hubIndex.nearest(37.09, -122.0, 5);
+
+        Assertions.assertEquals(List.of("b", "a"), found.stream().map(n -> n.hub().getHubId()).toList());
+        Assertions.assertEquals(2, hubIndex.size());
+        Assertions.assertEquals("a", hubIndex.byId("a").orElseThrow().getHubId());
+    }
+
+    @Test
+    void rebuild_shouldSwapInTheNewHubs() {
+        Mockito.when(hubRepository.findAll())
+            .thenReturn(List.of())
+            .thenReturn(List.of(new HubEntity("a", "a", 37.0, -122.0)));
+
+        Assertions.assertTrue(hubIndex.nearest(37.0, -122.0).isEmpty());
+        hubIndex.rebuild();
+        Assertions.assertEquals("a", hubIndex.nearest(37.0, -122.0).orElseThrow().getHubId());
+    }
+}
@@ -0,0 +1,194 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shard leases against a mocked Redis: 4 shards, 300 ms leases renewed every 200 ms.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class MissionShardsTests {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOps;
+    @Mock
+    private ZSetOperations<String, String> zSetOps;
+
+    private MissionShards shards;
+    // lease keys another node holds: renewing or taking them fails
+    private final Set<String> heldElsewhere = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setup() {
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        Mockito.when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+        Mockito.when(zSetOps.zCard("mission-nodes")).thenReturn(1L);
+        Mockito.when(valueOps.setIfAbsent(Mockito.startsWith("mission-shard:"), Mockito.eq("n1"), Mockito.any(Duration.class)))
+            .thenAnswer(invocation -> !heldElsewhere.contains(invocation.<String>getArgument(0)));
+        Mockito.when(redisTemplate.execute(Mockito.<RedisScript<Long>>any(), Mockito.anyList(), Mockito.any(Object[].class)))
+            .thenAnswer(invocation -> heldElsewhere.contains(invocation.<List<String>>getArgument(1).get(0)) ? 0L : 1L);
+        shards = new MissionShards(redisTemplate, new NodeIdentity("n1"), true, 4, 300, 200);
+    }
+
+    @Test
+    void renew_shouldTakeTheFairShareOfFreeShards() {
+        Mockito.when(zSetOps.zCard("mission-nodes")).thenReturn(2L);
+
+        shards.renew();
+
+        Assertions.assertEquals(2, shards.ownedCount());
+        Assertions.assertEquals(2, shards.liveNodes());
+        List<Integer> gained = drainGained();
+        Assertions.assertEquals(2, gained.size());
+        for (int shard : gained) {
+            Assertions.assertTrue(shards.owns(shard));
+        }
+        Mockito.verify(zSetOps).add(Mockito.eq("mission-nodes"), Mockito.eq("n1"), Mockito.anyDouble());
+    }
+
+    @Test
+    void renew_shouldSkipShardsHeldByOtherNodes() {
+        heldElsewhere.add("mission-shard:1");
+        Mockito.when(valueOps.get("mission-shard:1")).thenReturn("n2");
+
+        shards.renew();
+
+        Assertions.assertEquals(Set.of(0, 2, 3), new TreeSet<>(drainGained()));
+        Assertions.assertFalse(shards.owns(1));
+        Assertions.assertEquals("n2", shards.ownerOf(1));
+        Assertions.assertEquals("n1", shards.ownerOf(2));
+    }
+
+    @Test
+    void renew_shouldGiveBackTheHighestShardsWhenANodeJoins() {
+        shards.renew();
+        Assertions.assertEquals(4, drainGained().size());
+
+        Mockito.when(zSetOps.zCard("mission-nodes")).thenReturn(2L);
+        shards.renew();
+
+        // no longer run here, but still leased until the engine has detached them
+        Assertions.assertFalse(shards.owns(2));
+        Assertions.assertFalse(shards.owns(3));
+        Assertions.assertTrue(shards.owns(0));
+        Assertions.assertEquals(List.of(2, 3), new ArrayList<>(new TreeSet<>(drainLost())));
+        Mockito.verify(redisTemplate, Mockito.never()).execute(Mockito.<RedisScript<Long>>any(),
+            Mockito.eq(List.of("mission-shard:3")), Mockito.eq("n1"));
+        // a further renewal doesn't give back more
+        shards.renew();
+        Assertions.assertTrue(drainLost().isEmpty());
+
+        shards.detached(3);
+
+        Mockito.verify(redisTemplate).execute(Mockito.<RedisScript<Long>>any(),
+            Mockito.eq(List.of("mission-shard:3")), Mockito.eq("n1"));
+        Assertions.assertEquals(3, shards.ownedCount());
+    }
+
+    @Test
+    void detached_shouldNotReleaseAShardThatWasNotGivenBack() {
+        shards.renew();
+
+        shards.detached(0);
+
+        Assertions.assertTrue(shards.owns(0));
+        Assertions.assertEquals(4, shards.ownedCount());
+        Mockito.verify(redisTemplate, Mockito.never()).execute(Mockito.<RedisScript<Long>>any(),
+            Mockito.eq(List.of("mission-shard:0")), Mockito.eq("n1"));
+    }
+
+    @Test
+    void renew_shouldLoseAShardWhoseLeaseWasTaken() {
+        shards.renew();
+        drainGained();
+        // the lease ran out and another node took the shard
+        heldElsewhere.add("mission-shard:1");
+
+        shards.renew();
+
+        Assertions.assertEquals(List.of(1), drainLost());
+        Assertions.assertFalse(shards.owns(1));
+        Assertions.assertEquals(3, shards.ownedCount());
+        Assertions.assertTrue(drainGained().isEmpty());
+    }
+
+    @Test
+    void renew_shouldDropAllShardsBeforeTheLeasesCanRunOut() throws Exception {
+        shards.renew();
+        drainGained();
+        Mockito.doThrow(new IllegalStateException("redis down")).when(zSetOps)
+            .add(Mockito.anyString(), Mockito.anyString(), Mockito.anyDouble());
+
+        // within lease-ms - renew-ms of the last renewal: kept
+        shards.renew();
+        Assertions.assertEquals(4, shards.ownedCount());
+        Assertions.assertTrue(drainLost().isEmpty());
+
+        // past 100 ms the next attempt (200 ms later) could come after the 300 ms leases ran out
+        Thread.sleep(120);
+        shards.renew();
+
+        Assertions.assertEquals(0, shards.ownedCount());
+        Assertions.assertEquals(Set.of(0, 1, 2, 3), new TreeSet<>(drainLost()));
+    }
+
+    @Test
+    void drainGained_shouldRetryAFailedAdoptWithoutShardsLostSince() {
+        shards.renew();
+        List<List<Integer>> batches = new ArrayList<>();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> shards.drainGained(batch -> {
+            batches.add(List.copyOf(batch));
+            throw new IllegalStateException("store down");
+        }));
+        // shard 1 is lost before the next tick
+        heldElsewhere.add("mission-shard:1");
+        shards.renew();
+        shards.drainGained(batch -> batches.add(List.copyOf(batch)));
+
+        Assertions.assertEquals(2, batches.size());
+        Assertions.assertEquals(Set.of(0, 1, 2, 3), new TreeSet<>(batches.get(0)));
+        Assertions.assertEquals(Set.of(0, 2, 3), new TreeSet<>(batches.get(1)));
+        // nothing left over
+        Assertions.assertTrue(drainGained().isEmpty());
+    }
+
+    @Test
+    void constructor_shouldRejectARenewIntervalNotBelowTheLease() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new MissionShards(redisTemplate, new NodeIdentity("n1"), true, 4, 300, 300));
+    }
+
+    private List<Integer> drainGained() {
+        List<Integer> gained = new ArrayList<>();
+        shards.drainGained(gained::addAll);
+        return gained;
+    }
+
+    private List<Integer> drainLost() {
+        List<Integer> lost = new ArrayList<>();
+        shards.drainLost(lost::add);
+        return lost;
+    }
+}
@@ -0,0 +1,219 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Buffered position writes with max-batch-size 3, against a mocked Redis pipeline and JDBC batch.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PositionStoreTests {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private HashOperations<String, Object, Object> hashOps;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private ExecutorService routingExecutor;
+    @Mock
+    private RedisConnection connection;
+    @Mock
+    private RedisHashCommands hashCommands;
+    @Mock
+    private RedisKeyCommands keyCommands;
+
+    // one list of commands per pipeline, e.g. "HMSET positions:o1 lat=1.0 lng=2.0"
+    private final List<List<String>> pipelines = new ArrayList<>();
+    // one list of {lat, lng, id} rows per JDBC batch
+    private final List<List<String>> robotBatches = new ArrayList<>();
+    // early flushes handed to the executor, run by the test
+    private final List<Runnable> queued = new ArrayList<>();
+    // read from inside the pipeline, while the flush is writing
+    private Runnable duringPipeline = () -> { };
+
+    private PositionStore store;
+
+    @BeforeEach
+    void setup() {
+        Mockito.when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+        Mockito.when(connection.hashCommands()).thenReturn(hashCommands);
+        Mockito.when(connection.keyCommands()).thenReturn(keyCommands);
+        Mockito.doAnswer(invocation -> {
+            byte[] key = invocation.getArgument(0);
+            Map<byte[], byte[]> fields = invocation.getArgument(1);
+            Map<String, String> sorted = new TreeMap<>();
+            fields.forEach((field, value) -> sorted.put(string(field), string(value)));
+            StringBuilder command = new StringBuilder("HMSET ").append(string(key));
+            sorted.forEach((field, value) -> command.append(' ').append(field).append('=').append(value));
+            pipelines.get(pipelines.size() - 1).add(command.toString());
+            return null;
+        }).when(hashCommands).hMSet(Mockito.any(byte[].class), Mockito.anyMap());
+        Mockito.doAnswer(invocation -> {
+            pipelines.get(pipelines.size() - 1)
+                .add("EXPIRE " + string(invocation.getArgument(0)) + " " + invocation.getArgument(1));
+            return true;
+        }).when(keyCommands).expire(Mockito.any(byte[].class), Mockito.anyLong());
+        Mockito.when(redisTemplate.executePipelined(Mockito.<RedisCallback<Object>>any())).thenAnswer(invocation -> {
+            pipelines.add(new ArrayList<>());
+            RedisCallback<Object> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            duringPipeline.run();
+            return List.of();
+        });
+        Mockito.when(jdbcTemplate.batchUpdate(Mockito.anyString(), Mockito.<List<Object[]>>any())).thenAnswer(invocation -> {
+            List<String> rows = new ArrayList<>();
+            for (Object[] row : invocation.<List<Object[]>>getArgument(1)) {
+                rows.add(row[0] + "," + row[1] + "," + row[2]);
+            }
+            robotBatches.add(rows);
+            return new int[rows.size()];
+        });
+        Mockito.doAnswer(invocation -> queued.add(invocation.getArgument(0)))
+            .when(routingExecutor).execute(Mockito.any(Runnable.class));
+        store = new PositionStore(redisTemplate, jdbcTemplate, 3, routingExecutor);
+    }
+
+    @Test
+    void flush_shouldWriteOnlyTheLatestPositionPerRobotAndOrder() {
+        store.orderPosition("o1", 1.0, 2.0);
+        store.orderPosition("o1", 1.5, 2.5);
+        store.robotPosition("r1", 3.0, 4.0);
+        store.robotPosition("r1", 3.5, 4.5);
+
+        store.flush();
+
+        Assertions.assertEquals(List.of(List.of("HMSET positions:o1 lat=1.5 lng=2.5", "EXPIRE positions:o1 86400")), pipelines);
+        Assertions.assertEquals(List.of(List.of("3.5,4.5,r1")), robotBatches);
+        Assertions.assertEquals(1, store.routeWrites());
+        Assertions.assertEquals(1, store.robotWrites());
+        Assertions.assertEquals(1, store.flushes());
+
+        // nothing pending: no empty pipeline or batch
+        store.flush();
+        Assertions.assertEquals(1, pipelines.size());
+        Assertions.assertEquals(1, store.flushes());
+    }
+
+    @Test
+    void flush_shouldSplitBatchesAtMaxBatchSize() {
+        for (int i = 0; i < 7; i++) {
+            store.orderPosition("o" + i, i, i);
+        }
+        for (int i = 0; i < 4; i++) {
+            store.robotPosition("r" + i, i, i);
+        }
+
+        store.flush();
+
+        // HMSET + EXPIRE per order
+        Assertions.assertEquals(List.of(6, 6, 2), pipelines.stream().map(List::size).toList());
+        Assertions.assertEquals(List.of(3, 1), robotBatches.stream().map(List::size).toList());
+        Assertions.assertEquals(7, store.routeWrites());
+        Assertions.assertEquals(4, store.robotWrites());
+    }
+
+    @Test
+    void fullBuffer_shouldQueueOneFlushInsteadOfWritingOnTheCallersThread() {
+        store.orderPosition("o1", 1.0, 2.0);
+        store.robotPosition("r1", 3.0, 4.0);
+        Assertions.assertTrue(queued.isEmpty());
+
+        store.orderPosition("o2", 5.0, 6.0);
+        store.robotPosition("r2", 7.0, 8.0);
+
+        // the third position filled the batch: one flush queued, nothing written yet
+        Assertions.assertEquals(1, queued.size());
+        Assertions.assertTrue(pipelines.isEmpty());
+        Mockito.verifyNoInteractions(jdbcTemplate);
+
+        queued.get(0).run();
+
+        Assertions.assertEquals(1, pipelines.size());
+        Assertions.assertEquals(2, store.routeWrites());
+        Assertions.assertEquals(2, store.robotWrites());
+        // the next full buffer queues a new flush
+        for (int i = 0; i < 3; i++) {
+            store.orderPosition("o" + i, i, i);
+        }
+        Assertions.assertEquals(2, queued.size());
+    }
+
+    @Test
+    void findOrderPosition_shouldSeePositionsNotYetFlushed() {
+        store.orderPosition("o1", 1.0, 2.0);
+
+        Assertions.assertArrayEquals(new double[]{1.0, 2.0}, store.findOrderPosition("o1").orElseThrow());
+        Mockito.verifyNoInteractions(hashOps);
+
+        // still visible while the flush is writing it
+        List<double[]> seen = new ArrayList<>();
+        duringPipeline = () -> seen.add(store.findOrderPosition("o1").orElseThrow());
+        store.flush();
+        Assertions.assertArrayEquals(new double[]{1.0, 2.0}, seen.get(0));
+        Mockito.verifyNoInteractions(hashOps);
+    }
+
+    @Test
+    void orderPosition_shouldWriteOnlyLatLngAndExpireToThePositionsHash() {
+        store.orderPosition("o1", 1.0, 2.0);
+
+        store.flush();
+
+        Assertions.assertEquals(List.of(List.of("HMSET positions:o1 lat=1.0 lng=2.0", "EXPIRE positions:o1 86400")), pipelines);
+        Mockito.verify(hashCommands).hMSet(Mockito.any(byte[].class), Mockito.anyMap());
+        Mockito.verify(keyCommands).expire(Mockito.any(byte[].class), Mockito.anyLong());
+        // no read-modify-write of the route: nothing else is sent, the routes:<orderId> hash is never touched
+        Mockito.verifyNoMoreInteractions(hashCommands, keyCommands);
+        Mockito.verify(connection, Mockito.never()).stringCommands();
+        Mockito.verify(redisTemplate, Mockito.never()).opsForHash();
+        Mockito.verify(redisTemplate, Mockito.never()).opsForValue();
+        Mockito.verify(redisTemplate, Mockito.never()).hasKey(Mockito.anyString());
+        for (List<String> pipeline : pipelines) {
+            Assertions.assertTrue(pipeline.stream().noneMatch(command -> command.contains("routes:")), pipeline.toString());
+        }
+    }
+
+    @Test
+    void findOrderPosition_shouldReadTheHashOnceTheBufferIsEmpty() {
+        store.orderPosition("o1", 1.0, 2.0);
+        store.flush();
+        Mockito.when(hashOps.multiGet("positions:o1", List.of("lat", "lng"))).thenReturn(Arrays.asList("1.0", "2.0"));
+        Mockito.when(hashOps.multiGet("positions:o2", List.of("lat", "lng"))).thenReturn(Arrays.asList(null, null));
+
+        Assertions.assertArrayEquals(new double[]{1.0, 2.0}, store.findOrderPosition("o1").orElseThrow());
+        Assertions.assertTrue(store.findOrderPosition("o2").isEmpty());
+
+        Mockito.verify(hashOps).multiGet("positions:o1", List.of("lat", "lng"));
+        Mockito.verify(hashOps).multiGet("positions:o2", List.of("lat", "lng"));
+        Mockito.verifyNoMoreInteractions(hashOps);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,141 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RedisSignalBusTests {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ValueOperations<String, String> values;
+    @Mock
+    private RedisMessageListenerContainer container;
+
+    private ExecutorService executor;
+    private RedisSignalBus bus;
+    //key: redis key, value: 按到达Redis的顺序记录的写
+    private final Map<String, List<String>> writes = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setup() {
+        executor = Executors.newFixedThreadPool(8);
+        bus = new RedisSignalBus(redisTemplate, container, executor, 600);
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(values);
+        Mockito.doAnswer(invocation -> {
+            record(invocation.getArgument(0), "claim " + invocation.getArgument(1));
+            return null;
+        }).when(values).set(Mockito.anyString(), Mockito.anyString(), Mockito.any(Duration.class));
+        Mockito.doAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            record(keys.get(0), "release " + invocation.getArgument(2));
+            return 1L;
+        }).when(redisTemplate).execute(Mockito.<RedisScript<Long>>any(), Mockito.anyList(), Mockito.any());
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writes_shouldReachRedisInCallOrderPerOrder() throws Exception {
+        // wait at pickup, confirmed, wait at drop-off: the release must not land after the second claim
+        for (int i = 0; i < 200; i++) {
+            bus.claim("o" + i, "n1");
+            bus.release("o" + i, "n1");
+            bus.claim("o" + i, "n1");
+        }
+        // chained writes are submitted as their predecessors finish, so wait for the count
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (writes.values().stream().mapToInt(List::size).sum() < 600 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        Assertions.assertEquals(200, writes.size());
+        writes.forEach((key, ops) -> Assertions.assertEquals(List.of("claim n1", "release n1", "claim n1"), ops, key));
+    }
+
+    @Test
+    void release_shouldOnlyDeleteThisNodesClaim() {
+        bus.release("o1", "n2");
+
+        ArgumentCaptor<RedisScript<Long>> script = ArgumentCaptor.captor();
+        Mockito.verify(redisTemplate, Mockito.timeout(10_000)).execute(script.capture(), Mockito.eq(List.of("signal-owner:o1")), Mockito.eq("n2"));
+        Assertions.assertTrue(script.getValue().getScriptAsString().contains("== ARGV[1]"));
+        Mockito.verify(redisTemplate, Mockito.never()).delete(Mockito.anyString());
+    }
+
+    @Test
+    void publish_shouldGoToTheOwnerOrEveryNode() {
+        Mockito.when(values.get("signal-owner:o1")).thenReturn("n2");
+
+        bus.publish(new SignalBus.Signal("o1", SignalBus.Kind.PICKUP, "n1"));
+        bus.publish(new SignalBus.Signal("o2", SignalBus.Kind.DELIVER, "n1"));
+
+        Mockito.verify(redisTemplate).convertAndSend("dispatch:signals:n2", "o1|PICKUP|n1");
+        Mockito.verify(redisTemplate).convertAndSend("dispatch:signals", "o2|DELIVER|n1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void subscribe_shouldDeliverEverySignalIncludingOwnBroadcasts() {
+        List<SignalBus.Signal> received = new ArrayList<>();
+        bus.subscribe("n1", received::add);
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        ArgumentCaptor<Collection<? extends Topic>> topics = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(container).addMessageListener(listener.capture(), topics.capture());
+        Assertions.assertEquals(List.of("dispatch:signals:n1", "dispatch:signals"),
+            topics.getValue().stream().map(Topic::getTopic).toList());
+
+        listener.getValue().onMessage(message("o1|PICKUP|n1"), null);
+        listener.getValue().onMessage(message("o2|DELIVER|n2"), null);
+        listener.getValue().onMessage(message("o3|LOST|n2"), null);
+        listener.getValue().onMessage(message("garbage"), null);
+
+        Assertions.assertEquals(List.of(
+            new SignalBus.Signal("o1", SignalBus.Kind.PICKUP, "n1"),
+            new SignalBus.Signal("o2", SignalBus.Kind.DELIVER, "n2")), received);
+    }
+
+    private void record(String key, String op) throws InterruptedException {
+        // uneven latency, so unchained writes would overtake each other
+        Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+        writes.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(op);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("dispatch:signals".getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
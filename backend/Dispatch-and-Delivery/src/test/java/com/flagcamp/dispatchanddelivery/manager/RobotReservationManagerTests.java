@@ -0,0 +1,163 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class RobotReservationManagerTests {
+
+    private static final int THREADS = 32;
+
+    @RepeatedTest(50)
+    void tryReserve_shouldLetExactlyOneConcurrentOrderWin() throws Exception {
+        RobotReservationManager manager = new RobotReservationManager(null, false, 120);
+
+        List<String> winners = race(manager, "r1");
+
+        Assertions.assertEquals(1, winners.size());
+        Assertions.assertTrue(manager.isReserved("r1"));
+        // the winner can re-claim, nobody else can
+        Assertions.assertTrue(manager.tryReserve("r1", winners.get(0)));
+        Assertions.assertFalse(manager.tryReserve("r1", "late-order"));
+    }
+
+    @Test
+    void tryReserve_shouldTakeOverAnExpiredLease() throws Exception {
+        // 0 s leases are expired as soon as they are read
+        RobotReservationManager manager = new RobotReservationManager(null, false, 0);
+        Assertions.assertTrue(manager.tryReserve("r1", "stale-order"));
+        Thread.sleep(1);
+
+        Assertions.assertFalse(manager.isReserved("r1"));
+        Assertions.assertTrue(manager.tryReserve("r1", "o1"));
+    }
+
+    @Test
+    void release_shouldOnlyDropTheOwnersLease() {
+        RobotReservationManager manager = new RobotReservationManager(null, false, 120);
+        Assertions.assertTrue(manager.tryReserve("r1", "o1"));
+
+        manager.release("r1", "o2");
+        Assertions.assertTrue(manager.isReserved("r1"));
+        Assertions.assertFalse(manager.tryReserve("r1", "o2"));
+
+        manager.release("r1", "o1");
+        Assertions.assertFalse(manager.isReserved("r1"));
+        Assertions.assertTrue(manager.tryReserve("r1", "o2"));
+    }
+
+    @RepeatedTest(20)
+    void tryReserve_shouldLetExactlyOneOrderWinAcrossNodes() throws Exception {
+        Map<String, String> redis = new ConcurrentHashMap<>();
+        StringRedisTemplate template = redis(redis);
+        // two nodes sharing the Redis; the second sees the lease the first handed out
+        RobotReservationManager node1 = new RobotReservationManager(template, true, 120);
+        RobotReservationManager node2 = new RobotReservationManager(template, true, 120);
+
+        List<String> winners = race(node1, "r1");
+        Assertions.assertEquals(1, winners.size());
+        Assertions.assertEquals(Map.of("robot-lease:r1", winners.get(0)), redis);
+        Assertions.assertTrue(node2.isReserved("r1"));
+        Assertions.assertFalse(node2.tryReserve("r1", "late-order"));
+        Assertions.assertTrue(node2.tryReserve("r1", winners.get(0)));
+    }
+
+    @Test
+    void release_shouldOnlyDeleteTheOwnersRedisLease() {
+        Map<String, String> redis = new ConcurrentHashMap<>();
+        StringRedisTemplate template = redis(redis);
+        RobotReservationManager manager = new RobotReservationManager(template, true, 120);
+        Assertions.assertTrue(manager.tryReserve("r1", "o1"));
+        Mockito.verify(template.opsForValue()).setIfAbsent("robot-lease:r1", "o1", Duration.ofSeconds(120));
+
+        manager.release("r1", "o2");
+        Assertions.assertTrue(manager.isReserved("r1"));
+
+        manager.release("r1", "o1");
+        Assertions.assertFalse(manager.isReserved("r1"));
+        Assertions.assertTrue(manager.tryReserve("r1", "o2"));
+    }
+
+    @Test
+    void reservedAmong_shouldReadAllLeasesAtOnce() {
+        Map<String, String> redis = new ConcurrentHashMap<>();
+        StringRedisTemplate template = redis(redis);
+        RobotReservationManager manager = new RobotReservationManager(template, true, 120);
+        Assertions.assertTrue(manager.tryReserve("r2", "o1"));
+
+        Assertions.assertEquals(Set.of("r2"), manager.reservedAmong(List.of("r1", "r2", "r3")));
+        Mockito.verify(template.opsForValue())
+            .multiGet(List.of("robot-lease:r1", "robot-lease:r2", "robot-lease:r3"));
+        Mockito.verify(template, Mockito.never()).hasKey(Mockito.anyString());
+    }
+
+    // StringRedisTemplate over a map: SET NX, GET, MGET, EXISTS and the compare-and-delete script
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate redis(Map<String, String> store) {
+        StringRedisTemplate template = Mockito.mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = Mockito.mock(ValueOperations.class);
+        Mockito.when(template.opsForValue()).thenReturn(values);
+        Mockito.when(values.setIfAbsent(Mockito.anyString(), Mockito.anyString(), Mockito.any(Duration.class)))
+            .thenAnswer(invocation -> store.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        Mockito.when(values.get(Mockito.anyString())).thenAnswer(invocation -> store.get(invocation.<String>getArgument(0)));
+        Mockito.when(values.multiGet(Mockito.anyCollection())).thenAnswer(invocation -> {
+            List<String> holders = new ArrayList<>();
+            for (String key : invocation.<List<String>>getArgument(0)) {
+                holders.add(store.get(key));
+            }
+            return holders;
+        });
+        Mockito.when(template.hasKey(Mockito.anyString())).thenAnswer(invocation -> store.containsKey(invocation.<String>getArgument(0)));
+        Mockito.when(template.execute(Mockito.<RedisScript<Long>>any(), Mockito.anyList(), Mockito.any(Object[].class)))
+            .thenAnswer(invocation -> {
+                List<String> keys = invocation.getArgument(1);
+                return store.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+            });
+        return template;
+    }
+
+    // all threads call tryReserve at the same moment; returns the orders that got the lease
+    private static List<String> race(RobotReservationManager manager, String robotId) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String orderId = "order-" + i;
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    start.await();
+                    return manager.tryReserve(robotId, orderId);
+                }));
+            }
+            ready.await();
+            start.countDown();
+            List<String> winners = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                if (results.get(i).get(5, TimeUnit.SECONDS)) {
+                    winners.add("order-" + i);
+                }
+            }
+            return winners;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.flagcamp.dispatchanddelivery.simulation.SimulationClock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class RobotSignalManagerTests {
+
+    private static final long DEADLINE = TimeUnit.SECONDS.toNanos(60);
+
+    private SimulationClock clock;
+    private LocalSignalBus bus;
+    private RobotSignalManager n1;
+    private RobotSignalManager n2;
+    private final List<RobotSignalManager.Outcome> outcomes = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        clock = new SimulationClock(true);
+        bus = new LocalSignalBus();
+        n1 = manager(bus, "n1");
+        n2 = manager(bus, "n2");
+    }
+
+    @Test
+    void confirmation_shouldReachTheWaitingNode() {
+        Assertions.assertTrue(n1.awaitPickup("o1", DEADLINE, outcomes::add));
+
+        n2.userConfirmedPickup("o1");
+
+        Assertions.assertEquals(List.of(RobotSignalManager.Outcome.CONFIRMED), outcomes);
+        Assertions.assertEquals(0, n1.waitingCount());
+    }
+
+    @Test
+    void confirmation_shouldOnlyWakeTheMatchingStop() {
+        n1.awaitDeliver("o1", DEADLINE, outcomes::add);
+
+        n2.userConfirmedPickup("o1");
+        Assertions.assertEquals(List.of(), outcomes);
+
+        n1.userConfirmedDeliver("o1");
+        Assertions.assertEquals(List.of(RobotSignalManager.Outcome.CONFIRMED), outcomes);
+    }
+
+    @Test
+    void expire_shouldTimeOutOnceAndReleaseTheClaim() {
+        n1.awaitPickup("o1", DEADLINE, outcomes::add);
+
+        n1.expire(DEADLINE - 1);
+        Assertions.assertEquals(List.of(), outcomes);
+        n1.expire(DEADLINE);
+        n2.userConfirmedPickup("o1");
+        n1.expire(2 * DEADLINE);
+
+        Assertions.assertEquals(List.of(RobotSignalManager.Outcome.TIMED_OUT), outcomes);
+        Assertions.assertEquals(0, n1.waitingCount());
+    }
+
+    @Test
+    void release_shouldKeepAClaimTakenOverByAnotherNode() {
+        // the mission moved to n2 while n1 still had the order waiting
+        n1.awaitPickup("o1", DEADLINE, outcomes::add);
+        n1.drop("o1");
+        n2.awaitPickup("o1", DEADLINE, outcomes::add);
+        // n1's late release
+        bus.release("o1", "n1");
+
+        n1.userConfirmedPickup("o1");
+
+        Assertions.assertEquals(List.of(RobotSignalManager.Outcome.CONFIRMED), outcomes);
+        Assertions.assertEquals(0, n2.waitingCount());
+    }
+
+    @Test
+    void forwarded_shouldBeHandledOnTheSendingNode() {
+        // a broadcast comes back to its sender too; the robot may have started waiting meanwhile
+        LoopbackBus loopback = new LoopbackBus();
+        RobotSignalManager node = manager(loopback, "n1");
+        loopback.beforeDelivery = () -> node.awaitPickup("o1", DEADLINE, outcomes::add);
+
+        node.userConfirmedPickup("o1");
+
+        Assertions.assertEquals(List.of(RobotSignalManager.Outcome.CONFIRMED), outcomes);
+    }
+
+    @Test
+    void await_shouldRejectOverTheCap() {
+        RobotSignalManager node = new RobotSignalManager(clock, bus, new NodeIdentity("n3"), 1000, 64, 2);
+
+        Assertions.assertTrue(node.awaitPickup("o1", DEADLINE, outcomes::add));
+        Assertions.assertTrue(node.awaitDeliver("o2", DEADLINE, outcomes::add));
+        Assertions.assertFalse(node.awaitPickup("o3", DEADLINE, outcomes::add));
+        Assertions.assertEquals(2, node.waitingCount());
+    }
+
+    private RobotSignalManager manager(SignalBus signalBus, String nodeId) {
+        RobotSignalManager manager = new RobotSignalManager(clock, signalBus, new NodeIdentity(nodeId), 1000, 64, 1000);
+        manager.subscribe();
+        return manager;
+    }
+
+    // like the Redis broadcast channel: every signal is delivered to the subscriber, sender included
+    private static final class LoopbackBus implements SignalBus {
+        private Consumer<Signal> handler;
+        private Runnable beforeDelivery = () -> { };
+
+        @Override
+        public void subscribe(String nodeId, Consumer<Signal> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void claim(String orderId, String nodeId) {
+        }
+
+        @Override
+        public void release(String orderId, String nodeId) {
+        }
+
+        @Override
+        public void publish(Signal signal) {
+            beforeDelivery.run();
+            handler.accept(signal);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RouteCacheTests {
+
+    private static final int CALLERS = 16;
+    private static final List<RouteDTO> ROUTES = List.of(new RouteDTO("_p~iF~ps|U", 38.5, -120.2, 100));
+
+    private ExecutorService routingExecutor;
+    private ExecutorService callers;
+    private RouteCache cache;
+    private RouteCache.RouteKey key;
+
+    @BeforeEach
+    void setup() {
+        routingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        callers = Executors.newFixedThreadPool(CALLERS);
+        cache = new RouteCache(100, 3600, 10, 10_000, routingExecutor);
+        key = cache.keyOf(37.78, -122.41, 37.80, -122.40);
+    }
+
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+        routingExecutor.shutdownNow();
+    }
+
+    @Test
+    void getOrCompute_shouldCallTheLoaderOnceForConcurrentCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        List<Future<List<RouteDTO>>> results = startCallers(CALLERS, () -> {
+            calls.incrementAndGet();
+            release.await();
+            return ROUTES;
+        });
+        awaitCoalesced(CALLERS - 1);
+
+        release.countDown();
+
+        for (Future<List<RouteDTO>> result : results) {
+            Assertions.assertEquals(ROUTES, result.get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(CALLERS - 1, cache.stats().coalesced());
+        Assertions.assertEquals(0, cache.stats().inFlight());
+        // cached from now on
+        Assertions.assertEquals(ROUTES, cache.getOrCompute(key, () -> Assertions.fail("loader called on a hit")));
+    }
+
+    @Test
+    void getOrCompute_shouldGiveALoaderFailureToEveryCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<List<RouteDTO>>> results = startCallers(CALLERS, () -> {
+            release.await();
+            throw new IOException("routing API down");
+        });
+        awaitCoalesced(CALLERS - 1);
+
+        release.countDown();
+
+        for (Future<List<RouteDTO>> result : results) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(IOException.class, e.getCause());
+        }
+        Assertions.assertEquals(0, cache.stats().inFlight());
+        // not cached: the next caller tries again
+        Assertions.assertEquals(ROUTES, cache.getOrCompute(key, () -> ROUTES));
+    }
+
+    @Test
+    void getOrCompute_shouldNotFailOthersWhenOneCallerIsCancelled() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        List<Future<List<RouteDTO>>> results = startCallers(CALLERS, () -> {
+            calls.incrementAndGet();
+            release.await();
+            return ROUTES;
+        });
+        awaitCoalesced(CALLERS - 1);
+
+        // like previewOptions hitting its deadline: the first caller (most likely the one that started the flight) is interrupted
+        Assertions.assertTrue(results.get(0).cancel(true));
+        release.countDown();
+
+        for (Future<List<RouteDTO>> result : results.subList(1, results.size())) {
+            Assertions.assertEquals(ROUTES, result.get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void getOrCompute_shouldRetryWhenTheLoaderIsInterrupted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        List<Future<List<RouteDTO>>> results = startCallers(CALLERS, () -> {
+            if (calls.incrementAndGet() == 1) {
+                release.await();
+                throw new InterruptedException("loader thread interrupted");
+            }
+            return ROUTES;
+        });
+        awaitCoalesced(CALLERS - 1);
+
+        release.countDown();
+
+        for (Future<List<RouteDTO>> result : results) {
+            Assertions.assertEquals(ROUTES, result.get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertEquals(0, cache.stats().inFlight());
+    }
+
+    @Test
+    void getOrCompute_shouldStopWaitingAfterTheLoadTimeout() throws Exception {
+        RouteCache impatient = new RouteCache(100, 3600, 10, 50, routingExecutor);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Assertions.assertThrows(TimeoutException.class, () -> impatient.getOrCompute(key, () -> {
+            release.await();
+            return ROUTES;
+        }));
+
+        // the computation went on and fills the cache
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (impatient.stats().size() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(ROUTES, impatient.get(key));
+    }
+
+    @Test
+    void put_shouldEvictTheLeastRecentlyUsedAtMaxSize() {
+        RouteCache small = new RouteCache(2, 3600, 10, 10_000, routingExecutor);
+        RouteCache.RouteKey a = small.keyOf(37.70, -122.40, 37.71, -122.40);
+        RouteCache.RouteKey b = small.keyOf(37.72, -122.40, 37.73, -122.40);
+        RouteCache.RouteKey c = small.keyOf(37.74, -122.40, 37.75, -122.40);
+        small.put(a, ROUTES);
+        small.put(b, ROUTES);
+        // a is now more recently used than b
+        Assertions.assertNotNull(small.get(a));
+
+        small.put(c, ROUTES);
+
+        Assertions.assertNull(small.get(b));
+        Assertions.assertNotNull(small.get(a));
+        Assertions.assertNotNull(small.get(c));
+        Assertions.assertEquals(2, small.stats().size());
+        Assertions.assertEquals(1, small.stats().evictions());
+    }
+
+    @Test
+    void get_shouldCountAnExpiredEntryAsEvictionAndMiss() {
+        // 0 s: expired as soon as any time has passed
+        RouteCache expiring = new RouteCache(100, 0, 10, 10_000, routingExecutor);
+        expiring.put(key, ROUTES);
+
+        Assertions.assertNull(expiring.get(key));
+
+        Assertions.assertEquals(1, expiring.stats().evictions());
+        Assertions.assertEquals(1, expiring.stats().misses());
+        Assertions.assertEquals(0, expiring.stats().hits());
+        Assertions.assertEquals(0, expiring.stats().size());
+    }
+
+    @Test
+    void keyOf_shouldMapNearbyPointsToOneCell() {
+        // 10 m cells; ~1 m apart, both well inside one cell
+        double cell = 10 / 111_320.0;
+        double lat = Math.round(37.7749 / cell) * cell;
+        double lng = -122.4194;
+
+        Assertions.assertEquals(cache.keyOf(lat, lng, 37.80, -122.40),
+            cache.keyOf(lat + 0.000009, lng + 0.000009, 37.80, -122.40));
+        // ~100 m away is another cell
+        Assertions.assertNotEquals(cache.keyOf(lat, lng, 37.80, -122.40),
+            cache.keyOf(lat + 0.0009, lng, 37.80, -122.40));
+        // direction matters
+        Assertions.assertNotEquals(cache.keyOf(lat, lng, 37.80, -122.40), cache.keyOf(37.80, -122.40, lat, lng));
+    }
+
+    @Test
+    void stats_shouldCountHitsAndMisses() throws Exception {
+        Assertions.assertNull(cache.get(key));
+        Assertions.assertEquals(ROUTES, cache.getOrCompute(key, () -> ROUTES));
+        Assertions.assertEquals(ROUTES, cache.getOrCompute(key, () -> ROUTES));
+        Assertions.assertEquals(ROUTES, cache.get(key));
+
+        Assertions.assertEquals(2, cache.stats().hits());
+        Assertions.assertEquals(2, cache.stats().misses());
+        Assertions.assertEquals(0, cache.stats().coalesced());
+        Assertions.assertEquals(100, cache.stats().maxSize());
+    }
+
+    @Test
+    void invalidateAll_shouldDropEntriesButKeepCounters() {
+        cache.put(key, ROUTES);
+        Assertions.assertNotNull(cache.get(key));
+        Assertions.assertNull(cache.get(cache.keyOf(1, 1, 2, 2)));
+
+        cache.invalidateAll();
+
+        Assertions.assertEquals(0, cache.stats().size());
+        Assertions.assertEquals(1, cache.stats().hits());
+        Assertions.assertEquals(1, cache.stats().misses());
+        Assertions.assertNull(cache.get(key));
+        Assertions.assertEquals(2, cache.stats().misses());
+    }
+
+    private List<Future<List<RouteDTO>>> startCallers(int count, Callable<List<RouteDTO>> loader) throws InterruptedException {
+        List<Future<List<RouteDTO>>> results = new ArrayList<>();
+        results.add(callers.submit(() -> cache.getOrCompute(key, loader)));
+        // the first caller starts the flight, the others join it
+        awaitInFlight();
+        for (int i = 1; i < count; i++) {
+            results.add(callers.submit(() -> cache.getOrCompute(key, loader)));
+        }
+        return results;
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (cache.stats().inFlight() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(1, cache.stats().inFlight());
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (cache.stats().coalesced() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(expected, cache.stats().coalesced());
+    }
+}
@@ -0,0 +1,84 @@
+package com.flagcamp.dispatchanddelivery.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flagcamp.dispatchanddelivery.model.enums.MissionState;
+import com.flagcamp.dispatchanddelivery.model.response.TrackingFrame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TrackingHubTests {
+
+    @Mock
+    private PositionStore positionStore;
+    @Mock
+    private ExecutorService executor;
+    @Mock
+    private WebSocketSession session;
+
+    private TrackingHub hub;
+
+    @BeforeEach
+    void setup() throws Exception {
+        // fan-outs run on the publishing thread
+        Mockito.doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(Mockito.any());
+        Mockito.when(session.getId()).thenReturn("s1");
+        Mockito.when(session.isOpen()).thenReturn(true);
+        Mockito.when(positionStore.findOrderPosition("o1")).thenReturn(Optional.of(new double[] {37.0, -122.0}));
+
+        hub = new TrackingHub(positionStore, new ObjectMapper(), executor, 5000, 65536, 60_000);
+        hub.subscribe(session, List.of(TrackingFrame.position("o1", 37.0, -122.0, null)), false, false);
+    }
+
+    @Test
+    void publish_shouldReadTheStoredPositionAtMostOncePerInterval() {
+        for (int i = 0; i < 10; i++) {
+            hub.publish(Map.of());
+        }
+
+        Mockito.verify(positionStore, Mockito.times(1)).findOrderPosition("o1");
+        // the subscribe frame and one position frame
+        Assertions.assertEquals(2, hub.messagesSent());
+    }
+
+    @Test
+    void publish_shouldReadAgainOnceTheMissionLeavesThisNode() {
+        hub.publish(Map.of());
+        hub.publish(Map.of("o1", new TrackingHub.Fix(37.001, -122.0, MissionState.TO_DROPOFF)));
+        hub.publish(Map.of("o1", new TrackingHub.Fix(37.002, -122.0, MissionState.TO_DROPOFF)));
+        Mockito.verify(positionStore, Mockito.times(1)).findOrderPosition("o1");
+
+        // delivered (or handed off): back to the stored position, without waiting out the interval
+        hub.publish(Map.of());
+
+        Mockito.verify(positionStore, Mockito.times(2)).findOrderPosition("o1");
+        Assertions.assertEquals(5, hub.messagesSent());
+    }
+
+    @Test
+    void publish_shouldForgetOrdersNobodyWatches() {
+        hub.publish(Map.of());
+        hub.unsubscribe("s1");
+        hub.publish(Map.of());
+
+        Assertions.assertFalse(hub.hasViewers());
+        Mockito.verify(positionStore, Mockito.times(1)).findOrderPosition("o1");
+    }
+}
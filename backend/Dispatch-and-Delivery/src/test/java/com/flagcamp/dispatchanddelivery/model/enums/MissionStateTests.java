@@ -0,0 +1,42 @@
+package com.flagcamp.dispatchanddelivery.model.enums;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+public class MissionStateTests {
+
+    private static final Map<MissionState, Set<MissionState>> ALLOWED = Map.of(
+        MissionState.TO_PICKUP, EnumSet.of(MissionState.WAIT_PICKUP),
+        MissionState.TO_DROPOFF, EnumSet.of(MissionState.WAIT_DROPOFF),
+        // a confirmed stop leads to the next leg (either kind) or, after the last one or a timeout, home
+        MissionState.WAIT_PICKUP, EnumSet.of(MissionState.TO_PICKUP, MissionState.TO_DROPOFF, MissionState.RETURNING),
+        MissionState.WAIT_DROPOFF, EnumSet.of(MissionState.TO_PICKUP, MissionState.TO_DROPOFF, MissionState.RETURNING),
+        MissionState.RETURNING, EnumSet.noneOf(MissionState.class));
+
+    @Test
+    void canMoveTo_shouldAllowExactlyTheMissionTransitions() {
+        for (MissionState from : MissionState.values()) {
+            for (MissionState to : MissionState.values()) {
+                Assertions.assertEquals(ALLOWED.get(from).contains(to), from.canMoveTo(to), from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    void drivingAndWaitingAt_shouldMatchTheStopKind() {
+        Assertions.assertEquals(MissionState.TO_PICKUP, MissionState.driving(true));
+        Assertions.assertEquals(MissionState.TO_DROPOFF, MissionState.driving(false));
+        Assertions.assertEquals(MissionState.WAIT_PICKUP, MissionState.waitingAt(true));
+        Assertions.assertEquals(MissionState.WAIT_DROPOFF, MissionState.waitingAt(false));
+        for (boolean pickup : new boolean[] {true, false}) {
+            Assertions.assertTrue(MissionState.driving(pickup).canMoveTo(MissionState.waitingAt(pickup)));
+            Assertions.assertTrue(MissionState.waitingAt(pickup).waiting());
+            Assertions.assertFalse(MissionState.driving(pickup).waiting());
+        }
+        Assertions.assertFalse(MissionState.RETURNING.waiting());
+    }
+}
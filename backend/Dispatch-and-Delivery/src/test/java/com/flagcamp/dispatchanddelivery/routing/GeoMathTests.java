@@ -0,0 +1,75 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class GeoMathTests {
+
+    @Test
+    void haversine_shouldMeasureOneDegreeOfLatitude() {
+        Assertions.assertEquals(GeoMath.METERS_PER_DEGREE, GeoMath.haversine(37.0, -122.0, 38.0, -122.0), 1e-6);
+        Assertions.assertEquals(0.0, GeoMath.haversine(37.0, -122.0, 37.0, -122.0));
+    }
+
+    @Test
+    void batchHaversine_shouldMatchPairwise() {
+        Random random = new Random(3);
+        int n = 1000;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = random.nextDouble() * 170 - 85;
+            lngs[i] = random.nextDouble() * 360 - 180;
+        }
+        double[] out = new double[n];
+
+        GeoMath.haversine(37.77, -122.42, lats, lngs, GeoMath.cosLats(lats, n), n, out);
+
+        for (int i = 0; i < n; i++) {
+            Assertions.assertEquals(GeoMath.haversine(37.77, -122.42, lats[i], lngs[i]), out[i], 1e-6);
+        }
+    }
+
+    @Test
+    void equirectangular_shouldStayCloseToHaversineAtCityScale() {
+        Random random = new Random(4);
+        for (int i = 0; i < 1000; i++) {
+            double lat = 37.7 + (random.nextDouble() - 0.5) * 0.1;
+            double lng = -122.4 + (random.nextDouble() - 0.5) * 0.1;
+            double exact = GeoMath.haversine(37.7, -122.4, lat, lng);
+            double approx = GeoMath.equirectangular(37.7, -122.4, lat, lng, GeoMath.cosLat(37.7));
+            // within ~7 km
+            Assertions.assertEquals(exact, approx, 1.0);
+            Assertions.assertEquals(approx * approx, GeoMath.equirectangular2(37.7, -122.4, lat, lng, GeoMath.cosLat(37.7)), 1e-6 * approx * approx + 1e-9);
+        }
+    }
+
+    @Test
+    void nearestIndex_shouldPickTheClosestPoint() {
+        Random random = new Random(5);
+        int n = 500;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 37.6 + random.nextDouble() * 0.3;
+            lngs[i] = -122.5 + random.nextDouble() * 0.3;
+        }
+        for (int q = 0; q < 100; q++) {
+            double lat = 37.6 + random.nextDouble() * 0.3;
+            double lng = -122.5 + random.nextDouble() * 0.3;
+            int best = 0;
+            for (int i = 1; i < n; i++) {
+                if (GeoMath.haversine(lat, lng, lats[i], lngs[i]) < GeoMath.haversine(lat, lng, lats[best], lngs[best])) {
+                    best = i;
+                }
+            }
+            int found = GeoMath.nearestIndex(lat, lng, lats, lngs, n);
+            // the approximation may only swap near-ties
+            Assertions.assertEquals(GeoMath.haversine(lat, lng, lats[best], lngs[best]),
+                GeoMath.haversine(lat, lng, lats[found], lngs[found]), 0.5);
+        }
+        Assertions.assertEquals(-1, GeoMath.nearestIndex(37.7, -122.4, lats, lngs, 0));
+    }
+}
@@ -0,0 +1,91 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import com.google.maps.internal.PolylineEncoding;
+import com.google.maps.model.LatLng;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PolylineCodec must stay byte-identical to the Google Maps client's PolylineEncoding.
+ */
+public class PolylineCodecTests {
+
+    private static final Random random = new Random(20240501);
+
+    @RepeatedTest(200)
+    void encode_shouldMatchPolylineEncoding() {
+        double[][] path = randomPath();
+        double[] lat = path[0];
+        double[] lng = path[1];
+
+        String expected = PolylineEncoding.encode(toLatLngs(lat, lng));
+
+        Assertions.assertEquals(expected, PolylineCodec.encode(lat, lng));
+        byte[] buf = new byte[PolylineCodec.maxEncodedLength(lat.length)];
+        int end = PolylineCodec.encode(lat, lng, lat.length, buf, 0);
+        Assertions.assertEquals(expected, new String(buf, 0, end, StandardCharsets.US_ASCII));
+    }
+
+    @RepeatedTest(200)
+    void decode_shouldMatchPolylineEncoding() {
+        double[][] path = randomPath();
+        String encoded = PolylineEncoding.encode(toLatLngs(path[0], path[1]));
+        List<LatLng> expected = PolylineEncoding.decode(encoded);
+
+        int n = PolylineCodec.pointCount(encoded);
+        Assertions.assertEquals(expected.size(), n);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        Assertions.assertEquals(n, PolylineCodec.decode(encoded, lat, lng));
+        byte[] bytes = encoded.getBytes(StandardCharsets.US_ASCII);
+        double[] byteLat = new double[n];
+        double[] byteLng = new double[n];
+        Assertions.assertEquals(n, PolylineCodec.decode(bytes, 0, bytes.length, byteLat, byteLng));
+        for (int i = 0; i < n; i++) {
+            // same 1e-5 grid point; the last bit may differ (x * 1e-5 vs x / 1e5)
+            Assertions.assertEquals(expected.get(i).lat, lat[i], 1e-9);
+            Assertions.assertEquals(expected.get(i).lng, lng[i], 1e-9);
+            Assertions.assertEquals(lat[i], byteLat[i]);
+            Assertions.assertEquals(lng[i], byteLng[i]);
+        }
+        // decoded points re-encode to the same string
+        Assertions.assertEquals(encoded, PolylineCodec.encode(lat, lng));
+    }
+
+    @Test
+    void encode_shouldHandleEmptyAndExtremePaths() {
+        Assertions.assertEquals("", PolylineCodec.encode(new double[0], new double[0]));
+        double[] lat = {90, -90, 0, -0.000004, 0.000005};
+        double[] lng = {180, -180, 0, -0.000005, 0.000004};
+        Assertions.assertEquals(PolylineEncoding.encode(toLatLngs(lat, lng)), PolylineCodec.encode(lat, lng));
+    }
+
+    // a random walk with steps from centimeters to kilometers, anywhere on the globe
+    private static double[][] randomPath() {
+        int n = 1 + random.nextInt(300);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = random.nextDouble() * 170 - 85;
+        lng[0] = random.nextDouble() * 360 - 180;
+        for (int i = 1; i < n; i++) {
+            double step = Math.pow(10, -7 + random.nextDouble() * 6);
+            lat[i] = Math.max(-89, Math.min(89, lat[i - 1] + (random.nextDouble() - 0.5) * step));
+            lng[i] = Math.max(-179, Math.min(179, lng[i - 1] + (random.nextDouble() - 0.5) * step));
+        }
+        return new double[][] {lat, lng};
+    }
+
+    private static List<LatLng> toLatLngs(double[] lat, double[] lng) {
+        List<LatLng> points = new ArrayList<>(lat.length);
+        for (int i = 0; i < lat.length; i++) {
+            points.add(new LatLng(lat[i], lng[i]));
+        }
+        return points;
+    }
+}
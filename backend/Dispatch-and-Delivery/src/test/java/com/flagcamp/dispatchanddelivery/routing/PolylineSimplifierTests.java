@@ -0,0 +1,107 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class PolylineSimplifierTests {
+
+    private static final Random random = new Random(7);
+
+    @Test
+    void simplify_shouldCollapseStraightLine() {
+        double[] lat = {37.0, 37.001, 37.002, 37.003, 37.004};
+        double[] lng = {-122.0, -122.0, -122.0, -122.0, -122.0};
+        double[] outLat = new double[5];
+        double[] outLng = new double[5];
+
+        int kept = PolylineSimplifier.simplify(lat, lng, 5, 1.0, outLat, outLng);
+
+        Assertions.assertEquals(2, kept);
+        Assertions.assertEquals(37.0, outLat[0]);
+        Assertions.assertEquals(37.004, outLat[1]);
+    }
+
+    @Test
+    void simplify_shouldKeepCornerAboveTolerance() {
+        // ~89 m east at the middle vertex
+        double[] lat = {37.0, 37.001, 37.002};
+        double[] lng = {-122.0, -121.999, -122.0};
+
+        Assertions.assertEquals(3, PolylineSimplifier.simplify(lat, lng, 3, 50, new double[3], new double[3]));
+        Assertions.assertEquals(2, PolylineSimplifier.simplify(lat, lng, 3, 100, new double[3], new double[3]));
+    }
+
+    @Test
+    void simplify_shouldReturnInputForNonPositiveTolerance() {
+        String encoded = PolylineCodec.encode(new double[] {37.0, 37.001, 37.002}, new double[] {-122.0, -122.0, -122.0});
+
+        Assertions.assertSame(encoded, PolylineSimplifier.simplify(encoded, 0));
+        Assertions.assertNull(PolylineSimplifier.simplify(null, 5));
+        Assertions.assertEquals("", PolylineSimplifier.simplify("", 5));
+    }
+
+    @RepeatedTest(100)
+    void simplify_shouldStayWithinToleranceOfEveryDroppedVertex() {
+        int n = 2 + random.nextInt(500);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        lat[0] = 37.7;
+        lng[0] = -122.4;
+        for (int i = 1; i < n; i++) {
+            lat[i] = lat[i - 1] + (random.nextDouble() - 0.3) * 2e-4;
+            lng[i] = lng[i - 1] + (random.nextDouble() - 0.3) * 2e-4;
+        }
+        double tolerance = 1 + random.nextDouble() * 30;
+        double[] outLat = new double[n];
+        double[] outLng = new double[n];
+
+        int kept = PolylineSimplifier.simplify(lat, lng, n, tolerance, outLat, outLng);
+
+        Assertions.assertTrue(kept >= 2 && kept <= n);
+        Assertions.assertEquals(lat[0], outLat[0]);
+        Assertions.assertEquals(lat[n - 1], outLat[kept - 1]);
+        Assertions.assertEquals(lng[n - 1], outLng[kept - 1]);
+        // kept vertices are a subsequence of the input, every input vertex is near the simplified path
+        double cosLat = GeoMath.cosLat(lat[0]);
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (k < kept && lat[i] == outLat[k] && lng[i] == outLng[k]) {
+                k++;
+            }
+            Assertions.assertTrue(distanceToPath(lat[i], lng[i], outLat, outLng, kept, cosLat) <= tolerance + 1e-6,
+                "vertex " + i + " deviates more than " + tolerance + " m");
+        }
+        Assertions.assertEquals(kept, k);
+    }
+
+    @Test
+    void simplify_shouldWorkInPlaceOnEncodedPaths() {
+        double[] lat = {37.0, 37.0005, 37.001, 37.001, 37.001};
+        double[] lng = {-122.0, -122.0, -122.0, -121.9995, -121.999};
+        String encoded = PolylineCodec.encode(lat, lng);
+
+        String simplified = PolylineSimplifier.simplify(encoded, 5);
+
+        Assertions.assertEquals(PolylineCodec.encode(new double[] {37.0, 37.001, 37.001}, new double[] {-122.0, -122.0, -121.999}),
+            simplified);
+    }
+
+    private static double distanceToPath(double lat, double lng, double[] pathLat, double[] pathLng, int count, double cosLat) {
+        double px = lng * cosLat * GeoMath.METERS_PER_DEGREE;
+        double py = lat * GeoMath.METERS_PER_DEGREE;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 1; i < count; i++) {
+            double ax = pathLng[i - 1] * cosLat * GeoMath.METERS_PER_DEGREE;
+            double ay = pathLat[i - 1] * GeoMath.METERS_PER_DEGREE;
+            double dx = pathLng[i] * cosLat * GeoMath.METERS_PER_DEGREE - ax;
+            double dy = pathLat[i] * GeoMath.METERS_PER_DEGREE - ay;
+            double len2 = dx * dx + dy * dy;
+            double t = len2 > 0 ? Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / len2)) : 0;
+            best = Math.min(best, Math.hypot(ax + t * dx - px, ay + t * dy - py));
+        }
+        return best;
+    }
+}
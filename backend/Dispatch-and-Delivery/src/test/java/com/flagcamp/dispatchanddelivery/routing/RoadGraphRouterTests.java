@@ -0,0 +1,159 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class RoadGraphRouterTests {
+
+    private static final Random random = new Random(11);
+
+    // 8 x 8 grid, ~110 m apart
+    private static final int SIDE = 8;
+    private static final double STEP = 0.001;
+
+    @RepeatedTest(50)
+    void shortestPath_shouldMatchDijkstraOnARandomGrid() {
+        RoadGraph graph = randomGrid();
+        RoadGraphRouter router = new RoadGraphRouter(graph);
+
+        for (int query = 0; query < 40; query++) {
+            int source = random.nextInt(graph.nodeCount());
+            int target = random.nextInt(graph.nodeCount());
+
+            double expected = dijkstra(graph, source)[target];
+            RoadGraphRouter.Path path = router.shortestPath(source, target);
+
+            if (expected == Double.POSITIVE_INFINITY) {
+                Assertions.assertNull(path, source + " -> " + target);
+                continue;
+            }
+            Assertions.assertNotNull(path, source + " -> " + target);
+            Assertions.assertEquals(expected, path.lengthMeters(), 1e-6, source + " -> " + target);
+            Assertions.assertEquals(source, path.nodes()[0]);
+            Assertions.assertEquals(target, path.nodes()[path.nodes().length - 1]);
+            Assertions.assertEquals(expected, walk(graph, path.nodes()), 1e-6);
+        }
+
+        int entry = graph.nodeCount() - 2;
+        int island = graph.nodeCount() - 1;
+        int corner = SIDE * SIDE - 1;
+        Assertions.assertNull(router.shortestPath(corner, entry));
+        Assertions.assertNull(router.shortestPath(corner, island));
+        Assertions.assertNull(router.shortestPath(island, corner));
+        double expected = dijkstra(graph, entry)[corner];
+        RoadGraphRouter.Path path = router.shortestPath(entry, corner);
+        if (expected == Double.POSITIVE_INFINITY) {
+            Assertions.assertNull(path);
+        } else {
+            Assertions.assertEquals(expected, path.lengthMeters(), 1e-6);
+        }
+    }
+
+    @Test
+    void shortestPath_shouldFollowOneWayEdges() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int a = builder.addNode(37.000, -122.0);
+        int b = builder.addNode(37.001, -122.0);
+        int c = builder.addNode(37.002, -122.0);
+        // a -> c directly only one way; back from c goes the long way through b
+        builder.addEdge(a, c, 250).addEdge(c, b, 150).addEdge(b, a, 150);
+        RoadGraphRouter router = new RoadGraphRouter(builder.build());
+
+        Assertions.assertArrayEquals(new int[] {a, c}, router.shortestPath(a, c).nodes());
+        Assertions.assertArrayEquals(new int[] {c, b, a}, router.shortestPath(c, a).nodes());
+        Assertions.assertEquals(300, router.shortestPath(c, a).lengthMeters(), 1e-6);
+        Assertions.assertEquals(0, router.shortestPath(b, b).lengthMeters());
+    }
+
+    // grid with random detours; a third of the streets are one-way, one node only has edges
+    // out of it and one has none, so some pairs are unreachable
+    private static RoadGraph randomGrid() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        for (int row = 0; row < SIDE; row++) {
+            for (int col = 0; col < SIDE; col++) {
+                builder.addNode(37.0 + row * STEP, -122.0 + col * STEP);
+            }
+        }
+        for (int row = 0; row < SIDE; row++) {
+            for (int col = 0; col < SIDE; col++) {
+                int v = row * SIDE + col;
+                if (col + 1 < SIDE) {
+                    street(builder, v, v + 1);
+                }
+                if (row + 1 < SIDE) {
+                    street(builder, v, v + SIDE);
+                }
+            }
+        }
+        int source = builder.addNode(37.0 - STEP, -122.0);
+        builder.addEdge(source, 0, length(37.0 - STEP, -122.0, 37.0, -122.0));
+        builder.addNode(37.0 + SIDE * STEP, -122.0 + SIDE * STEP);
+        return builder.build();
+    }
+
+    private static void street(RoadGraph.Builder builder, int a, int b) {
+        double aLat = 37.0 + (a / SIDE) * STEP;
+        double aLng = -122.0 + (a % SIDE) * STEP;
+        double bLat = 37.0 + (b / SIDE) * STEP;
+        double bLng = -122.0 + (b % SIDE) * STEP;
+        double length = length(aLat, aLng, bLat, bLng);
+        double draw = random.nextDouble();
+        if (draw < 1 / 6.0) {
+            builder.addEdge(a, b, length);
+        } else if (draw < 1 / 3.0) {
+            builder.addEdge(b, a, length);
+        } else {
+            builder.addBidirectionalEdge(a, b, length);
+        }
+    }
+
+    // never shorter than the great-circle distance, so the A* potential stays admissible
+    private static double length(double aLat, double aLng, double bLat, double bLng) {
+        return GeoMath.haversine(aLat, aLng, bLat, bLng) * (1.01 + random.nextDouble());
+    }
+
+    private static double[] dijkstra(RoadGraph graph, int source) {
+        double[] dist = new double[graph.nodeCount()];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[source] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>((x, y) -> Double.compare(x[0], y[0]));
+        queue.add(new double[] {0, source});
+        while (!queue.isEmpty()) {
+            double[] top = queue.poll();
+            int u = (int) top[1];
+            if (top[0] > dist[u]) {
+                continue;
+            }
+            for (int e = graph.firstOut(u); e < graph.firstOut(u + 1); e++) {
+                int v = graph.head(e);
+                double d = dist[u] + graph.length(e);
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    queue.add(new double[] {d, v});
+                }
+            }
+        }
+        return dist;
+    }
+
+    // length of the node sequence over the shortest edge between each pair; fails on a missing edge
+    private static double walk(RoadGraph graph, int[] nodes) {
+        double total = 0;
+        for (int i = 0; i + 1 < nodes.length; i++) {
+            double shortest = Double.POSITIVE_INFINITY;
+            for (int e = graph.firstOut(nodes[i]); e < graph.firstOut(nodes[i] + 1); e++) {
+                if (graph.head(e) == nodes[i + 1]) {
+                    shortest = Math.min(shortest, graph.length(e));
+                }
+            }
+            Assertions.assertNotEquals(Double.POSITIVE_INFINITY, shortest, "no edge " + nodes[i] + " -> " + nodes[i + 1]);
+            total += shortest;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,72 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class RoadGraphTests {
+
+    private static final Random random = new Random(13);
+
+    @RepeatedTest(50)
+    void nearestNode_shouldMatchAFullScan() {
+        // 300 nodes scattered over ~5 km, some clustered in one snapping cell
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        int n = 300;
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        for (int v = 0; v < n; v++) {
+            double spread = v % 3 == 0 ? 0.004 : 0.05;
+            lat[v] = 37.75 + random.nextDouble() * spread;
+            lng[v] = -122.45 + random.nextDouble() * spread;
+            builder.addNode(lat[v], lng[v]);
+        }
+        RoadGraph graph = builder.build();
+
+        for (int query = 0; query < 50; query++) {
+            // inside the extent and up to ~10 km around it
+            double queryLat = 37.65 + random.nextDouble() * 0.25;
+            double queryLng = -122.55 + random.nextDouble() * 0.25;
+            assertNearest(graph, lat, lng, queryLat, queryLng);
+        }
+    }
+
+    @Test
+    void nearestNode_shouldFallBackToAFullScanBeyondTheLastRing() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        builder.addNode(37.0, -122.0);
+        builder.addNode(37.0, -121.9);
+        builder.addNode(36.0, -122.0);
+        RoadGraph graph = builder.build();
+        double[] lat = {37.0, 37.0, 36.0};
+        double[] lng = {-122.0, -121.9, -122.0};
+
+        // ~110 km north, far past the 64 rings of ~550 m
+        Assertions.assertEquals(0, graph.nearestNode(38.0, -122.0));
+        assertNearest(graph, lat, lng, 38.0, -121.8);
+        assertNearest(graph, lat, lng, 35.0, -122.1);
+        assertNearest(graph, lat, lng, 37.0, -119.0);
+    }
+
+    @Test
+    void nearestNode_shouldReturnMinusOneOnAnEmptyGraph() {
+        Assertions.assertEquals(-1, new RoadGraph.Builder().build().nearestNode(37.0, -122.0));
+    }
+
+    private static void assertNearest(RoadGraph graph, double[] lat, double[] lng, double queryLat, double queryLng) {
+        int expected = GeoMath.nearestIndex(queryLat, queryLng, lat, lng, lat.length);
+        int actual = graph.nearestNode(queryLat, queryLng);
+        // a tie may pick either node; compare distances
+        Assertions.assertEquals(distance(lat[expected], lng[expected], queryLat, queryLng),
+            distance(graph.lat(actual), graph.lng(actual), queryLat, queryLng), 1e-12,
+            "query (" + queryLat + ", " + queryLng + ")");
+    }
+
+    private static double distance(double lat, double lng, double queryLat, double queryLng) {
+        double dy = lat - queryLat;
+        double dx = (lng - queryLng) * GeoMath.cosLat(queryLat);
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,116 @@
+package com.flagcamp.dispatchanddelivery.routing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class RouteIndexTests {
+
+    private static final Random random = new Random(17);
+
+    // north, then east, then north again
+    private static final double[] LAT = {37.000, 37.001, 37.001, 37.003};
+    private static final double[] LNG = {-122.000, -122.000, -121.998, -121.998};
+
+    @Test
+    void positionAt_shouldReturnTheEndsAtRatioZeroAndOne() {
+        RouteIndex path = RouteIndex.of(LAT, LNG);
+
+        assertPosition(37.000, -122.000, path, 0.0);
+        assertPosition(37.003, -121.998, path, 1.0);
+        // out of range ratios are clamped
+        assertPosition(37.000, -122.000, path, -0.5);
+        assertPosition(37.003, -121.998, path, 1.5);
+    }
+
+    @Test
+    void positionAt_shouldReturnTheVertexWhenTheRatioLandsOnIt() {
+        RouteIndex path = RouteIndex.of(LAT, LNG);
+        double first = GeoMath.haversine(LAT[0], LNG[0], LAT[1], LNG[1]);
+        double second = GeoMath.haversine(LAT[1], LNG[1], LAT[2], LNG[2]);
+
+        assertPosition(LAT[1], LNG[1], path, first / path.length());
+        assertPosition(LAT[2], LNG[2], path, (first + second) / path.length());
+    }
+
+    @Test
+    void positionAt_shouldInterpolateWithinASegment() {
+        RouteIndex path = RouteIndex.of(new double[] {37.000, 37.002}, new double[] {-122.0, -122.0});
+
+        assertPosition(37.0005, -122.0, path, 0.25);
+        assertPosition(37.001, -122.0, path, 0.5);
+    }
+
+    @Test
+    void positionAt_shouldStepOverZeroLengthSegments() {
+        // the robot waits at 37.001 twice: repeated points add no length
+        RouteIndex path = RouteIndex.of(
+            new double[] {37.000, 37.001, 37.001, 37.001, 37.002},
+            new double[] {-122.0, -122.0, -122.0, -122.0, -122.0});
+        Assertions.assertEquals(GeoMath.haversine(37.000, -122.0, 37.002, -122.0), path.length(), 1e-6);
+
+        assertPosition(37.001, -122.0, path, 0.5);
+        assertPosition(37.0005, -122.0, path, 0.25);
+        assertPosition(37.0015, -122.0, path, 0.75);
+
+        // all points equal: every ratio is that point
+        RouteIndex still = RouteIndex.of(new double[] {37.0, 37.0, 37.0}, new double[] {-122.0, -122.0, -122.0});
+        Assertions.assertEquals(0, still.length());
+        for (double ratio : new double[] {0, 0.3, 1}) {
+            assertPosition(37.0, -122.0, still, ratio);
+        }
+    }
+
+    @Test
+    void positionAt_shouldReturnTheOnlyPointOfAOnePointPath() {
+        RouteIndex path = RouteIndex.of(new double[] {37.0}, new double[] {-122.0});
+
+        Assertions.assertEquals(0, path.length());
+        for (double ratio : new double[] {0, 0.5, 1}) {
+            assertPosition(37.0, -122.0, path, ratio);
+        }
+    }
+
+    @RepeatedTest(50)
+    void positionAt_shouldCoverTheRatioOfThePathLength() {
+        int n = 2 + random.nextInt(20);
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        for (int i = 1; i < n; i++) {
+            // some repeated points
+            boolean stay = random.nextInt(5) == 0;
+            lat[i] = lat[i - 1] + (stay ? 0 : (random.nextDouble() - 0.5) * 0.002);
+            lng[i] = lng[i - 1] + (stay ? 0 : (random.nextDouble() - 0.5) * 0.002);
+        }
+        RouteIndex path = RouteIndex.of(lat, lng);
+        double ratio = random.nextDouble();
+
+        double[] out = new double[2];
+        path.positionAt(ratio, out);
+
+        // distance along the path up to the point, measured on the segment that contains it
+        double target = ratio * path.length();
+        double walked = 0;
+        for (int i = 1; i < n; i++) {
+            double segment = GeoMath.haversine(lat[i - 1], lng[i - 1], lat[i], lng[i]);
+            if (walked + segment >= target) {
+                double along = GeoMath.haversine(lat[i - 1], lng[i - 1], out[0], out[1]);
+                double rest = GeoMath.haversine(out[0], out[1], lat[i], lng[i]);
+                Assertions.assertEquals(segment, along + rest, 1e-3, "not on the segment");
+                Assertions.assertEquals(target, walked + along, 0.5);
+                return;
+            }
+            walked += segment;
+        }
+        Assertions.fail("ratio " + ratio + " past the end");
+    }
+
+    private static void assertPosition(double lat, double lng, RouteIndex path, double ratio) {
+        double[] out = new double[2];
+        path.positionAt(ratio, out);
+        Assertions.assertEquals(lat, out[0], 1e-9, "lat at " + ratio);
+        Assertions.assertEquals(lng, out[1], 1e-9, "lng at " + ratio);
+    }
+}
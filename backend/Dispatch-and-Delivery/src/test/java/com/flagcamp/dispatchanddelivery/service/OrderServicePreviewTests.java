@@ -0,0 +1,179 @@
+package com.flagcamp.dispatchanddelivery.service;
+
+import com.flagcamp.dispatchanddelivery.entity.HubEntity;
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.HubIndex;
+import com.flagcamp.dispatchanddelivery.manager.PendingOrderPool;
+import com.flagcamp.dispatchanddelivery.manager.RobotReservationManager;
+import com.flagcamp.dispatchanddelivery.manager.RobotSignalManager;
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.model.response.DeliveryOptionsResponse;
+import com.flagcamp.dispatchanddelivery.repository.OrderRepository;
+import com.flagcamp.dispatchanddelivery.repository.PackageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Quotes across the nearest hubs: pickup at 37.0, drop-off 2000 m (robot) / 1800 m (drone) away.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class OrderServicePreviewTests {
+
+    private static final double PICKUP_LAT = 37.0;
+    private static final double PICKUP_LNG = -122.0;
+    private static final double DROP_LAT = 37.02;
+    private static final double DROP_LNG = -122.0;
+
+    private static final HubEntity NEAR = new HubEntity("h1", "near", 37.004, -122.0);
+    private static final HubEntity FAR = new HubEntity("h2", "far", 37.010, -122.0);
+    private static final HubEntity FARTHEST = new HubEntity("h3", "farthest", 37.030, -122.0);
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private PackageRepository packageRepository;
+    @Mock
+    private RouteService routeService;
+    @Mock
+    private RobotService robotService;
+    @Mock
+    private RobotSimulatorService robotSimulatorService;
+    @Mock
+    private RobotSignalManager robotSignalManager;
+    @Mock
+    private PendingOrderPool pendingOrderPool;
+
+    private ExecutorService routingExecutor;
+    private OrderService orderService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        routingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        orderService = new OrderService(orderRepository, packageRepository, routeService, robotService,
+            robotSimulatorService, robotSignalManager, new RobotReservationManager(null, false, 120),
+            pendingOrderPool, routingExecutor);
+        ReflectionTestUtils.setField(orderService, "routingTimeoutMs", 500L);
+        ReflectionTestUtils.setField(orderService, "hubCandidates", 3);
+
+        Mockito.when(routeService.computeRoute(PICKUP_LAT, PICKUP_LNG, DROP_LAT, DROP_LNG)).thenReturn(List.of(
+            new RouteDTO("robot", PICKUP_LAT, PICKUP_LNG, 2000),
+            new RouteDTO("drone", PICKUP_LAT, PICKUP_LNG, 1800)));
+        Mockito.when(robotService.findCheapestRobot(Mockito.anyString())).thenReturn(Optional.empty());
+        Mockito.when(robotService.findFastestDrone(Mockito.anyString())).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void cleanup() {
+        routingExecutor.shutdownNow();
+    }
+
+    @Test
+    void previewOptions_shouldPickTheEarliestDropOffOverTheNearestHub() throws Exception {
+        hubs(NEAR, FAR);
+        // the near hub's robot is slow and its road to the pickup winds: 3000 m at 5 km/h -> 60 min in total
+        robot(NEAR, "r-near", 5.0, 3000);
+        // the far hub's robot is quicker: (2000 + 2000) m at 10 km/h -> 24 min
+        robot(FAR, "r-far", 10.0, 2000);
+        // drones: near 2000 m at 30 km/h -> 7.6 min, far 1000 m at 40 km/h -> 4.2 min
+        drone(NEAR, "d-near", 30.0, 2000);
+        drone(FAR, "d-far", 40.0, 1000);
+
+        DeliveryOptionsResponse options = quote();
+
+        Assertions.assertEquals("r-far", options.robotRoute.robotId);
+        // drop-off leg at the chosen robot's speed: 2 km at 10 km/h
+        Assertions.assertEquals(12, options.robotRoute.duration);
+        Assertions.assertEquals(2000, options.robotRoute.distance);
+        Assertions.assertEquals("d-far", options.droneRoute.robotId);
+        Assertions.assertEquals(3, options.droneRoute.duration);
+    }
+
+    @Test
+    void previewOptions_shouldSkipCandidatesThatFailOrMissTheDeadline() throws Exception {
+        hubs(NEAR, FAR, FARTHEST);
+        robot(NEAR, "r-near", 10.0, 0);
+        robot(FAR, "r-far", 10.0, 0);
+        robot(FARTHEST, "r-farthest", 5.0, 4000);
+        // fastest on paper, but its route fails
+        Mockito.when(routeService.computeRoute(NEAR.getHubLat(), NEAR.getHubLng(), PICKUP_LAT, PICKUP_LNG))
+            .thenThrow(new IllegalStateException("routing down"));
+        // next fastest, but its route doesn't come back before the deadline
+        Mockito.when(routeService.computeRoute(FAR.getHubLat(), FAR.getHubLng(), PICKUP_LAT, PICKUP_LNG))
+            .thenAnswer(invocation -> {
+                Thread.sleep(5000);
+                return List.of(new RouteDTO("late", FAR.getHubLat(), FAR.getHubLng(), 100));
+            });
+
+        long start = System.nanoTime();
+        DeliveryOptionsResponse options = quote();
+
+        Assertions.assertTrue(System.nanoTime() - start < 3_000_000_000L, "waited past the deadline");
+        Assertions.assertEquals("r-farthest", options.robotRoute.robotId);
+        Assertions.assertEquals(24, options.robotRoute.duration);
+    }
+
+    @Test
+    void previewOptions_shouldUseMockPricingOnlyWithoutAUsableCandidate() throws Exception {
+        hubs(NEAR, FAR);
+        // no robot at the far hub, the near hub's route fails
+        robot(NEAR, "r-near", 10.0, 0);
+        Mockito.when(routeService.computeRoute(NEAR.getHubLat(), NEAR.getHubLng(), PICKUP_LAT, PICKUP_LNG))
+            .thenThrow(new IllegalStateException("routing down"));
+        // one usable drone is enough
+        drone(FAR, "d-far", 40.0, 1000);
+
+        DeliveryOptionsResponse options = quote();
+
+        Assertions.assertNull(options.robotRoute.robotId);
+        // default robot: 2 km at 5 km/h, $3 + $1 / km
+        Assertions.assertEquals(24, options.robotRoute.duration);
+        Assertions.assertEquals(5.0, options.robotRoute.price, 1e-9);
+        Assertions.assertEquals("d-far", options.droneRoute.robotId);
+        Assertions.assertEquals(3, options.droneRoute.duration);
+    }
+
+    private DeliveryOptionsResponse quote() {
+        DeliveryOptionsResponse options = orderService.previewOptions(PICKUP_LAT, PICKUP_LNG, DROP_LAT, DROP_LNG);
+        Assertions.assertNotNull(options.robotRoute);
+        Assertions.assertNotNull(options.droneRoute);
+        return options;
+    }
+
+    private void hubs(HubEntity... hubs) {
+        List<HubIndex.Neighbor> neighbors = new ArrayList<>();
+        for (HubEntity hub : hubs) {
+            neighbors.add(new HubIndex.Neighbor(hub, (hub.getHubLat() - PICKUP_LAT) * 111_000));
+        }
+        Mockito.when(robotService.findNearestHubs(PICKUP_LAT, PICKUP_LNG, 3)).thenReturn(neighbors);
+    }
+
+    private void robot(HubEntity hub, String robotId, double speed, long hubToPickup) throws Exception {
+        Mockito.when(robotService.findCheapestRobot(hub.getHubId()))
+            .thenReturn(Optional.of(new RobotEntity(robotId, true, 100, hub.getHubId(), hub.getHubLat(), hub.getHubLng(), 5.0, speed, 2.0, "robot")));
+        Mockito.when(routeService.computeRoute(hub.getHubLat(), hub.getHubLng(), PICKUP_LAT, PICKUP_LNG))
+            .thenReturn(List.of(new RouteDTO("to-pickup", hub.getHubLat(), hub.getHubLng(), hubToPickup)));
+    }
+
+    private void drone(HubEntity hub, String robotId, double speed, long hubToPickup) {
+        Mockito.when(robotService.findFastestDrone(hub.getHubId()))
+            .thenReturn(Optional.of(new RobotEntity(robotId, true, 100, hub.getHubId(), hub.getHubLat(), hub.getHubLng(), 2.0, speed, 4.0, "drone")));
+        Mockito.when(routeService.computeDroneRoute(hub.getHubLat(), hub.getHubLng(), PICKUP_LAT, PICKUP_LNG))
+            .thenReturn(new RouteDTO("to-pickup", hub.getHubLat(), hub.getHubLng(), hubToPickup));
+    }
+}
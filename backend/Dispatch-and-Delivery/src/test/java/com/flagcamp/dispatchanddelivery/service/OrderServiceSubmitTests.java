@@ -0,0 +1,180 @@
+package com.flagcamp.dispatchanddelivery.service;
+
+import com.flagcamp.dispatchanddelivery.entity.HubEntity;
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.PendingOrderPool;
+import com.flagcamp.dispatchanddelivery.manager.RobotReservationManager;
+import com.flagcamp.dispatchanddelivery.manager.RobotSignalManager;
+import com.flagcamp.dispatchanddelivery.model.dto.OrderRequestDTO;
+import com.flagcamp.dispatchanddelivery.model.dto.RouteDTO;
+import com.flagcamp.dispatchanddelivery.repository.OrderRepository;
+import com.flagcamp.dispatchanddelivery.repository.PackageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * submitOrder must give the robot's lease back on every path that doesn't end in a committed order.
+ */
+@ExtendWith(MockitoExtension.class)
+public class OrderServiceSubmitTests {
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private PackageRepository packageRepository;
+    @Mock
+    private RouteService routeService;
+    @Mock
+    private RobotService robotService;
+    @Mock
+    private RobotSimulatorService robotSimulatorService;
+    @Mock
+    private RobotSignalManager robotSignalManager;
+    @Mock
+    private PendingOrderPool pendingOrderPool;
+    @Mock
+    private ExecutorService routingExecutor;
+
+    private RobotReservationManager reservationManager;
+
+    private OrderService orderService;
+
+    // the robot row as stored; a mission start flips it to unavailable
+    private RobotEntity robot;
+    // runs just before a submit takes the lease, to interleave another thread's work there
+    private Runnable beforeReserve;
+
+    @BeforeEach
+    void setup() {
+        robot = new RobotEntity("d1", true, 100, "h1", 37.0, -122.0, 5.0, 15, 10, "drone");
+        beforeReserve = () -> { };
+        reservationManager = new RobotReservationManager(null, false, 120) {
+            @Override
+            public boolean tryReserve(String robotId, String orderId) {
+                beforeReserve.run();
+                return super.tryReserve(robotId, orderId);
+            }
+        };
+        orderService = new OrderService(orderRepository, packageRepository, routeService, robotService,
+            robotSimulatorService, robotSignalManager, reservationManager, pendingOrderPool, routingExecutor);
+        Mockito.lenient().when(robotService.getRobotById("d1")).thenAnswer(invocation -> Optional.of(copy(robot)));
+    }
+
+    @AfterEach
+    void cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void submitOrder_shouldReleaseLeaseWhenSubmitFails() {
+        Mockito.when(robotService.getHubById("h1")).thenReturn(Optional.empty());
+
+        Map<String, Object> result = orderService.submitOrder("u1", request());
+
+        Assertions.assertEquals(false, result.get("success"));
+        Assertions.assertFalse(reservationManager.isReserved("d1"));
+    }
+
+    @Test
+    void submitOrder_shouldReleaseLeaseOnError() {
+        Mockito.when(robotService.getHubById("h1")).thenThrow(new StackOverflowError());
+
+        Assertions.assertThrows(StackOverflowError.class, () -> orderService.submitOrder("u1", request()));
+        Assertions.assertFalse(reservationManager.isReserved("d1"));
+    }
+
+    @Test
+    void submitOrder_shouldKeepLeaseOnCommitAndReleaseItOnRollback() {
+        Mockito.when(robotService.getHubById("h1")).thenReturn(Optional.of(new HubEntity("h1", "hub", 37.0, -122.0)));
+        Mockito.when(routeService.computeDroneRoute(37.0, -122.0, 37.01, -122.01))
+            .thenReturn(new RouteDTO("abc", 37.0, -122.0, 1500));
+
+        TransactionSynchronizationManager.initSynchronization();
+        Map<String, Object> committed = orderService.submitOrder("u1", request());
+        Assertions.assertEquals(true, committed.get("success"));
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        Assertions.assertTrue(reservationManager.isReserved("d1"));
+        reservationManager.release("d1", (String) committed.get("order_id"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        Map<String, Object> rolledBack = orderService.submitOrder("u1", request());
+        Assertions.assertEquals(true, rolledBack.get("success"));
+        Assertions.assertTrue(reservationManager.isReserved("d1"));
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        Assertions.assertFalse(reservationManager.isReserved("d1"));
+    }
+
+    @Test
+    void submitOrder_shouldRefuseARobotAnotherMissionTookBeforeTheLease() {
+        // the submit was made from a listing that showed d1 available; a mission start marks the
+        // robot busy and drops its own lease right before this submit takes the lease
+        Assertions.assertTrue(reservationManager.tryReserve("d1", "o0"));
+        beforeReserve = () -> {
+            if (robot.isAvailable()) {
+                robot.setAvailable(false);
+                reservationManager.release("d1", "o0");
+            }
+        };
+
+        Map<String, Object> result = orderService.submitOrder("u1", request());
+
+        Assertions.assertEquals(false, result.get("success"));
+        Assertions.assertFalse(reservationManager.isReserved("d1"));
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verifyNoInteractions(robotSimulatorService);
+    }
+
+    @Test
+    void submitOrder_shouldRefuseWhileAnotherOrderHoldsTheLease() {
+        Assertions.assertTrue(reservationManager.tryReserve("d1", "o0"));
+
+        Map<String, Object> result = orderService.submitOrder("u1", request());
+
+        Assertions.assertEquals(false, result.get("success"));
+        // the other order's lease is untouched
+        Assertions.assertTrue(reservationManager.isReserved("d1"));
+        Mockito.verifyNoInteractions(robotService);
+    }
+
+    private static RobotEntity copy(RobotEntity robot) {
+        return new RobotEntity(robot.getRobotId(), robot.isAvailable(), robot.getBattery(), robot.getHubId(),
+            robot.getCurrentLat(), robot.getCurrentLng(), robot.getMaxWeight(), robot.getSpeed(), robot.getPrice(), robot.getRobotType());
+    }
+
+    private static void completeTransaction(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static OrderRequestDTO request() {
+        OrderRequestDTO request = new OrderRequestDTO();
+        request.setFromLat(37.01);
+        request.setFromLng(-122.01);
+        request.setToLat(37.02);
+        request.setToLng(-122.02);
+        request.setRobotType("DRONE");
+        request.setRobotId("d1");
+        request.setRoute("abc");
+        request.setDistance(2000L);
+        request.setWeight(1.0);
+        request.setPrice(12.5);
+        request.setDuration(10);
+        return request;
+    }
+}
@@ -0,0 +1,243 @@
+package com.flagcamp.dispatchanddelivery.service;
+
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.FleetRegistry;
+import com.flagcamp.dispatchanddelivery.manager.LocalSignalBus;
+import com.flagcamp.dispatchanddelivery.manager.MissionShards;
+import com.flagcamp.dispatchanddelivery.manager.MissionStore;
+import com.flagcamp.dispatchanddelivery.manager.NodeIdentity;
+import com.flagcamp.dispatchanddelivery.manager.PositionStore;
+import com.flagcamp.dispatchanddelivery.manager.RobotReservationManager;
+import com.flagcamp.dispatchanddelivery.manager.RobotSignalManager;
+import com.flagcamp.dispatchanddelivery.manager.TrackingHub;
+import com.flagcamp.dispatchanddelivery.model.enums.MissionState;
+import com.flagcamp.dispatchanddelivery.repository.RobotRepository;
+import com.flagcamp.dispatchanddelivery.routing.RouteIndex;
+import com.flagcamp.dispatchanddelivery.simulation.SimulationClock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The engine on the wall clock, which checkpoints to {@link MissionStore}: the store is written
+ * ahead of the robot rows, and recovery brings both back in line. Legs have zero length, so a
+ * robot reaches each stop on the next tick.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RobotSimulatorServiceRecoveryTests {
+
+    @Mock
+    private RouteService routeService;
+    @Mock
+    private ApplicationEventPublisher publisher;
+    @Mock
+    private RobotRepository robotRepository;
+    @Mock
+    private FleetRegistry fleetRegistry;
+    @Mock
+    private PositionStore positionStore;
+    @Mock
+    private MissionStore missionStore;
+    @Mock
+    private TrackingHub trackingHub;
+
+    private RobotSignalManager signalManager;
+    private RobotReservationManager reservationManager;
+    private RobotSimulatorService simulator;
+    private RobotEntity robot;
+    // store and robot writes in call order; the engine reuses its buffers, so arguments are copied on each call
+    private final List<String> log = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        SimulationClock clock = new SimulationClock(false);
+        NodeIdentity node = new NodeIdentity("n1");
+        signalManager = new RobotSignalManager(clock, new LocalSignalBus(), node, 1000, 64, 1000);
+        signalManager.subscribe();
+        reservationManager = new RobotReservationManager(null, false, 120);
+        simulator = new RobotSimulatorService(signalManager, routeService, publisher, robotRepository, fleetRegistry,
+            reservationManager, clock, positionStore, new MissionShards(null, node, false, 64, 10000, 2000), missionStore,
+            node, trackingHub, 600, false);
+
+        robot = new RobotEntity("r1", true, 100, "h1", 37.0, -122.0, 10.0, 36, 5, "robot");
+        Mockito.when(routeService.getRouteGeometry("o1")).thenReturn(new RouteService.RouteGeometry(
+            RouteIndex.of(new double[] {37.0}, new double[] {-122.0}), RouteIndex.of(new double[] {37.0}, new double[] {-122.0}), 0, 0));
+        Mockito.when(robotRepository.findById("r1")).thenReturn(Optional.of(robot));
+        Mockito.when(robotRepository.save(Mockito.any())).thenAnswer(invocation -> {
+            log.add("robot available=" + robot.isAvailable());
+            return invocation.getArgument(0);
+        });
+        Mockito.when(robotRepository.findAllById(Mockito.any())).thenReturn(List.of(robot));
+        Mockito.when(robotRepository.saveAll(Mockito.any())).thenAnswer(invocation -> {
+            log.add("robot available=" + robot.isAvailable());
+            return invocation.getArgument(0);
+        });
+        Mockito.doAnswer(invocation -> {
+            MissionStore.Checkpoint checkpoint = invocation.getArgument(1);
+            log.add("start " + checkpoint.state());
+            return null;
+        }).when(missionStore).start(Mockito.any(), Mockito.any());
+        Mockito.doAnswer(this::logWrite).when(missionStore).write(Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            Collection<String> ended = invocation.getArgument(0);
+            if (!ended.isEmpty()) {
+                log.add("end " + ended);
+            }
+            return null;
+        }).when(missionStore).end(Mockito.any());
+        Mockito.doAnswer(invocation -> log.add("discard " + invocation.getArgument(0)))
+            .when(missionStore).discard(Mockito.any());
+    }
+
+    @Test
+    void start_shouldStoreTheMissionBeforeMarkingTheRobot() {
+        simulator.startRobotMission("o1", "r1");
+
+        Assertions.assertEquals(List.of("start TO_PICKUP", "robot available=false"), log);
+    }
+
+    @Test
+    void start_shouldLeaveTheRobotAloneWhenTheMissionCantBeStored() {
+        Mockito.doThrow(new IllegalStateException("redis down")).when(missionStore).start(Mockito.any(), Mockito.any());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> simulator.startRobotMission("o1", "r1"));
+
+        Mockito.verify(robotRepository, Mockito.never()).save(Mockito.any());
+        Assertions.assertTrue(robot.isAvailable());
+    }
+
+    @Test
+    void start_shouldDiscardTheStoredMissionWhenTheRobotCantBeSaved() {
+        Mockito.doThrow(new IllegalStateException("db down")).when(robotRepository).save(Mockito.any());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> simulator.startRobotMission("o1", "r1"));
+
+        Assertions.assertEquals(List.of("start TO_PICKUP", "discard r1"), log);
+        simulator.step();
+        Assertions.assertEquals(0, simulator.stats().active());
+    }
+
+    @Test
+    void finish_shouldStoreReturningBeforeFreeingAndEndAfter() {
+        runToLastStop();
+
+        log.clear();
+        signalManager.userConfirmedDeliver("o1");
+        simulator.step();
+
+        Assertions.assertEquals(List.of("write [r1 RETURNING]", "robot available=true", "end [r1]"), log);
+    }
+
+    @Test
+    void finish_shouldKeepTheRobotBusyUntilReturningIsStored() {
+        runToLastStop();
+        Mockito.doThrow(new IllegalStateException("redis down")).when(missionStore).write(Mockito.any());
+
+        log.clear();
+        signalManager.userConfirmedDeliver("o1");
+        simulator.step();
+        Assertions.assertEquals(List.of(), log);
+        Assertions.assertFalse(robot.isAvailable());
+
+        // Redis is back: the retried checkpoint goes first, then the robot
+        Mockito.doAnswer(this::logWrite).when(missionStore).write(Mockito.any());
+        simulator.step();
+        Assertions.assertEquals(List.of("write [r1 RETURNING]", "robot available=true", "end [r1]"), log);
+    }
+
+    @Test
+    void adopt_shouldMarkTheRobotOfAResumedMissionUnavailable() {
+        long now = System.currentTimeMillis();
+        Mockito.when(missionStore.load(Mockito.any())).thenReturn(List.of(
+            stored(new MissionStore.Checkpoint("r1", MissionState.WAIT_PICKUP, 0, now - 1000, now + 60_000))));
+
+        simulator.step();
+
+        Assertions.assertEquals(List.of("robot available=false"), log);
+        Mockito.verify(fleetRegistry).update(robot);
+        // the lease only covered the write
+        Assertions.assertFalse(reservationManager.isReserved("r1"));
+        Assertions.assertEquals(1, simulator.stats().active());
+        Assertions.assertEquals(1, simulator.stats().waiting());
+    }
+
+    @Test
+    void adopt_shouldHoldTheLeaseWhenTheRobotCantBeMarked() {
+        long now = System.currentTimeMillis();
+        Mockito.when(missionStore.load(Mockito.any())).thenReturn(List.of(
+            stored(new MissionStore.Checkpoint("r1", MissionState.TO_DROPOFF, 1, now, 0))));
+        Mockito.doThrow(new IllegalStateException("db down")).when(robotRepository).saveAll(Mockito.any());
+
+        simulator.step();
+
+        Assertions.assertTrue(reservationManager.isReserved("r1"));
+        Assertions.assertFalse(reservationManager.tryReserve("r1", "o2"));
+    }
+
+    @Test
+    void adopt_shouldFreeTheRobotOfAReturningMission() {
+        long now = System.currentTimeMillis();
+        robot.setAvailable(false);
+        Mockito.when(missionStore.load(Mockito.any())).thenReturn(List.of(
+            stored(new MissionStore.Checkpoint("r1", MissionState.RETURNING, 1, now, 0))));
+
+        simulator.step();
+
+        Assertions.assertEquals(List.of("robot available=true", "end [r1]"), log);
+        Assertions.assertEquals(0, simulator.stats().active());
+    }
+
+    @Test
+    void adopt_shouldEndAMissionWithoutItsLegAsReturning() {
+        long now = System.currentTimeMillis();
+        robot.setAvailable(false);
+        Mockito.when(missionStore.load(Mockito.any())).thenReturn(List.of(
+            stored(new MissionStore.Checkpoint("r1", MissionState.TO_DROPOFF, 5, now, 0))));
+
+        simulator.step();
+
+        // stored as RETURNING first, so the conditional end() can delete it
+        Assertions.assertEquals(List.of("write [r1 RETURNING]", "robot available=true", "end [r1]"), log);
+    }
+
+    // zero-length legs: pickup reached on the first tick, drop-off on the one after the confirmation
+    private void runToLastStop() {
+        simulator.startRobotMission("o1", "r1");
+        simulator.step();
+        signalManager.userConfirmedPickup("o1");
+        simulator.step();
+        simulator.step();
+        Assertions.assertEquals(1, simulator.stats().waiting());
+        Assertions.assertFalse(robot.isAvailable());
+        Assertions.assertFalse(log.contains("robot available=true"));
+    }
+
+    private Object logWrite(InvocationOnMock invocation) {
+        Collection<MissionStore.Checkpoint> saved = invocation.getArgument(0);
+        if (!saved.isEmpty()) {
+            log.add("write " + saved.stream().map(cp -> cp.robotId() + " " + cp.state()).toList());
+        }
+        return null;
+    }
+
+    private static MissionStore.StoredMission stored(MissionStore.Checkpoint checkpoint) {
+        String point = RouteIndex.of(new double[] {37.0}, new double[] {-122.0}).encode();
+        return new MissionStore.StoredMission(new MissionStore.MissionPlan(36, List.of(
+            new MissionStore.LegRecord("o1", true, point, 0),
+            new MissionStore.LegRecord("o1", false, point, 0))), checkpoint);
+    }
+}
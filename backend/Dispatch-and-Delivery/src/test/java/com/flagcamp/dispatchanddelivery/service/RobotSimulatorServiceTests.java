@@ -0,0 +1,220 @@
+package com.flagcamp.dispatchanddelivery.service;
+
+import com.flagcamp.dispatchanddelivery.entity.RobotEntity;
+import com.flagcamp.dispatchanddelivery.manager.FleetRegistry;
+import com.flagcamp.dispatchanddelivery.manager.LocalSignalBus;
+import com.flagcamp.dispatchanddelivery.manager.MissionShards;
+import com.flagcamp.dispatchanddelivery.manager.MissionStore;
+import com.flagcamp.dispatchanddelivery.manager.NodeIdentity;
+import com.flagcamp.dispatchanddelivery.manager.PositionStore;
+import com.flagcamp.dispatchanddelivery.manager.RobotReservationManager;
+import com.flagcamp.dispatchanddelivery.manager.RobotSignalManager;
+import com.flagcamp.dispatchanddelivery.manager.TrackingHub;
+import com.flagcamp.dispatchanddelivery.model.event.RobotArrivedEvent;
+import com.flagcamp.dispatchanddelivery.repository.RobotRepository;
+import com.flagcamp.dispatchanddelivery.routing.RouteIndex;
+import com.flagcamp.dispatchanddelivery.simulation.SimulationClock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.AdditionalMatchers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mission tick on a virtual clock: one robot at 36 km/h (10 m/s) drives a 1000 m leg to
+ * the pickup and a 2000 m leg to the drop-off.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RobotSimulatorServiceTests {
+
+    @Mock
+    private RouteService routeService;
+    @Mock
+    private ApplicationEventPublisher publisher;
+    @Mock
+    private RobotRepository robotRepository;
+    @Mock
+    private FleetRegistry fleetRegistry;
+    @Mock
+    private PositionStore positionStore;
+    @Mock
+    private MissionStore missionStore;
+    @Mock
+    private TrackingHub trackingHub;
+
+    private SimulationClock clock;
+    private NodeIdentity node;
+    private RobotSignalManager signalManager;
+    private RobotReservationManager reservationManager;
+    private RobotSimulatorService simulator;
+
+    @BeforeEach
+    void setup() {
+        clock = new SimulationClock(true);
+        node = new NodeIdentity("n1");
+        signalManager = new RobotSignalManager(clock, new LocalSignalBus(), node, 1000, 64, 1000);
+        signalManager.subscribe();
+        reservationManager = new RobotReservationManager(null, false, 120);
+        simulator = simulator(false);
+
+        // hub (37.000) -> pickup (37.009) -> drop-off (37.027), straight north
+        Mockito.when(routeService.getRouteGeometry("o1")).thenReturn(new RouteService.RouteGeometry(
+            RouteIndex.of(new double[] {37.000, 37.009}, new double[] {-122.0, -122.0}),
+            RouteIndex.of(new double[] {37.009, 37.027}, new double[] {-122.0, -122.0}),
+            1000, 2000));
+        Mockito.when(robotRepository.findById("r1")).thenReturn(Optional.of(robot(true)));
+        Mockito.when(robotRepository.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(robotRepository.findAllById(Mockito.any())).thenReturn(List.of(robot(false)));
+        Mockito.when(robotRepository.saveAll(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void mission_shouldDriveWaitAndFinish() {
+        Assertions.assertTrue(reservationManager.tryReserve("r1", "o1"));
+        simulator.startRobotMission("o1", "r1");
+        ArgumentCaptor<RobotEntity> saved = ArgumentCaptor.forClass(RobotEntity.class);
+        Mockito.verify(robotRepository).save(saved.capture());
+        Assertions.assertFalse(saved.getValue().isAvailable());
+        Assertions.assertFalse(reservationManager.isReserved("r1"));
+
+        stepAt(0);
+        stepAt(50);
+        // half way to the pickup
+        ArgumentCaptor<Double> lat = ArgumentCaptor.forClass(Double.class);
+        Mockito.verify(positionStore, Mockito.atLeastOnce()).robotPosition(Mockito.eq("r1"), lat.capture(), Mockito.anyDouble());
+        Assertions.assertEquals(37.0045, lat.getValue(), 1e-6);
+        Mockito.verifyNoInteractions(publisher);
+
+        stepAt(100);
+        Mockito.verify(publisher).publishEvent(new RobotArrivedEvent("o1", "PICKUP"));
+        Assertions.assertEquals(1, simulator.stats().waiting());
+
+        signalManager.userConfirmedPickup("o1");
+        stepAt(110);
+        Assertions.assertEquals(0, simulator.stats().waiting());
+        Assertions.assertEquals(37.009, simulator.estimatePosition("o1").orElseThrow()[0], 1e-6);
+
+        stepAt(310);
+        Mockito.verify(publisher).publishEvent(new RobotArrivedEvent("o1", "DELIVERED"));
+        // delivered orders get no more positions
+        Assertions.assertTrue(simulator.estimatePosition("o1").isEmpty());
+
+        signalManager.userConfirmedDeliver("o1");
+        stepAt(320);
+        Assertions.assertEquals(0, simulator.stats().active());
+        Assertions.assertEquals(1, simulator.stats().completed());
+        Assertions.assertTrue(freedRobots().get(0).isAvailable());
+        // simulation mode doesn't checkpoint
+        Mockito.verifyNoInteractions(missionStore);
+    }
+
+    @Test
+    void start_shouldRefuseARobotThatIsAlreadyBusy() {
+        Mockito.when(robotRepository.findById("r1")).thenReturn(Optional.of(robot(false)));
+        Assertions.assertTrue(reservationManager.tryReserve("r1", "o1"));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> simulator.startRobotMission("o1", "r1"));
+
+        Mockito.verify(robotRepository, Mockito.never()).save(Mockito.any());
+        Assertions.assertFalse(reservationManager.isReserved("r1"));
+        Assertions.assertEquals(0, simulator.stats().active());
+    }
+
+    @Test
+    void mission_shouldEndWhenTheConfirmationWindowExpires() {
+        simulator.startRobotMission("o1", "r1");
+        stepAt(0);
+        stepAt(100);
+        Assertions.assertEquals(1, simulator.stats().waiting());
+
+        // 600 s window
+        stepAt(100 + 599);
+        Assertions.assertEquals(1, simulator.stats().active());
+        stepAt(100 + 602);
+
+        Assertions.assertEquals(0, simulator.stats().active());
+        Assertions.assertEquals(1, simulator.stats().timedOut());
+        Assertions.assertTrue(freedRobots().get(0).isAvailable());
+    }
+
+    @Test
+    void mission_shouldIgnoreConfirmationsBeforeArrival() {
+        simulator.startRobotMission("o1", "r1");
+        stepAt(0);
+
+        signalManager.userConfirmedPickup("o1");
+        stepAt(10);
+        stepAt(100);
+
+        Assertions.assertEquals(1, simulator.stats().waiting());
+    }
+
+    @Test
+    void deadReckoning_shouldEstimateBetweenTicks() {
+        simulator = simulator(true);
+        simulator.startRobotMission("o1", "r1");
+        stepAt(0);
+        stepAt(20);
+
+        // no tick since 20 s, the estimate still follows the clock
+        clock.advanceTo(TimeUnit.SECONDS.toNanos(75));
+        Assertions.assertEquals(37.00675, simulator.estimatePosition("o1").orElseThrow()[0], 1e-6);
+        Assertions.assertTrue(simulator.estimatePosition("o2").isEmpty());
+    }
+
+    @Test
+    void deadReckoning_shouldOnlyWritePositionsAtStops() {
+        simulator = simulator(true);
+        simulator.startRobotMission("o1", "r1");
+        stepAt(0);
+        stepAt(30);
+        stepAt(60);
+        Mockito.verifyNoInteractions(positionStore);
+
+        stepAt(100);
+        Mockito.verify(positionStore).robotPosition(Mockito.eq("r1"), AdditionalMatchers.eq(37.009, 1e-9), Mockito.anyDouble());
+        Mockito.verify(positionStore).orderPosition(Mockito.eq("o1"), AdditionalMatchers.eq(37.009, 1e-9), Mockito.anyDouble());
+
+        // waiting robots stay at the stop however long the user takes
+        stepAt(400);
+        Assertions.assertEquals(37.009, simulator.estimatePosition("o1").orElseThrow()[0], 1e-9);
+        Mockito.verify(positionStore, Mockito.times(1)).robotPosition(Mockito.any(), Mockito.anyDouble(), Mockito.anyDouble());
+    }
+
+    private RobotSimulatorService simulator(boolean deadReckoning) {
+        return new RobotSimulatorService(signalManager, routeService, publisher, robotRepository, fleetRegistry,
+            reservationManager, clock, positionStore, new MissionShards(null, node, false, 64, 10000, 2000), missionStore,
+            node, trackingHub, 600, deadReckoning);
+    }
+
+    private void stepAt(long seconds) {
+        clock.advanceTo(TimeUnit.SECONDS.toNanos(seconds));
+        simulator.step();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RobotEntity> freedRobots() {
+        ArgumentCaptor<Iterable<RobotEntity>> saved = ArgumentCaptor.forClass(Iterable.class);
+        Mockito.verify(robotRepository).saveAll(saved.capture());
+        List<RobotEntity> robots = new ArrayList<>();
+        saved.getValue().forEach(robots::add);
+        return robots;
+    }
+
+    private static RobotEntity robot(boolean available) {
+        return new RobotEntity("r1", available, 100, "h1", 37.0, -122.0, 10.0, 36, 5, "robot");
+    }
+}
@@ -0,0 +1,128 @@
+package com.flagcamp.dispatchanddelivery.socket;
+
+import com.flagcamp.dispatchanddelivery.model.enums.MissionState;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class BinaryTrackingFramesTests {
+
+    private static final Random random = new Random(25);
+
+    @Test
+    void writeAbsolute_shouldFollowTheDocumentedLayout() {
+        ByteBuffer out = ByteBuffer.allocate(BinaryTrackingFrames.HEADER_BYTES + BinaryTrackingFrames.MAX_FRAME_BYTES);
+        BinaryTrackingFrames.writeHeader(out, 1);
+        BinaryTrackingFrames.writeAbsolute(out, 0x0102, MissionState.TO_DROPOFF,
+            BinaryTrackingFrames.fixed(37.7749), BinaryTrackingFrames.fixed(-122.4194));
+
+        byte[] bytes = bytes(out);
+
+        Assertions.assertEquals(BinaryTrackingFrames.HEADER_BYTES + 11, bytes.length);
+        Assertions.assertArrayEquals(new byte[] {1, 0, 1, 1, 2, (byte) (0x80 | 3)}, Arrays.copyOf(bytes, 6));
+        ByteBuffer in = ByteBuffer.wrap(bytes, 6, 8);
+        Assertions.assertEquals(37_774_900, in.getInt());
+        Assertions.assertEquals(-122_419_400, in.getInt());
+    }
+
+    @Test
+    void writeDelta_shouldZigzagSmallMovesIntoSingleBytes() {
+        ByteBuffer out = ByteBuffer.allocate(BinaryTrackingFrames.MAX_FRAME_BYTES);
+        BinaryTrackingFrames.writeDelta(out, 7, MissionState.TO_PICKUP, -1, 63);
+
+        // handle, flags, zigzag(-1) = 1, zigzag(63) = 126
+        Assertions.assertArrayEquals(new byte[] {0, 7, 1, 1, 126}, bytes(out));
+    }
+
+    @Test
+    void writeDelta_shouldFitTheExtremesInMaxFrameBytes() {
+        ByteBuffer out = ByteBuffer.allocate(BinaryTrackingFrames.MAX_FRAME_BYTES);
+        BinaryTrackingFrames.writeDelta(out, 0xFFFF, MissionState.RETURNING, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        Assertions.assertEquals(BinaryTrackingFrames.MAX_FRAME_BYTES, out.position());
+        Frame frame = read(ByteBuffer.wrap(bytes(out)));
+        Assertions.assertEquals(new Frame(0xFFFF, false, MissionState.RETURNING, Integer.MIN_VALUE, Integer.MAX_VALUE), frame);
+    }
+
+    @Test
+    void fixed_shouldRoundToMicroDegrees() {
+        Assertions.assertEquals(37_774_900, BinaryTrackingFrames.fixed(37.7749));
+        Assertions.assertEquals(-1, BinaryTrackingFrames.fixed(-0.0000006));
+        Assertions.assertEquals(180_000_000, BinaryTrackingFrames.fixed(180));
+    }
+
+    @RepeatedTest(50)
+    void frames_shouldDecodeToTheTrackTheyEncode() {
+        int count = 1 + random.nextInt(200);
+        List<Frame> written = new ArrayList<>();
+        ByteBuffer out = ByteBuffer.allocate(BinaryTrackingFrames.HEADER_BYTES + count * BinaryTrackingFrames.MAX_FRAME_BYTES);
+        BinaryTrackingFrames.writeHeader(out, count);
+        for (int i = 0; i < count; i++) {
+            int handle = random.nextInt(0x10000);
+            MissionState state = random.nextInt(6) == 0 ? null : MissionState.values()[random.nextInt(MissionState.values().length)];
+            if (random.nextBoolean()) {
+                int lat = BinaryTrackingFrames.fixed(random.nextDouble() * 180 - 90);
+                int lng = BinaryTrackingFrames.fixed(random.nextDouble() * 360 - 180);
+                BinaryTrackingFrames.writeAbsolute(out, handle, state, lat, lng);
+                written.add(new Frame(handle, true, state, lat, lng));
+            } else {
+                // mostly a few metres per tick, sometimes anything
+                int dLat = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(2001) - 1000;
+                int dLng = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(2001) - 1000;
+                BinaryTrackingFrames.writeDelta(out, handle, state, dLat, dLng);
+                written.add(new Frame(handle, false, state, dLat, dLng));
+            }
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(bytes(out));
+        Assertions.assertEquals(BinaryTrackingFrames.VERSION, in.get());
+        Assertions.assertEquals(count, Short.toUnsignedInt(in.getShort()));
+        for (Frame frame : written) {
+            Assertions.assertEquals(frame, read(in));
+        }
+        Assertions.assertFalse(in.hasRemaining());
+    }
+
+    // a client's decoder, written from the format in the class comment
+    private static Frame read(ByteBuffer in) {
+        int handle = Short.toUnsignedInt(in.getShort());
+        int flags = Byte.toUnsignedInt(in.get());
+        boolean absolute = (flags & 0x80) != 0;
+        int stateBits = flags & 0x07;
+        MissionState state = stateBits == 0 ? null : MissionState.values()[stateBits - 1];
+        if (absolute) {
+            return new Frame(handle, true, state, in.getInt(), in.getInt());
+        }
+        return new Frame(handle, false, state, unzigzag(readVarint(in)), unzigzag(readVarint(in)));
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = Byte.toUnsignedInt(in.get());
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] bytes(ByteBuffer out) {
+        out.flip();
+        byte[] bytes = new byte[out.remaining()];
+        out.get(bytes);
+        return bytes;
+    }
+
+    private record Frame(int handle, boolean absolute, MissionState state, int lat, int lng) {}
+}
@@ -8,6 +8,7 @@ import {
 } from "@vis.gl/react-google-maps";
 import { Drone, Bot } from "lucide-react";
 import { trackOrder } from "../api/trackApi";
+import { WS_URL } from "../constants";
 
 export default function Tracking(props) {
     
@@ -23,6 +24,7 @@ export default function Tracking(props) {
   const abortControllerRef = useRef(null);
   const setStartEndRef = useRef(false);
   const intervalRef = useRef(null);
+  const socketRef = useRef(null);
 
   console.log("Tracking component received:", { order_id, robot_type });
   console.log("robot_type type:", typeof robot_type);
@@ -192,23 +194,57 @@ export default function Tracking(props) {
   );
 
   useEffect(() => {
+    let closedByUs = false;
+
+    // fallback when the stream can't be opened or drops: poll like before
+    const startPolling = async () => {
+      if (intervalRef.current) return;
+      await fetchTrackingData(true);
+      intervalRef.current = setInterval(() => fetchTrackingData(false), 10000);
+    };
+
     // Wait a bit for Google Maps to be ready
     const initTimer = setTimeout(() => {
-      const initializeTracking = async () => {
-        await fetchTrackingData(true); // Wait for initial fetch to complete/timeout (handles setIsLoading internally)
-        intervalRef.current = setInterval(
-          () => fetchTrackingData(false),
-          10000
-        ); // Then start polling with isInitialFetch=false
+      // route once on subscribe, then only position changes pushed by the server
+      const ws = new WebSocket(
+        `${WS_URL}/tracking?orderId=${encodeURIComponent(order_id)}`
+      );
+      socketRef.current = ws;
+
+      ws.onmessage = (event) => {
+        let frame;
+        try {
+          frame = JSON.parse(event.data);
+        } catch (error) {
+          console.error("Invalid tracking frame:", error);
+          return;
+        }
+        if (frame.type === "route" && frame.encoded_route) {
+          setRoute(frame.encoded_route);
+        }
+        if (!isNaN(frame.lat) && !isNaN(frame.lng)) {
+          setPosition({ lat: frame.lat, lng: frame.lng });
+        }
+        setIsLoading(false);
       };
 
-      initializeTracking();
+      ws.onclose = (event) => {
+        if (closedByUs) return;
+        console.warn("Tracking stream closed, falling back to polling:", event.reason);
+        startPolling();
+      };
     }, 1000); // Give Google Maps 1 second to initialize
 
     return () => {
+      closedByUs = true;
       clearTimeout(initTimer);
+      if (socketRef.current) {
+        socketRef.current.close();
+        socketRef.current = null;
+      }
       if (intervalRef.current) {
         clearInterval(intervalRef.current);
+        intervalRef.current = null;
       }
       // Clean up abort controller on unmount
       if (abortControllerRef.current) {